@@ -2,6 +2,7 @@ package mff;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class LevelLoader {
@@ -30,4 +31,20 @@ public class LevelLoader {
         }
         return content;
     }
+
+    /**
+     * Level file found the same way as by getLevel, null if there is none.
+     */
+    public static Path findLevelFile(String filepath) {
+        Path[] candidates = {
+                Paths.get(filepath),
+                Paths.get("Mario-AI-Framework" + filepath.substring(1)),
+                Paths.get("." + filepath)
+        };
+        for (Path candidate : candidates) {
+            if (Files.isRegularFile(candidate))
+                return candidate;
+        }
+        return null;
+    }
 }
@@ -1,17 +1,23 @@
 package mff.agents.astar;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.PriorityQueue;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import mff.agents.astarHelper.CompareByCost;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.IndexedHeap;
+import mff.agents.astarHelper.LongIntHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.*;
+import mff.agents.gridSearch.GoalDistanceField;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 public class AStarTree {
+    // node without parent, the start node or the child the tree was re-rooted at
+    private SearchNode root;
     public SearchNode furthestNode;
     public float furthestNodeDistance;
 
@@ -19,105 +25,293 @@ public class AStarTree {
     int searchSteps;
     private final float timeToFinishWeight;
 
-    static boolean winFound = false;
+    boolean winFound = false;
     static final float maxMarioSpeedX = 10.91f;
-    static float exitTileX;
+    private final float exitTileX;
+    // null estimates the distance to the exit as the straight distance
+    private final GoalDistanceField goalDistanceField;
 
     public int nodesEvaluated = 0;
     public int mostBacktrackedNodes = 0;
     private int farthestReachedX;
     private int nodesBeforeNewFarthestX = 0;
 
-    PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
+    // opened holds indices into nodes
+    ArrayList<SearchNode> nodes = new ArrayList<>();
+    private ArrayList<SearchNode> spareNodes = new ArrayList<>();
+    private int[] keptOpenIndices = new int[256];
+    private float[] keptOpenCosts = new float[256];
+    IndexedHeap opened = new IndexedHeap();
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> NODE INDEX
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
-    
-    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float timeToFinishWeight) {
+    final LongIntHashMap visitedStates;
+    // null when the tree is re-rooted, nodes of dropped subtrees can't be given back to a pool
+    private final SearchNodePool nodePool;
+
+    // null expands one node at a time on the calling thread
+    private final ForkJoinPool workers;
+    private final int batchSize;
+    private final ArrayList<SearchNode> batch = new ArrayList<>();
+    private final ArrayList<SearchNode> childParents = new ArrayList<>();
+    private final ArrayList<MarioAction> childActions = new ArrayList<>();
+    private final ArrayList<MarioForwardModelSlim> childStates = new ArrayList<>();
+
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float timeToFinishWeight, float exitTileX,
+                     LongIntHashMap visitedStates, SearchNodePool nodePool) {
+        this(startState, searchSteps, timeToFinishWeight, exitTileX, visitedStates, nodePool, null);
+    }
+
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float timeToFinishWeight, float exitTileX,
+                     LongIntHashMap visitedStates, SearchNodePool nodePool, ForkJoinPool workers) {
+        this(startState, searchSteps, timeToFinishWeight, exitTileX, visitedStates, nodePool, workers, null);
+    }
+
+    /**
+     * @param workers pool whose parallelism is the number of best nodes taken from the open list at once,
+     *                their children are simulated on the pool and merged back in the order of a serial
+     *                search; null (or parallelism 1) searches exactly like the serial tree
+     * @param goalDistanceField grid distances to the exit used instead of the straight distance, may be null
+     */
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float timeToFinishWeight, float exitTileX,
+                     LongIntHashMap visitedStates, SearchNodePool nodePool, ForkJoinPool workers,
+                     GoalDistanceField goalDistanceField) {
+        // reused from the previous search of the agent
+        this.visitedStates = visitedStates;
+        this.visitedStates.clear();
+        this.nodePool = nodePool;
+        if (this.nodePool != null)
+            this.nodePool.reset();
         this.searchSteps = searchSteps;
         this.timeToFinishWeight = timeToFinishWeight;
+        this.exitTileX = exitTileX;
+        this.goalDistanceField = goalDistanceField;
+        this.workers = workers != null && workers.getParallelism() > 1 ? workers : null;
+        this.batchSize = this.workers != null ? this.workers.getParallelism() : 1;
 
         marioXStart = startState.getMarioX();
 
-        furthestNode = getStartNode(startState);
+        root = getStartNode(startState);
+        furthestNode = root;
         furthestNode.cost = calculateCost(startState, furthestNode.nodeDepth);
         furthestNodeDistance = furthestNode.state.getMarioX();
 
         farthestReachedX = (int) furthestNode.state.getMarioX();
 
-    	opened.add(furthestNode);
-    }
-    
-    private int getIntState(MarioForwardModelSlim model) {
-    	return getIntState((int) model.getMarioX(), (int) model.getMarioY());
+    	openNode(furthestNode);
     }
     
-    private int getIntState(int x, int y) {
-    	return (x << 16) | y;
+    private void openNode(SearchNode node) {
+        nodes.add(node);
+        opened.add(nodes.size() - 1, node.cost);
     }
-    
+
     private SearchNode getStartNode(MarioForwardModelSlim state) {
-    	// TODO: pooling
-    	return new SearchNode(state);
+        if (nodePool == null)
+            return new SearchNode(state);
+    	return nodePool.getStartNode(state);
     }
     
     private SearchNode getNewNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction action) {
-    	// TODO: pooling
-    	return new SearchNode(state, parent, cost, action);
+        if (nodePool == null)
+            return new SearchNode(state, parent, cost, action);
+    	return nodePool.getNode(state, parent, cost, action);
     }
-    
-    private float calculateCost(MarioForwardModelSlim nextState, int nodeDepth) {
-        float timeToFinish = (exitTileX - nextState.getMarioX()) / maxMarioSpeedX;
-        return nodeDepth + timeToFinish * timeToFinishWeight;
+
+    /**
+     * Child of the root on the way to the furthest node, null if the search has not got anywhere yet.
+     */
+    public SearchNode getFirstPlannedNode() {
+        if (furthestNode == root)
+            return null;
+        SearchNode node = furthestNode;
+        while (node.parent != root)
+            node = node.parent;
+        return node;
     }
-    
-    public ArrayList<boolean[]> search(MarioTimerSlim timer) {
-        while (opened.size() > 0 && timer.getRemainingTime() > 0) {
-            SearchNode current = opened.remove();
-            nodesEvaluated++;
-
-            if ((int) current.state.getMarioX() > farthestReachedX) {
-                mostBacktrackedNodes = Math.max(nodesBeforeNewFarthestX, mostBacktrackedNodes);
-                farthestReachedX = (int) current.state.getMarioX();
-                nodesBeforeNewFarthestX = 0;
-            } else {
-                nodesBeforeNewFarthestX++;
+
+    /**
+     * Makes a child of the root the new root once its action was executed. The subtree of the child
+     * stays with its open nodes and visited states, everything else is dropped. Costs of the kept nodes
+     * all count depth from the old root, they are off by the same constant and need no re-keying.
+     * @param actualState state of the game after the child's action, has to match the child's state
+     * @return false if the child no longer matches the game and the tree has to be built again
+     */
+    public boolean reRoot(SearchNode child, MarioForwardModelSlim actualState) {
+        if (child.parent != root
+                || child.state.getStateHash() != actualState.getStateHash()
+                || child.state.getMarioX() != actualState.getMarioX()
+                || child.state.getMarioY() != actualState.getMarioY())
+            return false;
+
+        boolean furthestNodeKept = isInSubtree(furthestNode, child);
+
+        // keep the subtree in the old order, open nodes go back to the heap under their new index
+        spareNodes.clear();
+        int openCount = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            SearchNode node = nodes.get(i);
+            if (!isInSubtree(node, child))
+                continue;
+            if (opened.contains(i)) {
+                if (openCount == keptOpenIndices.length) {
+                    keptOpenIndices = Arrays.copyOf(keptOpenIndices, openCount * 2);
+                    keptOpenCosts = Arrays.copyOf(keptOpenCosts, openCount * 2);
+                }
+                keptOpenIndices[openCount] = spareNodes.size();
+                keptOpenCosts[openCount++] = opened.getKey(i);
+            }
+            spareNodes.add(node);
+        }
+        ArrayList<SearchNode> oldNodes = nodes;
+        nodes = spareNodes;
+        spareNodes = oldNodes;
+        spareNodes.clear();
+
+        opened.clear();
+        for (int i = 0; i < openCount; i++)
+            opened.add(keptOpenIndices[i], keptOpenCosts[i]);
+        visitedStates.clear();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i) != child)
+                visitedStates.put(nodes.get(i).state.getStateHash(), i);
+        }
+
+        child.parent = null;
+        root = child;
+
+        if (!furthestNodeKept) {
+            winFound = false;
+            furthestNode = root;
+            furthestNodeDistance = root.state.getMarioX();
+            for (int i = 0; i < nodes.size(); i++) {
+                SearchNode node = nodes.get(i);
+                if (!opened.contains(i) && node.state.getMarioX() > furthestNodeDistance) {
+                    furthestNode = node;
+                    furthestNodeDistance = node.state.getMarioX();
+                }
             }
+        }
+        return true;
+    }
+
+    private static boolean isInSubtree(SearchNode node, SearchNode subtreeRoot) {
+        while (node != null && node.nodeDepth > subtreeRoot.nodeDepth)
+            node = node.parent;
+        return node == subtreeRoot;
+    }
+    
+    private void advanceChildren(int from, int to) {
+        for (int i = from; i < to; i++)
+            childStates.get(i).advanceN(childActions.get(i).value, searchSteps);
+    }
+
+    private void addChild(SearchNode current, MarioAction action, MarioForwardModelSlim newState) {
+        if (!newState.isMarioAlive())
+            return;
 
-            if (current.state.getMarioX() > furthestNodeDistance) {
-                furthestNode = current;
-                furthestNodeDistance = current.state.getMarioX();
+        float newStateCost = calculateCost(newState, current.nodeDepth + 1);
+
+        long newStateCode = newState.getStateHash();
+        int oldNodeIndex = visitedStates.getOrDefault(newStateCode, -1);
+        if (oldNodeIndex >= 0) {
+            if (newStateCost >= nodes.get(oldNodeIndex).cost)
+                return;
+            // better path to a state that is still open, replace its node instead of adding a duplicate
+            if (opened.contains(oldNodeIndex)) {
+                nodes.set(oldNodeIndex, getNewNode(newState, current, newStateCost, action));
+                opened.decreaseKey(oldNodeIndex, newStateCost);
+                return;
             }
+        }
+
+        SearchNode newNode = getNewNode(newState, current, newStateCost, action);
+        openNode(newNode);
+        visitedStates.put(newStateCode, nodes.size() - 1);
+    }
+
+    // splits the children of a batch in halves until a part is small enough to be advanced by one worker
+    private class AdvanceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int CHILDREN_PER_TASK = 2;
+
+        private final int from;
+        private final int to;
 
-            if (current.state.getGameStatusCode() == 1) {
-                furthestNode = current;
-                //System.out.print("WIN FOUND ");
-                winFound = true;
-                break;
+        AdvanceTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHILDREN_PER_TASK) {
+                advanceChildren(from, to);
+                return;
             }
+            int middle = (from + to) >>> 1;
+            invokeAll(new AdvanceTask(from, middle), new AdvanceTask(middle, to));
+        }
+    }
 
-            ArrayList<MarioAction> actions = Helper.getPossibleActions(current.state);
-            for (MarioAction action : actions) {
-                MarioForwardModelSlim newState = current.state.clone();
+    private float calculateCost(MarioForwardModelSlim nextState, int nodeDepth) {
+        float distanceToFinish = goalDistanceField != null
+                ? goalDistanceField.getDistance(nextState.getMarioX(), nextState.getMarioY())
+                : exitTileX - nextState.getMarioX();
+        float timeToFinish = distanceToFinish / maxMarioSpeedX;
+        return nodeDepth + timeToFinish * timeToFinishWeight;
+    }
+    
+    public ArrayList<boolean[]> search(MarioTimerSlim timer) {
+        search:
+        while (!opened.isEmpty() && timer.getRemainingTime() > 0) {
+            batch.clear();
+            while (batch.size() < batchSize && !opened.isEmpty()) {
+                SearchNode current = nodes.get(opened.poll());
+                nodesEvaluated++;
 
-                for (int i = 0; i < searchSteps; i++) {
-                    newState.advance(action.value);
+                if ((int) current.state.getMarioX() > farthestReachedX) {
+                    mostBacktrackedNodes = Math.max(nodesBeforeNewFarthestX, mostBacktrackedNodes);
+                    farthestReachedX = (int) current.state.getMarioX();
+                    nodesBeforeNewFarthestX = 0;
+                } else {
+                    nodesBeforeNewFarthestX++;
                 }
 
-                if (!newState.getWorld().mario.alive)
-                    continue;
+                if (current.state.getMarioX() > furthestNodeDistance) {
+                    furthestNode = current;
+                    furthestNodeDistance = current.state.getMarioX();
+                }
 
-                float newStateCost = calculateCost(newState, current.nodeDepth + 1);
+                if (current.state.getGameStatusCode() == 1) {
+                    furthestNode = current;
+                    //System.out.print("WIN FOUND ");
+                    winFound = true;
+                    break search;
+                }
 
-                int newStateCode = getIntState(newState);
-                float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
-                if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
-                    continue;
+                batch.add(current);
+            }
 
-                visitedStates.put(newStateCode, newStateCost);
-                opened.add(getNewNode(newState, current, newStateCost, action));
+            // clones are made here, cloning marks state of the parent as shared
+            childParents.clear();
+            childActions.clear();
+            childStates.clear();
+            for (SearchNode current : batch) {
+                for (MarioAction action : Helper.getPossibleActions(current.state)) {
+                    childParents.add(current);
+                    childActions.add(action);
+                    childStates.add(current.state.clone());
+                }
             }
+
+            if (workers != null)
+                workers.invoke(new AdvanceTask(0, childStates.size()));
+            else
+                advanceChildren(0, childStates.size());
+
+            for (int i = 0; i < childStates.size(); i++)
+                addChild(childParents.get(i), childActions.get(i), childStates.get(i));
         }
 
         ArrayList<boolean[]> actionsList = new ArrayList<>();
@@ -3,19 +3,49 @@ package mff.agents.astar;
 import mff.agents.benchmark.IAgentBenchmark;
 import mff.agents.benchmark.IAgentBenchmarkBacktrack;
 import mff.agents.common.IMarioAgentMFF;
+import mff.agents.astarHelper.LongIntHashMap;
 import mff.agents.astarHelper.MarioAction;
+import mff.agents.astarHelper.SearchNode;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.MarioTimerSlim;
+import mff.agents.gridSearch.GoalDistanceField;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
+import mff.forwardmodel.slim.core.MarioMacroCacheSlim;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class Agent implements IMarioAgentMFF, IAgentBenchmark, IAgentBenchmarkBacktrack {
 
     private static final int DEFAULT_SEARCH_STEPS = 3;
     private static final float DEFAULT_TIME_TO_FINISH_WEIGHT = 1.1f;
+    private static final boolean DEFAULT_REUSE_TREE = false;
+    private static final int DEFAULT_PARALLELISM = 1;
+    private static final boolean DEFAULT_USE_MACRO_CACHE = false;
+    private static final boolean DEFAULT_USE_GOAL_DISTANCE_FIELD = false;
 
     private static int configuredSearchSteps = DEFAULT_SEARCH_STEPS;
     private static float configuredTimeToFinishWeight = DEFAULT_TIME_TO_FINISH_WEIGHT;
+    private static boolean configuredReuseTree = DEFAULT_REUSE_TREE;
+    private static int configuredParallelism = DEFAULT_PARALLELISM;
+    private static boolean configuredUseMacroCache = DEFAULT_USE_MACRO_CACHE;
+    private static boolean configuredUseGoalDistanceField = DEFAULT_USE_GOAL_DISTANCE_FIELD;
+
+    // worker pools by parallelism, shared by all agents as benchmarks create a new agent for every level
+    private static final HashMap<Integer, ForkJoinPool> workerPools = new HashMap<>();
+
+    private final int searchSteps;
+    private final float timeToFinishWeight;
+    private final boolean reuseTree;
+    // expands the best parallelism nodes at once, null when the agent searches serially
+    private final ForkJoinPool workers;
+    // reuses Mario-only runs of the forward model across searches, null if turned off
+    private final MarioMacroCacheSlim macroCache;
+    private final boolean useGoalDistanceField;
+    private float exitTileX;
+    // grid distances to the exit computed at initialize, null if turned off
+    private GoalDistanceField goalDistanceField;
 
     private ArrayList<boolean[]> actionsList = new ArrayList<>();
     private float furthestDistance = -1;
@@ -23,11 +53,67 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IAgentBenchmarkBa
     private int totalSearchCalls = 0;
     private int totalNodesEvaluated = 0;
     private int mostBacktrackedNodes = 0;
+    private final LongIntHashMap visitedStates = new LongIntHashMap();
+    private final SearchNodePool nodePool = new SearchNodePool();
+
+    // kept between calls when the tree is reused
+    private AStarTree tree;
+    // child of the tree root whose action is being executed and ticks of it done so far
+    private SearchNode executedNode;
+    private int executedTicks;
+
+    /**
+     * Agent using the currently configured static parameters.
+     */
+    public Agent() {
+        this(configuredSearchSteps, configuredTimeToFinishWeight, configuredReuseTree, configuredParallelism,
+                configuredUseMacroCache, configuredUseGoalDistanceField);
+    }
+
+    public Agent(int searchSteps, float timeToFinishWeight) {
+        this(searchSteps, timeToFinishWeight, DEFAULT_REUSE_TREE, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param reuseTree keep the search tree between calls, re-rooted at the node reached by the executed
+     *                  actions, instead of searching from scratch every tick
+     * @param parallelism number of worker threads simulating children of the best nodes, 1 searches serially
+     */
+    public Agent(int searchSteps, float timeToFinishWeight, boolean reuseTree, int parallelism) {
+        this(searchSteps, timeToFinishWeight, reuseTree, parallelism, DEFAULT_USE_MACRO_CACHE,
+                DEFAULT_USE_GOAL_DISTANCE_FIELD);
+    }
+
+    /**
+     * @param useMacroCache reuse Mario-only runs of the forward model across searches, see MarioMacroCacheSlim
+     * @param useGoalDistanceField estimate the time to finish from grid distances to the exit computed at initialize,
+     *                             instead of the horizontal distance, see GoalDistanceField
+     */
+    public Agent(int searchSteps, float timeToFinishWeight, boolean reuseTree, int parallelism,
+                 boolean useMacroCache, boolean useGoalDistanceField) {
+        if (searchSteps <= 0)
+            throw new IllegalArgumentException("searchSteps must be positive.");
+        if (timeToFinishWeight <= 0)
+            throw new IllegalArgumentException("timeToFinishWeight must be positive.");
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive.");
+        this.searchSteps = searchSteps;
+        this.timeToFinishWeight = timeToFinishWeight;
+        this.reuseTree = reuseTree;
+        this.workers = parallelism > 1 ? getWorkerPool(parallelism) : null;
+        this.macroCache = useMacroCache ? new MarioMacroCacheSlim() : null;
+        this.useGoalDistanceField = useGoalDistanceField;
+    }
+
+    private static synchronized ForkJoinPool getWorkerPool(int parallelism) {
+        return workerPools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.winFound = false;
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
+        exitTileX = model.getExitTileX() * 16;
+        if (useGoalDistanceField)
+            goalDistanceField = GoalDistanceField.fromModel(model);
     }
 
     @Override
@@ -39,13 +125,18 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IAgentBenchmarkBa
                 return actionsList.remove(actionsList.size() - 1);
         }
 
-        AStarTree tree = new AStarTree(model, configuredSearchSteps, configuredTimeToFinishWeight);
+        model.setMacroCache(macroCache);
+        if (reuseTree)
+            return getActionsFromReusedTree(model, timer);
+
+        AStarTree tree = new AStarTree(model, searchSteps, timeToFinishWeight, exitTileX, visitedStates, nodePool, workers,
+                goalDistanceField);
         ArrayList<boolean[]> newActionsList = tree.search(timer);
         totalSearchCalls++;
         this.totalNodesEvaluated += tree.nodesEvaluated;
         this.mostBacktrackedNodes = Math.max(tree.mostBacktrackedNodes, this.mostBacktrackedNodes);
 
-        if (AStarTree.winFound) {
+        if (tree.winFound) {
             actionsList = newActionsList;
             finished = true;
             return actionsList.remove(actionsList.size() - 1);
@@ -66,6 +157,51 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IAgentBenchmarkBa
         return actionsList.remove(actionsList.size() - 1);
     }
 
+    /**
+     * The tree advances a whole node (searchSteps ticks) at a time, so the agent commits to the first
+     * planned node, executes its action and re-roots the tree there once it is reached. The search
+     * continues every tick in between. A plan changing mid-node only takes effect after the re-root.
+     */
+    private boolean[] getActionsFromReusedTree(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        if (tree != null && executedNode != null && executedTicks == searchSteps) {
+            if (!tree.reRoot(executedNode, model))
+                tree = null;
+            executedNode = null;
+        }
+        if (tree == null) {
+            tree = new AStarTree(model, searchSteps, timeToFinishWeight, exitTileX, visitedStates, null, workers,
+                    goalDistanceField);
+            executedNode = null;
+        }
+
+        ArrayList<boolean[]> newActionsList = tree.search(timer);
+        totalSearchCalls++;
+        this.totalNodesEvaluated += tree.nodesEvaluated;
+        tree.nodesEvaluated = 0;
+        this.mostBacktrackedNodes = Math.max(tree.mostBacktrackedNodes, this.mostBacktrackedNodes);
+
+        if (executedNode == null) {
+            executedNode = tree.getFirstPlannedNode();
+            executedTicks = 0;
+            if (executedNode == null) { // no way further yet, the game moves on and the tree is no longer valid
+                tree = null;
+                return MarioAction.NO_ACTION.value;
+            }
+        }
+
+        if (tree.winFound && tree.getFirstPlannedNode() == executedNode) {
+            // the plan starts with the ticks already executed
+            actionsList = newActionsList;
+            for (int i = 0; i < executedTicks; i++)
+                actionsList.remove(actionsList.size() - 1);
+            finished = true;
+            return actionsList.remove(actionsList.size() - 1);
+        }
+
+        executedTicks++;
+        return executedNode.marioAction.value;
+    }
+
     @Override
     public int getSearchCalls() {
         return totalSearchCalls;
@@ -106,8 +242,46 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IAgentBenchmarkBa
         return configuredTimeToFinishWeight;
     }
 
+    public static void setReuseTree(boolean reuseTree) {
+        configuredReuseTree = reuseTree;
+    }
+
+    public static boolean getReuseTree() {
+        return configuredReuseTree;
+    }
+
+    public static void setParallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive.");
+        configuredParallelism = parallelism;
+    }
+
+    public static int getParallelism() {
+        return configuredParallelism;
+    }
+
+    public static void setUseMacroCache(boolean useMacroCache) {
+        configuredUseMacroCache = useMacroCache;
+    }
+
+    public static boolean getUseMacroCache() {
+        return configuredUseMacroCache;
+    }
+
+    public static void setUseGoalDistanceField(boolean useGoalDistanceField) {
+        configuredUseGoalDistanceField = useGoalDistanceField;
+    }
+
+    public static boolean getUseGoalDistanceField() {
+        return configuredUseGoalDistanceField;
+    }
+
     public static void resetParameters() {
         configuredSearchSteps = DEFAULT_SEARCH_STEPS;
         configuredTimeToFinishWeight = DEFAULT_TIME_TO_FINISH_WEIGHT;
+        configuredReuseTree = DEFAULT_REUSE_TREE;
+        configuredParallelism = DEFAULT_PARALLELISM;
+        configuredUseMacroCache = DEFAULT_USE_MACRO_CACHE;
+        configuredUseGoalDistanceField = DEFAULT_USE_GOAL_DISTANCE_FIELD;
     }
 }
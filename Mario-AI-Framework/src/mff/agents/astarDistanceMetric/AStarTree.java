@@ -5,7 +5,6 @@ import mff.agents.common.MarioTimerSlim;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 public class AStarTree {
@@ -16,21 +15,28 @@ public class AStarTree {
     int searchSteps;
     int totalTicks;
 
-    static boolean winFound = false;
-    static float exitTileX;
+    boolean winFound = false;
+    private final float exitTileX;
 
     public int nodesEvaluated = 0;
 
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCostReversed());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
-
-    public AStarTree(MarioForwardModelSlim startState, int searchSteps) {
+    final LongFloatHashMap visitedStates;
+    private final SearchNodePool nodePool;
+
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float exitTileX, LongFloatHashMap visitedStates, SearchNodePool nodePool) {
+        // reused from the previous search of the agent
+        this.visitedStates = visitedStates;
+        this.visitedStates.clear();
+        this.nodePool = nodePool;
+        this.nodePool.reset();
+        this.exitTileX = exitTileX;
         this.searchSteps = searchSteps;
 
-        int totalSeconds = startState.getWorld().currentTimer / 1000;
+        int totalSeconds = startState.getCurrentTimer() / 1000;
         totalTicks = totalSeconds * 30;
 
         marioXStart = startState.getMarioX();
@@ -42,26 +48,16 @@ public class AStarTree {
         opened.add(furthestNode);
     }
 
-    private int getIntState(MarioForwardModelSlim model) {
-        return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-
-    private int getIntState(int x, int y) {
-        return (x << 16) | y;
-    }
-
     private SearchNode getStartNode(MarioForwardModelSlim state) {
-        // TODO: pooling
-        return new SearchNode(state);
+        return nodePool.getStartNode(state);
     }
 
     private SearchNode getNewNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction action) {
-        // TODO: pooling
-        return new SearchNode(state, parent, cost, action);
+        return nodePool.getNode(state, parent, cost, action);
     }
 
     private float calculateCost(MarioForwardModelSlim nextState, int nodeDepth) {
-        int marioState = nextState.getWorld().mario.alive ? 0 : Integer.MIN_VALUE;
+        int marioState = nextState.isMarioAlive() ? 0 : Integer.MIN_VALUE;
         return (nextState.getMarioX() - marioXStart) * 1.1f + (totalTicks - nodeDepth) + marioState;
     }
 
@@ -86,16 +82,14 @@ public class AStarTree {
             for (MarioAction action : actions) {
                 MarioForwardModelSlim newState = current.state.clone();
 
-                for (int i = 0; i < searchSteps; i++) {
-                    newState.advance(action.value);
-                }
+                newState.advanceN(action.value, searchSteps);
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCost(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost <= newStateOldScore)
                     continue;
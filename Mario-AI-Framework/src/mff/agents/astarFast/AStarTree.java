@@ -1,14 +1,15 @@
 package mff.agents.astarFast;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 import mff.agents.astarHelper.Helper;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.*;
 import mff.agents.astarHelper.CompareByCost;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 public class AStarTree {
@@ -20,18 +21,25 @@ public class AStarTree {
     float levelCurrentTime;
     int searchSteps;
 
-    static boolean winFound = false;
+    boolean winFound = false;
     static final float maxMarioSpeedX = 10.91f;
-    static float exitTileX;
+    private final float exitTileX;
 
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
+    final LongFloatHashMap visitedStates;
+    private final SearchNodePool nodePool;
     
-    public AStarTree(MarioForwardModelSlim startState, int searchSteps) {
-    	levelCurrentTime = startState.getWorld().currentTimer;
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float exitTileX, LongFloatHashMap visitedStates, SearchNodePool nodePool) {
+        // reused from the previous search of the agent
+        this.visitedStates = visitedStates;
+        this.visitedStates.clear();
+        this.nodePool = nodePool;
+        this.nodePool.reset();
+        this.exitTileX = exitTileX;
+    	levelCurrentTime = startState.getCurrentTimer();
     	this.searchSteps = searchSteps;
 
     	marioXStart = startState.getMarioX();
@@ -44,22 +52,12 @@ public class AStarTree {
     	opened.add(furthestNode);
     }
     
-    private int getIntState(MarioForwardModelSlim model) {
-    	return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-    
-    private int getIntState(int x, int y) {
-    	return (x << 16) | y;
-    }
-    
     private SearchNode getStartNode(MarioForwardModelSlim state) {
-    	// TODO: pooling
-    	return new SearchNode(state);
+    	return nodePool.getStartNode(state);
     }
     
     private SearchNode getNewNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction action) {
-    	// TODO: pooling
-    	return new SearchNode(state, parent, cost, action);
+    	return nodePool.getNode(state, parent, cost, action);
     }
     
     private float calculateCost(MarioForwardModelSlim nextState, int nodeDepth) {
@@ -77,21 +75,19 @@ public class AStarTree {
 
             MarioForwardModelSlim nextState = current.state.clone();
 
-            for (int i = 0; i < searchSteps; i++) {
-                nextState.advance(current.marioAction.value);
-            }
+            nextState.advanceN(current.marioAction.value, searchSteps);
 
-            if (!nextState.getWorld().mario.alive) {
+            if (!nextState.isMarioAlive()) {
                 continue;
             }
 
             float nextCost = calculateCost(nextState, current.nodeDepth);
-            int nextStateInt = getIntState(nextState);
+            long nextStateHash = nextState.getStateHash();
 
-            float nextStateIntOldScore = visitedStates.getOrDefault(nextStateInt, -1.0f);            
-            if (nextStateIntOldScore >= 0) {
+            float nextStateOldScore = visitedStates.getOrDefault(nextStateHash, -1.0f);            
+            if (nextStateOldScore >= 0) {
             	// WE HAVE ALREADY REACHED THIS STATE
-            	if (nextCost >= nextStateIntOldScore) {
+            	if (nextCost >= nextStateOldScore) {
                     // AND WE DO NOT HAVE BETTER SCORE
                     continue;
                 }
@@ -103,7 +99,7 @@ public class AStarTree {
             }
             
             // NEW STATE or BETTER STATE
-            visitedStates.put(nextStateInt, nextCost);
+            visitedStates.put(nextStateHash, nextCost);
             
             ArrayList<MarioAction> actions = Helper.getPossibleActions(nextState);
             for (MarioAction action : actions) {
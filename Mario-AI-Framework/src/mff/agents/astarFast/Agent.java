@@ -1,7 +1,9 @@
 package mff.agents.astarFast;
 
 import mff.agents.common.IMarioAgentMFF;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.MarioTimerSlim;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
@@ -10,13 +12,15 @@ import java.util.ArrayList;
 public class Agent implements IMarioAgentMFF {
 
     private ArrayList<boolean[]> actionsList = new ArrayList<>();
+    private float exitTileX;
     private float furthestDistance = -1;
     private boolean finished = false;
+    private final LongFloatHashMap visitedStates = new LongFloatHashMap();
+    private final SearchNodePool nodePool = new SearchNodePool();
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.winFound = false;
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
+        exitTileX = model.getExitTileX() * 16;
     }
 
     @Override
@@ -28,10 +32,10 @@ public class Agent implements IMarioAgentMFF {
                 return actionsList.remove(actionsList.size() - 1);
         }
 
-        AStarTree tree = new AStarTree(model, 2);
+        AStarTree tree = new AStarTree(model, 2, exitTileX, visitedStates, nodePool);
         ArrayList<boolean[]> newActionsList = tree.search(timer);
 
-        if (AStarTree.winFound) {
+        if (tree.winFound) {
             actionsList = newActionsList;
             finished = true;
             return actionsList.remove(actionsList.size() - 1);
@@ -2,17 +2,18 @@ package mff.agents.astarGrid;
 
 import mff.agents.astarHelper.CompareByCost;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.MarioTimerSlim;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 public class AStarTree {
-    private int[][] levelTilesWithPath;
+    private final GridPathDistances gridPathDistances;
 
     public SearchNode furthestNode;
     public float furthestNodeDistance;
@@ -20,9 +21,9 @@ public class AStarTree {
     float marioXStart;
     int searchSteps;
 
-    static boolean winFound = false;
+    boolean winFound = false;
     static final float maxMarioSpeedX = 10.91f;
-    static float exitTileX;
+    private final float exitTileX;
 
     public int nodesEvaluated = 0;
     public int mostBacktrackedNodes = 0;
@@ -39,15 +40,41 @@ public class AStarTree {
     public static float DISTANCE_FROM_PATH_ADDITIVE_PENALTY = 5;
     public static float DISTANCE_FROM_PATH_MULTIPLICATIVE_PENALTY = 5;
 
+    // per-tree copies of the tunables, the static fields only provide defaults for new trees
+    // (time weights come from the agent configuration, the static ones are kept for benchmark logs)
+    private final float nodeDepthWeight = NODE_DEPTH_WEIGHT;
+    private final float distanceFromPathTolerance = DISTANCE_FROM_PATH_TOLERANCE;
+    private final float distanceFromPathAdditivePenalty = DISTANCE_FROM_PATH_ADDITIVE_PENALTY;
+    private final float distanceFromPathMultiplicativePenalty = DISTANCE_FROM_PATH_MULTIPLICATIVE_PENALTY;
+    private final float timeToFinishWeight;
+    private final boolean useDynamicTimeWeight;
+    private final float timeToFinishWeightStart;
+    private final float timeToFinishWeightEnd;
+    private final float timeToFinishWeightExponent;
+
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
-
-    public AStarTree(MarioForwardModelSlim startState, int searchSteps, int[][] levelTilesWithPath) {
+    final LongFloatHashMap visitedStates;
+    private final SearchNodePool nodePool;
+
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, GridPathDistances gridPathDistances, float exitTileX,
+                     float timeToFinishWeight, boolean useDynamicTimeWeight, float timeToFinishWeightStart,
+                     float timeToFinishWeightEnd, float timeToFinishWeightExponent, LongFloatHashMap visitedStates, SearchNodePool nodePool) {
+        // reused from the previous search of the agent
+        this.visitedStates = visitedStates;
+        this.visitedStates.clear();
+        this.nodePool = nodePool;
+        this.nodePool.reset();
     	this.searchSteps = searchSteps;
-        this.levelTilesWithPath = levelTilesWithPath;
+        this.gridPathDistances = gridPathDistances;
+        this.exitTileX = exitTileX;
+        this.timeToFinishWeight = timeToFinishWeight;
+        this.useDynamicTimeWeight = useDynamicTimeWeight;
+        this.timeToFinishWeightStart = timeToFinishWeightStart;
+        this.timeToFinishWeightEnd = timeToFinishWeightEnd;
+        this.timeToFinishWeightExponent = timeToFinishWeightExponent;
 
     	marioXStart = startState.getMarioX();
 
@@ -60,100 +87,53 @@ public class AStarTree {
     	opened.add(furthestNode);
     }
     
-    private int getIntState(MarioForwardModelSlim model) {
-    	return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-    
-    private int getIntState(int x, int y) {
-    	return (x << 16) | y;
-    }
-    
     private SearchNode getStartNode(MarioForwardModelSlim state) {
-    	return new SearchNode(state);
+    	return nodePool.getStartNode(state);
     }
     
     private SearchNode getNewNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction action) {
-    	return new SearchNode(state, parent, cost, action);
+    	return nodePool.getNode(state, parent, cost, action);
     }
     
     private float calculateCost(MarioForwardModelSlim nextState, int nodeDepth) {
         float timeToFinish = (exitTileX - nextState.getMarioX()) / maxMarioSpeedX;
         float timeToFinishWeight = computeTimeToFinishWeight(nextState);
         float distanceFromGridPathCost = calculateDistanceFromGridPathCost(nextState);
-        return NODE_DEPTH_WEIGHT * nodeDepth
+        return nodeDepthWeight * nodeDepth
                 + timeToFinishWeight * timeToFinish
                 + distanceFromGridPathCost;
 	}
 
     private float computeTimeToFinishWeight(MarioForwardModelSlim nextState) {
-        if (!USE_DYNAMIC_TIME_WEIGHT) {
-            return TIME_TO_FINISH_WEIGHT;
+        if (!useDynamicTimeWeight) {
+            return timeToFinishWeight;
         }
 
         float totalDistance = Math.max(1f, exitTileX - marioXStart);
         float travelled = clamp(nextState.getMarioX() - marioXStart, 0f, totalDistance);
         float progress = travelled / totalDistance;
 
-        float exponent = TIME_TO_FINISH_WEIGHT_EXPONENT <= 0f ? 1f : TIME_TO_FINISH_WEIGHT_EXPONENT;
+        float exponent = timeToFinishWeightExponent <= 0f ? 1f : timeToFinishWeightExponent;
         double curvedProgress = Math.pow(progress, exponent);
 
-        return TIME_TO_FINISH_WEIGHT_START
-                + (float) curvedProgress * (TIME_TO_FINISH_WEIGHT_END - TIME_TO_FINISH_WEIGHT_START);
+        return timeToFinishWeightStart
+                + (float) curvedProgress * (timeToFinishWeightEnd - timeToFinishWeightStart);
     }
 
     private float calculateDistanceFromGridPathCost(MarioForwardModelSlim nextState) {
         int distanceFromGridPath = calculateDistanceFromGridPath(nextState);
-        if (distanceFromGridPath <= DISTANCE_FROM_PATH_TOLERANCE)
+        if (distanceFromGridPath <= distanceFromPathTolerance)
             return 0;
         else
-            return (distanceFromGridPath - DISTANCE_FROM_PATH_TOLERANCE)
-                    * DISTANCE_FROM_PATH_MULTIPLICATIVE_PENALTY
-                    + DISTANCE_FROM_PATH_ADDITIVE_PENALTY;
+            return (distanceFromGridPath - distanceFromPathTolerance)
+                    * distanceFromPathMultiplicativePenalty
+                    + distanceFromPathAdditivePenalty;
     }
 
     private int calculateDistanceFromGridPath(MarioForwardModelSlim nextState) {
         int marioTileX = (int) (nextState.getMarioX() / 16);
         int marioTileY = (int) (nextState.getMarioY() / 16);
-        if (marioTileX >= 0 && marioTileX < levelTilesWithPath.length &&
-            marioTileY >= 0 && marioTileY < levelTilesWithPath[0].length)
-                if (levelTilesWithPath[marioTileX][marioTileY] == 1)
-                    return 0;
-
-        int distance = 1;
-        do {
-            // upper and lower side
-            for (int x = marioTileX - distance; x <= marioTileX + distance; x++) {
-                if (x < 0 || x >= levelTilesWithPath.length)
-                    continue;
-
-                int y = marioTileY - distance;
-                if (y >= 0 && y < levelTilesWithPath[0].length)
-                    if (levelTilesWithPath[x][y] == 1)
-                        return distance;
-
-                y = marioTileY + distance;
-                if (y >= 0 && y < levelTilesWithPath[0].length)
-                    if (levelTilesWithPath[x][y] == 1)
-                        return distance;
-            }
-            // left and right side
-            for (int y = marioTileY - distance + 1; y <= marioTileY + distance - 1; y++) {
-                if (y < 0 || y >= levelTilesWithPath[0].length)
-                    continue;
-
-                int x = marioTileX - distance;
-                if (x >= 0 && x < levelTilesWithPath.length)
-                    if (levelTilesWithPath[x][y] == 1)
-                        return distance;
-
-                x = marioTileX + distance;
-                if (x >= 0 && x < levelTilesWithPath.length)
-                    if (levelTilesWithPath[x][y] == 1)
-                        return distance;
-            }
-            distance++;
-        } while (distance < 64);
-        throw new IllegalStateException("Something seems wrong, distance to grid path shouldn't be this big.");
+        return gridPathDistances.getDistance(marioTileX, marioTileY);
     }
 
     private float clamp(float value, float min, float max) {
@@ -192,16 +172,14 @@ public class AStarTree {
             for (MarioAction action : actions) {
                 MarioForwardModelSlim newState = current.state.clone();
 
-                for (int i = 0; i < searchSteps; i++) {
-                    newState.advance(action.value);
-                }
+                newState.advanceN(action.value, searchSteps);
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCost(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
                     continue;
@@ -1,11 +1,15 @@
 package mff.agents.astarGrid;
 
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.benchmark.IAgentBenchmark;
 import mff.agents.benchmark.IAgentBenchmarkBacktrack;
+import mff.agents.common.AStarGridHelper;
 import mff.agents.common.IGridHeuristic;
 import mff.agents.common.IMarioAgentMFF;
 import mff.agents.common.MarioTimerSlim;
+import mff.agents.gridSearch.GridReplanner;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 import java.util.ArrayList;
@@ -18,6 +22,14 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
     private static final float DEFAULT_TIME_TO_FINISH_WEIGHT_START = DEFAULT_TIME_TO_FINISH_WEIGHT;
     private static final float DEFAULT_TIME_TO_FINISH_WEIGHT_END = DEFAULT_TIME_TO_FINISH_WEIGHT;
     private static final float DEFAULT_TIME_TO_FINISH_WEIGHT_EXPONENT = 1f;
+    private static final boolean DEFAULT_REPLAN_GRID_PATH = false;
+
+    // columns around Mario checked for broken or used blocks when replanning
+    private static final int REPLAN_TILE_COLUMNS = 8;
+    // Mario further from the grid path than this (in tiles) gets a new path from where he is
+    private static final int REPLAN_PATH_DISTANCE = 3;
+    // time of a tick the replanning may take (in ms), a longer repair continues in the next ticks
+    private static final long REPLAN_MAX_TIME = 5;
 
     private static int configuredSearchSteps = DEFAULT_SEARCH_STEPS;
     private static float configuredTimeToFinishWeight = DEFAULT_TIME_TO_FINISH_WEIGHT;
@@ -25,6 +37,16 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
     private static float configuredTimeToFinishWeightStart = DEFAULT_TIME_TO_FINISH_WEIGHT_START;
     private static float configuredTimeToFinishWeightEnd = DEFAULT_TIME_TO_FINISH_WEIGHT_END;
     private static float configuredTimeToFinishWeightExponent = DEFAULT_TIME_TO_FINISH_WEIGHT_EXPONENT;
+    private static boolean configuredReplanGridPath = DEFAULT_REPLAN_GRID_PATH;
+
+    private final int searchSteps;
+    private final float timeToFinishWeight;
+    private final boolean useDynamicTimeWeight;
+    private final float timeToFinishWeightStart;
+    private final float timeToFinishWeightEnd;
+    private final float timeToFinishWeightExponent;
+    private final boolean replanGridPath;
+    private float exitTileX;
 
     private ArrayList<boolean[]> actionsList = new ArrayList<>();
     private float furthestDistance = -1;
@@ -32,22 +54,58 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
     private int totalSearchCalls = 0;
     private int totalNodesEvaluated = 0;
     private int mostBacktrackedNodes = 0;
-    private int[][] levelTilesWithPath;
+    private GridPathDistances gridPathDistances;
+    private GridReplanner gridReplanner;
+    // a repair didn't fit in its tick, the old path is used until it finishes
+    private boolean replanPending = false;
+    private final LongFloatHashMap visitedStates = new LongFloatHashMap();
+    private final SearchNodePool nodePool = new SearchNodePool();
+
+    /**
+     * Agent using the currently configured static parameters.
+     */
+    public Agent() {
+        this(configuredSearchSteps, configuredTimeToFinishWeight, configuredReplanGridPath);
+    }
+
+    /**
+     * Agent with its own search steps and time to finish weight, dynamic weighting follows the static configuration.
+     */
+    public Agent(int searchSteps, float timeToFinishWeight) {
+        this(searchSteps, timeToFinishWeight, DEFAULT_REPLAN_GRID_PATH);
+    }
+
+    /**
+     * @param replanGridPath replan the grid path when blocks around Mario change or he leaves the path,
+     *                       instead of using the path received before the game
+     */
+    public Agent(int searchSteps, float timeToFinishWeight, boolean replanGridPath) {
+        if (searchSteps <= 0)
+            throw new IllegalArgumentException("searchSteps must be positive.");
+        if (timeToFinishWeight <= 0)
+            throw new IllegalArgumentException("timeToFinishWeight must be positive.");
+        this.searchSteps = searchSteps;
+        this.timeToFinishWeight = timeToFinishWeight;
+        this.useDynamicTimeWeight = configuredUseDynamicTimeWeight;
+        this.timeToFinishWeightStart = configuredTimeToFinishWeightStart;
+        this.timeToFinishWeightEnd = configuredTimeToFinishWeightEnd;
+        this.timeToFinishWeightExponent = configuredTimeToFinishWeightExponent;
+        this.replanGridPath = replanGridPath;
+    }
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.winFound = false;
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
-        AStarTree.TIME_TO_FINISH_WEIGHT = configuredTimeToFinishWeight;
-        AStarTree.USE_DYNAMIC_TIME_WEIGHT = configuredUseDynamicTimeWeight;
-        AStarTree.TIME_TO_FINISH_WEIGHT_START = configuredTimeToFinishWeightStart;
-        AStarTree.TIME_TO_FINISH_WEIGHT_END = configuredTimeToFinishWeightEnd;
-        AStarTree.TIME_TO_FINISH_WEIGHT_EXPONENT = configuredTimeToFinishWeightExponent;
+        exitTileX = model.getExitTileX() * 16;
+        if (replanGridPath) {
+            gridReplanner = GridReplanner.fromModel(model, 0);
+            // the first plan searches the whole level, later ones only repair it
+            gridReplanner.replan();
+        }
     }
 
     @Override
     public void receiveLevelWithPath(int[][] levelTilesWithPath) {
-        this.levelTilesWithPath = levelTilesWithPath;
+        this.gridPathDistances = new GridPathDistances(levelTilesWithPath);
     }
 
     @Override
@@ -59,13 +117,17 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
                 return actionsList.remove(actionsList.size() - 1);
         }
 
-        AStarTree tree = new AStarTree(model, configuredSearchSteps, levelTilesWithPath);
+        if (gridReplanner != null)
+            replanGridPath(model, timer);
+
+        AStarTree tree = new AStarTree(model, searchSteps, gridPathDistances, exitTileX, timeToFinishWeight,
+                useDynamicTimeWeight, timeToFinishWeightStart, timeToFinishWeightEnd, timeToFinishWeightExponent, visitedStates, nodePool);
         ArrayList<boolean[]> newActionsList = tree.search(timer);
         totalSearchCalls++;
         this.totalNodesEvaluated += tree.nodesEvaluated;
         this.mostBacktrackedNodes = Math.max(tree.mostBacktrackedNodes, this.mostBacktrackedNodes);
 
-        if (AStarTree.winFound) {
+        if (tree.winFound) {
             actionsList = newActionsList;
             finished = true;
             return actionsList.remove(actionsList.size() - 1);
@@ -86,6 +148,17 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
         return actionsList.remove(actionsList.size() - 1);
     }
 
+    // new grid path once blocks changed or Mario left the path
+    private void replanGridPath(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        boolean tilesChanged = gridReplanner.updateFromModel(model, REPLAN_TILE_COLUMNS);
+        boolean offPath = gridPathDistances == null || gridPathDistances.getDistance((int) (model.getMarioX() / 16),
+                (int) (model.getMarioY() / 16)) > REPLAN_PATH_DISTANCE;
+        if (!tilesChanged && !offPath && !replanPending)
+            return;
+        long maxTime = Math.min(REPLAN_MAX_TIME, timer.getRemainingTime());
+        replanPending = !AStarGridHelper.giveReplannedPath(this, gridReplanner, maxTime);
+    }
+
     @Override
     public int getSearchCalls() {
         return totalSearchCalls;
@@ -159,6 +232,14 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
         return configuredTimeToFinishWeightExponent;
     }
 
+    public static void setReplanGridPath(boolean replanGridPath) {
+        configuredReplanGridPath = replanGridPath;
+    }
+
+    public static boolean isReplanGridPathEnabled() {
+        return configuredReplanGridPath;
+    }
+
     public static void resetParameters() {
         configuredSearchSteps = DEFAULT_SEARCH_STEPS;
         configuredTimeToFinishWeight = DEFAULT_TIME_TO_FINISH_WEIGHT;
@@ -166,5 +247,6 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
         configuredTimeToFinishWeightStart = DEFAULT_TIME_TO_FINISH_WEIGHT_START;
         configuredTimeToFinishWeightEnd = DEFAULT_TIME_TO_FINISH_WEIGHT_END;
         configuredTimeToFinishWeightExponent = DEFAULT_TIME_TO_FINISH_WEIGHT_EXPONENT;
+        configuredReplanGridPath = DEFAULT_REPLAN_GRID_PATH;
     }
 }
@@ -0,0 +1,90 @@
+package mff.agents.astarGrid;
+
+import java.util.Arrays;
+
+/**
+ * Chebyshev distance from every tile to the closest tile of the grid path, computed once per level
+ * by a two-pass distance transform. Rows above and below the level are included, since Mario can
+ * jump above the top of the level and falls below it before he dies.
+ */
+public class GridPathDistances {
+    private final int tileWidth;
+    private final int tileHeight;
+    // rows added above and below the level
+    private final int padding;
+    private final int paddedHeight;
+    // column-major (x * paddedHeight + padding + y)
+    private final int[] distances;
+
+    /**
+     * @param levelTilesWithPath level tiles indexed [x][y], path tiles are marked by 1
+     */
+    public GridPathDistances(int[][] levelTilesWithPath) {
+        this.tileWidth = levelTilesWithPath.length;
+        this.tileHeight = levelTilesWithPath[0].length;
+        this.padding = tileHeight;
+        this.paddedHeight = tileHeight + 2 * padding;
+        this.distances = new int[tileWidth * paddedHeight];
+
+        int unreached = tileWidth + paddedHeight;
+        Arrays.fill(distances, unreached);
+        boolean pathFound = false;
+        for (int x = 0; x < tileWidth; x++) {
+            for (int y = 0; y < tileHeight; y++) {
+                if (levelTilesWithPath[x][y] == 1) {
+                    distances[x * paddedHeight + padding + y] = 0;
+                    pathFound = true;
+                }
+            }
+        }
+        if (!pathFound)
+            throw new IllegalArgumentException("Level tiles contain no grid path.");
+
+        // forward pass takes the neighbours already visited in column-major order, backward pass the rest
+        for (int x = 0; x < tileWidth; x++) {
+            for (int y = 0; y < paddedHeight; y++) {
+                int i = x * paddedHeight + y;
+                int d = distances[i];
+                if (y > 0)
+                    d = Math.min(d, distances[i - 1] + 1);
+                if (x > 0) {
+                    int left = i - paddedHeight;
+                    d = Math.min(d, distances[left] + 1);
+                    if (y > 0)
+                        d = Math.min(d, distances[left - 1] + 1);
+                    if (y < paddedHeight - 1)
+                        d = Math.min(d, distances[left + 1] + 1);
+                }
+                distances[i] = d;
+            }
+        }
+        for (int x = tileWidth - 1; x >= 0; x--) {
+            for (int y = paddedHeight - 1; y >= 0; y--) {
+                int i = x * paddedHeight + y;
+                int d = distances[i];
+                if (y < paddedHeight - 1)
+                    d = Math.min(d, distances[i + 1] + 1);
+                if (x < tileWidth - 1) {
+                    int right = i + paddedHeight;
+                    d = Math.min(d, distances[right] + 1);
+                    if (y > 0)
+                        d = Math.min(d, distances[right - 1] + 1);
+                    if (y < paddedHeight - 1)
+                        d = Math.min(d, distances[right + 1] + 1);
+                }
+                distances[i] = d;
+            }
+        }
+    }
+
+    /**
+     * Distance in tiles to the closest path tile. Tiles further outside the level than the padding
+     * are measured from the closest stored tile, plus the number of tiles they are further out.
+     */
+    public int getDistance(int tileX, int tileY) {
+        int x = Math.min(Math.max(tileX, 0), tileWidth - 1);
+        int y = Math.min(Math.max(tileY + padding, 0), paddedHeight - 1);
+        int outside = Math.max(Math.abs(tileX - x), Math.abs(tileY + padding - y));
+        return distances[x * paddedHeight + y] + outside;
+    }
+}
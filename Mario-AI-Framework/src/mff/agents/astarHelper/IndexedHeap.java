@@ -0,0 +1,147 @@
+package mff.agents.astarHelper;
+
+import java.util.Arrays;
+
+/**
+ * Open list for A*: a 4-ary min-heap of node indices ordered by float keys.
+ * Node indices are chosen by the caller (usually the index of the node in its node list),
+ * the heap remembers where each of them is, so keys can be decreased in place.
+ * Clearing is O(1), positions of the previous search are invalidated by a generation stamp.
+ */
+public class IndexedHeap {
+    private static final int ARITY = 4;
+
+    private int[] heapNodes;
+    private float[] heapKeys;
+    private int size = 0;
+
+    // node index -> position in the heap, valid only if stamps[node] == generation
+    private int[] positions;
+    private int[] stamps;
+    private int generation = 1;
+
+    public IndexedHeap() {
+        this(1024);
+    }
+
+    public IndexedHeap(int initialCapacity) {
+        initialCapacity = Math.max(initialCapacity, ARITY);
+        heapNodes = new int[initialCapacity];
+        heapKeys = new float[initialCapacity];
+        positions = new int[initialCapacity];
+        stamps = new int[initialCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    public boolean contains(int node) {
+        return node < stamps.length && stamps[node] == generation && positions[node] >= 0;
+    }
+
+    public float getKey(int node) {
+        return heapKeys[positions[node]];
+    }
+
+    public void add(int node, float key) {
+        if (contains(node))
+            throw new IllegalArgumentException("Node " + node + " is already in the heap.");
+        ensureNodeCapacity(node + 1);
+        if (size == heapNodes.length) {
+            heapNodes = Arrays.copyOf(heapNodes, size * 2);
+            heapKeys = Arrays.copyOf(heapKeys, size * 2);
+        }
+        stamps[node] = generation;
+        siftUp(size++, node, key);
+    }
+
+    /**
+     * Lowers the key of a node in the heap, a key that is not lower is ignored.
+     */
+    public void decreaseKey(int node, float key) {
+        int position = positions[node];
+        if (key < heapKeys[position])
+            siftUp(position, node, key);
+    }
+
+    public int peek() {
+        return heapNodes[0];
+    }
+
+    public float peekKey() {
+        return heapKeys[0];
+    }
+
+    /**
+     * Removes the node with the lowest key and returns its index.
+     */
+    public int poll() {
+        int top = heapNodes[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0)
+            siftDown(0, heapNodes[size], heapKeys[size]);
+        return top;
+    }
+
+    private void siftUp(int position, int node, float key) {
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            if (heapKeys[parent] <= key)
+                break;
+            move(heapNodes[parent], heapKeys[parent], position);
+            position = parent;
+        }
+        move(node, key, position);
+    }
+
+    private void siftDown(int position, int node, float key) {
+        while (true) {
+            int firstChild = position * ARITY + 1;
+            if (firstChild >= size)
+                break;
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int best = firstChild;
+            float bestKey = heapKeys[firstChild];
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (heapKeys[child] < bestKey) {
+                    best = child;
+                    bestKey = heapKeys[child];
+                }
+            }
+            if (key <= bestKey)
+                break;
+            move(heapNodes[best], bestKey, position);
+            position = best;
+        }
+        move(node, key, position);
+    }
+
+    private void move(int node, float key, int position) {
+        heapNodes[position] = node;
+        heapKeys[position] = key;
+        positions[node] = position;
+    }
+
+    private void ensureNodeCapacity(int capacity) {
+        if (capacity > positions.length) {
+            int newLength = Math.max(capacity, positions.length * 2);
+            positions = Arrays.copyOf(positions, newLength);
+            stamps = Arrays.copyOf(stamps, newLength);
+        }
+    }
+}
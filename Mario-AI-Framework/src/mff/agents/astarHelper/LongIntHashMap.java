@@ -0,0 +1,124 @@
+package mff.agents.astarHelper;
+
+import java.util.Arrays;
+
+/**
+ * Same as LongFloatHashMap with int values, e.g. long state code -> node index.
+ * Open addressing with linear probing in power of two sized parallel arrays.
+ * A slot is in use only if its stamp equals the current generation, so clear is O(1)
+ * and a map reused by the next search keeps its arrays.
+ */
+public class LongIntHashMap {
+    private static final int DEFAULT_CAPACITY = 1 << 12;
+    private static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    private final float loadFactor;
+
+    private long[] keys;
+    private int[] values;
+    private int[] stamps;
+    private int generation = 1;
+
+    private int mask;
+    private int shift;
+    private int size = 0;
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongIntHashMap(int initialCapacity, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1)
+            throw new IllegalArgumentException("loadFactor must be between 0 and 1.");
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((int) Math.ceil(Math.max(initialCapacity, 2) / loadFactor)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        int slot = findSlot(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    public void put(long key, int value) {
+        int slot = slotOf(key);
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        stamps[slot] = generation;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold)
+            rehash(keys.length * 2);
+    }
+
+    private int findSlot(long key) {
+        int slot = slotOf(key);
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Fibonacci hashing, takes the high bits so that packed positions spread over the table
+    private int slotOf(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void allocate(int tableSize) {
+        keys = new long[tableSize];
+        values = new int[tableSize];
+        stamps = new int[tableSize];
+        mask = tableSize - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(tableSize);
+        resizeThreshold = (int) (tableSize * loadFactor);
+    }
+
+    private void rehash(int tableSize) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+
+        allocate(tableSize);
+        generation = 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStamps[i] != oldGeneration)
+                continue;
+            int slot = slotOf(oldKeys[i]);
+            while (stamps[slot] == generation)
+                slot = (slot + 1) & mask;
+            stamps[slot] = generation;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int tableSize = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        return Math.min(tableSize, 1 << 30);
+    }
+}
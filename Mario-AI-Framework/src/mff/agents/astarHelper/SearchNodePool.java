@@ -0,0 +1,68 @@
+package mff.agents.astarHelper;
+
+import mff.forwardmodel.slim.core.MarioForwardModelSlim;
+
+import java.util.ArrayList;
+
+/**
+ * Search nodes of one search. Nodes handed out by the pool are reused by the next search
+ * after reset, so a warmed-up agent stops allocating nodes.
+ * Everything handed out is only valid until the next reset, states of the previous search
+ * stay referenced until their nodes are reused.
+ */
+public class SearchNodePool {
+
+    private final ArrayList<SearchNode> nodes = new ArrayList<>();
+    private int used = 0;
+
+    public SearchNode getStartNode(MarioForwardModelSlim state) {
+        SearchNode node;
+        if (used < nodes.size()) {
+            node = nodes.get(used);
+            node.parent = null;
+            node.nodeDepth = 0;
+            node.cost = 0;
+            node.marioAction = MarioAction.NO_ACTION;
+            node.state = state;
+        }
+        else {
+            node = new SearchNode(state);
+            nodes.add(node);
+        }
+        used++;
+        return node;
+    }
+
+    public SearchNode getNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction marioAction) {
+        SearchNode node;
+        if (used < nodes.size()) {
+            node = nodes.get(used);
+            node.parent = parent;
+            node.nodeDepth = parent.nodeDepth + 1;
+            node.cost = cost;
+            node.marioAction = marioAction;
+            node.state = state;
+        }
+        else {
+            node = new SearchNode(state, parent, cost, marioAction);
+            nodes.add(node);
+        }
+        used++;
+        return node;
+    }
+
+    /**
+     * Gives all nodes back at once, call it when the search that owns them is discarded.
+     */
+    public void reset() {
+        used = 0;
+    }
+
+    public int getUsedCount() {
+        return used;
+    }
+
+    public int getCapacity() {
+        return nodes.size();
+    }
+}
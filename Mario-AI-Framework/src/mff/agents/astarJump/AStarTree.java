@@ -1,13 +1,14 @@
 package mff.agents.astarJump;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 import mff.agents.astarHelper.CompareByCostReversed;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.*;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
@@ -19,16 +20,22 @@ public class AStarTree {
     float marioYStart;
     float levelCurrentTime;
 
-    static boolean winFound = false;
+    boolean winFound = false;
 
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCostReversed());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
+    final LongFloatHashMap visitedStates;
+    private final SearchNodePool nodePool;
     
-    public AStarTree(MarioForwardModelSlim startState) {
-    	levelCurrentTime = startState.getWorld().currentTimer;
+    public AStarTree(MarioForwardModelSlim startState, LongFloatHashMap visitedStates, SearchNodePool nodePool) {
+        // reused from the previous search of the agent
+        this.visitedStates = visitedStates;
+        this.visitedStates.clear();
+        this.nodePool = nodePool;
+        this.nodePool.reset();
+    	levelCurrentTime = startState.getCurrentTimer();
     	
     	marioXStart = startState.getMarioX();
     	marioYStart = startState.getMarioY();
@@ -39,58 +46,43 @@ public class AStarTree {
     	opened.add(bestNode);    		
     }
     
-    private int getIntState(MarioForwardModelSlim model) {
-    	return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-    
-    private int getIntState(int x, int y) {
-    	return (x << 16) | y;
-    }
-    
     private SearchNode getStartNode(MarioForwardModelSlim state) {
-    	// TODO: pooling
-    	return new SearchNode(state);
+    	return nodePool.getStartNode(state);
     }
     
     private SearchNode getNewNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction action) {
-    	// TODO: pooling
-    	return new SearchNode(state, parent, cost, action);
+    	return nodePool.getNode(state, parent, cost, action);
     }
     
     private float calculateCost(MarioForwardModelSlim nextState) {
         // TODO: improve?
-    	int marioState = nextState.getMarioMode() * 100 + (nextState.getWorld().mario.alive ? 0 : Integer.MIN_VALUE);
-		return (nextState.getMarioX() - marioXStart) * 1.5f + marioState /*+ nextState.getWorld().currentTimer / 1000.0f*/
+    	int marioState = nextState.getMarioMode() * 100 + (nextState.isMarioAlive() ? 0 : Integer.MIN_VALUE);
+		return (nextState.getMarioX() - marioXStart) * 1.5f + marioState /*+ nextState.getCurrentTimer() / 1000.0f*/
                 + (marioYStart - nextState.getMarioY());
 	}
     
     public ArrayList<boolean[]> search(MarioTimerSlim timer, int searchSteps) {
     	int iterations = 0;
 
-    	if (winFound) // TODO
-    	    return null;
-
         while (opened.size() > 0 && timer.getRemainingTime() > 0) {
         	iterations++;
             SearchNode current = opened.remove();
 
             MarioForwardModelSlim nextState = current.state.clone();
 
-            for (int i = 0; i < searchSteps; i++) {
-                nextState.advance(current.marioAction.value);
-            }
+            nextState.advanceN(current.marioAction.value, searchSteps);
 
-            if (!nextState.getWorld().mario.alive) {
+            if (!nextState.isMarioAlive()) {
                 continue;
             }
 
             float nextCost = calculateCost(nextState);
-            int nextStateInt = getIntState(nextState);
+            long nextStateHash = nextState.getStateHash();
             
-            float nextStateIntOldScore = visitedStates.getOrDefault(nextStateInt, -1.0f);            
-            if (nextStateIntOldScore >= 0) {
+            float nextStateOldScore = visitedStates.getOrDefault(nextStateHash, -1.0f);            
+            if (nextStateOldScore >= 0) {
             	// WE HAVE ALREADY REACHED THIS STATE
-            	if (nextCost <= nextStateIntOldScore) {
+            	if (nextCost <= nextStateOldScore) {
                     // AND WE DO NOT HAVE BETTER SCORE
                     continue;
                 }
@@ -102,7 +94,7 @@ public class AStarTree {
             }
             
             // NEW STATE or BETTER STATE
-            visitedStates.put(nextStateInt, nextCost);
+            visitedStates.put(nextStateHash, nextCost);
             
             ArrayList<MarioAction> actions = Helper.getPossibleActions(nextState);
             for (MarioAction action : actions) {
@@ -1,7 +1,9 @@
 package mff.agents.astarJump;
 
 import mff.agents.common.IMarioAgentMFF;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.MarioTimerSlim;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
@@ -11,10 +13,13 @@ public class Agent implements IMarioAgentMFF {
 
     private ArrayList<boolean[]> actionsList = new ArrayList<>();
     private boolean finished = false;
+    private boolean winFound = false;
+    private final LongFloatHashMap visitedStates = new LongFloatHashMap();
+    private final SearchNodePool nodePool = new SearchNodePool();
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.winFound = false;
+        winFound = false;
     }
 
     @Override
@@ -23,8 +28,12 @@ public class Agent implements IMarioAgentMFF {
         if (finished)
             return MarioAction.NO_ACTION.value;
 
-        AStarTree tree = new AStarTree(model);
-        ArrayList<boolean[]> newActionsList = tree.search(timer, 2);
+        ArrayList<boolean[]> newActionsList = null;
+        if (!winFound) { // the winning plan is kept once found, no need to search again
+            AStarTree tree = new AStarTree(model, visitedStates, nodePool);
+            newActionsList = tree.search(timer, 2);
+            winFound = tree.winFound;
+        }
 
         if (newActionsList != null && newActionsList.size() > actionsList.size()) {
             actionsList = newActionsList;
@@ -1,11 +1,11 @@
 package mff.agents.astarPlanning;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 import mff.agents.astarHelper.CompareByCost;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
 import mff.agents.common.*;
@@ -21,16 +21,17 @@ public class AStarTree {
 
     int iterations = 0;
 
-    static float exitTileX;
+    private final float exitTileX;
     static final float maxMarioSpeedX = 10.91f;
 
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
+    LongFloatHashMap visitedStates = new LongFloatHashMap();
 
-    public AStarTree(MarioForwardModelSlim startState, int searchSteps) {
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float exitTileX) {
+        this.exitTileX = exitTileX;
         this.searchSteps = searchSteps;
 
         marioXStart = startState.getMarioX();
@@ -41,14 +42,6 @@ public class AStarTree {
         opened.add(bestNode);
     }
 
-    private int getIntState(MarioForwardModelSlim model) {
-        return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-
-    private int getIntState(int x, int y) {
-        return (x << 16) | y;
-    }
-
     private SearchNode getStartNode(MarioForwardModelSlim state) {
         return new SearchNode(state);
     }
@@ -84,16 +77,14 @@ public class AStarTree {
             for (MarioAction action : actions) {
                 MarioForwardModelSlim newState = current.state.clone();
 
-                for (int i = 0; i < searchSteps; i++) {
-                    newState.advance(action.value);
-                }
+                newState.advanceN(action.value, searchSteps);
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCost(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
                     continue;
@@ -16,11 +16,12 @@ public class Agent implements IMarioAgentMFF {
     private MarioForwardModelSlim startPoint;
     private int ticksPassed = 0;
     private int startTimeTicks = 0;
+    private float exitTileX;
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
         startPoint = model.clone();
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
+        exitTileX = model.getExitTileX() * 16;
     }
 
     @Override
@@ -47,10 +48,8 @@ public class Agent implements IMarioAgentMFF {
             System.out.println("Staring search with " + ticksRemaining + " ticks");
             ticksMultiplier *= 2;
             MarioForwardModelSlim futureModel = startPoint.clone();
-            for (int i = 0; i < ticksRemaining; i++) {
-                futureModel.advance(MarioAction.NO_ACTION.value);
-            }
-            tree = new AStarTree(futureModel, 2);
+            futureModel.advanceN(MarioAction.NO_ACTION.value, ticksRemaining);
+            tree = new AStarTree(futureModel, 2, exitTileX);
         }
 
         ticksRemaining--;
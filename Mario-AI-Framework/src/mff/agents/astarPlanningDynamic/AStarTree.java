@@ -2,13 +2,13 @@ package mff.agents.astarPlanningDynamic;
 
 import mff.agents.astarHelper.CompareByCost;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
 import mff.agents.common.MarioTimerSlim;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 public class AStarTree {
@@ -21,16 +21,20 @@ public class AStarTree {
     int searchSteps;
     boolean winFound = false;
 
-    static float exitTileX;
+    private final float exitTileX;
     static final float maxMarioSpeedX = 10.91f;
 
     public int nodesEvaluated = 0;
 
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
+    LongFloatHashMap visitedStates = new LongFloatHashMap();
+
+    public AStarTree(float exitTileX) {
+        this.exitTileX = exitTileX;
+    }
 
     public void initPlanAhead(MarioForwardModelSlim startState, int searchSteps) {
         this.searchSteps = searchSteps;
@@ -55,14 +59,6 @@ public class AStarTree {
         opened.add(startNode);
     }
 
-    private int getIntState(MarioForwardModelSlim model) {
-        return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-
-    private int getIntState(int x, int y) {
-        return (x << 16) | y;
-    }
-
     private SearchNode getStartNode(MarioForwardModelSlim state) {
         return new SearchNode(state);
     }
@@ -107,16 +103,14 @@ public class AStarTree {
             for (MarioAction action : actions) {
                 MarioForwardModelSlim newState = current.state.clone();
 
-                for (int i = 0; i < searchSteps; i++) {
-                    newState.advance(action.value);
-                }
+                newState.advanceN(action.value, searchSteps);
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCostPlanAhead(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
                     continue;
@@ -144,16 +138,14 @@ public class AStarTree {
             for (MarioAction action : actions) {
                 MarioForwardModelSlim newState = current.state.clone();
 
-                for (int i = 0; i < searchSteps; i++) {
-                    newState.advance(action.value);
-                }
+                newState.advanceN(action.value, searchSteps);
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCostPlanToFinish(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
                     continue;
@@ -166,7 +158,7 @@ public class AStarTree {
     }
 
     private boolean isSafe(SearchNode nodeToTest) {
-        return nodeToTest.state.getWorld().mario.onGround;
+        return nodeToTest.state.isMarioOnGround();
     }
 
     public ArrayList<boolean[]> getTempSafePlan() {
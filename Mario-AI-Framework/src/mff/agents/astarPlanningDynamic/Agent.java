@@ -17,14 +17,47 @@ public class Agent implements  IMarioAgentMFF, IAgentBenchmark {
     private boolean winFoundDuringTempSearch;
     private int totalSearchCalls = 0;
     private int totalNodesEvaluated = 0;
+    private float exitTileX;
+
+    // searching for the finish on a planner thread, see BackgroundPlanner
+    private final boolean backgroundPlanning;
+    // give the rest of every call to the planner, otherwise it only runs alongside the game
+    private final boolean awaitPlanner;
+    private BackgroundPlanner planner;
+    // state the game should be in at the next call if it follows the committed plan
+    private MarioForwardModelSlim expectedModel;
+
+    public Agent() {
+        this(false);
+    }
+
+    /**
+     * @param backgroundPlanning search for the finish on a planner thread that keeps running between calls,
+     *                           instead of only inside getActions
+     */
+    public Agent(boolean backgroundPlanning) {
+        this(backgroundPlanning, false);
+    }
+
+    /**
+     * @param awaitPlanner wait for the planner for the rest of the time of every call, so it gets the time
+     *                     of the call even when the game doesn't leave any between calls
+     */
+    public Agent(boolean backgroundPlanning, boolean awaitPlanner) {
+        this.backgroundPlanning = backgroundPlanning;
+        this.awaitPlanner = awaitPlanner;
+    }
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
+        exitTileX = model.getExitTileX() * 16;
     }
 
     @Override
     public boolean[] getActions(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        if (backgroundPlanning)
+            return getActionsWithPlanner(model, timer);
+
         if (tree != null && tree.winFound) {
             if (actionsList.size() == 0) {
                 if (!finalPlanExtracted && !winFoundDuringTempSearch) {
@@ -46,7 +79,7 @@ public class Agent implements  IMarioAgentMFF, IAgentBenchmark {
 
         if (findTempPlan) {
             findTempPlan = false;
-            AStarTree tree = new AStarTree();
+            AStarTree tree = new AStarTree(exitTileX);
             tree.initPlanAhead(model, 3);
             tree.planAhead(timer);
             totalSearchCalls++;
@@ -67,7 +100,7 @@ public class Agent implements  IMarioAgentMFF, IAgentBenchmark {
         if (startNewFinishSearch) {
             //System.out.println("New finish search init");
             startNewFinishSearch = false;
-            tree = new AStarTree();
+            tree = new AStarTree(exitTileX);
             for (int i = 0; i < actionsList.size(); i++) {
                 model.advance(actionsList.get(actionsList.size() - (1 + i)));
             }
@@ -84,14 +117,94 @@ public class Agent implements  IMarioAgentMFF, IAgentBenchmark {
         return actionsList.remove(actionsList.size() - 1);
     }
 
+    /**
+     * Same plans as the default mode, but the search for the finish from the end of the temporary plan
+     * runs on the planner thread. This call only searches for a temporary plan and pops committed actions,
+     * the rest of its time is given to the planner if awaitPlanner is set.
+     * The game is checked against the state predicted by the committed actions, if it drifts away,
+     * the planner is dropped and a new temporary plan is searched from the actual state.
+     */
+    private boolean[] getActionsWithPlanner(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        if (finalPlanExtracted || winFoundDuringTempSearch) {
+            if (actionsList.size() == 0)
+                return MarioAction.NO_ACTION.value;
+            return actionsList.remove(actionsList.size() - 1);
+        }
+
+        if (expectedModel != null && !matches(expectedModel, model)) {
+            stopPlanner();
+            actionsList.clear();
+        }
+
+        if (awaitPlanner && planner != null)
+            planner.awaitWin(timer);
+
+        // the plan to finish starts where the temporary plan ends
+        if (planner != null && planner.isWinFound() && actionsList.size() == 0) {
+            stopPlanner();
+            actionsList = tree.getPlanToFinish();
+            finalPlanExtracted = true;
+            return actionsList.remove(actionsList.size() - 1);
+        }
+
+        if (actionsList.size() == 0) {
+            stopPlanner();
+            tree = new AStarTree(exitTileX);
+            tree.initPlanAhead(model, 3);
+            tree.planAhead(timer);
+            totalSearchCalls++;
+            totalNodesEvaluated += tree.nodesEvaluated;
+            if (tree.winFound) {
+                actionsList = tree.getPlanToFinish();
+                winFoundDuringTempSearch = true;
+                return actionsList.remove(actionsList.size() - 1);
+            }
+            actionsList = tree.getTempSafePlan();
+
+            expectedModel = model.clone();
+            MarioForwardModelSlim predictedModel = model.clone();
+            for (int i = 0; i < actionsList.size(); i++) {
+                predictedModel.advance(actionsList.get(actionsList.size() - (1 + i)));
+            }
+            tree = new AStarTree(exitTileX);
+            tree.initPlanToFinish(predictedModel, 2);
+            planner = new BackgroundPlanner(tree);
+            planner.start();
+        }
+
+        boolean[] action = actionsList.remove(actionsList.size() - 1);
+        expectedModel.advance(action);
+        return action;
+    }
+
+    private static boolean matches(MarioForwardModelSlim expected, MarioForwardModelSlim actual) {
+        return expected.getStateHash() == actual.getStateHash()
+                && expected.getMarioX() == actual.getMarioX()
+                && expected.getMarioY() == actual.getMarioY();
+    }
+
+    @Override
+    public void gameOver() {
+        stopPlanner();
+    }
+
+    private void stopPlanner() {
+        if (planner == null)
+            return;
+        planner.stop();
+        totalSearchCalls += planner.getSearchSlices();
+        totalNodesEvaluated += planner.getNodesEvaluated();
+        planner = null;
+    }
+
     @Override
     public int getSearchCalls() {
-        return totalSearchCalls;
+        return totalSearchCalls + (planner != null ? planner.getSearchSlices() : 0);
     }
 
     @Override
     public int getNodesEvaluated() {
-        return totalNodesEvaluated;
+        return totalNodesEvaluated + (planner != null ? planner.getNodesEvaluated() : 0);
     }
 
     @Override
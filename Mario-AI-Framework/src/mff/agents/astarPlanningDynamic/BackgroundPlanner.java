@@ -0,0 +1,87 @@
+package mff.agents.astarPlanningDynamic;
+
+import mff.agents.common.MarioTimerSlim;
+
+/**
+ * Searches for the finish on its own thread, so the planning continues while the game updates
+ * and between getActions calls. The tree belongs to the planner thread until the planner is stopped.
+ */
+class BackgroundPlanner implements Runnable {
+    // the search checks whether it should stop after every slice
+    private static final long SLICE_TIME = 5;
+    // nobody asked for a result for this long, the game is probably over without the agent being told
+    private static final long MAX_IDLE_TIME = 1000;
+
+    private final AStarTree tree;
+    private final Thread thread;
+
+    private volatile boolean stopRequested = false;
+    private volatile boolean winFound = false;
+    private volatile long lastPollTime;
+    private volatile int nodesEvaluated = 0;
+    private volatile int searchSlices = 0;
+
+    BackgroundPlanner(AStarTree tree) {
+        this.tree = tree;
+        this.thread = new Thread(this, "background planner");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        lastPollTime = System.currentTimeMillis();
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!stopRequested && !tree.winFound && tree.opened.size() > 0
+                && System.currentTimeMillis() - lastPollTime < MAX_IDLE_TIME) {
+            tree.planToFinish(new MarioTimerSlim(SLICE_TIME));
+            nodesEvaluated = tree.nodesEvaluated;
+            searchSlices++;
+        }
+        winFound = tree.winFound;
+    }
+
+    /**
+     * Once true, the planner has finished and the plan can be taken from the tree.
+     */
+    boolean isWinFound() {
+        lastPollTime = System.currentTimeMillis();
+        return winFound;
+    }
+
+    /**
+     * Lets the planner use the rest of the caller's time, the caller returns early once a win is found.
+     */
+    void awaitWin(MarioTimerSlim timer) {
+        long remainingTime = timer.getRemainingTime();
+        if (remainingTime <= 0 || winFound)
+            return;
+        try {
+            thread.join(remainingTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the search and waits for the planner thread, the tree can be used by the caller afterwards.
+     */
+    void stop() {
+        stopRequested = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getNodesEvaluated() {
+        return nodesEvaluated;
+    }
+
+    int getSearchSlices() {
+        return searchSlices;
+    }
+}
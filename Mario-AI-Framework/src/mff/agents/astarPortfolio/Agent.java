@@ -0,0 +1,172 @@
+package mff.agents.astarPortfolio;
+
+import mff.agents.astarGrid.GridPathDistances;
+import mff.agents.astarHelper.MarioAction;
+import mff.agents.benchmark.IAgentBenchmark;
+import mff.agents.benchmark.IAgentBenchmarkPortfolio;
+import mff.agents.common.IGridHeuristic;
+import mff.agents.common.IMarioAgentMFF;
+import mff.agents.common.MarioTimerSlim;
+import mff.forwardmodel.slim.core.MarioForwardModelSlim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Races several A* configurations every tick, each on its own thread and all within the same timer.
+ * The plan of a member that found a win is taken, otherwise the one reaching furthest.
+ */
+public class Agent implements IMarioAgentMFF, IAgentBenchmark, IAgentBenchmarkPortfolio, IGridHeuristic {
+
+    // shared by all portfolio agents, as benchmarks create a new agent for every level, idle threads exit on their own
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "portfolio member");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<PortfolioMember> members;
+    private float exitTileX;
+    private GridPathDistances gridPathDistances;
+
+    private ArrayList<boolean[]> actionsList = new ArrayList<>();
+    private float furthestDistance = -1;
+    private boolean finished = false;
+    private int totalSearchCalls = 0;
+
+    /**
+     * Agent with the default portfolio, grid members only search once the level with the grid path is received.
+     */
+    public Agent() {
+        this(Arrays.asList(
+                PortfolioMember.astar(3, 1.1f),
+                PortfolioMember.astar(2, 1.5f),
+                PortfolioMember.astarWindow(3),
+                PortfolioMember.astarGrid(3, 2f)));
+    }
+
+    public Agent(List<PortfolioMember> members) {
+        if (members.isEmpty())
+            throw new IllegalArgumentException("Portfolio needs at least one member.");
+        this.members = new ArrayList<>(members);
+    }
+
+    @Override
+    public void initialize(MarioForwardModelSlim model) {
+        exitTileX = model.getExitTileX() * 16;
+    }
+
+    @Override
+    public void receiveLevelWithPath(int[][] levelTilesWithPath) {
+        this.gridPathDistances = new GridPathDistances(levelTilesWithPath);
+    }
+
+    @Override
+    public boolean[] getActions(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        if (finished) {
+            if (actionsList.size() == 0)
+                return MarioAction.NO_ACTION.value;
+            else
+                return actionsList.remove(actionsList.size() - 1);
+        }
+
+        PortfolioMember best = searchAll(model, timer);
+        totalSearchCalls++;
+
+        if (best.winFound) {
+            actionsList = best.plan;
+            finished = true;
+            return actionsList.remove(actionsList.size() - 1);
+        }
+
+        if (best.furthestDistance > furthestDistance) {
+            furthestDistance = best.furthestDistance;
+            actionsList = best.plan;
+        }
+
+        if (actionsList.size() == 0) { // didn't find a way further yet, take new actions to prevent stopping
+            actionsList = best.plan;
+        }
+
+        if (actionsList.size() == 0) // agent failed
+            return MarioAction.NO_ACTION.value;
+
+        return actionsList.remove(actionsList.size() - 1);
+    }
+
+    /**
+     * @return member with a win or the furthest plan, earlier members win ties
+     */
+    private PortfolioMember searchAll(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        ArrayList<PortfolioMember> racing = new ArrayList<>();
+        ArrayList<Callable<Void>> searches = new ArrayList<>();
+        for (PortfolioMember member : members) {
+            if (member.needsGridPath() && gridPathDistances == null)
+                continue;
+            // cloning marks state of the model as shared, so clones are made here and not on the member threads
+            MarioForwardModelSlim memberModel = model.clone();
+            racing.add(member);
+            searches.add(() -> {
+                member.search(memberModel, timer, exitTileX, gridPathDistances);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> search : executor.invokeAll(searches))
+                search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for portfolio members.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Portfolio member failed.", e.getCause());
+        }
+
+        PortfolioMember best = racing.get(0);
+        for (PortfolioMember member : racing) {
+            if (member.winFound) {
+                best = member;
+                break;
+            }
+            if (member.furthestDistance > best.furthestDistance)
+                best = member;
+        }
+        return best;
+    }
+
+    /**
+     * Nodes evaluated by every member so far, in portfolio order.
+     */
+    @Override
+    public LinkedHashMap<String, Integer> getMemberNodesEvaluated() {
+        LinkedHashMap<String, Integer> nodes = new LinkedHashMap<>();
+        for (PortfolioMember member : members)
+            nodes.put(member.getName(), member.getNodesEvaluated());
+        return nodes;
+    }
+
+    @Override
+    public int getSearchCalls() {
+        return totalSearchCalls;
+    }
+
+    @Override
+    public int getNodesEvaluated() {
+        int totalNodesEvaluated = 0;
+        for (PortfolioMember member : members)
+            totalNodesEvaluated += member.getNodesEvaluated();
+        return totalNodesEvaluated;
+    }
+
+    @Override
+    public String getAgentName() {
+        return "MFF A* Portfolio Agent";
+    }
+}
@@ -0,0 +1,103 @@
+package mff.agents.astarPortfolio;
+
+import mff.agents.astarGrid.GridPathDistances;
+import mff.agents.astarHelper.LongFloatHashMap;
+import mff.agents.astarHelper.LongIntHashMap;
+import mff.agents.astarHelper.SearchNodePool;
+import mff.agents.common.MarioTimerSlim;
+import mff.forwardmodel.slim.core.MarioForwardModelSlim;
+
+import java.util.ArrayList;
+
+/**
+ * One search configuration of the portfolio. Every member owns its visited states and node pool,
+ * so members can search on separate threads, each from its own clone of the state.
+ */
+public abstract class PortfolioMember {
+    private final String name;
+
+    // result of the last search
+    ArrayList<boolean[]> plan = new ArrayList<>();
+    float furthestDistance;
+    boolean winFound;
+
+    int nodesEvaluated = 0;
+
+    private PortfolioMember(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNodesEvaluated() {
+        return nodesEvaluated;
+    }
+
+    /**
+     * Grid members need the level with the grid path, they are left out until it is received.
+     */
+    boolean needsGridPath() {
+        return false;
+    }
+
+    abstract void search(MarioForwardModelSlim model, MarioTimerSlim timer, float exitTileX, GridPathDistances gridPathDistances);
+
+    public static PortfolioMember astar(int searchSteps, float timeToFinishWeight) {
+        return new PortfolioMember("astar " + searchSteps + " " + timeToFinishWeight) {
+            private final LongIntHashMap visitedStates = new LongIntHashMap();
+            private final SearchNodePool nodePool = new SearchNodePool();
+
+            @Override
+            void search(MarioForwardModelSlim model, MarioTimerSlim timer, float exitTileX, GridPathDistances gridPathDistances) {
+                mff.agents.astar.AStarTree tree = new mff.agents.astar.AStarTree(model, searchSteps,
+                        timeToFinishWeight, exitTileX, visitedStates, nodePool);
+                plan = tree.search(timer);
+                furthestDistance = tree.furthestNodeDistance;
+                winFound = tree.furthestNode.state.getGameStatusCode() == 1;
+                nodesEvaluated += tree.nodesEvaluated;
+            }
+        };
+    }
+
+    public static PortfolioMember astarWindow(int searchSteps) {
+        return new PortfolioMember("astarWindow " + searchSteps) {
+            private final LongFloatHashMap visitedStates = new LongFloatHashMap();
+            private final SearchNodePool nodePool = new SearchNodePool();
+
+            @Override
+            void search(MarioForwardModelSlim model, MarioTimerSlim timer, float exitTileX, GridPathDistances gridPathDistances) {
+                mff.agents.astarWindow.AStarTree tree = new mff.agents.astarWindow.AStarTree(model, searchSteps,
+                        exitTileX, visitedStates, nodePool);
+                plan = tree.search(timer);
+                furthestDistance = tree.furthestNodeDistance;
+                winFound = tree.furthestNode.state.getGameStatusCode() == 1;
+                nodesEvaluated += tree.nodesEvaluated;
+            }
+        };
+    }
+
+    public static PortfolioMember astarGrid(int searchSteps, float timeToFinishWeight) {
+        return new PortfolioMember("astarGrid " + searchSteps + " " + timeToFinishWeight) {
+            private final LongFloatHashMap visitedStates = new LongFloatHashMap();
+            private final SearchNodePool nodePool = new SearchNodePool();
+
+            @Override
+            boolean needsGridPath() {
+                return true;
+            }
+
+            @Override
+            void search(MarioForwardModelSlim model, MarioTimerSlim timer, float exitTileX, GridPathDistances gridPathDistances) {
+                mff.agents.astarGrid.AStarTree tree = new mff.agents.astarGrid.AStarTree(model, searchSteps,
+                        gridPathDistances, exitTileX, timeToFinishWeight, false, timeToFinishWeight,
+                        timeToFinishWeight, 1f, visitedStates, nodePool);
+                plan = tree.search(timer);
+                furthestDistance = tree.furthestNodeDistance;
+                winFound = tree.furthestNode.state.getGameStatusCode() == 1;
+                nodesEvaluated += tree.nodesEvaluated;
+            }
+        };
+    }
+}
@@ -2,6 +2,7 @@ package mff.agents.astarWaypoints;
 
 import mff.agents.astarHelper.CompareByCost;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
 import mff.agents.common.MarioTimerSlim;
@@ -9,19 +10,18 @@ import mff.agents.gridSearch.GridSearchNode;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 public class AStarTree {
     public final int SEARCH_STEPS = 3;
-    public static int[][] levelTilesWithPath;
+    private final int[][] levelTilesWithPath;
     public static final int WAYPOINT_DENSITY = 8;
     public static final int WAYPOINT_HORIZONTAL_DISTANCE_TOLERANCE = 16;
     public static final int WAYPOINT_VERTICAL_DISTANCE_TOLERANCE = 4;
-    public static ArrayList<Waypoint> waypoints = new ArrayList<>();
-    public static ArrayList<GridSearchNode> gridPath;
+    private final ArrayList<Waypoint> waypoints;
+    private final ArrayList<GridSearchNode> gridPath;
 
-    public Waypoint currentGoalWaypoint = waypoints.get(0);
+    public Waypoint currentGoalWaypoint;
     public int currentGoalWaypointIndex = 0;
 
     private SearchNode furthestWaypointNode;
@@ -32,7 +32,7 @@ public class AStarTree {
 
     boolean winFound = false;
     static final float maxMarioSpeedX = 10.91f;
-    static float exitTileX;
+    private final float exitTileX;
 
     public int nodesEvaluated = 0;
     public int mostBacktrackedNodes = 0;
@@ -45,14 +45,30 @@ public class AStarTree {
     public static float DISTANCE_FROM_PATH_ADDITIVE_PENALTY = 50;
     public static float DISTANCE_FROM_PATH_MULTIPLICATIVE_PENALTY = 7;
 
+    // per-tree copies of the tunables, the static fields only provide defaults for new trees
+    private final float nodeDepthWeight = NODE_DEPTH_WEIGHT;
+    private final float timeToFinishWeight = TIME_TO_FINISH_WEIGHT;
+    private final float distanceFromPathTolerance = DISTANCE_FROM_PATH_TOLERANCE;
+    private final float distanceFromPathAdditivePenalty = DISTANCE_FROM_PATH_ADDITIVE_PENALTY;
+    private final float distanceFromPathMultiplicativePenalty = DISTANCE_FROM_PATH_MULTIPLICATIVE_PENALTY;
+
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
+    LongFloatHashMap visitedStates = new LongFloatHashMap();
+
+    public AStarTree(int[][] levelTilesWithPath, ArrayList<GridSearchNode> gridPath, ArrayList<Waypoint> waypoints,
+                     float exitTileX) {
+        this.levelTilesWithPath = levelTilesWithPath;
+        this.gridPath = gridPath;
+        this.waypoints = waypoints;
+        this.exitTileX = exitTileX;
+        this.currentGoalWaypoint = waypoints.get(0);
+    }
 
     public void initNewSearch(MarioForwardModelSlim startState) {
-        visitedStates = new HashMap<>();
+        visitedStates.clear();
 
         marioXStart = startState.getMarioX();
 
@@ -68,14 +84,6 @@ public class AStarTree {
         opened.add(furthestNodeTowardsWaypoint);
     }
 
-    private int getIntState(MarioForwardModelSlim model) {
-    	return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-    
-    private int getIntState(int x, int y) {
-    	return (x << 16) | y;
-    }
-    
     private SearchNode getStartNode(MarioForwardModelSlim state) {
     	return new SearchNode(state);
     }
@@ -88,19 +96,19 @@ public class AStarTree {
         // TODO: take vertical distance into consideration?
         float timeToFinish = Math.abs(currentGoalWaypoint.x - nextState.getMarioX()) / maxMarioSpeedX;
         float distanceFromGridPathCost = calculateDistanceFromGridPathCost(nextState);
-        return NODE_DEPTH_WEIGHT * nodeDepth
-                + TIME_TO_FINISH_WEIGHT * timeToFinish
+        return nodeDepthWeight * nodeDepth
+                + timeToFinishWeight * timeToFinish
                 + distanceFromGridPathCost;
 	}
 
     private float calculateDistanceFromGridPathCost(MarioForwardModelSlim nextState) {
         int distanceFromGridPath = calculateDistanceFromGridPath(nextState);
-        if (distanceFromGridPath <= DISTANCE_FROM_PATH_TOLERANCE)
+        if (distanceFromGridPath <= distanceFromPathTolerance)
             return 0;
         else
-            return (distanceFromGridPath - DISTANCE_FROM_PATH_TOLERANCE)
-                    * DISTANCE_FROM_PATH_MULTIPLICATIVE_PENALTY
-                    + DISTANCE_FROM_PATH_ADDITIVE_PENALTY;
+            return (distanceFromGridPath - distanceFromPathTolerance)
+                    * distanceFromPathMultiplicativePenalty
+                    + distanceFromPathAdditivePenalty;
     }
 
     private int calculateDistanceFromGridPath(MarioForwardModelSlim nextState) {
@@ -195,16 +203,14 @@ public class AStarTree {
             for (MarioAction action : actions) {
                 MarioForwardModelSlim newState = current.state.clone();
 
-                for (int i = 0; i < SEARCH_STEPS; i++) {
-                    newState.advance(action.value);
-                }
+                newState.advanceN(action.value, SEARCH_STEPS);
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCost(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
                     continue;
@@ -239,7 +245,7 @@ public class AStarTree {
     }
 
     private boolean isSafe(SearchNode nodeToTest) {
-        return nodeToTest.state.getWorld().mario.onGround;
+        return nodeToTest.state.isMarioOnGround();
     }
 
     private void deleteLevelTilesPathToCurrentWaypoint() {
@@ -4,10 +4,12 @@ import engine.helper.TileFeature;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.benchmark.IAgentBenchmark;
 import mff.agents.benchmark.IAgentBenchmarkBacktrack;
+import mff.agents.common.AStarGridHelper;
 import mff.agents.common.IGridHeuristic;
 import mff.agents.common.IGridWaypoints;
 import mff.agents.common.IMarioAgentMFF;
 import mff.agents.common.MarioTimerSlim;
+import mff.agents.gridSearch.GridReplanner;
 import mff.agents.gridSearch.GridSearchNode;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 
@@ -17,16 +19,50 @@ import static engine.helper.TileFeature.BLOCK_ALL;
 import static engine.helper.TileFeature.BLOCK_LOWER;
 
 public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, IAgentBenchmarkBacktrack, IGridWaypoints {
+    // columns around Mario checked for broken or used blocks when replanning
+    private static final int REPLAN_TILE_COLUMNS = 8;
+    // time of a tick the replanning may take (in ms), a longer repair continues in the next ticks
+    private static final long REPLAN_MAX_TIME = 5;
+
     private ArrayList<boolean[]> actionsList = new ArrayList<>();
     private AStarTree tree;
     private boolean finished = false;
     private int totalSearchCalls = 0;
+    // of the trees replaced by replanning
+    private int totalNodesEvaluated = 0;
+    private int mostBacktrackedNodes = 0;
+    private int[][] levelTilesWithPath;
+    private ArrayList<GridSearchNode> gridPath;
+    private final ArrayList<AStarTree.Waypoint> waypoints = new ArrayList<>();
+    private float exitTileX;
+
+    private final boolean replanGridPath;
+    private GridReplanner gridReplanner;
+    // a repair didn't fit in its tick, the old waypoints are followed until it finishes
+    private boolean replanPending = false;
+
+    public Agent() {
+        this(false);
+    }
+
+    /**
+     * @param replanGridPath replan the grid path when blocks around Mario change and follow the waypoints
+     *                       of the new path, instead of the path received before the game
+     */
+    public Agent(boolean replanGridPath) {
+        this.replanGridPath = replanGridPath;
+    }
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
-        initializeWaypoints(AStarTree.gridPath, model);
-        tree = new AStarTree();
+        exitTileX = model.getExitTileX() * 16;
+        initializeWaypoints(gridPath, model);
+        tree = new AStarTree(levelTilesWithPath, gridPath, waypoints, exitTileX);
+        if (replanGridPath) {
+            gridReplanner = GridReplanner.fromModel(model, 0);
+            // the first plan searches the whole level, later ones only repair it
+            gridReplanner.replan();
+        }
     }
 
     private void initializeWaypoints(ArrayList<GridSearchNode> gridPath, MarioForwardModelSlim model) {
@@ -38,30 +74,32 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
             if (waypointsSpacing < AStarTree.WAYPOINT_DENSITY)
                 continue;
 
-            byte blockValue = model.getWorld().level.getBlockValue(node.tileX, node.tileY + 1);
+            byte blockValue = model.getBlockValue(node.tileX, node.tileY + 1);
             ArrayList<TileFeature> tileFeatures = TileFeature.getTileType(blockValue);
             // only save waypoint if it's on the ground
             if (tileFeatures.contains(BLOCK_LOWER) || tileFeatures.contains(BLOCK_ALL)) {
-                AStarTree.waypoints.add(new AStarTree.Waypoint(node.tileX * 16, node.tileY * 16));
+                waypoints.add(new AStarTree.Waypoint(node.tileX * 16, node.tileY * 16));
                 waypointsSpacing = 0;
             }
         }
 
-        AStarTree.Waypoint lastIncludedWaypoint = AStarTree.waypoints.get(AStarTree.waypoints.size() - 1);
         GridSearchNode lastNodeOnPath = gridPath.get(gridPath.size() - 1);
-        if (lastIncludedWaypoint.x == lastNodeOnPath.tileX && lastIncludedWaypoint.y == lastNodeOnPath.tileY)
-            return;
-        AStarTree.waypoints.add(new AStarTree.Waypoint(lastNodeOnPath.tileX * 16, lastNodeOnPath.tileY * 16));
+        if (!waypoints.isEmpty()) {
+            AStarTree.Waypoint lastIncludedWaypoint = waypoints.get(waypoints.size() - 1);
+            if (lastIncludedWaypoint.x == lastNodeOnPath.tileX && lastIncludedWaypoint.y == lastNodeOnPath.tileY)
+                return;
+        }
+        waypoints.add(new AStarTree.Waypoint(lastNodeOnPath.tileX * 16, lastNodeOnPath.tileY * 16));
     }
 
     @Override
     public void receiveLevelWithPath(int[][] levelTilesWithPath) {
-        AStarTree.levelTilesWithPath = levelTilesWithPath;
+        this.levelTilesWithPath = levelTilesWithPath;
     }
 
     @Override
     public void receiveGridPath(ArrayList<GridSearchNode> gridPath) {
-        AStarTree.gridPath = gridPath;
+        this.gridPath = gridPath;
     }
 
     @Override
@@ -73,6 +111,9 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
                 return actionsList.remove(actionsList.size() - 1);
         }
 
+        if (gridReplanner != null)
+            replanGridPath(model, timer);
+
         for (int i = 0; i < actionsList.size(); i++) {
             model.advance(actionsList.get(actionsList.size() - (1 + i)));
         }
@@ -97,6 +138,23 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
         return actionsList.remove(actionsList.size() - 1);
     }
 
+    // waypoints of a new grid path from Mario once blocks around him changed
+    private void replanGridPath(MarioForwardModelSlim model, MarioTimerSlim timer) {
+        if (!gridReplanner.updateFromModel(model, REPLAN_TILE_COLUMNS) && !replanPending)
+            return;
+        long maxTime = Math.min(REPLAN_MAX_TIME, timer.getRemainingTime());
+        replanPending = !AStarGridHelper.giveReplannedPath(this, gridReplanner, maxTime);
+        // the exit can't be reached from Mario, the old waypoints are kept
+        if (replanPending || gridPath.size() < 2)
+            return;
+
+        totalNodesEvaluated += tree.nodesEvaluated;
+        mostBacktrackedNodes = Math.max(tree.mostBacktrackedNodes, mostBacktrackedNodes);
+        waypoints.clear();
+        initializeWaypoints(gridPath, model);
+        tree = new AStarTree(levelTilesWithPath, gridPath, waypoints, exitTileX);
+    }
+
     @Override
     public int getSearchCalls() {
         return totalSearchCalls;
@@ -104,12 +162,12 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark, IGridHeuristic, I
 
     @Override
     public int getNodesEvaluated() {
-        return tree.nodesEvaluated;
+        return totalNodesEvaluated + tree.nodesEvaluated;
     }
 
     @Override
     public int getMostBacktrackedNodes() {
-        return tree.mostBacktrackedNodes;
+        return Math.max(mostBacktrackedNodes, tree.mostBacktrackedNodes);
     }
 
     @Override
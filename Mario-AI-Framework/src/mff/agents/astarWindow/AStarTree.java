@@ -2,14 +2,15 @@ package mff.agents.astarWindow;
 
 import mff.agents.astarHelper.CompareByCost;
 import mff.agents.astarHelper.Helper;
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
 import mff.agents.astarHelper.SearchNode;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.common.MarioTimerSlim;
 import mff.forwardmodel.slim.core.MarioForwardModelSlim;
 import mff.forwardmodel.slim.core.MarioWorldSlim;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.PriorityQueue;
 
 public class AStarTree {
@@ -21,19 +22,26 @@ public class AStarTree {
     //int furthestNonEmptyRightX;
     int searchSteps;
 
-    static boolean winFound = false;
+    boolean winFound = false;
     static final float maxMarioSpeedX = 10.91f;
-    static float exitTileX;
+    private final float exitTileX;
 
     public int nodesEvaluated = 0;
 
     PriorityQueue<SearchNode> opened = new PriorityQueue<>(new CompareByCost());
     /**
-     * INT STATE -> STATE COST
+     * STATE HASH -> STATE COST
      */
-    HashMap<Integer, Float> visitedStates = new HashMap<>();
+    final LongFloatHashMap visitedStates;
+    private final SearchNodePool nodePool;
     
-    public AStarTree(MarioForwardModelSlim startState, int searchSteps) {
+    public AStarTree(MarioForwardModelSlim startState, int searchSteps, float exitTileX, LongFloatHashMap visitedStates, SearchNodePool nodePool) {
+        // reused from the previous search of the agent
+        this.visitedStates = visitedStates;
+        this.visitedStates.clear();
+        this.nodePool = nodePool;
+        this.nodePool.reset();
+        this.exitTileX = exitTileX;
     	this.searchSteps = searchSteps;
 
     	marioXStart = startState.getMarioX();
@@ -51,33 +59,22 @@ public class AStarTree {
     }
 
     private int findNonEmptyColumn(int rightBorderX, MarioForwardModelSlim model) {
-        var level = model.getWorld().level;
         int rightBorderColumn = rightBorderX / 16;
         for (int x = rightBorderColumn; x >= rightBorderColumn - (MarioWorldSlim.marioGameWidth / 16 - 1); x--) {
             for (int y = 0; y < MarioWorldSlim.marioGameHeight / 16; y++) {
-                if (isBlockSafe(level.getBlockValue(x, y)))
+                if (isBlockSafe(model.getBlockValue(x, y)))
                     return x;
             }
         }
         throw new IllegalStateException("Level empty or check failed.");
     }
 
-    private int getIntState(MarioForwardModelSlim model) {
-    	return getIntState((int) model.getMarioX(), (int) model.getMarioY());
-    }
-    
-    private int getIntState(int x, int y) {
-    	return (x << 16) | y;
-    }
-    
     private SearchNode getStartNode(MarioForwardModelSlim state) {
-    	// TODO: pooling
-    	return new SearchNode(state);
+    	return nodePool.getStartNode(state);
     }
     
     private SearchNode getNewNode(MarioForwardModelSlim state, SearchNode parent, float cost, MarioAction action) {
-    	// TODO: pooling
-    	return new SearchNode(state, parent, cost, action);
+    	return nodePool.getNode(state, parent, cost, action);
     }
     
     private float calculateCost(MarioForwardModelSlim nextState, int nodeDepth) {
@@ -121,12 +118,12 @@ public class AStarTree {
                     newState.advanceWindow(action.value, rightWindowBorderX);
                 }
 
-                if (!newState.getWorld().mario.alive)
+                if (!newState.isMarioAlive())
                     continue;
 
                 float newStateCost = calculateCost(newState, current.nodeDepth + 1);
 
-                int newStateCode = getIntState(newState);
+                long newStateCode = newState.getStateHash();
                 float newStateOldScore = visitedStates.getOrDefault(newStateCode, -1.0f);
                 if (newStateOldScore >= 0 && newStateCost >= newStateOldScore)
                     continue;
@@ -173,14 +170,13 @@ public class AStarTree {
     }
 
     private boolean isSafe(SearchNode nodeToTest) {
-        if (nodeToTest.state.getWorld().mario.onGround)
+        if (nodeToTest.state.isMarioOnGround())
             return true;
         int marioX = (int) (nodeToTest.state.getMarioX()) / 16;
         int marioY = (int) (nodeToTest.state.getMarioY()) / 16;
-        var level = nodeToTest.state.getWorld().level;
         int levelHeight = MarioWorldSlim.marioGameHeight / 16;
         for (int y = marioY; y < levelHeight; y++) {
-            byte block = level.getBlockValue(marioX, y);
+            byte block = nodeToTest.state.getBlockValue(marioX, y);
             if (isBlockSafe(block))
                 return true;
         }
@@ -1,6 +1,8 @@
 package mff.agents.astarWindow;
 
+import mff.agents.astarHelper.LongFloatHashMap;
 import mff.agents.astarHelper.MarioAction;
+import mff.agents.astarHelper.SearchNodePool;
 import mff.agents.benchmark.IAgentBenchmark;
 import mff.agents.common.IMarioAgentMFF;
 import mff.agents.common.MarioTimerSlim;
@@ -11,15 +13,17 @@ import java.util.ArrayList;
 public class Agent implements IMarioAgentMFF, IAgentBenchmark {
 
     private ArrayList<boolean[]> actionsList = new ArrayList<>();
+    private float exitTileX;
     private float furthestDistance = -1;
     private boolean finished = false;
     private int totalSearchCalls = 0;
     private int totalNodesEvaluated = 0;
+    private final LongFloatHashMap visitedStates = new LongFloatHashMap();
+    private final SearchNodePool nodePool = new SearchNodePool();
 
     @Override
     public void initialize(MarioForwardModelSlim model) {
-        AStarTree.winFound = false;
-        AStarTree.exitTileX = model.getWorld().level.exitTileX * 16;
+        exitTileX = model.getExitTileX() * 16;
     }
 
     @Override
@@ -31,12 +35,12 @@ public class Agent implements IMarioAgentMFF, IAgentBenchmark {
                 return actionsList.remove(actionsList.size() - 1);
         }
 
-        AStarTree tree = new AStarTree(model, 3);
+        AStarTree tree = new AStarTree(model, 3, exitTileX, visitedStates, nodePool);
         ArrayList<boolean[]> newActionsList = tree.search(timer);
         totalSearchCalls++;
         this.totalNodesEvaluated += tree.nodesEvaluated;
 
-        if (AStarTree.winFound) {
+        if (tree.winFound) {
             actionsList = newActionsList;
             finished = true;
             return actionsList.remove(actionsList.size() - 1);
@@ -54,7 +54,7 @@ public class AgentBenchmark {
                     return;
                 FileWriter logWriter = new FileWriter(log);
 
-                logWriter.write("level,win/fail,% travelled,run time,game ticks,planning time,total plannings,nodes evaluated,most backtracked nodes\n");
+                logWriter.write("level,win/fail,% travelled,run time,game ticks,planning time,total plannings,nodes evaluated,most backtracked nodes,member nodes evaluated\n");
 
                 warmup(agentType);
                 //testOriginalLevels(agentType, logWriter);
@@ -177,7 +177,8 @@ public class AgentBenchmark {
                 + stats.totalPlanningTime + ','
                 + stats.searchCalls + ','
                 + stats.nodesEvaluated + ','
-                + stats.mostBacktrackedNodes + '\n'
+                + stats.mostBacktrackedNodes + ','
+                + stats.memberNodesEvaluated + '\n'
         );
     }
 
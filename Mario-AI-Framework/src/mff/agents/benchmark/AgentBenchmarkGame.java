@@ -124,6 +124,7 @@ public class AgentBenchmarkGame {
             }
         }
         long runEnd = System.currentTimeMillis();
+        this.agent.gameOver();
         agentStats.runTime = runEnd - runStart;
         agentStats.totalGameTicks = totalGameTicks;
         agentStats.totalPlanningTime = totalPlanningTime;
@@ -141,6 +142,16 @@ public class AgentBenchmarkGame {
             IAgentBenchmarkBacktrack backtrack = (IAgentBenchmarkBacktrack) this.agent;
             agentStats.mostBacktrackedNodes = backtrack.getMostBacktrackedNodes();
         }
+        if (this.agent instanceof IAgentBenchmarkPortfolio) {
+            IAgentBenchmarkPortfolio portfolio = (IAgentBenchmarkPortfolio) this.agent;
+            StringBuilder memberNodes = new StringBuilder();
+            for (var member : portfolio.getMemberNodesEvaluated().entrySet()) {
+                if (memberNodes.length() > 0)
+                    memberNodes.append(';');
+                memberNodes.append(member.getKey()).append('=').append(member.getValue());
+            }
+            agentStats.memberNodesEvaluated = memberNodes.toString();
+        }
         return agentStats;
     }
 }
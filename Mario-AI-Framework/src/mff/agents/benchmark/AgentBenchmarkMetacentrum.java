@@ -121,7 +121,7 @@ public class AgentBenchmarkMetacentrum {
                     logWriter.write("DTW_START:" + AStarTree.TIME_TO_FINISH_WEIGHT_START + "\n");
                     logWriter.write("DTW_END:" + AStarTree.TIME_TO_FINISH_WEIGHT_END + "\n");
                     logWriter.write("DTW_EXPONENT:" + AStarTree.TIME_TO_FINISH_WEIGHT_EXPONENT + "\n");
-                    logWriter.write("level,win/fail,% travelled,run time,game ticks,planning time,total plannings,nodes evaluated,most backtracked nodes\n");
+                    logWriter.write("level,win/fail,% travelled,run time,game ticks,planning time,total plannings,nodes evaluated,most backtracked nodes,member nodes evaluated\n");
 
                     warmup(agentType);
 
@@ -255,7 +255,8 @@ public class AgentBenchmarkMetacentrum {
                 + stats.totalPlanningTime + ','
                 + stats.searchCalls + ','
                 + stats.nodesEvaluated + ','
-                + stats.mostBacktrackedNodes + '\n'
+                + stats.mostBacktrackedNodes + ','
+                + stats.memberNodesEvaluated + '\n'
         );
     }
 
@@ -300,6 +301,8 @@ public class AgentBenchmarkMetacentrum {
                 return new mff.agents.robinBaumgartenSlimWindowAdvance.Agent();
             case "astarGrid":
                 return new mff.agents.astarGrid.Agent();
+            case "astarPortfolio":
+                return new mff.agents.astarPortfolio.Agent();
             default:
                 throw new IllegalArgumentException("Agent not supported.");
         }
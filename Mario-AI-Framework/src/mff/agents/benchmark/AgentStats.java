@@ -10,4 +10,6 @@ public class AgentStats {
     public int searchCalls;
     public int nodesEvaluated;
     public int mostBacktrackedNodes;
+    // member=nodes pairs separated by ';' for portfolio agents, empty otherwise
+    public String memberNodesEvaluated = "";
 }
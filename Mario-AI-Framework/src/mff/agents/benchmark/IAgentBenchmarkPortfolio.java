@@ -0,0 +1,7 @@
+package mff.agents.benchmark;
+
+import java.util.LinkedHashMap;
+
+public interface IAgentBenchmarkPortfolio {
+    LinkedHashMap<String, Integer> getMemberNodesEvaluated();
+}
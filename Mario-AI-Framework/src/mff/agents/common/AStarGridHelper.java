@@ -2,25 +2,41 @@ package mff.agents.common;
 
 import mff.agents.common.IGridHeuristic;
 import mff.agents.common.IMarioAgentMFF;
+import mff.agents.gridSearch.GridPathCache;
+import mff.agents.gridSearch.GridReplanner;
 import mff.agents.gridSearch.GridSearch;
 import mff.agents.gridSearch.GridSearchNode;
 
 import java.util.ArrayList;
 
 public class AStarGridHelper {
+    // grid paths come from the cache next to the levels, see GridPathCache
     public static void giveLevelTilesWithPath(IMarioAgentMFF agent, String levelPath) {
-        GridSearch gridSearch = GridSearch.initGridSearch(levelPath);
-        ArrayList<GridSearchNode> gridPath = gridSearch.findGridPath();
-        int[][] levelTilesWithPath = gridSearch.markGridPathInLevelTiles(gridPath);
+        int[][] levelTilesWithPath = GridPathCache.findLevelTilesWithPath(levelPath, 0);
         ((IGridHeuristic) agent).receiveLevelWithPath(levelTilesWithPath);
     }
 
     public static void giveGridPath(IMarioAgentMFF agent, String levelPath) {
-        GridSearch gridSearch = GridSearch.initGridSearch(levelPath);
-        ArrayList<GridSearchNode> gridPath = gridSearch.findGridPath();
+        ArrayList<GridSearchNode> gridPath = GridPathCache.findGridPath(levelPath, 0);
         ((IGridWaypoints) agent).receiveGridPath(gridPath);
     }
 
+    /**
+     * Replans the grid path after the changes given to the replanner and hands it to the agent,
+     * see GridReplanner.replan(long).
+     * @return whether the replan finished in maxTime milliseconds and the agent got the path
+     */
+    public static boolean giveReplannedPath(IMarioAgentMFF agent, GridReplanner replanner, long maxTime) {
+        ArrayList<GridSearchNode> gridPath = replanner.replan(maxTime);
+        if (gridPath == null)
+            return false;
+        if (agent instanceof IGridHeuristic)
+            ((IGridHeuristic) agent).receiveLevelWithPath(replanner.getLevelTilesWithPath());
+        if (agent instanceof IGridWaypoints)
+            ((IGridWaypoints) agent).receiveGridPath(gridPath);
+        return true;
+    }
+
     public static void showLevelTilesPath(String levelPath) {
         GridSearch gridSearch = GridSearch.initGridSearch(levelPath);
         ArrayList<GridSearchNode> gridPath = gridSearch.findGridPath();
@@ -119,6 +119,7 @@ public class AgentMarioGame {
                 }
             }
         }
+        this.agent.gameOver();
         //System.out.println(world.gameStatus);
     }
 }
@@ -10,4 +10,10 @@ public interface IMarioAgentMFF {
 
     String getAgentName();
 
+    /**
+     * Called once the game is over, agents searching outside of getActions stop here.
+     */
+    default void gameOver() {
+    }
+
 }
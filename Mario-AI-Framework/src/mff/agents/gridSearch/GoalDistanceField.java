@@ -0,0 +1,216 @@
+package mff.agents.gridSearch;
+
+import mff.agents.astarHelper.LongIntHashMap;
+import mff.forwardmodel.common.LevelPart;
+import mff.forwardmodel.slim.core.MarioForwardModelSlim;
+
+import java.util.Arrays;
+
+/**
+ * Grid distance to the exit from every tile of a level, computed once per level by a backward search
+ * over the moves of GridSearch. Horizontal moves cost one tile and vertical ones nothing, so the field
+ * matches the straight distance on open ground and grows only with detours. A tile holds the distance
+ * of its closest state to the exit; tiles from which the grid moves can't reach the exit hold the straight
+ * distance plus the level width, tiles the grid search never visits just the straight distance.
+ * The field is immutable and can be shared by trees on any thread.
+ */
+public class GoalDistanceField {
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int exitTileX;
+    // distance in tiles, column-major (x * tileHeight + y) like StaticLevel
+    private final float[] distances;
+
+    private GoalDistanceField(int tileWidth, int tileHeight, int exitTileX, float[] distances) {
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.exitTileX = exitTileX;
+        this.distances = distances;
+    }
+
+    public static GoalDistanceField fromModel(MarioForwardModelSlim model) {
+        int marioTileX = (int) (model.getMarioX() / 16);
+        int marioTileY = Math.max(0, (int) ((model.getMarioY() - 1) / 16));
+        return compute(getLevelTiles(model), marioTileX, marioTileY, model.getExitTileX());
+    }
+
+    // tiles of the static level indexed [x][y], as given by MarioLevel.getLevelTiles
+    static int[][] getLevelTiles(MarioForwardModelSlim model) {
+        int[][] levelTiles = new int[model.getLevelTileWidth()][model.getLevelTileHeight()];
+        for (int x = 0; x < levelTiles.length; x++) {
+            for (int y = 0; y < levelTiles[x].length; y++)
+                levelTiles[x][y] = toLevelTile(model.getStaticTileValue(x, y));
+        }
+        return levelTiles;
+    }
+
+    // tile values of the slim level are the tile ids of the original level, sprites are drawn over empty tiles
+    static int toLevelTile(byte value) {
+        if (value < 0)
+            return LevelPart.EMPTY.getValue();
+        if (value == LevelPart.PIPE_TOP_LEFT_WITH_FLOWER.getValue() || value == LevelPart.PIPE_TOP_LEFT_WITHOUT_FLOWER.getValue())
+            return LevelPart.PIPE_TOP_LEFT.getValue();
+        return value;
+    }
+
+    /**
+     * @param levelTiles tiles indexed [x][y] with [0,0] at top left, as used by GridSearch
+     * @param exitTileX first column counted as reaching the exit
+     */
+    public static GoalDistanceField compute(int[][] levelTiles, int marioTileX, int marioTileY, int exitTileX) {
+        int tileWidth = levelTiles.length;
+        int tileHeight = levelTiles[0].length;
+        GridSearch gridSearch = new GridSearch(levelTiles, marioTileX, marioTileY);
+
+        // forward pass: every state reachable from the start or from standing on any tile, with its moves
+        LongIntHashMap stateIndices = new LongIntHashMap();
+        int[] states = new int[1024];
+        int stateCount = 0;
+        int[] edgeFrom = new int[1024];
+        int[] edgeTo = new int[1024];
+        int edgeCount = 0;
+
+        GridSearchNode current = new GridSearchNode(marioTileX, Math.max(0, marioTileY), 0, null);
+        GridSearchNode next = new GridSearchNode(0, 0, 0, null);
+        GridMove[] possibleMoves = new GridMove[GridMove.values().length];
+
+        states[stateCount++] = gridSearch.getStateCode(current);
+        stateIndices.put(states[0], 0);
+        for (int x = 0; x < tileWidth; x++) {
+            for (int y = 0; y < tileHeight; y++) {
+                current.tileX = x;
+                current.tileY = y;
+                if (!gridSearch.isFree(x, y, GridMove.LEFT) || gridSearch.isBelowFree(current))
+                    continue;
+                int stateCode = gridSearch.getStateCode(current);
+                if (stateIndices.containsKey(stateCode))
+                    continue;
+                if (stateCount == states.length)
+                    states = Arrays.copyOf(states, stateCount * 2);
+                stateIndices.put(stateCode, stateCount);
+                states[stateCount++] = stateCode;
+            }
+        }
+
+        for (int i = 0; i < stateCount; i++) {
+            GridSearch.decodeStateCode(states[i], current);
+            if (current.tileX >= exitTileX)
+                continue;
+            int possibleMovesCount = gridSearch.getPossibleMoves(current, possibleMoves);
+            for (int m = 0; m < possibleMovesCount; m++) {
+                gridSearch.advance(current, possibleMoves[m], next);
+                int stateCode = gridSearch.getStateCode(next);
+                int nextIndex = stateIndices.getOrDefault(stateCode, -1);
+                if (nextIndex < 0) {
+                    if (stateCount == states.length)
+                        states = Arrays.copyOf(states, stateCount * 2);
+                    nextIndex = stateCount;
+                    stateIndices.put(stateCode, stateCount);
+                    states[stateCount++] = stateCode;
+                }
+                if (edgeCount == edgeFrom.length) {
+                    edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+                    edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+                }
+                edgeFrom[edgeCount] = i;
+                edgeTo[edgeCount++] = nextIndex;
+            }
+        }
+
+        // reversed edges grouped by their target state
+        int[] reversedStart = new int[stateCount + 1];
+        for (int e = 0; e < edgeCount; e++)
+            reversedStart[edgeTo[e] + 1]++;
+        for (int s = 0; s < stateCount; s++)
+            reversedStart[s + 1] += reversedStart[s];
+        int[] reversedFrom = new int[edgeCount];
+        int[] filled = Arrays.copyOf(reversedStart, stateCount);
+        for (int e = 0; e < edgeCount; e++)
+            reversedFrom[filled[edgeTo[e]]++] = edgeFrom[e];
+
+        // backward pass from the exit states, vertical moves happen during horizontal movement and cost
+        // nothing, so states are kept in a deque with the free moves in front of the paid ones
+        int[] stateDistances = new int[stateCount];
+        Arrays.fill(stateDistances, Integer.MAX_VALUE);
+        int[] deque = new int[2 * stateCount + 1];
+        int head = stateCount;
+        int tail = stateCount;
+        for (int s = 0; s < stateCount; s++) {
+            if (GridSearch.getTileX(states[s]) >= exitTileX) {
+                stateDistances[s] = 0;
+                deque[tail++] = s;
+            }
+        }
+        boolean[] settled = new boolean[stateCount];
+        while (head < tail) {
+            int reached = deque[head++];
+            if (settled[reached])
+                continue;
+            settled[reached] = true;
+            int reachedTileX = GridSearch.getTileX(states[reached]);
+            for (int r = reversedStart[reached]; r < reversedStart[reached + 1]; r++) {
+                int previous = reversedFrom[r];
+                boolean horizontal = GridSearch.getTileX(states[previous]) != reachedTileX;
+                int distance = stateDistances[reached] + (horizontal ? 1 : 0);
+                if (settled[previous] || distance >= stateDistances[previous])
+                    continue;
+                stateDistances[previous] = distance;
+                if (horizontal)
+                    deque[tail++] = previous;
+                else
+                    deque[--head] = previous;
+            }
+        }
+
+        float[] distances = new float[tileWidth * tileHeight];
+        boolean[] visitedTiles = new boolean[tileWidth * tileHeight];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        for (int s = 0; s < stateCount; s++) {
+            int tile = GridSearch.getTileX(states[s]) * tileHeight + GridSearch.getTileY(states[s]);
+            visitedTiles[tile] = true;
+            if (stateDistances[s] != Integer.MAX_VALUE)
+                distances[tile] = Math.min(distances[tile], stateDistances[s]);
+        }
+        for (int x = 0; x < tileWidth; x++) {
+            float straightDistance = Math.max(0, exitTileX - x);
+            for (int y = 0; y < tileHeight; y++) {
+                int tile = x * tileHeight + y;
+                if (!visitedTiles[tile])
+                    distances[tile] = straightDistance;
+                else if (distances[tile] == Float.POSITIVE_INFINITY)
+                    distances[tile] = straightDistance + tileWidth;
+            }
+        }
+
+        return new GoalDistanceField(tileWidth, tileHeight, exitTileX, distances);
+    }
+
+    /**
+     * Distance to the exit in tiles from the tile at the given tile coordinates, clamped to the level.
+     */
+    public float getTileDistance(int tileX, int tileY) {
+        tileX = Math.min(Math.max(tileX, 0), tileWidth - 1);
+        tileY = Math.min(Math.max(tileY, 0), tileHeight - 1);
+        return distances[tileX * tileHeight + tileY];
+    }
+
+    /**
+     * Distance to the exit in pixels from Mario at the given position. Within a tile it falls
+     * towards the right, so on a level without detours it equals the straight distance to the exit.
+     */
+    public float getDistance(float marioX, float marioY) {
+        int tileX = (int) (marioX / 16);
+        if (tileX >= exitTileX)
+            return 0;
+        int tileY = (int) ((marioY - 1) / 16);
+        return getTileDistance(tileX, tileY) * 16 - (marioX - tileX * 16);
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+}
@@ -0,0 +1,250 @@
+package mff.agents.gridSearch;
+
+import mff.LevelLoader;
+import mff.agents.astarHelper.LongIntHashMap;
+import mff.forwardmodel.common.StateHashCommon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Grid paths stored on disk next to the levels, so the grid search runs once per level and jump boost
+ * instead of once per run. Every level directory gets a cache file of records keyed by a hash of the
+ * level text and the jump boost. The file is memory mapped when first used, a missing path is searched
+ * and appended while the file is locked, so sweep jobs sharing the levels can fill it at the same time.
+ * Levels that can't be cached, e.g. in a read-only directory, are searched every time.
+ */
+public class GridPathCache {
+    public static final String CACHE_FILE_NAME = "grid-paths.cache";
+
+    private static final int MAGIC = 0x47504331; // "GPC1"
+    // bump when GridSearch returns different paths, files of other versions are rewritten
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    // level hash, level length, jump boost, tile width, tile height, success, path length
+    private static final int RECORD_HEADER_SIZE = 8 + 4 + 4 + 4 + 4 + 1 + 4;
+
+    private static final HashMap<Path, CacheFile> cacheFiles = new HashMap<>();
+
+    private GridPathCache() {
+    }
+
+    public static ArrayList<GridSearchNode> findGridPath(String levelPath, int horizontalJumpBoost) {
+        return getCachedPath(levelPath, horizontalJumpBoost).toNodes();
+    }
+
+    /**
+     * Level tiles with the grid path marked by 1, as given by GridSearch.markGridPathInLevelTiles.
+     */
+    public static int[][] findLevelTilesWithPath(String levelPath, int horizontalJumpBoost) {
+        CachedPath path = getCachedPath(levelPath, horizontalJumpBoost);
+        int[][] result = new int[path.tileWidth][path.tileHeight];
+        for (int stateCode : path.stateCodes)
+            result[GridSearch.getTileX(stateCode)][GridSearch.getTileY(stateCode)] = 1;
+        return result;
+    }
+
+    private static synchronized CachedPath getCachedPath(String levelPath, int horizontalJumpBoost) {
+        String level = LevelLoader.getLevel(levelPath);
+        byte[] levelBytes = level.getBytes(StandardCharsets.UTF_8);
+        long levelHash = hashLevel(levelBytes);
+
+        Path levelFile = LevelLoader.findLevelFile(levelPath);
+        if (levelFile == null)
+            return search(level, horizontalJumpBoost);
+        Path cacheFilePath = levelFile.toAbsolutePath().resolveSibling(CACHE_FILE_NAME);
+
+        CacheFile cacheFile = cacheFiles.computeIfAbsent(cacheFilePath, CacheFile::new);
+        try {
+            CachedPath cached = cacheFile.get(levelHash, levelBytes.length, horizontalJumpBoost);
+            if (cached == null)
+                cached = cacheFile.searchAndStore(level, levelHash, levelBytes.length, horizontalJumpBoost);
+            return cached;
+        } catch (IOException e) {
+            return search(level, horizontalJumpBoost);
+        }
+    }
+
+    private static long hashLevel(byte[] levelBytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(levelBytes);
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private static long getKey(long levelHash, int horizontalJumpBoost) {
+        return StateHashCommon.mix(levelHash ^ StateHashCommon.mix(horizontalJumpBoost));
+    }
+
+    private static CachedPath search(String level, int horizontalJumpBoost) {
+        GridSearch gridSearch = GridSearch.initGridSearchFromLevel(level, horizontalJumpBoost);
+        ArrayList<GridSearchNode> path = gridSearch.findGridPath();
+        int[] stateCodes = new int[path.size()];
+        byte[] jumpBoostsLeft = new byte[path.size()];
+        for (int i = 0; i < path.size(); i++) {
+            stateCodes[i] = gridSearch.getStateCode(path.get(i));
+            jumpBoostsLeft[i] = (byte) path.get(i).horizontalJumpBoostLeft;
+        }
+        return new CachedPath(gridSearch.getTileWidth(), gridSearch.getTileHeight(), gridSearch.success,
+                stateCodes, jumpBoostsLeft);
+    }
+
+    private static final class CachedPath {
+        private final int tileWidth;
+        private final int tileHeight;
+        private final boolean success;
+        private final int[] stateCodes;
+        private final byte[] jumpBoostsLeft;
+
+        private CachedPath(int tileWidth, int tileHeight, boolean success, int[] stateCodes, byte[] jumpBoostsLeft) {
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            this.success = success;
+            this.stateCodes = stateCodes;
+            this.jumpBoostsLeft = jumpBoostsLeft;
+        }
+
+        private int getRecordSize() {
+            return RECORD_HEADER_SIZE + stateCodes.length * 5;
+        }
+
+        // the same nodes as returned by GridSearch.findGridPath, agents may modify them
+        private ArrayList<GridSearchNode> toNodes() {
+            ArrayList<GridSearchNode> nodes = new ArrayList<>(stateCodes.length);
+            GridSearchNode parent = null;
+            for (int i = 0; i < stateCodes.length; i++) {
+                GridSearchNode node = new GridSearchNode(0, 0, i, parent);
+                GridSearch.decodeStateCode(stateCodes[i], node);
+                node.horizontalJumpBoostLeft = jumpBoostsLeft[i];
+                if (i > 0)
+                    node.cost = GridSearch.calculateCost(node, tileWidth);
+                nodes.add(node);
+                parent = node;
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Records of one cache file: the file header and then records of a fixed header and the path,
+     * state codes first and jump boosts left after them. A record cut short by a killed writer
+     * ends the valid part of the file and is overwritten by the next one.
+     */
+    private static final class CacheFile {
+        private final Path path;
+        private MappedByteBuffer mapped;
+        // offsets of the records by key
+        private final LongIntHashMap recordOffsets = new LongIntHashMap();
+        private int validEnd = 0;
+
+        private CacheFile(Path path) {
+            this.path = path;
+        }
+
+        private CachedPath get(long levelHash, int levelLength, int horizontalJumpBoost) throws IOException {
+            if (mapped == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    remap(channel);
+                }
+            }
+            return find(levelHash, levelLength, horizontalJumpBoost);
+        }
+
+        private CachedPath searchAndStore(String level, long levelHash, int levelLength, int horizontalJumpBoost)
+                throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    // another job might have stored the path since the file was mapped
+                    remap(channel);
+                    CachedPath cached = find(levelHash, levelLength, horizontalJumpBoost);
+                    if (cached != null)
+                        return cached;
+
+                    cached = search(level, horizontalJumpBoost);
+                    ByteBuffer record = ByteBuffer.allocate(cached.getRecordSize());
+                    record.putLong(levelHash)
+                            .putInt(levelLength)
+                            .putInt(horizontalJumpBoost)
+                            .putInt(cached.tileWidth)
+                            .putInt(cached.tileHeight)
+                            .put((byte) (cached.success ? 1 : 0))
+                            .putInt(cached.stateCodes.length);
+                    for (int stateCode : cached.stateCodes)
+                        record.putInt(stateCode);
+                    record.put(cached.jumpBoostsLeft);
+                    record.flip();
+
+                    ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE)
+                            .putInt(MAGIC)
+                            .putInt(VERSION)
+                            .flip();
+                    if (validEnd < FILE_HEADER_SIZE) {
+                        channel.write(fileHeader, 0);
+                        validEnd = FILE_HEADER_SIZE;
+                    }
+                    channel.truncate(validEnd);
+                    channel.write(record, validEnd);
+                    remap(channel);
+                    return cached;
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+
+        // maps the file and indexes its valid records, a file of another version counts as empty
+        private void remap(FileChannel channel) throws IOException {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Grid path cache " + path + " is too large.");
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            recordOffsets.clear();
+            validEnd = 0;
+            if (size < FILE_HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION)
+                return;
+
+            int offset = FILE_HEADER_SIZE;
+            while (offset + RECORD_HEADER_SIZE <= size) {
+                int pathLength = mapped.getInt(offset + RECORD_HEADER_SIZE - 4);
+                if (pathLength < 0 || offset + RECORD_HEADER_SIZE + (long) pathLength * 5 > size)
+                    break;
+                recordOffsets.put(getKey(mapped.getLong(offset), mapped.getInt(offset + 12)), offset);
+                offset += RECORD_HEADER_SIZE + pathLength * 5;
+            }
+            validEnd = offset;
+        }
+
+        private CachedPath find(long levelHash, int levelLength, int horizontalJumpBoost) {
+            int offset = recordOffsets.getOrDefault(getKey(levelHash, horizontalJumpBoost), -1);
+            if (offset < 0 || mapped.getLong(offset) != levelHash || mapped.getInt(offset + 8) != levelLength
+                    || mapped.getInt(offset + 12) != horizontalJumpBoost)
+                return null;
+
+            int tileWidth = mapped.getInt(offset + 16);
+            int tileHeight = mapped.getInt(offset + 20);
+            boolean success = mapped.get(offset + 24) != 0;
+            int pathLength = mapped.getInt(offset + 25);
+            int[] stateCodes = new int[pathLength];
+            byte[] jumpBoostsLeft = new byte[pathLength];
+            int pathOffset = offset + RECORD_HEADER_SIZE;
+            for (int i = 0; i < pathLength; i++)
+                stateCodes[i] = mapped.getInt(pathOffset + i * 4);
+            mapped.get(pathOffset + pathLength * 4, jumpBoostsLeft);
+            return new CachedPath(tileWidth, tileHeight, success, stateCodes, jumpBoostsLeft);
+        }
+    }
+}
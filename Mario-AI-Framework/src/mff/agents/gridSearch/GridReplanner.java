@@ -0,0 +1,470 @@
+package mff.agents.gridSearch;
+
+import mff.forwardmodel.slim.core.MarioForwardModelSlim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Grid path kept up to date while the level changes and Mario moves, in the manner of D* Lite.
+ * Distances to the exit are searched backwards over the states of GridSearch, extended by the jump boost left,
+ * towards the start. When a tile changes, only the states whose moves read it are updated, and moving the start
+ * keeps all distances, so a replan repairs just the part of the search the change affects.
+ * Only jumps Mario can get into from standing are searched, they are found as the moves reach them.
+ * Every move costs one step, so among paths of the same length the replanned one may differ from the one
+ * of GridSearch.findGridPath, which also prefers keeping the jump boost.
+ */
+public class GridReplanner {
+    private static final int INFINITY = 1 << 29;
+    // at most one successor per move
+    private static final int MAX_SUCCESSORS = GridMove.values().length;
+    // states processed between checks of the time limit
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final GridSearch gridSearch;
+    private final int tileWidth;
+    private final int tileHeight;
+    // boost values a state can hold, from zero to the full horizontal jump boost
+    private final int boostValues;
+    // a state is its tile and its jump, the jump being the jump state with the boost left
+    private final int statesPerTile;
+
+    // jumps reached by some move, and those of them whose states were not updated yet
+    private final boolean[] reachableJumps;
+    private final int[] reachableJumpList;
+    private int reachableJumpCount = 0;
+    private final int[] newJumps;
+    private int newJumpCount = 0;
+
+    // successors of every state, computed when first needed
+    private final int[] successors;
+    private final byte[] successorCounts;
+    private final boolean[] successorsKnown;
+
+    // goal distance and its one-step lookahead of every state
+    private final int[] g;
+    private final int[] rhs;
+
+    // open states, a binary heap ordered by key with the position of every state in it
+    private final int[] opened;
+    private final long[] openedKeys;
+    private final int[] openedPositions;
+    private int openedSize = 0;
+
+    private int startTileX;
+    private int startTileY;
+    private int start;
+    // sum of the start moves, so keys of the open states stay lower bounds without being recomputed
+    private int keyModifier = 0;
+    private boolean initialized = false;
+
+    // decoded state being expanded and its successor
+    private final GridSearchNode current = new GridSearchNode(0, 0, 0, null);
+    private final GridSearchNode next = new GridSearchNode(0, 0, 0, null);
+    private final GridMove[] possibleMoves = new GridMove[MAX_SUCCESSORS];
+    private ArrayList<GridSearchNode> path;
+
+    public int statesExpanded = 0;
+
+    /**
+     * @param levelTiles tiles indexed [x][y] with [0,0] at top left as given by MarioLevel.getLevelTiles, the replanner
+     *                   keeps its own copy
+     */
+    public GridReplanner(int[][] levelTiles, int marioTileX, int marioTileY, int horizontalJumpBoost) {
+        int[][] tiles = new int[levelTiles.length][];
+        for (int x = 0; x < levelTiles.length; x++)
+            tiles[x] = levelTiles[x].clone();
+        this.gridSearch = new GridSearch(tiles, marioTileX, marioTileY, horizontalJumpBoost);
+        this.tileWidth = tiles.length;
+        this.tileHeight = tiles[0].length;
+        this.boostValues = horizontalJumpBoost + 1;
+        this.statesPerTile = GridSearch.STATES_PER_TILE * boostValues;
+
+        int stateCount = tileWidth * tileHeight * statesPerTile;
+        this.successors = new int[stateCount * MAX_SUCCESSORS];
+        this.successorCounts = new byte[stateCount];
+        this.successorsKnown = new boolean[stateCount];
+        this.g = new int[stateCount];
+        this.rhs = new int[stateCount];
+        this.opened = new int[stateCount];
+        this.openedKeys = new long[stateCount];
+        this.openedPositions = new int[stateCount];
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        Arrays.fill(openedPositions, -1);
+        this.reachableJumps = new boolean[statesPerTile];
+        this.reachableJumpList = new int[statesPerTile];
+        this.newJumps = new int[statesPerTile];
+
+        setStart(marioTileX, marioTileY);
+        addReachableJump(start % statesPerTile);
+    }
+
+    public static GridReplanner fromModel(MarioForwardModelSlim model, int horizontalJumpBoost) {
+        return new GridReplanner(GoalDistanceField.getLevelTiles(model), getMarioTileX(model), getMarioTileY(model),
+                horizontalJumpBoost);
+    }
+
+    private static int getMarioTileX(MarioForwardModelSlim model) {
+        return (int) (model.getMarioX() / 16);
+    }
+
+    private static int getMarioTileY(MarioForwardModelSlim model) {
+        return Math.max(0, (int) ((model.getMarioY() - 1) / 16));
+    }
+
+    /**
+     * Moves the start to Mario and takes the tiles that changed in the columns around him, where he and
+     * the sprites near him can break or use blocks.
+     * @return whether any tile changed
+     */
+    public boolean updateFromModel(MarioForwardModelSlim model, int columnsAround) {
+        int marioTileX = Math.min(Math.max(getMarioTileX(model), 0), tileWidth - 1);
+        setStart(marioTileX, Math.min(getMarioTileY(model), tileHeight - 1));
+        boolean changed = false;
+        for (int x = Math.max(0, marioTileX - columnsAround); x <= Math.min(tileWidth - 1, marioTileX + columnsAround); x++) {
+            for (int y = 0; y < tileHeight; y++) {
+                int tileValue = GoalDistanceField.toLevelTile(model.getBlockValue(x, y));
+                if (tileValue != getTile(x, y)) {
+                    setTile(x, y, tileValue);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    public int getTile(int tileX, int tileY) {
+        return gridSearch.getTile(tileX, tileY);
+    }
+
+    /**
+     * Moves the start of the next replan. Mario is taken to stand on the tile, as at the start of GridSearch.
+     */
+    public void setStart(int marioTileX, int marioTileY) {
+        // Mario not placed in level layout and original framework did not find a proper start location
+        if (marioTileY == -1)
+            marioTileY = 0;
+        if (initialized)
+            keyModifier += Math.abs(marioTileX - startTileX) + Math.abs(marioTileY - startTileY);
+        startTileX = marioTileX;
+        startTileY = marioTileY;
+        int startStateCode = GridSearch.getStateCode(marioTileX, marioTileY, GridJumpDirection.UNDEFINED,
+                GridJumpState.ON_GROUND, 0);
+        start = getState(gridSearch.getCostIndex(startStateCode), gridSearch.getHorizontalJumpBoost());
+    }
+
+    /**
+     * Changes a tile, the moves of the states around it are updated by the next replan.
+     */
+    public void setTile(int tileX, int tileY, int tileValue) {
+        if (getTile(tileX, tileY) == tileValue)
+            return;
+        gridSearch.setTile(tileX, tileY, tileValue);
+        if (!initialized)
+            return;
+
+        // moves from a tile read the tiles next to it, below it and one more tile below the tiles next to it
+        for (int x = Math.max(0, tileX - 1); x <= Math.min(tileWidth - 1, tileX + 1); x++) {
+            for (int y = Math.max(0, tileY - 2); y <= Math.min(tileHeight - 1, tileY + 1); y++) {
+                boolean changedTile = x == tileX && y == tileY;
+                int firstState = (x * tileHeight + y) * statesPerTile;
+                for (int j = 0; j < reachableJumpCount; j++) {
+                    int state = firstState + reachableJumpList[j];
+                    if (successorsKnown[state] && computeSuccessors(state) || changedTile)
+                        updateState(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Repairs the distances the changes since the last replan affected and follows them from the start.
+     * @return path from the start to the exit in the format of GridSearch.findGridPath, only the start
+     * if the exit can't be reached
+     */
+    public ArrayList<GridSearchNode> replan() {
+        return replan(Long.MAX_VALUE);
+    }
+
+    /**
+     * Replans in at most maxTime milliseconds, a repair that doesn't fit continues with the next replan,
+     * changes made in between are taken into account.
+     * @return path as given by replan, null if the repair didn't finish in time
+     */
+    public ArrayList<GridSearchNode> replan(long maxTime) {
+        if (!initialized)
+            initialize();
+        if (!computeShortestPath(maxTime))
+            return null;
+
+        path = new ArrayList<>();
+        int state = start;
+        GridSearchNode parent = null;
+        while (true) {
+            GridSearchNode node = new GridSearchNode(0, 0, path.size(), parent);
+            decodeState(state, node);
+            if (parent != null)
+                node.cost = GridSearch.calculateCost(node, tileWidth);
+            path.add(node);
+            parent = node;
+            if (g[state] == 0 || g[state] >= INFINITY || path.size() > g[start])
+                break;
+
+            int best = -1;
+            int first = state * MAX_SUCCESSORS;
+            for (int i = first; i < first + successorCounts[state]; i++) {
+                if (best < 0 || g[successors[i]] < g[best])
+                    best = successors[i];
+            }
+            if (best < 0)
+                break;
+            state = best;
+        }
+        return path;
+    }
+
+    /**
+     * Level tiles with the last finished replanned path marked by 1, as given by GridSearch.markGridPathInLevelTiles.
+     */
+    public int[][] getLevelTilesWithPath() {
+        if (path == null)
+            replan();
+        return gridSearch.markGridPathInLevelTiles(path);
+    }
+
+    /**
+     * Steps from the start to the exit after the last replan.
+     */
+    public int getStartDistance() {
+        return g[start];
+    }
+
+    private void initialize() {
+        initialized = true;
+        for (int x = 0; x < tileWidth; x++) {
+            for (int y = 0; y < tileHeight; y++) {
+                if (!isExit(x, y))
+                    continue;
+                int firstState = (x * tileHeight + y) * statesPerTile;
+                for (int j = 0; j < reachableJumpCount; j++)
+                    updateState(firstState + reachableJumpList[j]);
+            }
+        }
+    }
+
+    private void addReachableJump(int jump) {
+        reachableJumps[jump] = true;
+        reachableJumpList[reachableJumpCount++] = jump;
+        newJumps[newJumpCount++] = jump;
+    }
+
+    // states of a newly reached jump were skipped when their successors changed, so all of them are updated
+    private void updateNewJumps() {
+        while (newJumpCount > 0) {
+            int jump = newJumps[--newJumpCount];
+            for (int tile = 0; tile < tileWidth * tileHeight; tile++)
+                updateState(tile * statesPerTile + jump);
+        }
+    }
+
+    private boolean isExit(int tileX, int tileY) {
+        current.tileX = tileX;
+        current.tileY = tileY;
+        return gridSearch.finished(current);
+    }
+
+    // false if maxTime ran out before the distances were consistent again
+    private boolean computeShortestPath(long maxTime) {
+        long startTime = System.currentTimeMillis();
+        int iterations = 0;
+        updateNewJumps();
+        while (openedSize > 0 && (openedKeys[0] < calculateKey(start) || rhs[start] != g[start])) {
+            if (++iterations % TIME_CHECK_INTERVAL == 0 && System.currentTimeMillis() - startTime >= maxTime)
+                return false;
+            int state = opened[0];
+            long oldKey = openedKeys[0];
+            long newKey = calculateKey(state);
+            if (oldKey < newKey) {
+                updateOpened(state, newKey);
+            } else if (g[state] > rhs[state]) {
+                g[state] = rhs[state];
+                removeOpened(state);
+                statesExpanded++;
+                updatePredecessors(state);
+            } else {
+                g[state] = INFINITY;
+                updateState(state);
+                statesExpanded++;
+                updatePredecessors(state);
+            }
+            updateNewJumps();
+        }
+        return true;
+    }
+
+    private void updateState(int state) {
+        int tile = state / statesPerTile;
+        if (isExit(tile / tileHeight, tile % tileHeight)) {
+            rhs[state] = 0;
+        } else {
+            if (!successorsKnown[state])
+                computeSuccessors(state);
+            int best = INFINITY;
+            int first = state * MAX_SUCCESSORS;
+            for (int i = first; i < first + successorCounts[state]; i++)
+                best = Math.min(best, g[successors[i]] + 1);
+            rhs[state] = best;
+        }
+
+        if (g[state] != rhs[state]) {
+            if (openedPositions[state] >= 0)
+                updateOpened(state, calculateKey(state));
+            else
+                pushOpened(state, calculateKey(state));
+        } else if (openedPositions[state] >= 0) {
+            removeOpened(state);
+        }
+    }
+
+    // predecessors are the states on the neighbouring tiles with a move to the state
+    private void updatePredecessors(int state) {
+        int tile = state / statesPerTile;
+        int tileX = tile / tileHeight;
+        int tileY = tile % tileHeight;
+        updatePredecessors(state, tileX - 1, tileY);
+        updatePredecessors(state, tileX + 1, tileY);
+        updatePredecessors(state, tileX, tileY - 1);
+        updatePredecessors(state, tileX, tileY + 1);
+    }
+
+    private void updatePredecessors(int state, int tileX, int tileY) {
+        if (tileX < 0 || tileX >= tileWidth || tileY < 0 || tileY >= tileHeight)
+            return;
+        int firstState = (tileX * tileHeight + tileY) * statesPerTile;
+        for (int j = 0; j < reachableJumpCount; j++) {
+            int predecessor = firstState + reachableJumpList[j];
+            if (!successorsKnown[predecessor])
+                computeSuccessors(predecessor);
+            int first = predecessor * MAX_SUCCESSORS;
+            for (int i = first; i < first + successorCounts[predecessor]; i++) {
+                if (successors[i] == state) {
+                    updateState(predecessor);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the successors changed since they were computed last
+     */
+    private boolean computeSuccessors(int state) {
+        decodeState(state, current);
+        int count = gridSearch.finished(current) ? 0 : gridSearch.getPossibleMoves(current, possibleMoves);
+        boolean changed = !successorsKnown[state] || count != successorCounts[state];
+        int first = state * MAX_SUCCESSORS;
+        for (int i = 0; i < count; i++) {
+            gridSearch.advance(current, possibleMoves[i], next);
+            int successor = getState(gridSearch.getCostIndex(gridSearch.getStateCode(next)), next.horizontalJumpBoostLeft);
+            changed |= successors[first + i] != successor;
+            successors[first + i] = successor;
+            if (!reachableJumps[successor % statesPerTile])
+                addReachableJump(successor % statesPerTile);
+        }
+        successorCounts[state] = (byte) count;
+        successorsKnown[state] = true;
+        return changed;
+    }
+
+    private int getState(int costIndex, int horizontalJumpBoostLeft) {
+        return costIndex * boostValues + horizontalJumpBoostLeft;
+    }
+
+    private void decodeState(int state, GridSearchNode node) {
+        GridSearch.decodeStateCode(gridSearch.getStateCodeOfCostIndex(state / boostValues), node);
+        node.horizontalJumpBoostLeft = state % boostValues;
+    }
+
+    // steps to the start can't be fewer than the tiles between them
+    private int getHeuristic(int state) {
+        int tile = state / statesPerTile;
+        return Math.abs(tile / tileHeight - startTileX) + Math.abs(tile % tileHeight - startTileY);
+    }
+
+    private long calculateKey(int state) {
+        int distance = Math.min(g[state], rhs[state]);
+        return ((long) (distance + getHeuristic(state) + keyModifier) << 32) | distance;
+    }
+
+    private void pushOpened(int state, long key) {
+        int k = openedSize++;
+        opened[k] = state;
+        openedKeys[k] = key;
+        openedPositions[state] = k;
+        siftUp(k);
+    }
+
+    private void removeOpened(int state) {
+        int k = openedPositions[state];
+        openedPositions[state] = -1;
+        int last = --openedSize;
+        if (k == last)
+            return;
+        opened[k] = opened[last];
+        openedKeys[k] = openedKeys[last];
+        openedPositions[opened[k]] = k;
+        siftDown(k);
+        siftUp(k);
+    }
+
+    private void updateOpened(int state, long key) {
+        int k = openedPositions[state];
+        long oldKey = openedKeys[k];
+        openedKeys[k] = key;
+        if (key < oldKey)
+            siftUp(k);
+        else
+            siftDown(k);
+    }
+
+    private void siftUp(int k) {
+        int state = opened[k];
+        long key = openedKeys[k];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (key >= openedKeys[parent])
+                break;
+            moveOpened(parent, k);
+            k = parent;
+        }
+        opened[k] = state;
+        openedKeys[k] = key;
+        openedPositions[state] = k;
+    }
+
+    private void siftDown(int k) {
+        int state = opened[k];
+        long key = openedKeys[k];
+        int half = openedSize >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int right = child + 1;
+            if (right < openedSize && openedKeys[right] < openedKeys[child])
+                child = right;
+            if (key <= openedKeys[child])
+                break;
+            moveOpened(child, k);
+            k = child;
+        }
+        opened[k] = state;
+        openedKeys[k] = key;
+        openedPositions[state] = k;
+    }
+
+    private void moveOpened(int from, int to) {
+        opened[to] = opened[from];
+        openedKeys[to] = openedKeys[from];
+        openedPositions[opened[to]] = to;
+    }
+}
@@ -25,9 +25,8 @@ import engine.helper.TileFeature;
 import mff.LevelLoader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.PriorityQueue;
 
 import static engine.helper.TileFeature.*;
 
@@ -36,46 +35,64 @@ import static engine.helper.TileFeature.*;
 // TODO: for now, let's use "2 tile start physics" everywhere
 public class GridSearch {
     private static final int MAX_JUMP_HEIGHT = 4;
+    private static final GridJumpDirection[] JUMP_DIRECTIONS = GridJumpDirection.values();
+    private static final GridJumpState[] JUMP_STATES = GridJumpState.values();
+    // states of one tile in the cost table: jump direction x jump state x jump up travelled
+    static final int STATES_PER_TILE = JUMP_DIRECTIONS.length * JUMP_STATES.length * (MAX_JUMP_HEIGHT + 1);
+
+    // bits of freeMoves
+    private static final int FREE_HORIZONTAL = 1;
+    private static final int FREE_DOWN = 1 << 1;
+    private static final int FREE_UP = 1 << 2;
+
     private int horizontalJumpBoost = 0;
-    private final PriorityQueue<GridSearchNode> opened = new PriorityQueue<>();
-    private final HashMap<Integer, Float> visitedStates = new HashMap<>();
 
     // [0,0] at top left
     private final int[][] levelTiles;
+    private final int tileHeight;
+    // moves allowed into every tile, column-major (x * tileHeight + y)
+    private final byte[] freeMoves;
+
+    private int startTileX;
+    private int startTileY;
+
+    // node, heap and cost table arrays of the thread, reused by every search on it
+    private static final ThreadLocal<SearchBuffers> searchBuffers = ThreadLocal.withInitial(SearchBuffers::new);
+    private SearchBuffers buffers;
+
+    // decoded node being expanded and its successor
+    private final GridSearchNode current = new GridSearchNode(0, 0, 0, null);
+    private final GridSearchNode next = new GridSearchNode(0, 0, 0, null);
+    private final GridMove[] possibleMoves = new GridMove[GridMove.values().length];
 
     public int totalNodesVisited = 0;
     public boolean success = false;
 
     public GridSearch(int[][] levelTiles, int marioTileX, int marioTileY) {
         this.levelTiles = levelTiles;
-
-        // Mario not placed in level layout and original framework did not find a proper start location
-        if (marioTileY == -1)
-            marioTileY = 0;
-
-        opened.add(new GridSearchNode(marioTileX, marioTileY, 0, null));
+        this.tileHeight = levelTiles[0].length;
+        this.freeMoves = new byte[levelTiles.length * tileHeight];
+        for (int x = 0; x < levelTiles.length; x++) {
+            for (int y = 0; y < tileHeight; y++)
+                freeMoves[x * tileHeight + y] = (byte) getFreeMoves(levelTiles[x][y]);
+        }
+        setStart(marioTileX, marioTileY);
     }
 
     public GridSearch(int[][] levelTiles, int marioTileX, int marioTileY, int horizontalJumpBoost) {
         this(levelTiles, marioTileX, marioTileY);
         this.horizontalJumpBoost = horizontalJumpBoost;
-        assert opened.peek() != null;
-        opened.peek().horizontalJumpBoostLeft = this.horizontalJumpBoost;
     }
 
     public static GridSearch initGridSearch(String levelPath) {
-        String level = LevelLoader.getLevel(levelPath);
-        MarioEvent[] killEvents = new MarioEvent[0];
-        MarioWorld world = new MarioWorld(killEvents);
-        world.initializeLevel(level, 1000000);
-        int[][] levelTiles = world.level.getLevelTiles();
-        int marioTileX = world.level.marioTileX;
-        int marioTileY = world.level.marioTileY;
-        return new GridSearch(levelTiles, marioTileX, marioTileY);
+        return initGridSearch(levelPath, 0);
     }
 
     public static GridSearch initGridSearch(String levelPath, int horizontalJumpBoost) {
-        String level = LevelLoader.getLevel(levelPath);
+        return initGridSearchFromLevel(LevelLoader.getLevel(levelPath), horizontalJumpBoost);
+    }
+
+    static GridSearch initGridSearchFromLevel(String level, int horizontalJumpBoost) {
         MarioEvent[] killEvents = new MarioEvent[0];
         MarioWorld world = new MarioWorld(killEvents);
         world.initializeLevel(level, 1000000);
@@ -85,6 +102,41 @@ public class GridSearch {
         return new GridSearch(levelTiles, marioTileX, marioTileY, horizontalJumpBoost);
     }
 
+    public int getTileWidth() {
+        return levelTiles.length;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public int getHorizontalJumpBoost() {
+        return horizontalJumpBoost;
+    }
+
+    public int getTile(int tileX, int tileY) {
+        return levelTiles[tileX][tileY];
+    }
+
+    /**
+     * Changes a tile of the level the search runs on, e.g. a brick Mario broke.
+     */
+    void setTile(int tileX, int tileY, int tileValue) {
+        levelTiles[tileX][tileY] = tileValue;
+        freeMoves[tileX * tileHeight + tileY] = (byte) getFreeMoves(tileValue);
+    }
+
+    /**
+     * Moves the start of the next findGridPath call, so the path can be searched again from where Mario is.
+     */
+    public void setStart(int marioTileX, int marioTileY) {
+        // Mario not placed in level layout and original framework did not find a proper start location
+        if (marioTileY == -1)
+            marioTileY = 0;
+        this.startTileX = marioTileX;
+        this.startTileY = marioTileY;
+    }
+
     public int[][] markGridPathInLevelTiles(ArrayList<GridSearchNode> path) {
         int[][] result = new int[this.levelTiles.length][this.levelTiles[0].length];
         for (GridSearchNode node : path) {
@@ -94,34 +146,37 @@ public class GridSearch {
     }
 
     public ArrayList<GridSearchNode> findGridPath() {
-        GridSearchNode furthest = opened.peek();
-        while (opened.size() > 0) {
-            GridSearchNode current = opened.remove();
+        SearchBuffers buffers = startSearch();
+        int furthest = buffers.addNode(getStateCode(startTileX, startTileY, GridJumpDirection.UNDEFINED,
+                GridJumpState.ON_GROUND, 0), horizontalJumpBoost, 0, -1, 0);
+        buffers.pushOpened(furthest);
+
+        while (buffers.openedSize > 0) {
+            int currentIndex = buffers.pollOpened();
+            buffers.decodeNode(currentIndex, current);
             totalNodesVisited++;
 
-            if (current.tileX > furthest.tileX)
-                furthest = current;
+            if (current.tileX > getTileX((int) buffers.nodeStates[furthest]))
+                furthest = currentIndex;
 
             if (finished(current)) {
                 success = true;
-                return recoverFullPath(current);
+                return recoverFullPath(currentIndex);
             }
 
-            ArrayList<GridMove> possibleMoves = getPossibleMoves(current);
+            int possibleMovesCount = getPossibleMoves(current, possibleMoves);
 
-            for (GridMove move : possibleMoves) {
-                GridSearchNode newState = advance(current, move);
+            for (int i = 0; i < possibleMovesCount; i++) {
+                advance(current, possibleMoves[i], next);
 
-                float newStateCost = calculateCost(newState);
+                float newStateCost = calculateCost(next, levelTiles.length);
 
-                int newStateCode = getStateCode(newState);
-                float newStateOldCost = visitedStates.getOrDefault(newStateCode, -1f);
-                if (newStateOldCost >= 0 && newStateOldCost <= newStateCost)
+                int newStateCode = getStateCode(next);
+                if (!buffers.improvesStateCost(getCostIndex(newStateCode), newStateCost))
                     continue;
 
-                visitedStates.put(newStateCode, newStateCost);
-                newState.cost = newStateCost;
-                opened.add(newState);
+                buffers.pushOpened(buffers.addNode(newStateCode, next.horizontalJumpBoostLeft, next.depth,
+                        currentIndex, newStateCost));
             }
         }
 
@@ -129,31 +184,86 @@ public class GridSearch {
 //        throw new IllegalStateException("Level is not solvable!");
     }
 
-    private float calculateCost(GridSearchNode newState) {
-        return newState.depth + 1f * (levelTiles.length - newState.tileX) - newState.horizontalJumpBoostLeft;
+    private SearchBuffers startSearch() {
+        buffers = searchBuffers.get();
+        buffers.reset(levelTiles.length * tileHeight * STATES_PER_TILE);
+        totalNodesVisited = 0;
+        success = false;
+        return buffers;
+    }
+
+    /**
+     * Sets the tile and the jump of the node from a state code of getStateCode.
+     */
+    static void decodeStateCode(int stateCode, GridSearchNode node) {
+        node.tileX = getTileX(stateCode);
+        node.tileY = getTileY(stateCode);
+        node.jumpDirection = JUMP_DIRECTIONS[(stateCode >>> 7) & 0x3];
+        node.jumpState = JUMP_STATES[(stateCode >>> 3) & 0xF];
+        node.jumpUpTravelled = stateCode & 0x7;
+    }
+
+    static int getTileX(int stateCode) {
+        return stateCode >>> 15;
+    }
+
+    static int getTileY(int stateCode) {
+        return (stateCode >>> 9) & 0x3F;
+    }
+
+    // dense index of the state in the cost table, states of a tile are stored together
+    int getCostIndex(int stateCode) {
+        int tile = getTileX(stateCode) * tileHeight + getTileY(stateCode);
+        int direction = (stateCode >>> 7) & 0x3;
+        int jumpState = (stateCode >>> 3) & 0xF;
+        int jumpUpTravelled = stateCode & 0x7;
+        return tile * STATES_PER_TILE + (direction * JUMP_STATES.length + jumpState) * (MAX_JUMP_HEIGHT + 1)
+                + jumpUpTravelled;
     }
 
-    private int getStateCode(GridSearchNode newState) {
+    // inverse of getCostIndex
+    int getStateCodeOfCostIndex(int costIndex) {
+        int tile = costIndex / STATES_PER_TILE;
+        int jumpUpTravelled = costIndex % (MAX_JUMP_HEIGHT + 1);
+        int jump = costIndex % STATES_PER_TILE / (MAX_JUMP_HEIGHT + 1);
+        return ((tile / tileHeight) << 15) | ((tile % tileHeight) << 9) | ((jump / JUMP_STATES.length) << 7)
+                | ((jump % JUMP_STATES.length) << 3) | jumpUpTravelled;
+    }
+
+    static float calculateCost(GridSearchNode newState, int tileWidth) {
+        return newState.depth + 1f * (tileWidth - newState.tileX) - newState.horizontalJumpBoostLeft;
+    }
+
+    int getStateCode(GridSearchNode newState) {
+        return getStateCode(newState.tileX, newState.tileY, newState.jumpDirection, newState.jumpState,
+                newState.jumpUpTravelled);
+    }
+
+    static int getStateCode(int tileX, int tileY, GridJumpDirection jumpDirection, GridJumpState jumpState,
+                            int jumpUpTravelled) {
         // int tileX = 17 bits (plenty)
         // int tileY (16, let's say 32 to be safe) = 6 bits
         // int jumpDirection (0-2) = 2 bits
         // int jumpState (0-10) = 4 bits
         // int jumpUpTravelled (0-4) = 3 bits
         int result = 0;
-        result |= (newState.tileX << 15);
-        result |= (newState.tileY << 9);
-        result |= (newState.jumpDirection.ordinal() << 7);
-        result |= (newState.jumpState.ordinal() << 3);
-        result |= (newState.jumpUpTravelled);
+        result |= (tileX << 15);
+        result |= (tileY << 9);
+        result |= (jumpDirection.ordinal() << 7);
+        result |= (jumpState.ordinal() << 3);
+        result |= (jumpUpTravelled);
         return result;
     }
 
-    private boolean finished(GridSearchNode current) {
+    boolean finished(GridSearchNode current) {
         return (levelTiles[current.tileX][current.tileY] == 39 ||
                 levelTiles[current.tileX][current.tileY] == 40);
     }
 
-    private GridSearchNode advance(GridSearchNode current, GridMove move) {
+    /**
+     * Fills next with the state reached by the move, the move has to be one of the possible moves of current.
+     */
+    void advance(GridSearchNode current, GridMove move, GridSearchNode next) {
         // jump up on the same x coordinate (first right, then up, then back left),
         //   - move to the side and initiate jump if airborne with undefined jump direction
         //   - set state to WALKED_OF_AN_EDGE and handle in getPossibleMoves
@@ -167,7 +277,13 @@ public class GridSearch {
             case DOWN  -> tileY = current.tileY + 1;
             case UP   -> tileY = current.tileY - 1;
         }
-        GridSearchNode next = new GridSearchNode(tileX, tileY, current.depth + 1, current);
+        next.tileX = tileX;
+        next.tileY = tileY;
+        next.depth = current.depth + 1;
+        next.parent = null;
+        next.jumpDirection = GridJumpDirection.UNDEFINED;
+        next.jumpState = GridJumpState.ON_GROUND;
+        next.jumpUpTravelled = 0;
         next.horizontalJumpBoostLeft = current.horizontalJumpBoostLeft;
 
         switch (current.jumpState) {
@@ -584,122 +700,125 @@ public class GridSearch {
 
         if (next.jumpState == GridJumpState.ON_GROUND)
             next.horizontalJumpBoostLeft = this.horizontalJumpBoost;
-        return next;
     }
 
-    private ArrayList<GridMove> getPossibleMoves(GridSearchNode current) {
+    /**
+     * Fills possibleMoves with the moves allowed from current.
+     * @return number of the moves
+     */
+    int getPossibleMoves(GridSearchNode current, GridMove[] possibleMoves) {
         // if falling, can only move in the direction in which the jump was initiated, or straight down
         // jump direction can be undefined - just falling, init of jumping on top of a block in the same column
 
         // died in a pit
         if (current.tileY == 15)
-            return new ArrayList<>();
+            return 0;
 
-        var possibleMoves = new ArrayList<GridMove>();
+        int count = 0;
 
         switch (current.jumpState) {
             case ON_GROUND -> {
                 // right
                 if (isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 // left
                 if (isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
                 // up
                 if (isAboveFree(current))
-                    possibleMoves.add(GridMove.UP);
+                    possibleMoves[count++] = GridMove.UP;
             }
             case WALKED_OFF_AN_EDGE -> {
                 // consider it a start of a jump
                 if (isAboveFree(current))
-                    possibleMoves.add(GridMove.UP);
+                    possibleMoves[count++] = GridMove.UP;
                 // consider it a start of a fall
                 if (isBelowFree(current))
-                    possibleMoves.add(GridMove.DOWN);
+                    possibleMoves[count++] = GridMove.DOWN;
                 // allow small jump over a 1 wide pit (special case with ceiling just above us)
                 if (isRightFree(current) && !isFree(current.tileX + 1, current.tileY + 1, GridMove.DOWN))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (isLeftFree(current) && !isFree(current.tileX - 1, current.tileY + 1, GridMove.DOWN))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
             }
             case STRAIGHT_UP -> {
                 // continue straight up
                 if (isAboveFree(current) && current.jumpUpTravelled < MAX_JUMP_HEIGHT)
-                    possibleMoves.add(GridMove.UP);
+                    possibleMoves[count++] = GridMove.UP;
                 // move horizontally
                 if (current.jumpDirection == GridJumpDirection.RIGHT && isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (current.jumpDirection == GridJumpDirection.LEFT && isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
                 // jump up on the same column
                 if (current.jumpDirection == GridJumpDirection.UNDEFINED) {
                     if (isRightFree(current))
-                        possibleMoves.add(GridMove.RIGHT);
+                        possibleMoves[count++] = GridMove.RIGHT;
                     if (isLeftFree(current))
-                        possibleMoves.add(GridMove.LEFT);
+                        possibleMoves[count++] = GridMove.LEFT;
                 }
             }
             case TOP -> {
                 // move horizontally
                 if (current.jumpDirection == GridJumpDirection.RIGHT && isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (current.jumpDirection == GridJumpDirection.LEFT && isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
                 // jump up on the same column
                 if (current.jumpDirection == GridJumpDirection.UNDEFINED) {
                     if (isRightFree(current))
-                        possibleMoves.add(GridMove.RIGHT);
+                        possibleMoves[count++] = GridMove.RIGHT;
                     if (isLeftFree(current))
-                        possibleMoves.add(GridMove.LEFT);
+                        possibleMoves[count++] = GridMove.LEFT;
                 }
             }
             case UP_HORIZONTAL_LAST_MOVE_UP -> {
                 // move horizontally
                 if (current.jumpDirection == GridJumpDirection.RIGHT && isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (current.jumpDirection == GridJumpDirection.LEFT && isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
             }
             case UP_HORIZONTAL_LAST_MOVE_HORIZONTAL -> {
                 // continue straight up
                 if (isAboveFree(current) && current.jumpUpTravelled < MAX_JUMP_HEIGHT)
-                    possibleMoves.add(GridMove.UP);
+                    possibleMoves[count++] = GridMove.UP;
                 // start falling down
                 if (isBelowFree(current))
-                    possibleMoves.add(GridMove.DOWN);
+                    possibleMoves[count++] = GridMove.DOWN;
                 // longer horizontal jump, go to state TOP_MOVED_HORIZONTAL_TWICE
                 if (current.jumpDirection == GridJumpDirection.RIGHT && isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (current.jumpDirection == GridJumpDirection.LEFT && isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
             }
             case TOP_MOVED_HORIZONTAL, DOWN_HORIZONTAL_LAST_MOVE_DOWN -> {
                 // move horizontally
                 if (current.jumpDirection == GridJumpDirection.RIGHT && isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (current.jumpDirection == GridJumpDirection.LEFT && isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
                 // start falling (straight) down
                 if (isBelowFree(current))
-                    possibleMoves.add(GridMove.DOWN);
+                    possibleMoves[count++] = GridMove.DOWN;
             }
             case TOP_MOVED_HORIZONTAL_FINAL, DOWN_HORIZONTAL_LAST_MOVE_HORIZONTAL -> {
                 // start or continue falling down
                 if (isBelowFree(current))
-                    possibleMoves.add(GridMove.DOWN);
+                    possibleMoves[count++] = GridMove.DOWN;
             }
             case STRAIGHT_DOWN -> {
                 // continue falling straight down
                 if (isBelowFree(current))
-                    possibleMoves.add(GridMove.DOWN);
+                    possibleMoves[count++] = GridMove.DOWN;
                 // add horizontal movement to the fall
                 if (isRightFree(current))
-                    possibleMoves.add(GridMove.RIGHT);
+                    possibleMoves[count++] = GridMove.RIGHT;
                 if (isLeftFree(current))
-                    possibleMoves.add(GridMove.LEFT);
+                    possibleMoves[count++] = GridMove.LEFT;
             }
         }
-        return  possibleMoves;
+        return count;
     }
 
     private boolean isAboveFree(GridSearchNode current) {
@@ -714,50 +833,183 @@ public class GridSearch {
         return isFree(current.tileX + 1, current.tileY, GridMove.RIGHT);
     }
 
-    private boolean isBelowFree(GridSearchNode current) {
+    boolean isBelowFree(GridSearchNode current) {
         return isFree(current.tileX, current.tileY + 1, GridMove.DOWN);
     }
 
-    private boolean isFree(int tileX, int tileY, GridMove move) {
+    boolean isFree(int tileX, int tileY, GridMove move) {
         // out of level bounds check
         if (tileX < levelTiles.length && tileX >= 0 &&
-                tileY < levelTiles[0].length && tileY >= 0) {
-            // BLOCK_UPPER = blocks from below (invisible blocks)
-            // BLOCK_LOWER = blocks from above (pass through platforms)
-            // BLOCK_ALL   = solid blocks
-            // 48          = invisible one up block
-            // 49          = invisible coin block
-            ArrayList<TileFeature> tileFeatures = getTileType(levelTiles[tileX][tileY]);
-            int tileValue = levelTiles[tileX][tileY];
-
-            switch (move) {
-                case LEFT, RIGHT -> {
-                    return !tileFeatures.contains(TileFeature.BLOCK_ALL) &&
-                            tileValue != 48 && tileValue != 49;
-                }
-                case DOWN -> {
-                    return !(tileFeatures.contains(BLOCK_LOWER) || tileFeatures.contains(BLOCK_ALL)) &&
-                            tileValue != 48 && tileValue != 49;
-                }
-                case UP -> {
-                    return !(tileFeatures.contains(BLOCK_UPPER) || tileFeatures.contains(BLOCK_ALL)) &&
-                            tileValue != 48 && tileValue != 49;
-                }
-                default -> throw new IllegalStateException("GridMove has forbidden value.");
-            }
+                tileY < tileHeight && tileY >= 0) {
+            int free = freeMoves[tileX * tileHeight + tileY];
+            return switch (move) {
+                case LEFT, RIGHT -> (free & FREE_HORIZONTAL) != 0;
+                case DOWN -> (free & FREE_DOWN) != 0;
+                case UP -> (free & FREE_UP) != 0;
+            };
         } else {
             return false;
         }
     }
 
-    private ArrayList<GridSearchNode> recoverFullPath(GridSearchNode finish) {
+    private static int getFreeMoves(int tileValue) {
+        // BLOCK_UPPER = blocks from below (invisible blocks)
+        // BLOCK_LOWER = blocks from above (pass through platforms)
+        // BLOCK_ALL   = solid blocks
+        // 48          = invisible one up block
+        // 49          = invisible coin block
+        ArrayList<TileFeature> tileFeatures = getTileType(tileValue);
+        if (tileValue == 48 || tileValue == 49)
+            return 0;
+
+        int free = 0;
+        if (!tileFeatures.contains(TileFeature.BLOCK_ALL))
+            free |= FREE_HORIZONTAL;
+        if (!(tileFeatures.contains(BLOCK_LOWER) || tileFeatures.contains(BLOCK_ALL)))
+            free |= FREE_DOWN;
+        if (!(tileFeatures.contains(BLOCK_UPPER) || tileFeatures.contains(BLOCK_ALL)))
+            free |= FREE_UP;
+        return free;
+    }
+
+    private ArrayList<GridSearchNode> recoverFullPath(int finish) {
         var resultPath = new ArrayList<GridSearchNode>();
-        GridSearchNode current = finish;
-        while (current != null) {
-            resultPath.add(current);
-            current = current.parent;
+        int current = finish;
+        while (current >= 0) {
+            GridSearchNode node = new GridSearchNode(0, 0, 0, null);
+            buffers.decodeNode(current, node);
+            if (!resultPath.isEmpty())
+                resultPath.get(resultPath.size() - 1).parent = node;
+            resultPath.add(node);
+            current = buffers.nodeParents[current];
         }
         Collections.reverse(resultPath);
         return resultPath;
     }
+
+    /**
+     * Search nodes as parallel arrays, the open list as a binary heap of node indices and the best cost
+     * of every state in a dense table. Entries of the table are valid only when stamped by the current
+     * search, so the table is never cleared between searches.
+     */
+    private static final class SearchBuffers {
+        private static final int INITIAL_CAPACITY = 1 << 16;
+
+        // a node is its state code with the jump boost left in the upper half
+        private long[] nodeStates = new long[INITIAL_CAPACITY];
+        private int[] nodeDepths = new int[INITIAL_CAPACITY];
+        private int[] nodeParents = new int[INITIAL_CAPACITY];
+        private float[] nodeCosts = new float[INITIAL_CAPACITY];
+        private int nodeCount = 0;
+
+        // costs are kept next to the node indices, so sifting doesn't touch the node arrays
+        private int[] opened = new int[INITIAL_CAPACITY];
+        private float[] openedCosts = new float[INITIAL_CAPACITY];
+        private int openedSize = 0;
+
+        private float[] stateCosts = new float[0];
+        private int[] stateCostStamps = new int[0];
+        private int searchStamp = 0;
+
+        private void reset(int stateCount) {
+            if (stateCosts.length < stateCount) {
+                stateCosts = new float[stateCount];
+                stateCostStamps = new int[stateCount];
+                searchStamp = 0;
+            }
+            if (searchStamp == Integer.MAX_VALUE) {
+                Arrays.fill(stateCostStamps, 0);
+                searchStamp = 0;
+            }
+            searchStamp++;
+            nodeCount = 0;
+            openedSize = 0;
+        }
+
+        /**
+         * Stores the cost of the state unless the current search already reached it at most as expensively.
+         */
+        private boolean improvesStateCost(int costIndex, float cost) {
+            if (stateCostStamps[costIndex] == searchStamp && stateCosts[costIndex] >= 0 && stateCosts[costIndex] <= cost)
+                return false;
+            stateCostStamps[costIndex] = searchStamp;
+            stateCosts[costIndex] = cost;
+            return true;
+        }
+
+        private int addNode(int stateCode, int horizontalJumpBoostLeft, int depth, int parent, float cost) {
+            if (nodeCount == nodeStates.length) {
+                int capacity = nodeCount * 2;
+                nodeStates = Arrays.copyOf(nodeStates, capacity);
+                nodeDepths = Arrays.copyOf(nodeDepths, capacity);
+                nodeParents = Arrays.copyOf(nodeParents, capacity);
+                nodeCosts = Arrays.copyOf(nodeCosts, capacity);
+            }
+            nodeStates[nodeCount] = ((long) horizontalJumpBoostLeft << 32) | (stateCode & 0xFFFFFFFFL);
+            nodeDepths[nodeCount] = depth;
+            nodeParents[nodeCount] = parent;
+            nodeCosts[nodeCount] = cost;
+            return nodeCount++;
+        }
+
+        private void decodeNode(int index, GridSearchNode node) {
+            long state = nodeStates[index];
+            decodeStateCode((int) state, node);
+            node.horizontalJumpBoostLeft = (int) (state >>> 32);
+            node.depth = nodeDepths[index];
+            node.cost = nodeCosts[index];
+            node.parent = null;
+        }
+
+        // same sifting as PriorityQueue, so nodes of equal cost are expanded in the same order
+        private void pushOpened(int node) {
+            if (openedSize == opened.length) {
+                opened = Arrays.copyOf(opened, openedSize * 2);
+                openedCosts = Arrays.copyOf(openedCosts, openedSize * 2);
+            }
+            float cost = nodeCosts[node];
+            int k = openedSize++;
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                float parentCost = openedCosts[parent];
+                if (cost >= parentCost)
+                    break;
+                opened[k] = opened[parent];
+                openedCosts[k] = parentCost;
+                k = parent;
+            }
+            opened[k] = node;
+            openedCosts[k] = cost;
+        }
+
+        private int pollOpened() {
+            int result = opened[0];
+            int n = --openedSize;
+            if (n > 0) {
+                int node = opened[n];
+                float cost = openedCosts[n];
+                // a right child past the end never wins
+                openedCosts[n] = Float.POSITIVE_INFINITY;
+                int k = 0;
+                int half = n >>> 1;
+                while (k < half) {
+                    int child = (k << 1) + 1;
+                    float childCost = openedCosts[child];
+                    float rightCost = openedCosts[child + 1];
+                    if (childCost > rightCost) {
+                        child++;
+                        childCost = rightCost;
+                    }
+                    if (cost <= childCost)
+                        break;
+                    opened[k] = opened[child];
+                    openedCosts[k] = childCost;
+                    k = child;
+                }
+                opened[k] = node;
+                openedCosts[k] = cost;
+            }
+            return result;
+        }
+    }
 }
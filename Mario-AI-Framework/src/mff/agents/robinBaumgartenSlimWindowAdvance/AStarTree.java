@@ -19,7 +19,7 @@ public class AStarTree {
 
     public int nodesEvaluated = 0;
 
-    static int maxRight = 176;
+    static final int maxRight = 176;
 
     private MarioForwardModelSlim search(MarioTimerSlim timer) {
         SearchNode current = bestPosition;
@@ -0,0 +1,147 @@
+package mff.forwardmodel.bin.core;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioWorld;
+import engine.helper.MarioActions;
+import mff.forwardmodel.common.Converter;
+import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioWorldSlim;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Plays seeded random games on every level pack with a slim world and a bin model side by side.
+ * The bin model has to follow the slim world tick by tick, including the order of sprites.
+ * During every game the bin model is replaced by its clone and by a clone living in an arena
+ * which is shared by all games.
+ */
+public class BinSlimTest {
+    private static final int GAME_TICKS = 2000;
+
+    private static final int CLONE_TICK = 50;
+    private static final int ARENA_CLONE_TICK = 100;
+
+    private static long totalTicks = 0;
+    private static final MarioBinArena arena = new MarioBinArena();
+
+    private static String getLevel(String filepath) {
+        String content = "";
+        try {
+            content = new String(Files.readAllBytes(Paths.get(filepath)));
+            return content;
+        } catch (IOException ignored) {
+            // try with working directory set one folder down
+        }
+        try {
+            content = new String(Files.readAllBytes(Paths.get("." + filepath)));
+        }
+        catch (IOException e) {
+            System.out.println("Level couldn't be loaded, please check the path provided with regards to your working directory.");
+            System.exit(1);
+        }
+        return content;
+    }
+
+    private static final String[] levelTypes = { "original", "krys", "ge", "hopper", "notch", "notchParam",
+            "notchParamRand", "ore", "patternCount", "patternOccur", "patternWeightCount" };
+
+    public static void main(String[] args) {
+        // number of levels played from each pack
+        int levelsPerPack = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+
+        int games = 0;
+        int differences = 0;
+        for (String levelType : levelTypes) {
+            for (int i = 1; i <= levelsPerPack; i++) {
+                String path = "./levels/" + levelType + "/lvl-" + i + ".txt";
+                if (!new File(path).exists() && !new File("." + path).exists())
+                    break;
+                int tick = playGame(getLevel(path), games);
+                games++;
+                if (tick != -1) {
+                    System.out.println(levelType + "-" + i + " differs at tick " + tick);
+                    differences++;
+                }
+            }
+        }
+
+        System.out.println("-------------");
+        if (differences == 0)
+            System.out.println("ALL EQUAL (" + games + " games, " + totalTicks + " ticks)");
+        else
+            System.out.println("NOT EQUAL (" + differences + " of " + games + " games)");
+    }
+
+    /**
+     * @return first tick at which the models differ, -1 if they never do
+     */
+    private static int playGame(String level, int seed) {
+        MarioWorld setupWorld = new MarioWorld(null);
+        setupWorld.visuals = false;
+        setupWorld.initializeLevel(level, 1000 * 200);
+        // fire Mario shoots fireballs and survives more hits, small Mario makes question blocks spawn mushrooms
+        setupWorld.mario.isLarge = seed % 2 == 0;
+        setupWorld.mario.isFire = seed % 2 == 0;
+        setupWorld.update(new boolean[MarioActions.numberOfActions()]);
+        MarioWorldSlim world = Converter.originalToSlim(new MarioForwardModel(setupWorld), 27).getWorld();
+        MarioForwardModelBin binModel = new MarioForwardModelBin(new MarioBinData(world));
+        // states of the previous game are overwritten from here on
+        arena.reset();
+        if (!areEqual(world, binModel))
+            return 0;
+
+        Random random = new Random(seed);
+        for (int tick = 0; tick < GAME_TICKS && world.gameStatusCode == MarioWorldSlim.RUNNING; tick++) {
+            // left, right, down, speed, jump - speed also shoots fireballs
+            boolean[] actions = { random.nextInt(8) == 0, random.nextInt(4) != 0, random.nextInt(16) == 0,
+                    random.nextBoolean(), random.nextInt(3) == 0 };
+            world.update(actions);
+            binModel.advance(actions);
+            totalTicks++;
+            if (!areEqual(world, binModel))
+                return tick;
+            if (tick == CLONE_TICK)
+                binModel = binModel.clone();
+            if (tick == ARENA_CLONE_TICK)
+                binModel = binModel.clone(arena);
+        }
+        return -1;
+    }
+
+    private static boolean areEqual(MarioWorldSlim world, MarioForwardModelBin binModel) {
+        if (world.gameStatusCode != binModel.getGameStatusCode()
+                || world.coins != binModel.getCoins()
+                || world.lives != binModel.getLives()
+                || world.currentTick != binModel.getCurrentTick()
+                || world.mario.x != binModel.getMarioX()
+                || world.mario.y != binModel.getMarioY()
+                || world.mario.xa != binModel.getMarioXVelocity()
+                || world.mario.ya != binModel.getMarioYVelocity()
+                || world.mario.isLarge != binModel.isMarioLarge()
+                || world.mario.isFire != binModel.isMarioFire()
+                || world.sprites.size() != binModel.getSpriteCount())
+            return false;
+
+        for (int i = 0; i < world.sprites.size(); i++) {
+            MarioSpriteSlim sprite = world.sprites.get(i);
+            if (sprite.getType() != binModel.getSpriteType(i)
+                    || sprite.x != binModel.getSpriteX(i)
+                    || sprite.y != binModel.getSpriteY(i)
+                    || sprite.alive != binModel.isSpriteAlive(i))
+                return false;
+        }
+
+        int marioTileX = (int) world.mario.x / 16;
+        for (int x = marioTileX - 8; x <= marioTileX + 8; x++) {
+            for (int y = 0; y < world.level.tileHeight; y++) {
+                if (world.level.getBlockValue(x, y) != binModel.getBlockValue(x, y))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,62 +1,62 @@
 package mff.forwardmodel.bin.core;
 
-import mff.forwardmodel.bin.sprites.BulletBillBin;
+import mff.forwardmodel.bin.sprites.*;
 
 public class BinSpriteMethods {
 
 	// numbering corresponds to SpriteTypeCommon
 
 	public static final IBinSpriteMethods[] methods = new IBinSpriteMethods[] {
-			
+
 			// 0
 			null,
 
 			// 1
-			//MarioBin.methods,
+			MarioBin.methods,
 
 			// 2
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 3
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 4
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 5
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 6
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 7
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 8
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 9
-			//EnemyBin.methods,
+			EnemyBin.methods,
 
 			// 10
-			BulletBillBin.methods
+			BulletBillBin.methods,
 
 			// 11
-			//FlowerEnemyBin.methods,
+			FlowerEnemyBin.methods,
 
 			// 12
-			//MushroomBin.methods,
+			MushroomBin.methods,
 
 			// 13
-			//FireFlowerBin.methods,
+			FireFlowerBin.methods,
 
 			// 14
-			//ShellBin.methods,
+			ShellBin.methods,
 
 			// 15
-			//LifeMushroomBin.methods,
+			LifeMushroomBin.methods,
 
 			// 16
-			//FireballBin.methods
+			FireballBin.methods
 	};
 }
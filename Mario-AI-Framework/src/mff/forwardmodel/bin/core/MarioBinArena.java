@@ -0,0 +1,43 @@
+package mff.forwardmodel.bin.core;
+
+import java.util.ArrayList;
+
+/**
+ * Arena of bin states for one search. States cloned into the arena reuse the arrays of states
+ * from previous searches, after a warm-up a search does not allocate at all.
+ * Everything cloned into the arena is only valid until the next reset.
+ */
+public class MarioBinArena {
+
+    private final ArrayList<MarioForwardModelBin> models = new ArrayList<>();
+    private int used = 0;
+
+    MarioForwardModelBin acquire(MarioBinData source) {
+        MarioForwardModelBin model;
+        if (used < models.size()) {
+            model = models.get(used);
+        }
+        else {
+            model = new MarioForwardModelBin(MarioBinData.empty());
+            models.add(model);
+        }
+        used++;
+        source.copyInto(model.getData());
+        return model;
+    }
+
+    /**
+     * Gives all states back at once, call it when the search that owns them is discarded.
+     */
+    public void reset() {
+        used = 0;
+    }
+
+    public int getUsedCount() {
+        return used;
+    }
+
+    public int getCapacity() {
+        return models.size();
+    }
+}
@@ -1,31 +1,29 @@
 package mff.forwardmodel.bin.core;
 
-import mff.forwardmodel.bin.level.MarioLevelBin;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.common.StaticLevel;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
 import mff.forwardmodel.slim.core.MarioWorldSlim;
 import mff.forwardmodel.common.LevelPart;
-import mff.forwardmodel.slim.level.MarioLevelSlim;
 import mff.forwardmodel.slim.sprites.*;
 
 public class MarioBinData {
-    private static final short SPRITE_STORAGE_INFO_SIZE = 27;
+    private static final short SPRITE_STORAGE_INFO_SIZE = 37;
 
-    // sprite bool counts
-    public static final int BULLET_BILL_BOOLS = 1;
-    public static final int ENEMY_BOOLS = 5;
-    public static final int FIREBALL_BOOLS = 2;  // bin model special "isValid" field
+    // sprite bool counts, the first bool of every sprite is the slot valid flag
+    public static final int BULLET_BILL_BOOLS = 2;
+    public static final int ENEMY_BOOLS = 6;
+    public static final int FIREBALL_BOOLS = 3;
     public static final int FIRE_FLOWER_BOOLS = 2;
-    public static final int FLOWER_ENEMY_BOOLS = 1;
-    public static final int LIFE_MUSHROOM_BOOLS = 2;
-    public static final int MARIO_BOOLS = 10;
-    public static final int MUSHROOM_BOOLS = 2;
-    public static final int SHELL_BOOLS = 2;
+    public static final int FLOWER_ENEMY_BOOLS = 2;
+    public static final int LIFE_MUSHROOM_BOOLS = 3;
+    public static final int MARIO_BOOLS = 11;
+    public static final int MUSHROOM_BOOLS = 3;
+    public static final int SHELL_BOOLS = 3;
 
     // sprite, world, level int counts
-    public static final int WORLD_INTS = 6;
-    public static final int LEVEL_INTS = 8;
+    public static final int WORLD_INTS = 7;
+    public static final int LEVEL_INTS = 9;
     public static final int BULLET_BILL_INTS = 1;
     public static final int ENEMY_INTS = 3;
     public static final int FIREBALL_INTS = 1;
@@ -55,26 +53,52 @@ public class MarioBinData {
     public static final int COINS = 3;
     public static final int LIVES = 4;
     public static final int GAME_STATUS_CODE = 5;
-
-    public static final int WIDTH = 6;
-    public static final int TILE_WIDTH = 7;
-    public static final int HEIGHT = 8;
-    public static final int TILE_HEIGHT = 9;
-    public static final int EXIT_TILE_X = 10;
-    public static final int CURRENT_CUTOUT_CENTER = 11;
-    public static final int CUTOUT_ARRAY_BEGINNING_INDEX = 12;
-    public static final int CUTOUT_LEFT_BORDER_X = 13;
+    public static final int SPRITE_COUNT = 6;
+
+    public static final int WIDTH = 7;
+    public static final int TILE_WIDTH = 8;
+    public static final int HEIGHT = 9;
+    public static final int TILE_HEIGHT = 10;
+    public static final int EXIT_TILE_X = 11;
+    public static final int CURRENT_CUTOUT_CENTER = 12;
+    public static final int CUTOUT_ARRAY_BEGINNING_INDEX = 13;
+    public static final int CUTOUT_LEFT_BORDER_X = 14;
+    public static final int CUTOUT_TILE_WIDTH = 15;
 
     // world float layout
     public static final int CAMERA_X = 0;
     public static final int CAMERA_Y = 1;
 
     private static final int MARIO_COUNT = 1;
-    private static final int FIREBALLS_MAX_COUNT = 2; // there can't be more than 2 fireballs at a time
-
-    public static final int SPRITES_FIRST_FREE_INDEX = 0;
-
-    // sprite storage info layout
+    private static final int FIREBALLS_MAX_COUNT = 2; // there can't be more than 2 fireballs on screen
+
+    // sprite sections, in the order the sprite data is stored in
+    private static final int MARIO_SECTION = 0;
+    private static final int FIREBALL_SECTION = 1;
+    private static final int ENEMY_SECTION = 2;
+    private static final int FIRE_FLOWER_SECTION = 3;
+    private static final int FLOWER_ENEMY_SECTION = 4;
+    private static final int LIFE_MUSHROOM_SECTION = 5;
+    private static final int MUSHROOM_SECTION = 6;
+    private static final int SHELL_SECTION = 7;
+    private static final int BULLET_BILL_SECTION = 8;
+    private static final int SECTION_COUNT = 9;
+
+    private static final int[] SECTION_BOOLS = { MARIO_BOOLS, FIREBALL_BOOLS, ENEMY_BOOLS, FIRE_FLOWER_BOOLS,
+            FLOWER_ENEMY_BOOLS, LIFE_MUSHROOM_BOOLS, MUSHROOM_BOOLS, SHELL_BOOLS, BULLET_BILL_BOOLS };
+    private static final int[] SECTION_INTS = { MARIO_INTS, FIREBALL_INTS, ENEMY_INTS, FIRE_FLOWER_INTS,
+            FLOWER_ENEMY_INTS, LIFE_MUSHROOM_INTS, MUSHROOM_INTS, SHELL_INTS, BULLET_BILL_INTS };
+    private static final int[] SECTION_FLOATS = { MARIO_FLOATS, FIREBALL_FLOATS, ENEMY_FLOATS, FIRE_FLOWER_FLOATS,
+            FLOWER_ENEMY_FLOATS, LIFE_MUSHROOM_FLOATS, MUSHROOM_FLOATS, SHELL_FLOATS, BULLET_BILL_FLOATS };
+
+    // indexed by sprite type value
+    private static final int[] TYPE_SECTIONS = { -1, MARIO_SECTION,
+            ENEMY_SECTION, ENEMY_SECTION, ENEMY_SECTION, ENEMY_SECTION,
+            ENEMY_SECTION, ENEMY_SECTION, ENEMY_SECTION, ENEMY_SECTION,
+            BULLET_BILL_SECTION, FLOWER_ENEMY_SECTION, MUSHROOM_SECTION, FIRE_FLOWER_SECTION,
+            SHELL_SECTION, LIFE_MUSHROOM_SECTION, FIREBALL_SECTION };
+
+    // sprite storage info layout, a section is added to each *_START
     public static final int BOOLS_MARIO_START = 0;
     public static final int BOOLS_FIREBALL_START = 1;
     public static final int BOOLS_ENEMY_START = 2;
@@ -105,7 +129,20 @@ public class MarioBinData {
     public static final int FLOATS_SHELL_START = 25;
     public static final int FLOATS_BULLET_BILL_START = 26;
 
-    // TODO: describe sprite order
+    public static final int MARIO_CAPACITY = 27;
+    public static final int FIREBALL_CAPACITY = 28;
+    public static final int ENEMY_CAPACITY = 29;
+    public static final int FIRE_FLOWER_CAPACITY = 30;
+    public static final int FLOWER_ENEMY_CAPACITY = 31;
+    public static final int LIFE_MUSHROOM_CAPACITY = 32;
+    public static final int MUSHROOM_CAPACITY = 33;
+    public static final int SHELL_CAPACITY = 34;
+    public static final int BULLET_BILL_CAPACITY = 35;
+
+    public static final int INTS_SPRITES_START = 36;
+
+    // first bool of every sprite slot
+    public static final int SLOT_VALID = 0;
 
     /**
      * BOOLS LAYOUT
@@ -123,17 +160,21 @@ public class MarioBinData {
      * 3 = coins
      * 4 = lives
      * 5 = gameStatusCode
+     * 6 = spriteCount
      *  LEVEL
-     * 6 = width
-     * 7 = tileWidth
-     * 8 = height
-     * 9 = tileHeight
-     * 10 = exitTileX
-     * 11 = currentCutoutCenter
-     * 12 = cutoutArrayBeginningIndex
-     * 13 = cutoutLeftBorderX
+     * 7 = width
+     * 8 = tileWidth
+     * 9 = height
+     * 10 = tileHeight
+     * 11 = exitTileX
+     * 12 = currentCutoutCenter
+     * 13 = cutoutArrayBeginningIndex
+     * 14 = cutoutLeftBorderX
+     * 15 = cutoutTileWidth
      *  SPRITE INFO
-     *  - 14+
+     *  - 16+
+     *  SPRITE CODES
+     *  - one per sprite slot, first spriteCount in use
      *
      * FLOATS LAYOUT
      *  WORLD
@@ -141,19 +182,22 @@ public class MarioBinData {
      * 1 = cameraY
      *  SPRITE INFO
      * - 2+
+     *
+     * Every sprite type has a fixed number of slots. A sprite code is (slot << 16) | sprite type value,
+     * the codes are kept in update order like the sprite list of the slim world. Slots are given back
+     * at the end of the tick in which their sprite was removed, so a code stays valid for the whole tick.
+     * Everything lives in the five arrays, a clone is five array copies.
      */
 
     public boolean[] bools;
     public byte[] bytes;
     public short[] spriteStorageInfo;
     public int[] ints;
-    public int[] sprites;
     public float[] floats;
     public StaticLevel staticLevel;
 
     public MarioBinData(MarioWorldSlim slimWorld) {
         staticLevel = slimWorld.level.staticLevel;
-        MarioLevelBin.cutoutTileWidth = MarioLevelSlim.cutoutTileWidth;
 
         int bulletBillCounter = 0;
         int enemyCounter = 0;
@@ -182,6 +226,8 @@ public class MarioBinData {
                 mushroomCounter++;
             else if (spriteSlim instanceof ShellSlim)
                 shellCounter++;
+            else if (spriteSlim instanceof BulletBillSlim)
+                bulletBillCounter++;
         }
 
         for (int x = 0; x < slimWorld.level.staticLevel.tiles.length; x++) {
@@ -191,7 +237,7 @@ public class MarioBinData {
                 int id = levelTile.id;
 
                 if (levelPart == LevelPart.BULLET_BILL_CANNON)
-                    bulletBillCounter++; // each cannon should have max one bill spawned at a time
+                    bulletBillCounter++; // usually one bill per cannon at a time, more slots are added if needed
                 else if (id != -1 && slimWorld.level.aliveFlags[id]) {
                     if (levelPart == LevelPart.GOOMBA || levelPart == LevelPart.GOOMBA_WINGED ||
                         levelPart == LevelPart.RED_KOOPA || levelPart == LevelPart.RED_KOOPA_WINGED ||
@@ -214,56 +260,20 @@ public class MarioBinData {
             }
         }
 
-        int initBoolsSize = slimWorld.level.aliveFlags.length;
-
-        int initBytesSize = slimWorld.level.levelCutout.length;
-
-        int totalSpriteCount = bulletBillCounter + enemyCounter + FIREBALLS_MAX_COUNT +
-                fireFlowerCounter + flowerEnemyCounter + lifeMushroomCounter +
-                MARIO_COUNT + mushroomCounter + shellCounter;
-
-        int initIntsSize = WORLD_INTS + LEVEL_INTS;
-
-        int initFloatsSize = WORLD_FLOATS;
-
-        bools = new boolean[initBoolsSize];
-        bytes = new byte[initBytesSize];
+        int[] capacities = new int[SECTION_COUNT];
+        capacities[MARIO_SECTION] = MARIO_COUNT;
+        capacities[FIREBALL_SECTION] = FIREBALLS_MAX_COUNT;
+        capacities[ENEMY_SECTION] = enemyCounter;
+        capacities[FIRE_FLOWER_SECTION] = fireFlowerCounter;
+        capacities[FLOWER_ENEMY_SECTION] = flowerEnemyCounter;
+        capacities[LIFE_MUSHROOM_SECTION] = lifeMushroomCounter;
+        capacities[MUSHROOM_SECTION] = mushroomCounter;
+        capacities[SHELL_SECTION] = shellCounter;
+        capacities[BULLET_BILL_SECTION] = bulletBillCounter;
+
+        bytes = new byte[slimWorld.level.levelCutout.length];
         spriteStorageInfo = new short[SPRITE_STORAGE_INFO_SIZE];
-        ints = new int[initIntsSize];
-        sprites = new int[totalSpriteCount + 1]; // index 0 is first free index
-        floats = new float[initFloatsSize];
-
-        /* SPRITE STORAGE INFO */
-        /* BOOLS */
-        spriteStorageInfo[BOOLS_MARIO_START] = (short) slimWorld.level.aliveFlags.length;
-        spriteStorageInfo[BOOLS_FIREBALL_START] = (short) (spriteStorageInfo[BOOLS_MARIO_START] + MARIO_COUNT * MARIO_BOOLS);
-        spriteStorageInfo[BOOLS_ENEMY_START] = (short) (spriteStorageInfo[BOOLS_FIREBALL_START] + FIREBALLS_MAX_COUNT * FIREBALL_BOOLS);
-        spriteStorageInfo[BOOLS_FIRE_FLOWER_START] = (short) (spriteStorageInfo[BOOLS_ENEMY_START] + enemyCounter * ENEMY_BOOLS);
-        spriteStorageInfo[BOOLS_FLOWER_ENEMY_START] = (short) (spriteStorageInfo[BOOLS_FIRE_FLOWER_START] + fireFlowerCounter * FIRE_FLOWER_BOOLS);
-        spriteStorageInfo[BOOLS_LIFE_MUSHROOM_START] = (short) (spriteStorageInfo[BOOLS_FLOWER_ENEMY_START] + flowerEnemyCounter * FLOWER_ENEMY_BOOLS);
-        spriteStorageInfo[BOOLS_MUSHROOM_START] = (short) (spriteStorageInfo[BOOLS_LIFE_MUSHROOM_START] + lifeMushroomCounter * LIFE_MUSHROOM_BOOLS);
-        spriteStorageInfo[BOOLS_SHELL_START] = (short) (spriteStorageInfo[BOOLS_MUSHROOM_START] + mushroomCounter * MUSHROOM_BOOLS);
-        spriteStorageInfo[BOOLS_BULLET_BILL_START] = (short) (spriteStorageInfo[BOOLS_SHELL_START] + shellCounter * SHELL_BOOLS);
-        /* INTS */
-        spriteStorageInfo[INTS_MARIO_START] = (short) (WORLD_INTS + LEVEL_INTS);
-        spriteStorageInfo[INTS_FIREBALL_START] = (short) (spriteStorageInfo[INTS_MARIO_START] + MARIO_COUNT * MARIO_INTS);
-        spriteStorageInfo[INTS_ENEMY_START] = (short) (spriteStorageInfo[INTS_FIREBALL_START] + FIREBALLS_MAX_COUNT * FIREBALL_INTS);
-        spriteStorageInfo[INTS_FIRE_FLOWER_START] = (short) (spriteStorageInfo[INTS_ENEMY_START] + enemyCounter * ENEMY_INTS);
-        spriteStorageInfo[INTS_FLOWER_ENEMY_START] = (short) (spriteStorageInfo[INTS_FIRE_FLOWER_START] + fireFlowerCounter * FIRE_FLOWER_INTS);
-        spriteStorageInfo[INTS_LIFE_MUSHROOM_START] = (short) (spriteStorageInfo[INTS_FLOWER_ENEMY_START] + flowerEnemyCounter * FLOWER_ENEMY_INTS);
-        spriteStorageInfo[INTS_MUSHROOM_START] = (short) (spriteStorageInfo[INTS_LIFE_MUSHROOM_START] + lifeMushroomCounter * LIFE_MUSHROOM_INTS);
-        spriteStorageInfo[INTS_SHELL_START] = (short) (spriteStorageInfo[INTS_MUSHROOM_START] + mushroomCounter * MUSHROOM_INTS);
-        spriteStorageInfo[INTS_BULLET_BILL_START] = (short) (spriteStorageInfo[INTS_SHELL_START] + shellCounter * SHELL_INTS);
-        /* FLOATS */
-        spriteStorageInfo[FLOATS_MARIO_START] = WORLD_FLOATS;
-        spriteStorageInfo[FLOATS_FIREBALL_START] = (short) (spriteStorageInfo[FLOATS_MARIO_START] + MARIO_COUNT * MARIO_FLOATS);
-        spriteStorageInfo[FLOATS_ENEMY_START] = (short) (spriteStorageInfo[FLOATS_FIREBALL_START] + FIREBALLS_MAX_COUNT * FIREBALL_FLOATS);
-        spriteStorageInfo[FLOATS_FIRE_FLOWER_START] = (short) (spriteStorageInfo[FLOATS_ENEMY_START] + enemyCounter * ENEMY_FLOATS);
-        spriteStorageInfo[FLOATS_FLOWER_ENEMY_START] = (short) (spriteStorageInfo[FLOATS_FIRE_FLOWER_START] + fireFlowerCounter * FIRE_FLOWER_FLOATS);
-        spriteStorageInfo[FLOATS_LIFE_MUSHROOM_START] = (short) (spriteStorageInfo[FLOATS_FLOWER_ENEMY_START] + flowerEnemyCounter * FLOWER_ENEMY_FLOATS);
-        spriteStorageInfo[FLOATS_MUSHROOM_START] = (short) (spriteStorageInfo[FLOATS_LIFE_MUSHROOM_START] + lifeMushroomCounter * LIFE_MUSHROOM_FLOATS);
-        spriteStorageInfo[FLOATS_SHELL_START] = (short) (spriteStorageInfo[FLOATS_MUSHROOM_START] + mushroomCounter * MUSHROOM_FLOATS);
-        spriteStorageInfo[FLOATS_BULLET_BILL_START] = (short) (spriteStorageInfo[FLOATS_SHELL_START] + shellCounter * SHELL_FLOATS);
+        createLayout(slimWorld.level.aliveFlags.length, capacities);
 
         /* BOOLS */
         System.arraycopy(slimWorld.level.aliveFlags, 0, bools, 0, slimWorld.level.aliveFlags.length);
@@ -279,6 +289,7 @@ public class MarioBinData {
         ints[COINS] = slimWorld.coins;
         ints[LIVES] = slimWorld.lives;
         ints[GAME_STATUS_CODE] = slimWorld.gameStatusCode;
+        ints[SPRITE_COUNT] = 0;
         /* LEVEL */
         ints[WIDTH] = slimWorld.level.width;
         ints[TILE_WIDTH] = slimWorld.level.tileWidth;
@@ -288,9 +299,7 @@ public class MarioBinData {
         ints[CURRENT_CUTOUT_CENTER] = slimWorld.level.currentCutoutCenter;
         ints[CUTOUT_ARRAY_BEGINNING_INDEX] = slimWorld.level.cutoutArrayBeginningIndex;
         ints[CUTOUT_LEFT_BORDER_X] = slimWorld.level.cutoutLeftBorderX;
-
-        /* SPRITES */
-        sprites[SPRITES_FIRST_FREE_INDEX] = 1;
+        ints[CUTOUT_TILE_WIDTH] = slimWorld.level.cutoutTileWidth;
 
         /* FLOATS */
         /* WORLD */
@@ -298,69 +307,178 @@ public class MarioBinData {
         floats[CAMERA_Y] = slimWorld.cameraY;
 
         /* SPRITES */
+        // Mario always has slot 0, even if the slim world lost him from its sprite list
+        addMario(slimWorld.mario);
         for (MarioSpriteSlim spriteSlim : slimWorld.sprites) {
-            if (spriteSlim.getType() == SpriteTypeCommon.MARIO) {
-                //addMario((MarioSlim) spriteSlim);
+            if (spriteSlim == slimWorld.mario) {
+                addSpriteCode(SpriteTypeCommon.MARIO.getValue());
             }
             else if (spriteSlim instanceof EnemySlim) {
                 EnemySlim enemySlim = (EnemySlim) spriteSlim;
-                /*addEnemy(enemySlim.x, enemySlim.y, enemySlim.alive, enemySlim.typeCode, enemySlim.xa,
+                addSpriteCode(addEnemy(enemySlim.x, enemySlim.y, enemySlim.alive, enemySlim.typeCode, enemySlim.xa,
                         enemySlim.ya, enemySlim.facing, enemySlim.height, enemySlim.onGround,
-                        enemySlim.avoidCliffs, enemySlim.winged, enemySlim.noFireballDeath);*/
+                        enemySlim.avoidCliffs, enemySlim.winged, enemySlim.noFireballDeath));
             }
-            else if (spriteSlim.getType() == SpriteTypeCommon.BULLET_BILL) {
+            else if (spriteSlim instanceof BulletBillSlim) {
                 BulletBillSlim bulletBillSlim = (BulletBillSlim) spriteSlim;
-                // TODO better naming?
                 addSpriteCode(addBulletBill(bulletBillSlim.x, bulletBillSlim.y, bulletBillSlim.alive, bulletBillSlim.facing));
             }
-            else {
-                // TODO: rest of the sprites
+            else if (spriteSlim instanceof FireballSlim) {
+                FireballSlim fireballSlim = (FireballSlim) spriteSlim;
+                addSpriteCode(addFireball(fireballSlim.x, fireballSlim.y, fireballSlim.alive, fireballSlim.getXa(),
+                        fireballSlim.getYa(), fireballSlim.getFacing(), fireballSlim.isOnGround()));
+            }
+            else if (spriteSlim instanceof FireFlowerSlim) {
+                FireFlowerSlim fireFlowerSlim = (FireFlowerSlim) spriteSlim;
+                addSpriteCode(addFireFlower(fireFlowerSlim.x, fireFlowerSlim.y, fireFlowerSlim.alive, fireFlowerSlim.getLife()));
             }
+            else if (spriteSlim instanceof FlowerEnemySlim) {
+                FlowerEnemySlim flowerEnemySlim = (FlowerEnemySlim) spriteSlim;
+                addSpriteCode(addFlowerEnemy(flowerEnemySlim.x, flowerEnemySlim.y, flowerEnemySlim.alive,
+                        flowerEnemySlim.getWaitTime(), flowerEnemySlim.getyStart(), flowerEnemySlim.getYa()));
+            }
+            else if (spriteSlim instanceof LifeMushroomSlim) {
+                LifeMushroomSlim lifeMushroomSlim = (LifeMushroomSlim) spriteSlim;
+                addSpriteCode(addLifeMushroom(lifeMushroomSlim.x, lifeMushroomSlim.y, lifeMushroomSlim.alive,
+                        lifeMushroomSlim.getFacing(), lifeMushroomSlim.getLife(), lifeMushroomSlim.isOnGround(),
+                        lifeMushroomSlim.getXa(), lifeMushroomSlim.getYa()));
+            }
+            else if (spriteSlim instanceof MushroomSlim) {
+                MushroomSlim mushroomSlim = (MushroomSlim) spriteSlim;
+                addSpriteCode(addMushroom(mushroomSlim.x, mushroomSlim.y, mushroomSlim.alive,
+                        mushroomSlim.getFacing(), mushroomSlim.getLife(), mushroomSlim.isOnGround(),
+                        mushroomSlim.getXa(), mushroomSlim.getYa()));
+            }
+            else if (spriteSlim instanceof ShellSlim) {
+                ShellSlim shellSlim = (ShellSlim) spriteSlim;
+                addSpriteCode(addShell(shellSlim.x, shellSlim.y, shellSlim.alive, shellSlim.getFacing(),
+                        shellSlim.isOnGround(), shellSlim.getXa(), shellSlim.getYa()));
+            }
+            else
+                throw new IllegalArgumentException();
         }
+        if (!slimWorld.sprites.contains(slimWorld.mario))
+            removeMario();
+    }
 
-        // TODO: only for testing
-        /*boolsCloning = new boolean[this.bools.length];
-        bytesCloning = new byte[this.bytes.length];
-        shortsCloning = new short[this.spriteStorageInfo.length];
-        intsCloning = new int[this.ints.length];
-        floatsCloning = new float[this.floats.length];*/
+    // creates the sprite arrays for the given slot capacities, world and level values are not filled in
+    private void createLayout(int aliveFlagsLength, int[] capacities) {
+        int boolsSize = aliveFlagsLength;
+        int intsSize = WORLD_INTS + LEVEL_INTS;
+        int floatsSize = WORLD_FLOATS;
+        int totalCapacity = 0;
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            spriteStorageInfo[BOOLS_MARIO_START + section] = toShort(boolsSize);
+            spriteStorageInfo[INTS_MARIO_START + section] = toShort(intsSize);
+            spriteStorageInfo[FLOATS_MARIO_START + section] = toShort(floatsSize);
+            spriteStorageInfo[MARIO_CAPACITY + section] = toShort(capacities[section]);
+            boolsSize += capacities[section] * SECTION_BOOLS[section];
+            intsSize += capacities[section] * SECTION_INTS[section];
+            floatsSize += capacities[section] * SECTION_FLOATS[section];
+            totalCapacity += capacities[section];
+        }
+        spriteStorageInfo[INTS_SPRITES_START] = toShort(intsSize);
+        intsSize += totalCapacity;
+
+        bools = new boolean[boolsSize];
+        ints = new int[intsSize];
+        floats = new float[floatsSize];
     }
 
-    public void addSpriteCode(int toAdd) {
-        sprites[sprites[SPRITES_FIRST_FREE_INDEX]] = toAdd;
-        sprites[SPRITES_FIRST_FREE_INDEX]++;
+    private static short toShort(int value) {
+        if (value > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Level is too large for the bin model.");
+        return (short) value;
     }
 
-    private void changeSpriteCode(int oldCode, int newCode) {
-        for (int i = 1; i < sprites[SPRITES_FIRST_FREE_INDEX]; i++) {
-            if (sprites[i] == oldCode) {
-                sprites[i] = newCode;
-                return;
-            }
+    // doubles the slots of one sprite type, slot numbers and so sprite codes stay the same
+    private void growSection(int grownSection) {
+        short[] oldStorageInfo = spriteStorageInfo.clone();
+        boolean[] oldBools = bools;
+        int[] oldInts = ints;
+        float[] oldFloats = floats;
+
+        int[] capacities = new int[SECTION_COUNT];
+        for (int section = 0; section < SECTION_COUNT; section++)
+            capacities[section] = oldStorageInfo[MARIO_CAPACITY + section];
+        capacities[grownSection] = Math.max(1, capacities[grownSection] * 2);
+        createLayout(oldStorageInfo[BOOLS_MARIO_START], capacities);
+
+        System.arraycopy(oldBools, 0, bools, 0, oldStorageInfo[BOOLS_MARIO_START]);
+        System.arraycopy(oldInts, 0, ints, 0, oldStorageInfo[INTS_MARIO_START]);
+        System.arraycopy(oldFloats, 0, floats, 0, oldStorageInfo[FLOATS_MARIO_START]);
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            int oldCapacity = oldStorageInfo[MARIO_CAPACITY + section];
+            System.arraycopy(oldBools, oldStorageInfo[BOOLS_MARIO_START + section],
+                    bools, spriteStorageInfo[BOOLS_MARIO_START + section], oldCapacity * SECTION_BOOLS[section]);
+            System.arraycopy(oldInts, oldStorageInfo[INTS_MARIO_START + section],
+                    ints, spriteStorageInfo[INTS_MARIO_START + section], oldCapacity * SECTION_INTS[section]);
+            System.arraycopy(oldFloats, oldStorageInfo[FLOATS_MARIO_START + section],
+                    floats, spriteStorageInfo[FLOATS_MARIO_START + section], oldCapacity * SECTION_FLOATS[section]);
         }
-        throw new IllegalArgumentException();
+        System.arraycopy(oldInts, oldStorageInfo[INTS_SPRITES_START],
+                ints, spriteStorageInfo[INTS_SPRITES_START], oldInts[SPRITE_COUNT]);
     }
 
-    private void removeSpriteCode(int toDelete) {
-        for (int i = 1; i < sprites[SPRITES_FIRST_FREE_INDEX]; i++) {
-            if (sprites[i] == toDelete) {
-                for (int j = i; j < sprites[SPRITES_FIRST_FREE_INDEX] - 2; j++) {
-                    sprites[j] = sprites[j + 1];
-                }
-                sprites[SPRITES_FIRST_FREE_INDEX]--;
-                return;
+    // marks the first free slot of the section as valid
+    private int allocateSlot(int section) {
+        int capacity = spriteStorageInfo[MARIO_CAPACITY + section];
+        int boolsStart = spriteStorageInfo[BOOLS_MARIO_START + section];
+        for (int slot = 0; slot < capacity; slot++) {
+            int validIndex = boolsStart + slot * SECTION_BOOLS[section] + SLOT_VALID;
+            if (!bools[validIndex]) {
+                bools[validIndex] = true;
+                return slot;
             }
         }
-        throw new IllegalArgumentException();
+        growSection(section);
+        bools[spriteStorageInfo[BOOLS_MARIO_START + section] + capacity * SECTION_BOOLS[section] + SLOT_VALID] = true;
+        return capacity;
     }
 
-    // TODO: methods - addEnemy etc. return type+id as int
-    // TODO: asserts for validity
+    private void freeSlot(int section, int slot) {
+        bools[spriteStorageInfo[BOOLS_MARIO_START + section] + slot * SECTION_BOOLS[section] + SLOT_VALID] = false;
+    }
+
+    private boolean isSlotValid(int spriteCode) {
+        int section = TYPE_SECTIONS[spriteCode & 0xFFFF];
+        return bools[spriteStorageInfo[BOOLS_MARIO_START + section]
+                + (spriteCode >>> 16) * SECTION_BOOLS[section] + SLOT_VALID];
+    }
+
+    public int getSpriteCount() {
+        return ints[SPRITE_COUNT];
+    }
+
+    public int getSpriteCode(int index) {
+        return ints[spriteStorageInfo[INTS_SPRITES_START] + index];
+    }
+
+    public void addSpriteCode(int toAdd) {
+        ints[spriteStorageInfo[INTS_SPRITES_START] + ints[SPRITE_COUNT]] = toAdd;
+        ints[SPRITE_COUNT]++;
+    }
+
+    /**
+     * Drops the codes of sprites whose slots were freed, the rest keeps its order.
+     */
+    public void removeFreedSpriteCodes() {
+        int spritesStart = spriteStorageInfo[INTS_SPRITES_START];
+        int spriteCount = ints[SPRITE_COUNT];
+        int kept = 0;
+        for (int i = 0; i < spriteCount; i++) {
+            int spriteCode = ints[spritesStart + i];
+            if (isSlotValid(spriteCode))
+                ints[spritesStart + kept++] = spriteCode;
+        }
+        ints[SPRITE_COUNT] = kept;
+    }
 
     /**
      Bullet Bill data storage order:
      BOOL:
-      0 = alive
+      0 = valid
+      1 = alive
      INT:
       0 = facing
      FLOAT:
@@ -368,100 +486,38 @@ public class MarioBinData {
       1 = y
      */
 
-    public static final int BULLET_BILL_ALIVE = 0;
+    public static final int BULLET_BILL_ALIVE = 1;
 
     public static final int BULLET_BILL_FACING = 0;
 
     public static final int BULLET_BILL_X = 0;
     public static final int BULLET_BILL_Y = 1;
 
-    //TODO add data immediately, alive and update in world.add, code to sprites at the end of world.update
-    int addBulletBill(float x, float y, boolean alive, int facing) {
-        int id = (bools.length - spriteStorageInfo[BOOLS_BULLET_BILL_START]) / BULLET_BILL_BOOLS;
-
-        boolean[] newBools = new boolean[bools.length + BULLET_BILL_BOOLS];
-        System.arraycopy(bools, 0, newBools, 0, bools.length);
-        newBools[spriteStorageInfo[BOOLS_BULLET_BILL_START] + id * BULLET_BILL_BOOLS + BULLET_BILL_ALIVE] = alive;
-        bools = newBools;
-
-        int[] newInts = new int[ints.length + BULLET_BILL_INTS];
-        System.arraycopy(ints, 0, newInts, 0, ints.length);
-        newInts[spriteStorageInfo[INTS_BULLET_BILL_START] + id * BULLET_BILL_INTS + BULLET_BILL_FACING] = facing;
-        ints = newInts;
+    public int addBulletBill(float x, float y, boolean alive, int facing) {
+        int id = allocateSlot(BULLET_BILL_SECTION);
+        bools[spriteStorageInfo[BOOLS_BULLET_BILL_START] + id * BULLET_BILL_BOOLS + BULLET_BILL_ALIVE] = alive;
 
-        float[] newFloats = new float[floats.length + BULLET_BILL_FLOATS];
-        System.arraycopy(floats, 0, newFloats, 0, floats.length);
-        newFloats[spriteStorageInfo[FLOATS_BULLET_BILL_START] + id * BULLET_BILL_FLOATS + BULLET_BILL_X] = x;
-        newFloats[spriteStorageInfo[FLOATS_BULLET_BILL_START] + id * BULLET_BILL_FLOATS + BULLET_BILL_Y] = y;
-        floats = newFloats;
+        ints[spriteStorageInfo[INTS_BULLET_BILL_START] + id * BULLET_BILL_INTS + BULLET_BILL_FACING] = facing;
 
-        int spriteCode = id << 16;
-        spriteCode |= SpriteTypeCommon.BULLET_BILL.getValue();
+        floats[spriteStorageInfo[FLOATS_BULLET_BILL_START] + id * BULLET_BILL_FLOATS + BULLET_BILL_X] = x;
+        floats[spriteStorageInfo[FLOATS_BULLET_BILL_START] + id * BULLET_BILL_FLOATS + BULLET_BILL_Y] = y;
 
-        return spriteCode;
-        //addSpriteCode(spriteCode);
+        return (id << 16) | SpriteTypeCommon.BULLET_BILL.getValue();
     }
 
-    //TODO alive false immediately, remove from data and sprites at the end of world.update
     public void removeBulletBill(int entityIndex) {
-        int bulletBillsCount = (bools.length - spriteStorageInfo[BOOLS_BULLET_BILL_START]) / BULLET_BILL_BOOLS;
-
-        /*
-        // move codes in sprites if needed
-        if (entityIndex + 1 != bulletBillsCount) {
-            for (int i = entityIndex + 1; i < bulletBillsCount; i++) {
-                int oldSpriteCode = (i - 1) << 16;
-                oldSpriteCode |= SpriteTypeCommon.BULLET_BILL.getValue();
-
-                int newSpriteCode = i << 16;
-                newSpriteCode |= SpriteTypeCommon.BULLET_BILL.getValue();
-
-                changeSpriteCode(oldSpriteCode, newSpriteCode);
-            }
-            int lastSpriteCode = (bulletBillsCount - 1) << 16;
-            lastSpriteCode |= SpriteTypeCommon.BULLET_BILL.getValue();
-            removeSpriteCode(lastSpriteCode);
-        }
-        */
-
-        // remove last bill id from sprites - data shifted
-        int lastSpriteCode = (bulletBillsCount - 1) << 16;
-        lastSpriteCode |= SpriteTypeCommon.BULLET_BILL.getValue();
-        removeSpriteCode(lastSpriteCode);
-
-        boolean[] newBools = new boolean[bools.length - BULLET_BILL_BOOLS];
-        System.arraycopy(bools, 0, newBools, 0, spriteStorageInfo[BOOLS_BULLET_BILL_START]
-                + entityIndex * BULLET_BILL_BOOLS);
-        System.arraycopy(bools, spriteStorageInfo[BOOLS_BULLET_BILL_START] + (entityIndex + 1) * BULLET_BILL_BOOLS,
-                newBools, spriteStorageInfo[BOOLS_BULLET_BILL_START] + entityIndex * BULLET_BILL_BOOLS,
-                bools.length - (spriteStorageInfo[BOOLS_BULLET_BILL_START] + (entityIndex + 1) * BULLET_BILL_BOOLS));
-        bools = newBools;
-
-        int[] newInts = new int[ints.length - BULLET_BILL_INTS];
-        System.arraycopy(ints, 0, newInts, 0, spriteStorageInfo[INTS_BULLET_BILL_START]
-                + entityIndex * BULLET_BILL_INTS);
-        System.arraycopy(ints, spriteStorageInfo[INTS_BULLET_BILL_START] + (entityIndex + 1) * BULLET_BILL_INTS,
-                newInts, spriteStorageInfo[INTS_BULLET_BILL_START] + entityIndex * BULLET_BILL_INTS,
-                ints.length - (spriteStorageInfo[INTS_BULLET_BILL_START] + (entityIndex + 1) * BULLET_BILL_INTS));
-        ints = newInts;
-
-        float[] newFloats = new float[floats.length - BULLET_BILL_FLOATS];
-        System.arraycopy(floats, 0, newFloats, 0, spriteStorageInfo[FLOATS_BULLET_BILL_START]
-                + entityIndex * BULLET_BILL_FLOATS);
-        System.arraycopy(floats, spriteStorageInfo[FLOATS_BULLET_BILL_START] + (entityIndex + 1) * BULLET_BILL_FLOATS,
-                newFloats, spriteStorageInfo[FLOATS_BULLET_BILL_START] + entityIndex * BULLET_BILL_FLOATS,
-                floats.length - (spriteStorageInfo[FLOATS_BULLET_BILL_START] + (entityIndex + 1) * BULLET_BILL_FLOATS));
-        floats = newFloats;
+        freeSlot(BULLET_BILL_SECTION, entityIndex);
     }
 
     /**
      Enemy data storage order:
      BOOL:
-     0 = alive
-     1 = onGround
-     2 = avoidCliffs
-     3 = winged
-     4 = noFireballDeath
+     0 = valid
+     1 = alive
+     2 = onGround
+     3 = avoidCliffs
+     4 = winged
+     5 = noFireballDeath
      INT:
      0 = typeCode
      1 = facing
@@ -473,11 +529,11 @@ public class MarioBinData {
      3 = ya
     */
 
-    public static final int ENEMY_ALIVE = 0;
-    public static final int ENEMY_ON_GROUND = 1;
-    public static final int ENEMY_AVOID_CLIFFS = 2;
-    public static final int ENEMY_WINGED = 3;
-    public static final int ENEMY_NO_FIREBALL_DEATH = 4;
+    public static final int ENEMY_ALIVE = 1;
+    public static final int ENEMY_ON_GROUND = 2;
+    public static final int ENEMY_AVOID_CLIFFS = 3;
+    public static final int ENEMY_WINGED = 4;
+    public static final int ENEMY_NO_FIREBALL_DEATH = 5;
 
     public static final int ENEMY_TYPE_CODE = 0;
     public static final int ENEMY_FACING = 1;
@@ -488,10 +544,9 @@ public class MarioBinData {
     public static final int ENEMY_XA = 2;
     public static final int ENEMY_YA = 3;
 
-    int addEnemy(float x, float y, boolean alive, int typeCode, float xa, float ya, int facing, int height,
-                 boolean onGround, boolean avoidCliffs, boolean winged, boolean noFireballDeath) {
-        /*int id = ints[spriteStorageInfo[ENEMY_COUNT]];
-        spriteStorageInfo[ENEMY_COUNT]++;
+    public int addEnemy(float x, float y, boolean alive, int typeCode, float xa, float ya, int facing, int height,
+                        boolean onGround, boolean avoidCliffs, boolean winged, boolean noFireballDeath) {
+        int id = allocateSlot(ENEMY_SECTION);
         bools[spriteStorageInfo[BOOLS_ENEMY_START] + id * ENEMY_BOOLS + ENEMY_ALIVE] = alive;
         bools[spriteStorageInfo[BOOLS_ENEMY_START] + id * ENEMY_BOOLS + ENEMY_ON_GROUND] = onGround;
         bools[spriteStorageInfo[BOOLS_ENEMY_START] + id * ENEMY_BOOLS + ENEMY_AVOID_CLIFFS] = avoidCliffs;
@@ -507,68 +562,195 @@ public class MarioBinData {
         floats[spriteStorageInfo[FLOATS_ENEMY_START] + id * ENEMY_FLOATS + ENEMY_XA] = xa;
         floats[spriteStorageInfo[FLOATS_ENEMY_START] + id * ENEMY_FLOATS + ENEMY_YA] = ya;
 
-        int spriteCode = id << 16;
-        spriteCode |= typeCode;
-
-        return spriteCode;*/
-        return 0; //TODO
+        // enemy type is part of the code, all enemy types share the same storage
+        return (id << 16) | typeCode;
     }
 
-    void removeEnemy(int entityIndex) {
-        //TODO
+    public void removeEnemy(int entityIndex) {
+        freeSlot(ENEMY_SECTION, entityIndex);
     }
 
-    public static final int FIREBALL_ALIVE = 0;
+    /**
+     Fireball data storage order:
+     BOOL:
+     0 = valid
+     1 = alive
+     2 = onGround
+     INT:
+     0 = facing
+     FLOAT:
+     0 = x
+     1 = y
+     2 = xa
+     3 = ya
+     */
+
+    public static final int FIREBALL_ALIVE = 1;
+    public static final int FIREBALL_ON_GROUND = 2;
+
+    public static final int FIREBALL_FACING = 0;
+
+    public static final int FIREBALL_X = 0;
+    public static final int FIREBALL_Y = 1;
+    public static final int FIREBALL_XA = 2;
+    public static final int FIREBALL_YA = 3;
 
-    int addFireball(float x, float y, boolean alive, float xa, float ya, int facing, boolean onGround, boolean exists) {
-        //TODO
-        return 0;
+    public int addFireball(float x, float y, boolean alive, float xa, float ya, int facing, boolean onGround) {
+        int id = allocateSlot(FIREBALL_SECTION);
+        bools[spriteStorageInfo[BOOLS_FIREBALL_START] + id * FIREBALL_BOOLS + FIREBALL_ALIVE] = alive;
+        bools[spriteStorageInfo[BOOLS_FIREBALL_START] + id * FIREBALL_BOOLS + FIREBALL_ON_GROUND] = onGround;
+
+        ints[spriteStorageInfo[INTS_FIREBALL_START] + id * FIREBALL_INTS + FIREBALL_FACING] = facing;
+
+        floats[spriteStorageInfo[FLOATS_FIREBALL_START] + id * FIREBALL_FLOATS + FIREBALL_X] = x;
+        floats[spriteStorageInfo[FLOATS_FIREBALL_START] + id * FIREBALL_FLOATS + FIREBALL_Y] = y;
+        floats[spriteStorageInfo[FLOATS_FIREBALL_START] + id * FIREBALL_FLOATS + FIREBALL_XA] = xa;
+        floats[spriteStorageInfo[FLOATS_FIREBALL_START] + id * FIREBALL_FLOATS + FIREBALL_YA] = ya;
+
+        return (id << 16) | SpriteTypeCommon.FIREBALL.getValue();
     }
 
-    void removeFireball(int entityIndex) {
-        //TODO
+    public void removeFireball(int entityIndex) {
+        freeSlot(FIREBALL_SECTION, entityIndex);
     }
 
-    int addFireFlower(float x, float y, boolean alive, int life) {
-        //TODO
-        return 0;
+    /**
+     Fire flower data storage order:
+     BOOL:
+     0 = valid
+     1 = alive
+     INT:
+     0 = life
+     FLOAT:
+     0 = x
+     1 = y
+     */
+
+    public static final int FIRE_FLOWER_ALIVE = 1;
+
+    public static final int FIRE_FLOWER_LIFE = 0;
+
+    public static final int FIRE_FLOWER_X = 0;
+    public static final int FIRE_FLOWER_Y = 1;
+
+    public int addFireFlower(float x, float y, boolean alive, int life) {
+        int id = allocateSlot(FIRE_FLOWER_SECTION);
+        bools[spriteStorageInfo[BOOLS_FIRE_FLOWER_START] + id * FIRE_FLOWER_BOOLS + FIRE_FLOWER_ALIVE] = alive;
+
+        ints[spriteStorageInfo[INTS_FIRE_FLOWER_START] + id * FIRE_FLOWER_INTS + FIRE_FLOWER_LIFE] = life;
+
+        floats[spriteStorageInfo[FLOATS_FIRE_FLOWER_START] + id * FIRE_FLOWER_FLOATS + FIRE_FLOWER_X] = x;
+        floats[spriteStorageInfo[FLOATS_FIRE_FLOWER_START] + id * FIRE_FLOWER_FLOATS + FIRE_FLOWER_Y] = y;
+
+        return (id << 16) | SpriteTypeCommon.FIRE_FLOWER.getValue();
     }
 
-    void removeFireFlower(int entityIndex) {
-        //TODO
+    public void removeFireFlower(int entityIndex) {
+        freeSlot(FIRE_FLOWER_SECTION, entityIndex);
     }
 
-    int addFlowerEnemy(float x, float y, boolean alive, int waitTime, float yStart, float ya) {
-        //TODO
-        return 0;
+    /**
+     Flower enemy data storage order:
+     BOOL:
+     0 = valid
+     1 = alive
+     INT:
+     0 = waitTime
+     FLOAT:
+     0 = x
+     1 = y
+     2 = yStart
+     3 = ya
+     */
+
+    public static final int FLOWER_ENEMY_ALIVE = 1;
+
+    public static final int FLOWER_ENEMY_WAIT_TIME = 0;
+
+    public static final int FLOWER_ENEMY_X = 0;
+    public static final int FLOWER_ENEMY_Y = 1;
+    public static final int FLOWER_ENEMY_Y_START = 2;
+    public static final int FLOWER_ENEMY_YA = 3;
+
+    public int addFlowerEnemy(float x, float y, boolean alive, int waitTime, float yStart, float ya) {
+        int id = allocateSlot(FLOWER_ENEMY_SECTION);
+        bools[spriteStorageInfo[BOOLS_FLOWER_ENEMY_START] + id * FLOWER_ENEMY_BOOLS + FLOWER_ENEMY_ALIVE] = alive;
+
+        ints[spriteStorageInfo[INTS_FLOWER_ENEMY_START] + id * FLOWER_ENEMY_INTS + FLOWER_ENEMY_WAIT_TIME] = waitTime;
+
+        floats[spriteStorageInfo[FLOATS_FLOWER_ENEMY_START] + id * FLOWER_ENEMY_FLOATS + FLOWER_ENEMY_X] = x;
+        floats[spriteStorageInfo[FLOATS_FLOWER_ENEMY_START] + id * FLOWER_ENEMY_FLOATS + FLOWER_ENEMY_Y] = y;
+        floats[spriteStorageInfo[FLOATS_FLOWER_ENEMY_START] + id * FLOWER_ENEMY_FLOATS + FLOWER_ENEMY_Y_START] = yStart;
+        floats[spriteStorageInfo[FLOATS_FLOWER_ENEMY_START] + id * FLOWER_ENEMY_FLOATS + FLOWER_ENEMY_YA] = ya;
+
+        return (id << 16) | SpriteTypeCommon.ENEMY_FLOWER.getValue();
     }
 
-    void removeFlowerEnemy(int entityIndex) {
-        //TODO
+    public void removeFlowerEnemy(int entityIndex) {
+        freeSlot(FLOWER_ENEMY_SECTION, entityIndex);
     }
 
-    int addLifeMushroom(float x, float y, boolean alive, int facing, int life, boolean onGround, float xa, float ya) {
-        //TODO
-        return 0;
+    /**
+     Life mushroom and mushroom data storage order:
+     BOOL:
+     0 = valid
+     1 = alive
+     2 = onGround
+     INT:
+     0 = facing
+     1 = life
+     FLOAT:
+     0 = x
+     1 = y
+     2 = xa
+     3 = ya
+     */
+
+    public static final int LIFE_MUSHROOM_ALIVE = 1;
+    public static final int LIFE_MUSHROOM_ON_GROUND = 2;
+
+    public static final int LIFE_MUSHROOM_FACING = 0;
+    public static final int LIFE_MUSHROOM_LIFE = 1;
+
+    public static final int LIFE_MUSHROOM_X = 0;
+    public static final int LIFE_MUSHROOM_Y = 1;
+    public static final int LIFE_MUSHROOM_XA = 2;
+    public static final int LIFE_MUSHROOM_YA = 3;
+
+    public int addLifeMushroom(float x, float y, boolean alive, int facing, int life, boolean onGround, float xa, float ya) {
+        int id = allocateSlot(LIFE_MUSHROOM_SECTION);
+        bools[spriteStorageInfo[BOOLS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_BOOLS + LIFE_MUSHROOM_ALIVE] = alive;
+        bools[spriteStorageInfo[BOOLS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_BOOLS + LIFE_MUSHROOM_ON_GROUND] = onGround;
+
+        ints[spriteStorageInfo[INTS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_INTS + LIFE_MUSHROOM_FACING] = facing;
+        ints[spriteStorageInfo[INTS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_INTS + LIFE_MUSHROOM_LIFE] = life;
+
+        floats[spriteStorageInfo[FLOATS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_FLOATS + LIFE_MUSHROOM_X] = x;
+        floats[spriteStorageInfo[FLOATS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_FLOATS + LIFE_MUSHROOM_Y] = y;
+        floats[spriteStorageInfo[FLOATS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_FLOATS + LIFE_MUSHROOM_XA] = xa;
+        floats[spriteStorageInfo[FLOATS_LIFE_MUSHROOM_START] + id * LIFE_MUSHROOM_FLOATS + LIFE_MUSHROOM_YA] = ya;
+
+        return (id << 16) | SpriteTypeCommon.LIFE_MUSHROOM.getValue();
     }
 
-    void removeLifeMushroom(int entityIndex) {
-        //TODO
+    public void removeLifeMushroom(int entityIndex) {
+        freeSlot(LIFE_MUSHROOM_SECTION, entityIndex);
     }
 
     /**
      Mario data storage order:
      BOOL:
-     0 = alive
-     1 = onGround
-     2 = wasOnGround
-     3 = isLarge
-     4 = isDucking
-     5 = mayJump
-     6 = canShoot
-     7 = isFire
-     8 = oldLarge
-     9 = oldFire
+     0 = valid
+     1 = alive
+     2 = onGround
+     3 = wasOnGround
+     4 = isLarge
+     5 = isDucking
+     6 = mayJump
+     7 = canShoot
+     8 = isFire
+     9 = oldLarge
+     10 = oldFire
      INT:
      0 = height
      1 = invulnerableTime
@@ -584,16 +766,16 @@ public class MarioBinData {
      6 = xJumpStart
      */
 
-    public static final int MARIO_ALIVE = 0;
-    public static final int MARIO_ON_GROUND = 1;
-    public static final int MARIO_WAS_ON_GROUND = 2;
-    public static final int MARIO_IS_LARGE = 3;
-    public static final int MARIO_IS_DUCKING = 4;
-    public static final int MARIO_MAY_JUMP = 5;
-    public static final int MARIO_CAN_SHOOT = 6;
-    public static final int MARIO_IS_FIRE = 7;
-    public static final int MARIO_OLD_LARGE = 8;
-    public static final int MARIO_OLD_FIRE = 9;
+    public static final int MARIO_ALIVE = 1;
+    public static final int MARIO_ON_GROUND = 2;
+    public static final int MARIO_WAS_ON_GROUND = 3;
+    public static final int MARIO_IS_LARGE = 4;
+    public static final int MARIO_IS_DUCKING = 5;
+    public static final int MARIO_MAY_JUMP = 6;
+    public static final int MARIO_CAN_SHOOT = 7;
+    public static final int MARIO_IS_FIRE = 8;
+    public static final int MARIO_OLD_LARGE = 9;
+    public static final int MARIO_OLD_FIRE = 10;
 
     public static final int MARIO_HEIGHT = 0;
     public static final int MARIO_INVULNERABLE_TIME = 1;
@@ -608,8 +790,8 @@ public class MarioBinData {
     public static final int MARIO_Y_JUMP_SPEED = 5;
     public static final int MARIO_X_JUMP_START = 6;
 
-    int addMario(MarioSlim marioSlim) { // only created once
-        /*spriteStorageInfo[MARIO_COUNT]++; // TODO: assert count == 0
+    private void addMario(MarioSlim marioSlim) { // only created once
+        allocateSlot(MARIO_SECTION);
         bools[spriteStorageInfo[BOOLS_MARIO_START] + MARIO_ALIVE] = marioSlim.alive;
         bools[spriteStorageInfo[BOOLS_MARIO_START] + MARIO_ON_GROUND] = marioSlim.onGround;
         bools[spriteStorageInfo[BOOLS_MARIO_START] + MARIO_WAS_ON_GROUND] = marioSlim.wasOnGround;
@@ -633,123 +815,139 @@ public class MarioBinData {
         floats[spriteStorageInfo[FLOATS_MARIO_START] + MARIO_X_JUMP_SPEED] = marioSlim.xJumpSpeed;
         floats[spriteStorageInfo[FLOATS_MARIO_START] + MARIO_Y_JUMP_SPEED] = marioSlim.yJumpSpeed;
         floats[spriteStorageInfo[FLOATS_MARIO_START] + MARIO_X_JUMP_START] = marioSlim.xJumpStart;
-
-        return SpriteTypeCommon.MARIO.getValue();*/
-        return 0; //TODO
     }
 
-    void removeMario() {
-        //TODO might be ignored since the game ends here? (probably not)
+    // Mario's data stays readable after the removal, the game is over at that point anyway
+    public void removeMario() {
+        freeSlot(MARIO_SECTION, 0);
     }
 
-    int addMushroom(float x, float y, boolean alive, int facing, int life, boolean onGround, float xa, float ya) {
-        //TODO
-        return 0;
+    public static final int MUSHROOM_ALIVE = 1;
+    public static final int MUSHROOM_ON_GROUND = 2;
+
+    public static final int MUSHROOM_FACING = 0;
+    public static final int MUSHROOM_LIFE = 1;
+
+    public static final int MUSHROOM_X = 0;
+    public static final int MUSHROOM_Y = 1;
+    public static final int MUSHROOM_XA = 2;
+    public static final int MUSHROOM_YA = 3;
+
+    public int addMushroom(float x, float y, boolean alive, int facing, int life, boolean onGround, float xa, float ya) {
+        int id = allocateSlot(MUSHROOM_SECTION);
+        bools[spriteStorageInfo[BOOLS_MUSHROOM_START] + id * MUSHROOM_BOOLS + MUSHROOM_ALIVE] = alive;
+        bools[spriteStorageInfo[BOOLS_MUSHROOM_START] + id * MUSHROOM_BOOLS + MUSHROOM_ON_GROUND] = onGround;
+
+        ints[spriteStorageInfo[INTS_MUSHROOM_START] + id * MUSHROOM_INTS + MUSHROOM_FACING] = facing;
+        ints[spriteStorageInfo[INTS_MUSHROOM_START] + id * MUSHROOM_INTS + MUSHROOM_LIFE] = life;
+
+        floats[spriteStorageInfo[FLOATS_MUSHROOM_START] + id * MUSHROOM_FLOATS + MUSHROOM_X] = x;
+        floats[spriteStorageInfo[FLOATS_MUSHROOM_START] + id * MUSHROOM_FLOATS + MUSHROOM_Y] = y;
+        floats[spriteStorageInfo[FLOATS_MUSHROOM_START] + id * MUSHROOM_FLOATS + MUSHROOM_XA] = xa;
+        floats[spriteStorageInfo[FLOATS_MUSHROOM_START] + id * MUSHROOM_FLOATS + MUSHROOM_YA] = ya;
+
+        return (id << 16) | SpriteTypeCommon.MUSHROOM.getValue();
     }
 
-    void removeMushroom(int entityIndex) {
-        //TODO
+    public void removeMushroom(int entityIndex) {
+        freeSlot(MUSHROOM_SECTION, entityIndex);
     }
 
-    public static final int SHELL_ALIVE = 0;
+    /**
+     Shell data storage order:
+     BOOL:
+     0 = valid
+     1 = alive
+     2 = onGround
+     INT:
+     0 = facing
+     FLOAT:
+     0 = x
+     1 = y
+     2 = xa
+     3 = ya
+     */
+
+    public static final int SHELL_ALIVE = 1;
+    public static final int SHELL_ON_GROUND = 2;
+
+    public static final int SHELL_FACING = 0;
+
+    public static final int SHELL_X = 0;
+    public static final int SHELL_Y = 1;
+    public static final int SHELL_XA = 2;
+    public static final int SHELL_YA = 3;
+
+    public int addShell(float x, float y, boolean alive, int facing, boolean onGround, float xa, float ya) {
+        int id = allocateSlot(SHELL_SECTION);
+        bools[spriteStorageInfo[BOOLS_SHELL_START] + id * SHELL_BOOLS + SHELL_ALIVE] = alive;
+        bools[spriteStorageInfo[BOOLS_SHELL_START] + id * SHELL_BOOLS + SHELL_ON_GROUND] = onGround;
+
+        ints[spriteStorageInfo[INTS_SHELL_START] + id * SHELL_INTS + SHELL_FACING] = facing;
+
+        floats[spriteStorageInfo[FLOATS_SHELL_START] + id * SHELL_FLOATS + SHELL_X] = x;
+        floats[spriteStorageInfo[FLOATS_SHELL_START] + id * SHELL_FLOATS + SHELL_Y] = y;
+        floats[spriteStorageInfo[FLOATS_SHELL_START] + id * SHELL_FLOATS + SHELL_XA] = xa;
+        floats[spriteStorageInfo[FLOATS_SHELL_START] + id * SHELL_FLOATS + SHELL_YA] = ya;
 
-    int addShell(float x, float y, boolean alive, int facing, boolean onGround, float xa, float ya) {
-        //TODO
-        return 0;
+        return (id << 16) | SpriteTypeCommon.SHELL.getValue();
     }
 
-    void removeShell(int entityIndex) {
-        //TODO
+    public void removeShell(int entityIndex) {
+        freeSlot(SHELL_SECTION, entityIndex);
     }
 
     private MarioBinData() { }
 
-    // TODO: array pooling?, different array copy?
     public MarioBinData clone() {
         MarioBinData clone = new MarioBinData();
 
         clone.staticLevel = this.staticLevel;
 
         clone.bools = new boolean[this.bools.length];
-        //clone.bools = boolsCloning;
-        //clone.bools = getBools();
         System.arraycopy(this.bools, 0, clone.bools, 0, this.bools.length);
 
         clone.bytes = new byte[this.bytes.length];
-        //clone.bytes = bytesCloning;
-        //clone.bytes = getBytes();
         System.arraycopy(this.bytes, 0, clone.bytes, 0, this.bytes.length);
 
         clone.spriteStorageInfo = new short[this.spriteStorageInfo.length];
-        //clone.spriteStorageInfo = shortsCloning;
-        //clone.spriteStorageInfo = getShorts();
         System.arraycopy(this.spriteStorageInfo, 0, clone.spriteStorageInfo, 0, this.spriteStorageInfo.length);
 
         clone.ints = new int[this.ints.length];
-        //clone.ints = intsCloning;
-        //clone.ints = getInts();
         System.arraycopy(this.ints, 0, clone.ints, 0, this.ints.length);
 
         clone.floats = new float[this.floats.length];
-        //clone.floats = floatsCloning;
-        //clone.floats = getFloats();
         System.arraycopy(this.floats, 0, clone.floats, 0, this.floats.length);
 
         return clone;
     }
 
-    // pooling test
-    /*
-    public void returnArrays() {
-        boolsPool.add(bools);
-        bytesPool.add(bytes);
-        shortsPool.add(spriteStorageInfo);
-        intsPool.add(ints);
-        floatsPool.add(floats);
-    }
+    // same five copies as clone, arrays of the target are reused when they have the right length
+    void copyInto(MarioBinData target) {
+        target.staticLevel = this.staticLevel;
 
-    private static ConcurrentLinkedQueue<boolean[]> boolsPool = new ConcurrentLinkedQueue<>();
-    private boolean[] getBools() {
-        boolean[] bools = boolsPool.poll();
-        if (bools != null) return bools;
-        return new boolean[this.bools.length];
-    }
+        if (target.bools == null || target.bools.length != this.bools.length)
+            target.bools = new boolean[this.bools.length];
+        System.arraycopy(this.bools, 0, target.bools, 0, this.bools.length);
 
-    private static ConcurrentLinkedQueue<byte[]> bytesPool = new ConcurrentLinkedQueue<>();
-    private byte[] getBytes() {
-        byte[] bytes = bytesPool.poll();
-        if (bytes != null) return bytes;
-        return new byte[this.bytes.length];
-    }
+        if (target.bytes == null || target.bytes.length != this.bytes.length)
+            target.bytes = new byte[this.bytes.length];
+        System.arraycopy(this.bytes, 0, target.bytes, 0, this.bytes.length);
 
-    private static ConcurrentLinkedQueue<short[]> shortsPool = new ConcurrentLinkedQueue<>();
-    private short[] getShorts() {
-        short[] shorts = shortsPool.poll();
-        if (shorts != null) return shorts;
-        return new short[this.spriteStorageInfo.length];
-    }
+        if (target.spriteStorageInfo == null || target.spriteStorageInfo.length != this.spriteStorageInfo.length)
+            target.spriteStorageInfo = new short[this.spriteStorageInfo.length];
+        System.arraycopy(this.spriteStorageInfo, 0, target.spriteStorageInfo, 0, this.spriteStorageInfo.length);
 
-    private static ConcurrentLinkedQueue<int[]> intsPool = new ConcurrentLinkedQueue<>();
-    private int[] getInts() {
-        int[] ints = intsPool.poll();
-        if (ints != null) return ints;
-        return new int[this.ints.length];
-    }
+        if (target.ints == null || target.ints.length != this.ints.length)
+            target.ints = new int[this.ints.length];
+        System.arraycopy(this.ints, 0, target.ints, 0, this.ints.length);
 
-    private static ConcurrentLinkedQueue<float[]> floatsPool = new ConcurrentLinkedQueue<>();
-    private float[] getFloats() {
-        float[] floats = floatsPool.poll();
-        if (floats != null) return floats;
-        return new float[this.floats.length];
+        if (target.floats == null || target.floats.length != this.floats.length)
+            target.floats = new float[this.floats.length];
+        System.arraycopy(this.floats, 0, target.floats, 0, this.floats.length);
     }
-    */
 
-    // cloning speed test
-    /*
-    private boolean[] boolsCloning;
-    private byte[] bytesCloning;
-    private short[] shortsCloning;
-    private int[] intsCloning;
-    private float[] floatsCloning;
-    */
+    static MarioBinData empty() {
+        return new MarioBinData();
+    }
 }
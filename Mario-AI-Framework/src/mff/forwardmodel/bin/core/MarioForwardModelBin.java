@@ -1,7 +1,13 @@
 package mff.forwardmodel.bin.core;
 
+import mff.forwardmodel.bin.level.MarioLevelBin;
+import mff.forwardmodel.bin.sprites.MarioBin;
+import mff.forwardmodel.common.SpriteTypeCommon;
+
 public class MarioForwardModelBin {
 
+    private static final int SPRITE_TYPE_MASK = 0x0000FFFF;
+
     private final MarioBinData data;
 
     public MarioForwardModelBin(MarioBinData data) {
@@ -16,10 +22,119 @@ public class MarioForwardModelBin {
         return new MarioForwardModelBin(this.data.clone());
     }
 
-    // pooling test
-    /*
-    public void returnArrays() {
-        data.returnArrays();
+    /**
+     * Clone that lives in the arena, valid until the arena is reset.
+     */
+    public MarioForwardModelBin clone(MarioBinArena arena) {
+        return arena.acquire(this.data);
+    }
+
+    MarioBinData getData() {
+        return data;
+    }
+
+    public int getGameStatusCode() {
+        return MarioWorldBin.getGameStatusCode(data);
+    }
+
+    // read-only view, same accessors as MarioForwardModelSlim
+
+    public float getMarioX() {
+        return MarioBin.getX(data);
+    }
+
+    public float getMarioY() {
+        return MarioBin.getY(data);
+    }
+
+    public boolean isMarioAlive() {
+        return MarioBin.getAlive(data);
+    }
+
+    public boolean isMarioOnGround() {
+        return MarioBin.getOnGround(data);
+    }
+
+    public boolean isMarioLarge() {
+        return MarioBin.getIsLarge(data);
+    }
+
+    public boolean isMarioFire() {
+        return MarioBin.getIsFire(data);
+    }
+
+    public float getMarioXVelocity() {
+        return MarioBin.getXa(data);
+    }
+
+    public float getMarioYVelocity() {
+        return MarioBin.getYa(data);
+    }
+
+    public int getMarioJumpTime() {
+        return MarioBin.getJumpTime(data);
+    }
+
+    public int getCurrentTimer() {
+        return MarioWorldBin.getCurrentTimer(data);
+    }
+
+    public int getCurrentTick() {
+        return MarioWorldBin.getCurrentTick(data);
+    }
+
+    public int getCoins() {
+        return MarioWorldBin.getCoins(data);
+    }
+
+    public int getLives() {
+        return MarioWorldBin.getLives(data);
+    }
+
+    public int getLevelTileWidth() {
+        return MarioLevelBin.getTileWidth(data);
+    }
+
+    public int getLevelTileHeight() {
+        return MarioLevelBin.getTileHeight(data);
+    }
+
+    public int getExitTileX() {
+        return MarioLevelBin.getExitTileX(data);
+    }
+
+    /**
+     * Tile value as seen by collision checks, only valid inside the current level cutout.
+     */
+    public byte getBlockValue(int xTile, int yTile) {
+        return MarioLevelBin.getBlockValue(xTile, yTile, data);
+    }
+
+    public boolean isBlocking(int xTile, int yTile, float ya) {
+        return MarioLevelBin.isBlocking(xTile, yTile, ya, data);
+    }
+
+    public int getSpriteCount() {
+        return data.getSpriteCount();
+    }
+
+    public SpriteTypeCommon getSpriteType(int index) {
+        int spriteCode = data.getSpriteCode(index);
+        return BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].GetType(data, spriteCode >>> 16);
+    }
+
+    public float getSpriteX(int index) {
+        int spriteCode = data.getSpriteCode(index);
+        return BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].GetX(data, spriteCode >>> 16);
+    }
+
+    public float getSpriteY(int index) {
+        int spriteCode = data.getSpriteCode(index);
+        return BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].GetY(data, spriteCode >>> 16);
+    }
+
+    public boolean isSpriteAlive(int index) {
+        int spriteCode = data.getSpriteCode(index);
+        return BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].GetAlive(data, spriteCode >>> 16);
     }
-    */
 }
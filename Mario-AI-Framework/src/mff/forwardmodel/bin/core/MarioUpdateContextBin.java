@@ -1,7 +1,7 @@
 package mff.forwardmodel.bin.core;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class MarioUpdateContextBin {
 
@@ -18,15 +18,16 @@ public class MarioUpdateContextBin {
     final ArrayList<Integer> addedSprites = new ArrayList<>();
     final ArrayList<Integer> removedSprites = new ArrayList<>();
 
-    private static final ConcurrentLinkedQueue<MarioUpdateContextBin> pool = new ConcurrentLinkedQueue<>();
+    // contexts are confined to the thread that updates the data, every thread has its own pool
+    private static final ThreadLocal<ArrayDeque<MarioUpdateContextBin>> pool = ThreadLocal.withInitial(ArrayDeque::new);
 
     public static MarioUpdateContextBin get() {
-        MarioUpdateContextBin ctx = pool.poll();
+        MarioUpdateContextBin ctx = pool.get().poll();
         if (ctx != null) return ctx;
         return new MarioUpdateContextBin();
     }
 
     static void back(MarioUpdateContextBin ctx) {
-        pool.add(ctx);
+        pool.get().add(ctx);
     }
 }
@@ -8,13 +8,15 @@ import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.common.LevelPart;
 import mff.forwardmodel.common.TileFeaturesCommon;
 
-import java.util.ArrayList;
-
 public class MarioWorldBin {
-    private static final int RUNNING = 0;
-    private static final int WIN = 1;
-    private static final int LOSE = 2;
-    private static final int TIME_OUT = 3;
+    public static final int RUNNING = 0;
+    public static final int WIN = 1;
+    public static final int LOSE = 2;
+    public static final int TIME_OUT = 3;
+
+    // workaround the nonexistence of MarioGame here
+    private static final int marioGameWidth = 256;
+    private static final int marioGameHeight = 256;
 
     private static final int SPRITE_TYPE_MASK = 0x0000FFFF;
 
@@ -26,7 +28,11 @@ public class MarioWorldBin {
         data.ints[MarioBinData.PAUSE_TIMER] += delta;
     }
 
-    private static int getCurrentTimer(MarioBinData data) {
+    public static void setPauseTimer(MarioBinData data, int value) {
+        data.ints[MarioBinData.PAUSE_TIMER] = value;
+    }
+
+    public static int getCurrentTimer(MarioBinData data) {
         return data.ints[MarioBinData.CURRENT_TIMER];
     }
 
@@ -38,7 +44,7 @@ public class MarioWorldBin {
         data.ints[MarioBinData.CURRENT_TIMER] = value;
     }
 
-    private static int getCurrentTick(MarioBinData data) {
+    public static int getCurrentTick(MarioBinData data) {
         return data.ints[MarioBinData.CURRENT_TICK];
     }
 
@@ -50,23 +56,23 @@ public class MarioWorldBin {
         data.ints[MarioBinData.CURRENT_TICK] = value;
     }
 
-    private static int getCoins(MarioBinData data) {
+    public static int getCoins(MarioBinData data) {
         return data.ints[MarioBinData.COINS];
     }
 
-    private static void setCoins(MarioBinData data, int value) {
+    public static void setCoins(MarioBinData data, int value) {
         data.ints[MarioBinData.COINS] = value;
     }
 
-    private static int getLives(MarioBinData data) {
+    public static int getLives(MarioBinData data) {
         return data.ints[MarioBinData.LIVES];
     }
 
-    private static void setLives(MarioBinData data, int value) {
+    public static void setLives(MarioBinData data, int value) {
         data.ints[MarioBinData.LIVES] = value;
     }
 
-    private static int getGameStatusCode(MarioBinData data) {
+    public static int getGameStatusCode(MarioBinData data) {
         return data.ints[MarioBinData.GAME_STATUS_CODE];
     }
 
@@ -92,8 +98,9 @@ public class MarioWorldBin {
 
     public static void addSprite(int spriteCode, MarioUpdateContextBin updateContext, MarioBinData data) {
         updateContext.addedSprites.add(spriteCode);
-        //sprite.alive = true; //TODO: should be already set in all sprites
-        BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].Update(data, spriteCode >>> 16, updateContext);
+        IBinSpriteMethods spriteMethods = BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK];
+        spriteMethods.SetAlive(data, spriteCode >>> 16, true);
+        spriteMethods.Update(data, spriteCode >>> 16, updateContext);
     }
 
     public static void removeSprite(int spriteCode, MarioUpdateContextBin updateContext, MarioBinData data) {
@@ -135,10 +142,6 @@ public class MarioWorldBin {
 
         MarioUpdateContextBin updateContext = MarioUpdateContextBin.get();
 
-        // workaround the nonexistence of MarioGame here
-        int marioGameWidth = 256;
-        int marioGameHeight = 256;
-
         incCurrentTick(data, 1);
         setCameraX(data, MarioBin.getX(data) - marioGameWidth / 2);
         if (getCameraX(data) + marioGameWidth > MarioLevelBin.getWidth(data)) {
@@ -155,49 +158,58 @@ public class MarioWorldBin {
             setCameraY(data, 0);
         }
 
-        updateContext.fireballsOnScreen = 0;
+        float cameraX = getCameraX(data);
+        float cameraY = getCameraY(data);
+        int spriteCount = data.getSpriteCount();
 
-        //TODO instead of "1" there should be some SPRITES_START constant
-        for (int i = 1; i < data.sprites[MarioBinData.SPRITES_FIRST_FREE_INDEX]; i++) {
-            int spriteCode = data.sprites[i];
+        updateContext.fireballsOnScreen = 0;
+        for (int i = 0; i < spriteCount; i++) {
+            int spriteCode = data.getSpriteCode(i);
             int spriteType = spriteCode & SPRITE_TYPE_MASK;
             int entityIndex = spriteCode >>> 16;
+            IBinSpriteMethods spriteMethods = BinSpriteMethods.methods[spriteType];
 
-            if (BinSpriteMethods.methods[spriteType].GetX(data, entityIndex) < getCameraX(data) - 64 ||
-                BinSpriteMethods.methods[spriteType].GetX(data, entityIndex) > getCameraX(data) + marioGameWidth + 64 ||
-                BinSpriteMethods.methods[spriteType].GetY(data, entityIndex) > MarioLevelBin.getHeight(data) + 32) {
-                if (BinSpriteMethods.methods[spriteType].GetType(data, entityIndex) == SpriteTypeCommon.MARIO) {
+            float x = spriteMethods.GetX(data, entityIndex);
+            if (x < cameraX - 64 || x > cameraX + marioGameWidth + 64 ||
+                spriteMethods.GetY(data, entityIndex) > MarioLevelBin.getHeight(data) + 32) {
+                if (spriteType == SpriteTypeCommon.MARIO.getValue()) {
                     lose(data);
                 }
-                removeSprite(data.sprites[i], updateContext, data);
+                removeSprite(spriteCode, updateContext, data);
                 continue;
             }
-            if (BinSpriteMethods.methods[spriteType].GetType(data, entityIndex) == SpriteTypeCommon.FIREBALL) {
-                updateContext.fireballsOnScreen +=1;
+            if (spriteType == SpriteTypeCommon.FIREBALL.getValue()) {
+                updateContext.fireballsOnScreen += 1;
             }
         }
 
-        for (int x = (int) getCameraX(data) / 16 - 1; x <= (int) (getCameraX(data) + marioGameWidth) / 16 + 1; x++) {
-            for (int y = (int) getCameraY(data) / 16 - 1; y <= (int) (getCameraY(data) + marioGameHeight) / 16 + 1; y++) {
-                int dir = 0;
-                if (x * 16 + 8 > MarioBin.getX(data) + 16)
-                    dir = -1;
-                if (x * 16 + 8 < MarioBin.getX(data) - 16)
-                    dir = 1;
-
-                SpriteTypeCommon spriteType = MarioLevelBin.getSpriteType(x, y, data);
-                if (spriteType != SpriteTypeCommon.NONE) {
-                    int newSpriteCode;
-                    if (spriteType == SpriteTypeCommon.ENEMY_FLOWER) {
-                        newSpriteCode = data.addFlowerEnemy(x * 16 + 17, y * 16 + 17, true, 0, y * 16 + 18, -1);
-                    }
-                    else {
-                        newSpriteCode = spawnEnemy(x * 16 + 8, y * 16 + 15, spriteType, dir, data);
-                    }
-                    addSprite(newSpriteCode, updateContext, data);
-                    MarioLevelBin.setBlock(x, y, 0, data); // remove sprite when it is spawned
-                }
+        // sprites spawning, sufficient to check right column
+        int rightColumnX = (int) (cameraX + marioGameWidth) / 16 + 1;
+
+        int dir = 0;
+        if (rightColumnX * 16 + 8 > MarioBin.getX(data) + 16)
+            dir = -1;
+        if (rightColumnX * 16 + 8 < MarioBin.getX(data) - 16)
+            dir = 1;
+
+        for (int y = (int) cameraY / 16 - 1; y <= (int) (cameraY + marioGameHeight) / 16 + 1; y++) {
+            SpriteTypeCommon spriteType = MarioLevelBin.getSpriteType(rightColumnX, y, data);
+            if (spriteType != SpriteTypeCommon.NONE) {
+                int newSpriteCode = spawnEnemy(spriteType, rightColumnX, y, dir, updateContext, data);
+                addSprite(newSpriteCode, updateContext, data);
+                MarioLevelBin.setBlock(rightColumnX, y, 0, data); // remove sprite when it is spawned
+            }
+        }
 
+        // Bullet Bills spawning, check for cannons
+        for (int x = (int) cameraX / 16 - 1; x <= (int) (cameraX + marioGameWidth) / 16 + 1; x++) {
+            dir = 0;
+            if (x * 16 + 8 > MarioBin.getX(data) + 16)
+                dir = -1;
+            if (x * 16 + 8 < MarioBin.getX(data) - 16)
+                dir = 1;
+
+            for (int y = (int) cameraY / 16 - 1; y <= (int) (cameraY + marioGameHeight) / 16 + 1; y++) {
                 if (dir != 0) {
                     if (MarioLevelBin.getBlockValue(x, y, data) == LevelPart.BULLET_BILL_CANNON.getValue()) {
                         if (getCurrentTick(data) % 100 == 0) {
@@ -212,86 +224,49 @@ public class MarioWorldBin {
         updateContext.actions = actions;
 
         // update
-        for (int i = 1; i < data.sprites[MarioBinData.SPRITES_FIRST_FREE_INDEX]; i++) {
-            int typeCode = data.sprites[i] & SPRITE_TYPE_MASK;
-            int entityIndex = data.sprites[i] >>> 16;
-
-            if (!BinSpriteMethods.methods[typeCode].GetAlive(data, entityIndex)) {
+        for (int i = 0; i < spriteCount; i++) {
+            int spriteCode = data.getSpriteCode(i);
+            IBinSpriteMethods spriteMethods = BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK];
+            if (!spriteMethods.GetAlive(data, spriteCode >>> 16)) {
                 continue;
             }
-
-            BinSpriteMethods.methods[typeCode].Update(data, entityIndex, updateContext);
+            spriteMethods.Update(data, spriteCode >>> 16, updateContext);
         }
 
         // collide check
-        for (int i = 1; i < data.sprites[MarioBinData.SPRITES_FIRST_FREE_INDEX]; i++) {
-            int typeCode = data.sprites[i] & SPRITE_TYPE_MASK;
-            int entityIndex = data.sprites[i] >>> 16;
-
-            if (!BinSpriteMethods.methods[typeCode].GetAlive(data, entityIndex)) {
+        for (int i = 0; i < spriteCount; i++) {
+            int spriteCode = data.getSpriteCode(i);
+            IBinSpriteMethods spriteMethods = BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK];
+            if (!spriteMethods.GetAlive(data, spriteCode >>> 16)) {
                 continue;
             }
-
-            BinSpriteMethods.methods[typeCode].CollideCheck(data, entityIndex, updateContext);
+            spriteMethods.CollideCheck(data, spriteCode >>> 16, updateContext);
         }
 
-        // shell collide check
-        for (int shellEntityIndex : updateContext.shellsToCheck) {
-            for (int i = 1; i < data.sprites[MarioBinData.SPRITES_FIRST_FREE_INDEX]; i++) {
-
-                int shellSpriteCode = (shellEntityIndex << 16) | SpriteTypeCommon.SHELL.getValue();
-                int spriteTypeCode = data.sprites[i] & SPRITE_TYPE_MASK;
-                int spriteEntityIndex = data.sprites[i] >>> 16;
-
-                if (data.sprites[i] != shellSpriteCode &&
-                    ShellBin.getAlive(data, shellEntityIndex) &&
-                    BinSpriteMethods.methods[spriteTypeCode].GetAlive(data, spriteEntityIndex)) {
-                        if (BinSpriteMethods.methods[spriteTypeCode].ShellCollideCheck(shellEntityIndex,
-                            data, spriteEntityIndex, updateContext)) {
-                                removeSprite(data.sprites[i], updateContext, data);
-                    }
-                }
-            }
-        }
-        updateContext.shellsToCheck.clear();
-
-        // fireball collide check
-        for (int fireballEntityIndex : updateContext.fireballsToCheck) {
-            for (int i = 1; i < data.sprites[MarioBinData.SPRITES_FIRST_FREE_INDEX]; i++) {
-
-                int fireballSpriteCode = (fireballEntityIndex << 16) | SpriteTypeCommon.FIREBALL.getValue();
-                int spriteTypeCode = data.sprites[i] & SPRITE_TYPE_MASK;
-                int spriteEntityIndex = data.sprites[i] >>> 16;
-
-                if (data.sprites[i] != fireballSpriteCode &&
-                    FireballBin.getAlive(data, fireballEntityIndex) &&
-                    BinSpriteMethods.methods[spriteTypeCode].GetAlive(data, spriteEntityIndex)) {
-                        if (BinSpriteMethods.methods[spriteTypeCode].FireballCollideCheck(fireballEntityIndex,
-                            data, spriteEntityIndex, updateContext))
-                                removeSprite(fireballSpriteCode, updateContext, data);
-                }
-            }
-        }
-        updateContext.fireballsToCheck.clear();
+        if (updateContext.shellsToCheck.size() != 0 || updateContext.fireballsToCheck.size() != 0)
+            checkShellAndFireballCollisions(spriteCount, updateContext, data);
 
         MarioLevelBin.update((int) MarioBin.getX(data) / 16, data);
 
-        for (int spriteCode : updateContext.addedSprites) {
-            data.addSpriteCode(spriteCode);
-        }
-
-        for (int spriteCode : updateContext.removedSprites) {
-            BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].Remove(spriteCode >>> 16, data);
-        }
-        updateContext.addedSprites.clear();
-        updateContext.removedSprites.clear();
+        applySpriteChanges(updateContext, data);
 
         updateContext.actions = null;
         updateContext.fireballsOnScreen = 0;
         MarioUpdateContextBin.back(updateContext);
     }
 
-    private static int spawnEnemy(float x, float y, SpriteTypeCommon enemyType, int dir, MarioBinData data) {
+    private static int spawnEnemy(SpriteTypeCommon enemyType, int x, int y, int dir,
+                                  MarioUpdateContextBin updateContext, MarioBinData data) {
+        if (enemyType == SpriteTypeCommon.ENEMY_FLOWER) {
+            // flower enemy starts one pixel up and moves before it is added, like the slim constructor
+            int flowerEnemyCode = data.addFlowerEnemy(x * 16 + 17, y * 16 + 18 - 1, true, 0, y * 16 + 18, -1);
+            for (int i = 0; i < 4; i++) {
+                BinSpriteMethods.methods[SpriteTypeCommon.ENEMY_FLOWER.getValue()]
+                        .Update(data, flowerEnemyCode >>> 16, updateContext);
+            }
+            return flowerEnemyCode;
+        }
+
         int facing = dir == 0 ? 1 : dir;
         int height = 24;
         if (enemyType != SpriteTypeCommon.RED_KOOPA && enemyType != SpriteTypeCommon.GREEN_KOOPA
@@ -300,35 +275,83 @@ public class MarioWorldBin {
         boolean avoidCliffs = enemyType == SpriteTypeCommon.RED_KOOPA || enemyType == SpriteTypeCommon.RED_KOOPA_WINGED;
         boolean winged = enemyType.getValue() % 2 == 1;
         boolean noFireballDeath = enemyType == SpriteTypeCommon.SPIKY || enemyType == SpriteTypeCommon.SPIKY_WINGED;
-        return data.addEnemy(x, y, true, enemyType.getValue(), 0, 0, facing,
+        return data.addEnemy(x * 16 + 8, y * 16 + 15, false, enemyType.getValue(), 0, 0, facing,
                 height, false, avoidCliffs, winged, noFireballDeath);
     }
 
+    private static void checkShellAndFireballCollisions(int spriteCount, MarioUpdateContextBin updateContext, MarioBinData data) {
+        for (int shellEntityIndex : updateContext.shellsToCheck) {
+            int shellSpriteCode = (shellEntityIndex << 16) | SpriteTypeCommon.SHELL.getValue();
+            for (int i = 0; i < spriteCount; i++) {
+                int spriteCode = data.getSpriteCode(i);
+                IBinSpriteMethods spriteMethods = BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK];
+                if (spriteCode != shellSpriteCode && ShellBin.getAlive(data, shellEntityIndex) &&
+                    spriteMethods.GetAlive(data, spriteCode >>> 16)) {
+                    if (spriteMethods.ShellCollideCheck(shellEntityIndex, data, spriteCode >>> 16, updateContext))
+                        removeSprite(spriteCode, updateContext, data);
+                }
+            }
+        }
+        for (int fireballEntityIndex : updateContext.fireballsToCheck) {
+            int fireballSpriteCode = (fireballEntityIndex << 16) | SpriteTypeCommon.FIREBALL.getValue();
+            for (int i = 0; i < spriteCount; i++) {
+                int spriteCode = data.getSpriteCode(i);
+                IBinSpriteMethods spriteMethods = BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK];
+                if (spriteCode != fireballSpriteCode && FireballBin.getAlive(data, fireballEntityIndex) &&
+                    spriteMethods.GetAlive(data, spriteCode >>> 16)) {
+                    if (spriteMethods.FireballCollideCheck(fireballEntityIndex, data, spriteCode >>> 16, updateContext))
+                        removeSprite(fireballSpriteCode, updateContext, data);
+                }
+            }
+        }
+        updateContext.shellsToCheck.clear();
+        updateContext.fireballsToCheck.clear();
+    }
+
+    private static void applySpriteChanges(MarioUpdateContextBin updateContext, MarioBinData data) {
+        for (int spriteCode : updateContext.addedSprites) {
+            data.addSpriteCode(spriteCode);
+        }
+
+        if (updateContext.removedSprites.size() != 0) {
+            // slots are freed first, then a single compacting pass keeps the order of the rest
+            for (int spriteCode : updateContext.removedSprites) {
+                BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].Remove(spriteCode >>> 16, data);
+            }
+            data.removeFreedSpriteCodes();
+        }
+
+        if (updateContext.addedSprites.size() != 0)
+            updateContext.addedSprites.clear();
+        if (updateContext.removedSprites.size() != 0)
+            updateContext.removedSprites.clear();
+    }
+
     public static void bump(int xTile, int yTile, boolean canBreakBricks, MarioUpdateContextBin updateContext, MarioBinData data) {
         byte blockValue = MarioLevelBin.getBlockValue(xTile, yTile, data);
-        ArrayList<TileFeaturesCommon> features = TileFeaturesCommon.getTileFeatures(blockValue);
+        int features = TileFeaturesCommon.getTileFeatureMask(blockValue);
 
-        if (features.contains(TileFeaturesCommon.BUMPABLE)) {
+        if ((features & TileFeaturesCommon.BUMPABLE_MASK) != 0) {
             bumpInto(xTile, yTile - 1, updateContext, data);
             MarioLevelBin.setBlock(xTile, yTile, 14, data);
 
-            if (features.contains(TileFeaturesCommon.SPECIAL)) {
+            if ((features & TileFeaturesCommon.SPECIAL_MASK) != 0) {
                 if (!MarioBin.getIsLarge(data)) {
-                    addSprite(data.addMushroom(xTile * 16 + 9, yTile * 16 + 8, true, 1, 0,
+                    addSprite(data.addMushroom(xTile * 16 + 9, yTile * 16 + 8, false, 1, 0,
                             false, 0, 0), updateContext, data);
                 } else {
-                    addSprite(data.addFireFlower(xTile * 16 + 9, yTile * 16 + 8, true, 0),
+                    addSprite(data.addFireFlower(xTile * 16 + 9, yTile * 16 + 8, false, 0),
                             updateContext, data);
                 }
-            } else if (features.contains(TileFeaturesCommon.LIFE)) {
-                addSprite(data.addLifeMushroom(xTile * 16 + 9, yTile * 16 + 8, true, 1, 0,
+            } else if ((features & TileFeaturesCommon.LIFE_MASK) != 0) {
+                addSprite(data.addLifeMushroom(xTile * 16 + 9, yTile * 16 + 8, false, 1, 0,
                         false, 0, 0), updateContext, data);
             } else {
-                MarioBin.collectCoin(data, updateContext);
+                MarioBin.collectCoin(data);
             }
         }
 
-        if (features.contains(TileFeaturesCommon.BREAKABLE)) {
+        if ((features & TileFeaturesCommon.BREAKABLE_MASK) != 0) {
             bumpInto(xTile, yTile - 1, updateContext, data);
             if (canBreakBricks)
                 MarioLevelBin.setBlock(xTile, yTile, 0, data);
@@ -338,16 +361,15 @@ public class MarioWorldBin {
     private static void bumpInto(int xTile, int yTile, MarioUpdateContextBin updateContext, MarioBinData data) {
         byte blockValue = MarioLevelBin.getBlockValue(xTile, yTile, data);
         if (blockValue == LevelPart.COIN.getValue()) {
-            MarioBin.collectCoin(data, updateContext);
+            MarioBin.collectCoin(data);
             MarioLevelBin.setBlock(xTile, yTile, 0, data);
         }
 
         // bump check
-        for (int i = 1; i < data.sprites[MarioBinData.SPRITES_FIRST_FREE_INDEX] ; i++) {
-            int typeCode = data.sprites[i] & SPRITE_TYPE_MASK;
-            int entityIndex = data.sprites[i] >>> 16;
-
-            BinSpriteMethods.methods[typeCode].BumpCheck(xTile, yTile, data, entityIndex, updateContext);
+        int spriteCount = data.getSpriteCount();
+        for (int i = 0; i < spriteCount; i++) {
+            int spriteCode = data.getSpriteCode(i);
+            BinSpriteMethods.methods[spriteCode & SPRITE_TYPE_MASK].BumpCheck(xTile, yTile, data, spriteCode >>> 16, updateContext);
         }
     }
 }
@@ -3,53 +3,31 @@ package mff.forwardmodel.bin.level;
 import mff.forwardmodel.bin.core.MarioBinData;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.common.LevelPart;
+import mff.forwardmodel.common.StaticLevel;
 import mff.forwardmodel.common.TileFeaturesCommon;
 
-import java.util.ArrayList;
-
 public class MarioLevelBin {
-    public static int cutoutTileWidth;
-// TODO: some methods might not be needed
+
     public static int getWidth(MarioBinData data) {
         return data.ints[MarioBinData.WIDTH];
     }
 
-    private static void setWidth(MarioBinData data, int value) {
-        data.ints[MarioBinData.WIDTH] = value;
-    }
-
-    private static int getTileWidth(MarioBinData data) {
+    public static int getTileWidth(MarioBinData data) {
         return data.ints[MarioBinData.TILE_WIDTH];
     }
 
-    private static void setTileWidth(MarioBinData data, int value) {
-        data.ints[MarioBinData.TILE_WIDTH] = value;
-    }
-
     public static int getHeight(MarioBinData data) {
         return data.ints[MarioBinData.HEIGHT];
     }
 
-    private static void setHeight(MarioBinData data, int value) {
-        data.ints[MarioBinData.HEIGHT] = value;
-    }
-
-    private static int getTileHeight(MarioBinData data) {
+    public static int getTileHeight(MarioBinData data) {
         return data.ints[MarioBinData.TILE_HEIGHT];
     }
 
-    private static void setTileHeight(MarioBinData data, int value) {
-        data.ints[MarioBinData.TILE_HEIGHT] = value;
-    }
-
-    private static int getExitTileX(MarioBinData data) {
+    public static int getExitTileX(MarioBinData data) {
         return data.ints[MarioBinData.EXIT_TILE_X];
     }
 
-    private static void setExitTileX(MarioBinData data, int value) {
-        data.ints[MarioBinData.EXIT_TILE_X] = value;
-    }
-
     private static int getCurrentCutoutCenter(MarioBinData data) {
         return data.ints[MarioBinData.CURRENT_CUTOUT_CENTER];
     }
@@ -78,6 +56,10 @@ public class MarioLevelBin {
         data.ints[MarioBinData.CUTOUT_LEFT_BORDER_X] += delta;
     }
 
+    private static int getCutoutTileWidth(MarioBinData data) {
+        return data.ints[MarioBinData.CUTOUT_TILE_WIDTH];
+    }
+
     private static boolean getAliveFlag(MarioBinData data, int index) {
         return data.bools[index];
     }
@@ -95,19 +77,13 @@ public class MarioLevelBin {
     }
 
     public static void update(int marioTileX, MarioBinData data) {
+        int cutoutTileWidth = getCutoutTileWidth(data);
         if (getCurrentCutoutCenter(data) != marioTileX) {
             if (getCurrentCutoutCenter(data) < marioTileX && getCutoutLeftBorderX(data) + cutoutTileWidth != getTileWidth(data)) { // move right
                 int newColumnIndex = cutoutTileWidth % 2 == 0 ? marioTileX + cutoutTileWidth / 2 - 1 : marioTileX + cutoutTileWidth / 2;
                 if (newColumnIndex >= getTileWidth(data)) // beyond end of level
                     return;
-                int y = 0;
-                for (int i = getCutoutArrayBeginningIndex(data); i < getCutoutArrayBeginningIndex(data) + getTileHeight(data); i++) {
-                    if (data.staticLevel.tiles[newColumnIndex][y].id == -1 || getAliveFlag(data, data.staticLevel.tiles[newColumnIndex][y].id))
-                        setLevelCutout(data, i, data.staticLevel.tiles[newColumnIndex][y].levelPart.getValue());
-                    else
-                        setLevelCutout(data, i, LevelPart.getUsedState(data.staticLevel.tiles[newColumnIndex][y].levelPart).getValue());
-                    y++;
-                }
+                copyColumn(newColumnIndex, getCutoutArrayBeginningIndex(data), data);
                 incCurrentCutoutCenter(data, 1);
                 incCutoutLeftBorderX(data, 1);
                 setCutoutArrayBeginningIndex(data, (getCutoutArrayBeginningIndex(data) + getTileHeight(data)) % (cutoutTileWidth * getTileHeight(data)));
@@ -119,15 +95,7 @@ public class MarioLevelBin {
                 if (cutoutLastColumnIndex < 0)
                     cutoutLastColumnIndex = (cutoutTileWidth * getTileHeight(data)) - getTileHeight(data);
                 int newColumnIndex = marioTileX - cutoutTileWidth / 2;
-                int y = 0;
-                for (int i = cutoutLastColumnIndex; i < cutoutLastColumnIndex + getTileHeight(data); i++) {
-                    if (data.staticLevel.tiles[newColumnIndex][y].id == -1
-                            || getAliveFlag(data, data.staticLevel.tiles[newColumnIndex][y].id))
-                        setLevelCutout(data, i, data.staticLevel.tiles[newColumnIndex][y].levelPart.getValue());
-                    else
-                        setLevelCutout(data, i, LevelPart.getUsedState(data.staticLevel.tiles[newColumnIndex][y].levelPart).getValue());
-                    y++;
-                }
+                copyColumn(newColumnIndex, cutoutLastColumnIndex, data);
                 incCurrentCutoutCenter(data, -1);
                 incCutoutLeftBorderX(data, -1);
                 incCutoutArrayBeginningIndex(data, -getTileHeight(data));
@@ -137,12 +105,41 @@ public class MarioLevelBin {
         }
     }
 
-    public boolean isBlocking(int xTile, int yTile, float ya, MarioBinData data) {
+    // static level column followed by the used state of every dynamic tile that is no longer alive
+    private static void copyColumn(int columnX, int cutoutIndex, MarioBinData data) {
+        StaticLevel staticLevel = data.staticLevel;
+        int tileHeight = getTileHeight(data);
+        System.arraycopy(staticLevel.values, columnX * tileHeight, data.bytes, cutoutIndex, tileHeight);
+        if (!staticLevel.hasDynamicTiles(columnX))
+            return;
+        for (int y = 0; y < tileHeight; y++) {
+            if (staticLevel.isDynamic(columnX, y)) {
+                StaticLevel.LevelTile tile = staticLevel.tiles[columnX][y];
+                if (!getAliveFlag(data, tile.id))
+                    setLevelCutout(data, cutoutIndex + y, LevelPart.getUsedState(tile.levelPart).getValue());
+            }
+        }
+    }
+
+    public static boolean isBlocking(int xTile, int yTile, float ya, MarioBinData data) {
+        if (xTile < 0) {
+            xTile = 0;
+        }
+        if (xTile > getTileWidth(data) - 1) {
+            xTile = getTileWidth(data) - 1;
+        }
+        if (yTile < 0 || yTile > getTileHeight(data) - 1) {
+            return false;
+        }
+        // only tiles that can change go through the cutout
+        if (!data.staticLevel.isDynamic(xTile, yTile))
+            return data.staticLevel.isBlocking(xTile, yTile, ya);
+
         byte blockValue = getBlockValue(xTile, yTile, data);
-        ArrayList<TileFeaturesCommon> features = TileFeaturesCommon.getTileFeatures(blockValue);
-        boolean blocking = features.contains(TileFeaturesCommon.BLOCK_ALL);
-        blocking |= (ya < 0) && features.contains(TileFeaturesCommon.BLOCK_UPPER);
-        blocking |= (ya > 0) && features.contains(TileFeaturesCommon.BLOCK_LOWER);
+        int features = TileFeaturesCommon.getTileFeatureMask(blockValue);
+        boolean blocking = (features & TileFeaturesCommon.BLOCK_ALL_MASK) != 0;
+        blocking |= (ya < 0) && (features & TileFeaturesCommon.BLOCK_UPPER_MASK) != 0;
+        blocking |= (ya > 0) && (features & TileFeaturesCommon.BLOCK_LOWER_MASK) != 0;
 
         return blocking;
     }
@@ -168,26 +165,25 @@ public class MarioLevelBin {
             return;
         }
 
-        if (getLevelCutout(data, calculateCutoutIndex(xTile, yTile, data)) == LevelPart.PIPE_TOP_LEFT_WITH_FLOWER.getValue()) {
-            setLevelCutout(data, calculateCutoutIndex(xTile, yTile, data), LevelPart.PIPE_TOP_LEFT_WITHOUT_FLOWER.getValue());
-            setAliveFlagToFalse(data, data.staticLevel.tiles[xTile][yTile].id);
+        int cutoutIndex = calculateCutoutIndex(xTile, yTile, data);
+        if (getLevelCutout(data, cutoutIndex) == LevelPart.PIPE_TOP_LEFT_WITH_FLOWER.getValue()) {
+            setLevelCutout(data, cutoutIndex, LevelPart.PIPE_TOP_LEFT_WITHOUT_FLOWER.getValue());
         }
         else {
-            setLevelCutout(data, calculateCutoutIndex(xTile, yTile, data), (byte) index);
-            setAliveFlagToFalse(data, data.staticLevel.tiles[xTile][yTile].id);
+            setLevelCutout(data, cutoutIndex, (byte) index);
         }
+        setAliveFlagToFalse(data, data.staticLevel.tiles[xTile][yTile].id);
     }
 
     public static SpriteTypeCommon getSpriteType(int xTile, int yTile, MarioBinData data) {
         if (xTile < 0 || yTile < 0 || xTile > getTileWidth(data) - 1 || yTile > getTileHeight(data) - 1) {
             return SpriteTypeCommon.NONE;
-
         }
         return LevelPart.getLevelSprite(getLevelCutout(data, calculateCutoutIndex(xTile, yTile, data)));
     }
 
     private static int calculateCutoutIndex(int x, int y, MarioBinData data) {
         int cutoutX = x - getCutoutLeftBorderX(data);
-        return (getCutoutArrayBeginningIndex(data) + cutoutX * getTileHeight(data) + y) % (cutoutTileWidth * getTileHeight(data));
+        return (getCutoutArrayBeginningIndex(data) + cutoutX * getTileHeight(data) + y) % (getCutoutTileWidth(data) * getTileHeight(data));
     }
 }
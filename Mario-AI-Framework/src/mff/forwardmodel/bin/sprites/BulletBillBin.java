@@ -1,13 +1,13 @@
 package mff.forwardmodel.bin.sprites;
 
-//TODO: there is a bullet bill spawner - needs attention
-
 import mff.forwardmodel.bin.core.IBinSpriteMethods;
 import mff.forwardmodel.bin.core.MarioBinData;
 import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
 import mff.forwardmodel.common.SpriteTypeCommon;
 
 public class BulletBillBin {
+    static final int height = 12;
 
     private static float getX(MarioBinData data, int entityIndex) {
         return data.floats[data.spriteStorageInfo[MarioBinData.FLOATS_BULLET_BILL_START]
@@ -20,12 +20,86 @@ public class BulletBillBin {
                 = value;
     }
 
+    private static float getY(MarioBinData data, int entityIndex) {
+        return data.floats[data.spriteStorageInfo[MarioBinData.FLOATS_BULLET_BILL_START]
+                + entityIndex * MarioBinData.BULLET_BILL_FLOATS + MarioBinData.BULLET_BILL_Y];
+    }
+
+    private static void setY(MarioBinData data, int entityIndex, float value) {
+        data.floats[data.spriteStorageInfo[MarioBinData.FLOATS_BULLET_BILL_START]
+                + entityIndex * MarioBinData.BULLET_BILL_FLOATS + MarioBinData.BULLET_BILL_Y]
+                = value;
+    }
+
+    private static int getFacing(MarioBinData data, int entityIndex) {
+        return data.ints[data.spriteStorageInfo[MarioBinData.INTS_BULLET_BILL_START]
+                + entityIndex * MarioBinData.BULLET_BILL_INTS + MarioBinData.BULLET_BILL_FACING];
+    }
+
+    private static boolean getAlive(MarioBinData data, int entityIndex) {
+        return data.bools[data.spriteStorageInfo[MarioBinData.BOOLS_BULLET_BILL_START]
+                + entityIndex * MarioBinData.BULLET_BILL_BOOLS + MarioBinData.BULLET_BILL_ALIVE];
+    }
+
+    private static void setAlive(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[data.spriteStorageInfo[MarioBinData.BOOLS_BULLET_BILL_START]
+                + entityIndex * MarioBinData.BULLET_BILL_BOOLS + MarioBinData.BULLET_BILL_ALIVE]
+                = value;
+    }
+
+    private static int spriteCode(int entityIndex) {
+        return (entityIndex << 16) | SpriteTypeCommon.BULLET_BILL.getValue();
+    }
+
     private static void update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
-        // TODO
+        if (!getAlive(data, entityIndex)) return;
+        setX(data, entityIndex, getX(data, entityIndex) + getFacing(data, entityIndex) * 4f);
     }
 
     private static void collideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
-        // TODO
+        if (!getAlive(data, entityIndex)) return;
+
+        float y = getY(data, entityIndex);
+        float xMarioD = MarioBin.getX(data) - getX(data, entityIndex);
+        float yMarioD = MarioBin.getY(data) - y;
+        if (xMarioD > -16 && xMarioD < 16) {
+            if (yMarioD > -height && yMarioD < MarioBin.getHeight(data)) {
+                if (MarioBin.getYa(data) > 0 && yMarioD <= 0 && (!MarioBin.getOnGround(data) || !MarioBin.getWasOnGround(data))) {
+                    MarioBin.stomp(data, y - height / 2, updateContext);
+                    MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+                } else {
+                    MarioBin.getHurt(data);
+                }
+            }
+        }
+    }
+
+    private static boolean fireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex) {
+        if (!getAlive(data, entityIndex)) return false;
+
+        float xD = FireballBin.getX(data, fireballEntityIndex) - getX(data, entityIndex);
+        float yD = FireballBin.getY(data, fireballEntityIndex) - getY(data, entityIndex);
+
+        if (xD > -16 && xD < 16)
+            return yD > -height && yD < FireballBin.height;
+        else
+            return false;
+    }
+
+    private static boolean shellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex,
+                                             MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) return false;
+
+        float xD = ShellBin.getX(data, shellEntityIndex) - getX(data, entityIndex);
+        float yD = ShellBin.getY(data, shellEntityIndex) - getY(data, entityIndex);
+
+        if (xD > -16 && xD < 16) {
+            if (yD > -height && yD < ShellBin.height) {
+                MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+                return true;
+            }
+        }
+        return false;
     }
 
 	public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
@@ -42,30 +116,27 @@ public class BulletBillBin {
 
         @Override
         public final float GetY(MarioBinData data, int entityIndex) {
-            // TODO
-            return 0;
+            return getY(data, entityIndex);
         }
 
         @Override
         public final void SetY(MarioBinData data, int entityIndex, float value) {
-            // TODO
+            setY(data, entityIndex, value);
         }
 
         @Override
         public final boolean GetAlive(MarioBinData data, int entityIndex) {
-            // TODO
-            return false;
+            return getAlive(data, entityIndex);
         }
 
         @Override
         public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
-            // TODO
+            setAlive(data, entityIndex, value);
         }
 
         @Override
         public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
-            // TODO
-            return null;
+            return SpriteTypeCommon.BULLET_BILL;
         }
 
         @Override
@@ -80,19 +151,16 @@ public class BulletBillBin {
 
         @Override
         public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
-            // TODO
         }
 
         @Override
         public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
-            // TODO
-            return false;
+            return shellCollideCheck(shellEntityIndex, data, entityIndex, updateContext);
         }
 
         @Override
         public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
-            // TODO
-            return false;
+            return fireballCollideCheck(fireballEntityIndex, data, entityIndex);
         }
 
         @Override
@@ -101,19 +169,4 @@ public class BulletBillBin {
         }
 
     };
-
-    /*
-	public static int getFacing(MarioBinData data, int entityIndex) {
-    	return data[entityIndex * 4];
-    }
-    
-    public static int setFacing(MarioBinData data, int entityIndex, int value) {
-    	data.floats[entityIndex * 4] = value;
-    }
-    
-    public static int incFacing(MarioBinData data, int entityIndex, int delta) {
-    	data.floats[entityIndex * 4] += delta;
-    }
-    */
-	
 }
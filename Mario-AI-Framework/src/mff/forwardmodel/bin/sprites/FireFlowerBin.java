@@ -0,0 +1,147 @@
+package mff.forwardmodel.bin.sprites;
+
+import mff.forwardmodel.bin.core.IBinSpriteMethods;
+import mff.forwardmodel.bin.core.MarioBinData;
+import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
+import mff.forwardmodel.common.SpriteTypeCommon;
+
+public class FireFlowerBin {
+    private static final int height = 12;
+
+    private static int boolIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.BOOLS_FIRE_FLOWER_START] + entityIndex * MarioBinData.FIRE_FLOWER_BOOLS + field;
+    }
+
+    private static int intIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.INTS_FIRE_FLOWER_START] + entityIndex * MarioBinData.FIRE_FLOWER_INTS + field;
+    }
+
+    private static int floatIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.FLOATS_FIRE_FLOWER_START] + entityIndex * MarioBinData.FIRE_FLOWER_FLOATS + field;
+    }
+
+    private static float getX(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_X)];
+    }
+
+    private static void setX(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_X)] = value;
+    }
+
+    private static float getY(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_Y)];
+    }
+
+    private static void setY(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_Y)] = value;
+    }
+
+    private static int getLife(MarioBinData data, int entityIndex) {
+        return data.ints[intIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_LIFE)];
+    }
+
+    private static void setLife(MarioBinData data, int entityIndex, int value) {
+        data.ints[intIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_LIFE)] = value;
+    }
+
+    private static boolean getAlive(MarioBinData data, int entityIndex) {
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_ALIVE)];
+    }
+
+    private static void setAlive(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.FIRE_FLOWER_ALIVE)] = value;
+    }
+
+    private static void collideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float xMarioD = MarioBin.getX(data) - getX(data, entityIndex);
+        float yMarioD = MarioBin.getY(data) - getY(data, entityIndex);
+        if (xMarioD > -16 && xMarioD < 16) {
+            if (yMarioD > -height && yMarioD < MarioBin.getHeight(data)) {
+                MarioBin.getFlower(data);
+                MarioWorldBin.removeSprite((entityIndex << 16) | SpriteTypeCommon.FIRE_FLOWER.getValue(), updateContext, data);
+            }
+        }
+    }
+
+    private static void update(MarioBinData data, int entityIndex) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        setLife(data, entityIndex, getLife(data, entityIndex) + 1);
+        if (getLife(data, entityIndex) < 9) {
+            setY(data, entityIndex, getY(data, entityIndex) - 1);
+        }
+    }
+
+    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
+        @Override
+        public final float GetX(MarioBinData data, int entityIndex) {
+            return getX(data, entityIndex);
+        }
+
+        @Override
+        public final void SetX(MarioBinData data, int entityIndex, float value) {
+            setX(data, entityIndex, value);
+        }
+
+        @Override
+        public final float GetY(MarioBinData data, int entityIndex) {
+            return getY(data, entityIndex);
+        }
+
+        @Override
+        public final void SetY(MarioBinData data, int entityIndex, float value) {
+            setY(data, entityIndex, value);
+        }
+
+        @Override
+        public final boolean GetAlive(MarioBinData data, int entityIndex) {
+            return getAlive(data, entityIndex);
+        }
+
+        @Override
+        public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+            setAlive(data, entityIndex, value);
+        }
+
+        @Override
+        public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
+            return SpriteTypeCommon.FIRE_FLOWER;
+        }
+
+        @Override
+        public final void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            update(data, entityIndex);
+        }
+
+        @Override
+        public final void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            collideCheck(data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        }
+
+        @Override
+        public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return false;
+        }
+
+        @Override
+        public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return false;
+        }
+
+        @Override
+        public final void Remove(int entityIndex, MarioBinData data) {
+            data.removeFireFlower(entityIndex);
+        }
+    };
+}
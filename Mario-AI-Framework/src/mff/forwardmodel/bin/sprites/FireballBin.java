@@ -1,12 +1,295 @@
 package mff.forwardmodel.bin.sprites;
 
+import mff.forwardmodel.bin.core.IBinSpriteMethods;
 import mff.forwardmodel.bin.core.MarioBinData;
+import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
+import mff.forwardmodel.bin.level.MarioLevelBin;
+import mff.forwardmodel.common.SpriteTypeCommon;
 
 public class FireballBin {
+    public static final float GROUND_INERTIA = 0.89f;
+    public static final float AIR_INERTIA = 0.89f;
+    private static final int width = 4;
+    static final int height = 8;
+
+    private static int boolIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.BOOLS_FIREBALL_START] + entityIndex * MarioBinData.FIREBALL_BOOLS + field;
+    }
+
+    private static int intIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.INTS_FIREBALL_START] + entityIndex * MarioBinData.FIREBALL_INTS + field;
+    }
+
+    private static int floatIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.FLOATS_FIREBALL_START] + entityIndex * MarioBinData.FIREBALL_FLOATS + field;
+    }
+
+    public static float getX(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_X)];
+    }
+
+    private static void setX(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_X)] = value;
+    }
+
+    public static float getY(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_Y)];
+    }
+
+    private static void setY(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_Y)] = value;
+    }
+
+    private static float getXa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_XA)];
+    }
+
+    private static void setXa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_XA)] = value;
+    }
+
+    private static float getYa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_YA)];
+    }
+
+    private static void setYa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FIREBALL_YA)] = value;
+    }
+
+    public static int getFacing(MarioBinData data, int entityIndex) {
+        return data.ints[intIndex(data, entityIndex, MarioBinData.FIREBALL_FACING)];
+    }
+
+    private static void setFacing(MarioBinData data, int entityIndex, int value) {
+        data.ints[intIndex(data, entityIndex, MarioBinData.FIREBALL_FACING)] = value;
+    }
 
     public static boolean getAlive(MarioBinData data, int entityIndex) {
-        return data.bools[data.spriteStorageInfo[MarioBinData.BOOLS_FIREBALL_START]
-                + entityIndex * MarioBinData.FIREBALL_BOOLS + MarioBinData.FIREBALL_ALIVE];
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.FIREBALL_ALIVE)];
+    }
+
+    private static void setAlive(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.FIREBALL_ALIVE)] = value;
+    }
+
+    private static boolean getOnGround(MarioBinData data, int entityIndex) {
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.FIREBALL_ON_GROUND)];
+    }
+
+    private static void setOnGround(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.FIREBALL_ON_GROUND)] = value;
+    }
+
+    // either xa or ya is always zero
+    private static boolean move(MarioBinData data, int entityIndex, float xa, float ya) {
+        if (xa != 0) {
+            float stepX = Math.signum(xa) * 8;
+            while (Math.abs(xa) > Math.abs(stepX)) {
+                xa -= stepX;
+                if (!moveStepX(data, entityIndex, stepX))
+                    return false;
+            }
+            return moveStepX(data, entityIndex, xa);
+        } else {
+            float stepY = Math.signum(ya) * 8;
+            while (Math.abs(ya) > Math.abs(stepY)) {
+                ya -= stepY;
+                if (!moveStepY(data, entityIndex, stepY))
+                    return false;
+            }
+            return moveStepY(data, entityIndex, ya);
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepX(MarioBinData data, int entityIndex, float xa) {
+        float ya = 0;
+        boolean collide = false;
+        float x = getX(data, entityIndex);
+        float y = getY(data, entityIndex);
+        if (xa > 0) {
+            if (isBlocking(data, entityIndex, x + xa + width, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya - height / 2, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya, ya))
+                collide = true;
+        }
+        else if (xa < 0) {
+            if (isBlocking(data, entityIndex, x + xa - width, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya - height / 2, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya, ya))
+                collide = true;
+        }
+        if (collide) {
+            if (xa < 0) {
+                setX(data, entityIndex, (int) ((x - width) / 16) * 16 + width);
+                setXa(data, entityIndex, 0);
+            }
+            else if (xa > 0) {
+                setX(data, entityIndex, (int) ((x + width) / 16 + 1) * 16 - width - 1);
+                setXa(data, entityIndex, 0);
+            }
+            return false;
+        } else {
+            setX(data, entityIndex, x + xa);
+            return true;
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepY(MarioBinData data, int entityIndex, float ya) {
+        float xa = 0;
+        boolean collide = false;
+        float x = getX(data, entityIndex);
+        float y = getY(data, entityIndex);
+        if (ya > 0) {
+            if (isBlocking(data, entityIndex, x + xa - width, y + ya, 0))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya, 0))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya + 1, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya + 1, ya))
+                collide = true;
+        }
+        else if (ya < 0) {
+            if (isBlocking(data, entityIndex, x + xa, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya - height, ya))
+                collide = true;
+        }
+
+        if (collide) {
+            if (ya < 0) {
+                setY(data, entityIndex, (int) ((y - height) / 16) * 16 + height);
+                setYa(data, entityIndex, 0);
+            }
+            else if (ya > 0) {
+                setY(data, entityIndex, (int) (y / 16 + 1) * 16 - 1);
+                setOnGround(data, entityIndex, true);
+            }
+            return false;
+        } else {
+            setY(data, entityIndex, y + ya);
+            return true;
+        }
     }
 
+    private static boolean isBlocking(MarioBinData data, int entityIndex, float _x, float _y, float ya) {
+        int x = (int) (_x / 16);
+        int y = (int) (_y / 16);
+        if (x == (int) (getX(data, entityIndex) / 16) && y == (int) (getY(data, entityIndex) / 16))
+            return false;
+
+        return MarioLevelBin.isBlocking(x, y, ya, data);
+    }
+
+    private static void update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float sideWaysSpeed = 8f;
+        if (getXa(data, entityIndex) > 2) {
+            setFacing(data, entityIndex, 1);
+        }
+        if (getXa(data, entityIndex) < -2) {
+            setFacing(data, entityIndex, -1);
+        }
+        setXa(data, entityIndex, getFacing(data, entityIndex) * sideWaysSpeed);
+
+        updateContext.fireballsToCheck.add(entityIndex);
+
+        if (!move(data, entityIndex, getXa(data, entityIndex), 0)) {
+            MarioWorldBin.removeSprite((entityIndex << 16) | SpriteTypeCommon.FIREBALL.getValue(), updateContext, data);
+            return;
+        }
+
+        setOnGround(data, entityIndex, false);
+        move(data, entityIndex, 0, getYa(data, entityIndex));
+        if (getOnGround(data, entityIndex))
+            setYa(data, entityIndex, -10);
+
+        setYa(data, entityIndex, getYa(data, entityIndex) * 0.95f);
+        if (getOnGround(data, entityIndex)) {
+            setXa(data, entityIndex, getXa(data, entityIndex) * GROUND_INERTIA);
+        } else {
+            setXa(data, entityIndex, getXa(data, entityIndex) * AIR_INERTIA);
+        }
+
+        if (!getOnGround(data, entityIndex)) {
+            setYa(data, entityIndex, (float) (getYa(data, entityIndex) + 1.5));
+        }
+    }
+
+    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
+        @Override
+        public final float GetX(MarioBinData data, int entityIndex) {
+            return getX(data, entityIndex);
+        }
+
+        @Override
+        public final void SetX(MarioBinData data, int entityIndex, float value) {
+            setX(data, entityIndex, value);
+        }
+
+        @Override
+        public final float GetY(MarioBinData data, int entityIndex) {
+            return getY(data, entityIndex);
+        }
+
+        @Override
+        public final void SetY(MarioBinData data, int entityIndex, float value) {
+            setY(data, entityIndex, value);
+        }
+
+        @Override
+        public final boolean GetAlive(MarioBinData data, int entityIndex) {
+            return getAlive(data, entityIndex);
+        }
+
+        @Override
+        public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+            setAlive(data, entityIndex, value);
+        }
+
+        @Override
+        public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
+            return SpriteTypeCommon.FIREBALL;
+        }
+
+        @Override
+        public final void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            update(data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        }
+
+        @Override
+        public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        }
+
+        @Override
+        public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return false;
+        }
+
+        @Override
+        public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return false;
+        }
+
+        @Override
+        public final void Remove(int entityIndex, MarioBinData data) {
+            data.removeFireball(entityIndex);
+        }
+    };
 }
@@ -0,0 +1,233 @@
+package mff.forwardmodel.bin.sprites;
+
+import mff.forwardmodel.bin.core.IBinSpriteMethods;
+import mff.forwardmodel.bin.core.MarioBinData;
+import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
+import mff.forwardmodel.common.SpriteTypeCommon;
+
+public class FlowerEnemyBin {
+    private static final int width = 2;
+    private static final int height = 12;
+
+    private static int boolIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.BOOLS_FLOWER_ENEMY_START] + entityIndex * MarioBinData.FLOWER_ENEMY_BOOLS + field;
+    }
+
+    private static int intIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.INTS_FLOWER_ENEMY_START] + entityIndex * MarioBinData.FLOWER_ENEMY_INTS + field;
+    }
+
+    private static int floatIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.FLOATS_FLOWER_ENEMY_START] + entityIndex * MarioBinData.FLOWER_ENEMY_FLOATS + field;
+    }
+
+    private static float getX(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_X)];
+    }
+
+    private static void setX(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_X)] = value;
+    }
+
+    private static float getY(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_Y)];
+    }
+
+    private static void setY(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_Y)] = value;
+    }
+
+    private static float getYStart(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_Y_START)];
+    }
+
+    private static float getYa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_YA)];
+    }
+
+    private static void setYa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_YA)] = value;
+    }
+
+    private static int getWaitTime(MarioBinData data, int entityIndex) {
+        return data.ints[intIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_WAIT_TIME)];
+    }
+
+    private static void setWaitTime(MarioBinData data, int entityIndex, int value) {
+        data.ints[intIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_WAIT_TIME)] = value;
+    }
+
+    private static boolean getAlive(MarioBinData data, int entityIndex) {
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_ALIVE)];
+    }
+
+    private static void setAlive(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.FLOWER_ENEMY_ALIVE)] = value;
+    }
+
+    private static int spriteCode(int entityIndex) {
+        return (entityIndex << 16) | SpriteTypeCommon.ENEMY_FLOWER.getValue();
+    }
+
+    private static void collideCheck(MarioBinData data, int entityIndex) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float xMarioD = MarioBin.getX(data) - getX(data, entityIndex);
+        float yMarioD = MarioBin.getY(data) - getY(data, entityIndex);
+        if (xMarioD > -width * 2 - 4 && xMarioD < width * 2 + 4) {
+            if (yMarioD > -height && yMarioD < MarioBin.getHeight(data)) {
+                MarioBin.getHurt(data);
+            }
+        }
+    }
+
+    private static void update(MarioBinData data, int entityIndex) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float yStart = getYStart(data, entityIndex);
+        if (getYa(data, entityIndex) > 0) {
+            if (getY(data, entityIndex) >= yStart) {
+                setY(data, entityIndex, yStart);
+                int xd = (int) (Math.abs(MarioBin.getX(data) - getX(data, entityIndex)));
+                setWaitTime(data, entityIndex, getWaitTime(data, entityIndex) + 1);
+                if (getWaitTime(data, entityIndex) > 40 && xd > 24) {
+                    setWaitTime(data, entityIndex, 0);
+                    setYa(data, entityIndex, -1);
+                }
+            }
+        } else if (getYa(data, entityIndex) < 0) {
+            if (yStart - getY(data, entityIndex) > 20) {
+                setY(data, entityIndex, yStart - 20);
+                setWaitTime(data, entityIndex, getWaitTime(data, entityIndex) + 1);
+                if (getWaitTime(data, entityIndex) > 40) {
+                    setWaitTime(data, entityIndex, 0);
+                    setYa(data, entityIndex, 1);
+                }
+            }
+        }
+        setY(data, entityIndex, getY(data, entityIndex) + getYa(data, entityIndex));
+    }
+
+    private static boolean shellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex,
+                                             MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) {
+            return false;
+        }
+
+        float xD = ShellBin.getX(data, shellEntityIndex) - getX(data, entityIndex);
+        float yD = ShellBin.getY(data, shellEntityIndex) - getY(data, entityIndex);
+
+        if (xD > -16 && xD < 16) {
+            if (yD > -height && yD < ShellBin.height) {
+                setYa(data, entityIndex, -5);
+                MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean fireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex,
+                                                MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) {
+            return false;
+        }
+
+        float xD = FireballBin.getX(data, fireballEntityIndex) - getX(data, entityIndex);
+        float yD = FireballBin.getY(data, fireballEntityIndex) - getY(data, entityIndex);
+
+        if (xD > -16 && xD < 16) {
+            if (yD > -height && yD < FireballBin.height) {
+                setYa(data, entityIndex, -5);
+                MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void bumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex,
+                                  MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float x = getX(data, entityIndex);
+        if (x + width > xTile * 16 && x - width < xTile * 16 + 16 && yTile == (int) ((getY(data, entityIndex) - 1) / 16)) {
+            setYa(data, entityIndex, -5);
+            MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+        }
+    }
+
+    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
+        @Override
+        public final float GetX(MarioBinData data, int entityIndex) {
+            return getX(data, entityIndex);
+        }
+
+        @Override
+        public final void SetX(MarioBinData data, int entityIndex, float value) {
+            setX(data, entityIndex, value);
+        }
+
+        @Override
+        public final float GetY(MarioBinData data, int entityIndex) {
+            return getY(data, entityIndex);
+        }
+
+        @Override
+        public final void SetY(MarioBinData data, int entityIndex, float value) {
+            setY(data, entityIndex, value);
+        }
+
+        @Override
+        public final boolean GetAlive(MarioBinData data, int entityIndex) {
+            return getAlive(data, entityIndex);
+        }
+
+        @Override
+        public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+            setAlive(data, entityIndex, value);
+        }
+
+        @Override
+        public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
+            return SpriteTypeCommon.ENEMY_FLOWER;
+        }
+
+        @Override
+        public final void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            update(data, entityIndex);
+        }
+
+        @Override
+        public final void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            collideCheck(data, entityIndex);
+        }
+
+        @Override
+        public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            bumpCheck(xTile, yTile, data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return shellCollideCheck(shellEntityIndex, data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return fireballCollideCheck(fireballEntityIndex, data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void Remove(int entityIndex, MarioBinData data) {
+            data.removeFlowerEnemy(entityIndex);
+        }
+    };
+}
@@ -1,97 +1,582 @@
 package mff.forwardmodel.bin.sprites;
 
+import engine.helper.MarioActions;
 import mff.forwardmodel.bin.core.IBinSpriteMethods;
 import mff.forwardmodel.bin.core.MarioBinData;
 import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
+import mff.forwardmodel.bin.level.MarioLevelBin;
+import mff.forwardmodel.common.LevelPart;
 import mff.forwardmodel.common.SpriteTypeCommon;
 
+// there is only one Mario, his entity index is always 0
 public class MarioBin {
+    private static final int width = 4;
+    public static final float GROUND_INERTIA = 0.89f;
+    public static final float AIR_INERTIA = 0.89f;
+    private static final int POWERUP_TIME = 3;
+
+    private static int boolIndex(MarioBinData data, int field) {
+        return data.spriteStorageInfo[MarioBinData.BOOLS_MARIO_START] + field;
+    }
+
+    private static int intIndex(MarioBinData data, int field) {
+        return data.spriteStorageInfo[MarioBinData.INTS_MARIO_START] + field;
+    }
+
+    private static int floatIndex(MarioBinData data, int field) {
+        return data.spriteStorageInfo[MarioBinData.FLOATS_MARIO_START] + field;
+    }
 
     public static float getX(MarioBinData data) {
-        return data.floats[data.spriteStorageInfo[MarioBinData.FLOATS_MARIO_START] + MarioBinData.MARIO_X];
+        return data.floats[floatIndex(data, MarioBinData.MARIO_X)];
+    }
+
+    private static void setX(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_X)] = value;
     }
 
     public static float getY(MarioBinData data) {
-        return data.floats[data.spriteStorageInfo[MarioBinData.FLOATS_MARIO_START] + MarioBinData.MARIO_Y];
+        return data.floats[floatIndex(data, MarioBinData.MARIO_Y)];
+    }
+
+    private static void setY(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_Y)] = value;
+    }
+
+    public static float getXa(MarioBinData data) {
+        return data.floats[floatIndex(data, MarioBinData.MARIO_XA)];
+    }
+
+    private static void setXa(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_XA)] = value;
+    }
+
+    public static float getYa(MarioBinData data) {
+        return data.floats[floatIndex(data, MarioBinData.MARIO_YA)];
+    }
+
+    private static void setYa(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_YA)] = value;
+    }
+
+    private static float getXJumpSpeed(MarioBinData data) {
+        return data.floats[floatIndex(data, MarioBinData.MARIO_X_JUMP_SPEED)];
+    }
+
+    private static void setXJumpSpeed(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_X_JUMP_SPEED)] = value;
+    }
+
+    private static float getYJumpSpeed(MarioBinData data) {
+        return data.floats[floatIndex(data, MarioBinData.MARIO_Y_JUMP_SPEED)];
+    }
+
+    private static void setYJumpSpeed(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_Y_JUMP_SPEED)] = value;
+    }
+
+    private static float getXJumpStart(MarioBinData data) {
+        return data.floats[floatIndex(data, MarioBinData.MARIO_X_JUMP_START)];
+    }
+
+    private static void setXJumpStart(MarioBinData data, float value) {
+        data.floats[floatIndex(data, MarioBinData.MARIO_X_JUMP_START)] = value;
+    }
+
+    public static int getHeight(MarioBinData data) {
+        return data.ints[intIndex(data, MarioBinData.MARIO_HEIGHT)];
+    }
+
+    private static void setHeight(MarioBinData data, int value) {
+        data.ints[intIndex(data, MarioBinData.MARIO_HEIGHT)] = value;
+    }
+
+    private static int getInvulnerableTime(MarioBinData data) {
+        return data.ints[intIndex(data, MarioBinData.MARIO_INVULNERABLE_TIME)];
+    }
+
+    private static void setInvulnerableTime(MarioBinData data, int value) {
+        data.ints[intIndex(data, MarioBinData.MARIO_INVULNERABLE_TIME)] = value;
+    }
+
+    public static int getFacing(MarioBinData data) {
+        return data.ints[intIndex(data, MarioBinData.MARIO_FACING)];
+    }
+
+    private static void setFacing(MarioBinData data, int value) {
+        data.ints[intIndex(data, MarioBinData.MARIO_FACING)] = value;
+    }
+
+    public static int getJumpTime(MarioBinData data) {
+        return data.ints[intIndex(data, MarioBinData.MARIO_JUMP_TIME)];
+    }
+
+    private static void setJumpTime(MarioBinData data, int value) {
+        data.ints[intIndex(data, MarioBinData.MARIO_JUMP_TIME)] = value;
+    }
+
+    public static boolean getAlive(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_ALIVE)];
     }
 
     public static void setAlive(MarioBinData data, boolean value) {
-        data.bools[data.spriteStorageInfo[MarioBinData.BOOLS_MARIO_START] + MarioBinData.MARIO_ALIVE] = value;
+        data.bools[boolIndex(data, MarioBinData.MARIO_ALIVE)] = value;
+    }
+
+    public static boolean getOnGround(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_ON_GROUND)];
+    }
+
+    private static void setOnGround(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_ON_GROUND)] = value;
+    }
+
+    public static boolean getWasOnGround(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_WAS_ON_GROUND)];
+    }
+
+    private static void setWasOnGround(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_WAS_ON_GROUND)] = value;
     }
 
     public static boolean getIsLarge(MarioBinData data) {
-        return data.bools[data.spriteStorageInfo[MarioBinData.BOOLS_MARIO_START] + MarioBinData.MARIO_IS_LARGE];
+        return data.bools[boolIndex(data, MarioBinData.MARIO_IS_LARGE)];
     }
 
-    public static void collectCoin(MarioBinData data, MarioUpdateContextBin updateContext) {
-        //TODO
+    private static void setIsLarge(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_IS_LARGE)] = value;
     }
 
-    // TODO
-    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
-        @Override
-        public float GetX(MarioBinData data, int entityIndex) {
-            return 0;
+    private static boolean getIsDucking(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_IS_DUCKING)];
+    }
+
+    private static void setIsDucking(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_IS_DUCKING)] = value;
+    }
+
+    public static boolean getMayJump(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_MAY_JUMP)];
+    }
+
+    private static void setMayJump(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_MAY_JUMP)] = value;
+    }
+
+    private static boolean getCanShoot(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_CAN_SHOOT)];
+    }
+
+    private static void setCanShoot(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_CAN_SHOOT)] = value;
+    }
+
+    public static boolean getIsFire(MarioBinData data) {
+        return data.bools[boolIndex(data, MarioBinData.MARIO_IS_FIRE)];
+    }
+
+    private static void setIsFire(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_IS_FIRE)] = value;
+    }
+
+    private static void setOldLarge(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_OLD_LARGE)] = value;
+    }
+
+    private static void setOldFire(MarioBinData data, boolean value) {
+        data.bools[boolIndex(data, MarioBinData.MARIO_OLD_FIRE)] = value;
+    }
+
+    private static void update(MarioBinData data, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data)) return;
+
+        if (getInvulnerableTime(data) > 0) {
+            setInvulnerableTime(data, getInvulnerableTime(data) - 1);
         }
+        setWasOnGround(data, getOnGround(data));
 
-        @Override
-        public void SetX(MarioBinData data, int entityIndex, float value) {
+        float sideWaysSpeed = updateContext.actions[MarioActions.SPEED.getValue()] ? 1.2f : 0.6f;
 
+        if (getOnGround(data)) {
+            setIsDucking(data, updateContext.actions[MarioActions.DOWN.getValue()] && getIsLarge(data));
         }
 
-        @Override
-        public float GetY(MarioBinData data, int entityIndex) {
-            return 0;
+        if (getIsLarge(data)) {
+            setHeight(data, getIsDucking(data) ? 12 : 24);
+        } else {
+            setHeight(data, 12);
         }
 
-        @Override
-        public void SetY(MarioBinData data, int entityIndex, float value) {
+        if (getXa(data) > 2) {
+            setFacing(data, 1);
+        }
+        if (getXa(data) < -2) {
+            setFacing(data, -1);
+        }
 
+        if (updateContext.actions[MarioActions.JUMP.getValue()] || (getJumpTime(data) < 0 && !getOnGround(data))) {
+            if (getJumpTime(data) < 0) {
+                setXa(data, getXJumpSpeed(data));
+                setYa(data, -getJumpTime(data) * getYJumpSpeed(data));
+                setJumpTime(data, getJumpTime(data) + 1);
+            } else if (getOnGround(data) && getMayJump(data)) {
+                setXJumpSpeed(data, 0);
+                setYJumpSpeed(data, -1.9f);
+                setJumpTime(data, 7);
+                setYa(data, getJumpTime(data) * getYJumpSpeed(data));
+                setOnGround(data, false);
+                float x = getX(data);
+                float y = getY(data);
+                int height = getHeight(data);
+                if (!(isBlocking(data, x, y - 4 - height, -4, updateContext)
+                        || isBlocking(data, x - width, y - 4 - height, -4, updateContext)
+                        || isBlocking(data, x + width, y - 4 - height, -4, updateContext))) {
+                    setXJumpStart(data, getX(data));
+                }
+            } else if (getJumpTime(data) > 0) {
+                setXa(data, getXa(data) + getXJumpSpeed(data));
+                setYa(data, getJumpTime(data) * getYJumpSpeed(data));
+                setJumpTime(data, getJumpTime(data) - 1);
+            }
+        } else {
+            setJumpTime(data, 0);
         }
 
-        @Override
-        public boolean GetAlive(MarioBinData data, int entityIndex) {
+        if (updateContext.actions[MarioActions.LEFT.getValue()] && !getIsDucking(data)) {
+            setXa(data, getXa(data) - sideWaysSpeed);
+            if (getJumpTime(data) >= 0)
+                setFacing(data, -1);
+        }
+
+        if (updateContext.actions[MarioActions.RIGHT.getValue()] && !getIsDucking(data)) {
+            setXa(data, getXa(data) + sideWaysSpeed);
+            if (getJumpTime(data) >= 0)
+                setFacing(data, 1);
+        }
+
+        if (updateContext.actions[MarioActions.SPEED.getValue()] && getCanShoot(data) && getIsFire(data)
+                && updateContext.fireballsOnScreen < 2) {
+            MarioWorldBin.addSprite(data.addFireball(getX(data) + getFacing(data) * 6, getY(data) - 20, false,
+                    0, 4, getFacing(data), false), updateContext, data);
+        }
+
+        setCanShoot(data, !updateContext.actions[MarioActions.SPEED.getValue()]);
+
+        setMayJump(data, getOnGround(data) && !updateContext.actions[MarioActions.JUMP.getValue()]);
+
+        if (Math.abs(getXa(data)) < 0.5f) {
+            setXa(data, 0);
+        }
+
+        setOnGround(data, false);
+        move(data, getXa(data), 0, updateContext);
+        move(data, 0, getYa(data), updateContext);
+        if (!getWasOnGround(data) && getOnGround(data) && getXJumpStart(data) >= 0) {
+            setXJumpStart(data, -100);
+        }
+
+        if (getX(data) < 0) {
+            setX(data, 0);
+            setXa(data, 0);
+        }
+
+        if (getX(data) > MarioLevelBin.getExitTileX(data) * 16) {
+            setX(data, MarioLevelBin.getExitTileX(data) * 16);
+            setXa(data, 0);
+            MarioWorldBin.win(data);
+        }
+
+        setYa(data, getYa(data) * 0.85f);
+        if (getOnGround(data)) {
+            setXa(data, getXa(data) * GROUND_INERTIA);
+        } else {
+            setXa(data, getXa(data) * AIR_INERTIA);
+        }
+
+        if (!getOnGround(data)) {
+            setYa(data, getYa(data) + 3);
+        }
+    }
+
+    private static boolean isBlocking(MarioBinData data, float _x, float _y, float ya, MarioUpdateContextBin updateContext) {
+        int xTile = (int) (_x / 16);
+        int yTile = (int) (_y / 16);
+        if (xTile == (int) (getX(data) / 16) && yTile == (int) (getY(data) / 16))
             return false;
+
+        boolean blocking = MarioLevelBin.isBlocking(xTile, yTile, ya, data);
+        byte blockValue = MarioLevelBin.getBlockValue(xTile, yTile, data);
+
+        if (blockValue == LevelPart.COIN.getValue()) {
+            collectCoin(data);
+            MarioLevelBin.setBlock(xTile, yTile, 0, data);
+        }
+        if (blocking && ya < 0) {
+            MarioWorldBin.bump(xTile, yTile, getIsLarge(data), updateContext, data);
+        }
+        return blocking;
+    }
+
+    // either xa or ya is always zero
+    private static void move(MarioBinData data, float xa, float ya, MarioUpdateContextBin updateContext) {
+        if (xa != 0) {
+            float stepX = Math.signum(xa) * 8;
+            while (Math.abs(xa) > Math.abs(stepX)) {
+                xa -= stepX;
+                if (!moveStepX(data, stepX, updateContext))
+                    return;
+            }
+            moveStepX(data, xa, updateContext);
+        } else {
+            float stepY = Math.signum(ya) * 8;
+            while (Math.abs(ya) > Math.abs(stepY)) {
+                ya -= stepY;
+                if (!moveStepY(data, stepY, updateContext))
+                    return;
+            }
+            moveStepY(data, ya, updateContext);
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepX(MarioBinData data, float xa, MarioUpdateContextBin updateContext) {
+        float ya = 0;
+        boolean collide = false;
+        float x = getX(data);
+        float y = getY(data);
+        int height = getHeight(data);
+        if (xa > 0) {
+            if (isBlocking(data, x + xa + width, y + ya - height, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa + width, y + ya - height / 2, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa + width, y + ya, ya, updateContext))
+                collide = true;
+        }
+        else if (xa < 0) {
+            if (isBlocking(data, x + xa - width, y + ya - height, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa - width, y + ya - height / 2, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa - width, y + ya, ya, updateContext))
+                collide = true;
+        }
+        if (collide) {
+            if (xa < 0) {
+                setX(data, (int) ((getX(data) - width) / 16) * 16 + width);
+                setXa(data, 0);
+            }
+            else if (xa > 0) {
+                setX(data, (int) ((getX(data) + width) / 16 + 1) * 16 - width - 1);
+                setXa(data, 0);
+            }
+            return false;
+        } else {
+            setX(data, getX(data) + xa);
+            return true;
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepY(MarioBinData data, float ya, MarioUpdateContextBin updateContext) {
+        float xa = 0;
+        boolean collide = false;
+        float x = getX(data);
+        float y = getY(data);
+        int height = getHeight(data);
+        if (ya > 0) {
+            if (isBlocking(data, x + xa - width, y + ya, 0, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa + width, y + ya, 0, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa - width, y + ya + 1, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa + width, y + ya + 1, ya, updateContext))
+                collide = true;
+        }
+        else if (ya < 0) {
+            if (isBlocking(data, x + xa, y + ya - height, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa - width, y + ya - height, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, x + xa + width, y + ya - height, ya, updateContext))
+                collide = true;
+        }
+
+        if (collide) {
+            if (ya < 0) {
+                setY(data, (int) ((getY(data) - getHeight(data)) / 16) * 16 + getHeight(data));
+                setJumpTime(data, 0);
+                setYa(data, 0);
+            }
+            else if (ya > 0) {
+                setY(data, (int) ((getY(data) - 1) / 16 + 1) * 16 - 1);
+                setOnGround(data, true);
+            }
+            return false;
+        } else {
+            setY(data, getY(data) + ya);
+            return true;
+        }
+    }
+
+    /**
+     * Shared by enemies, shells and bullet bills, they only differ in the height Mario lands on.
+     */
+    static void stomp(MarioBinData data, float targetY, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data)) {
+            return;
         }
+        move(data, 0, targetY - getY(data), updateContext);
 
+        setXJumpSpeed(data, 0);
+        setYJumpSpeed(data, -1.9f);
+        setJumpTime(data, 8);
+        setYa(data, getJumpTime(data) * getYJumpSpeed(data));
+        setOnGround(data, false);
+        setInvulnerableTime(data, 1);
+    }
+
+    static void getHurt(MarioBinData data) {
+        if (getInvulnerableTime(data) > 0 || !getAlive(data))
+            return;
+
+        if (getIsLarge(data)) {
+            MarioWorldBin.setPauseTimer(data, 3 * POWERUP_TIME);
+            setOldLarge(data, true);
+            setOldFire(data, getIsFire(data));
+            if (getIsFire(data)) {
+                setIsFire(data, false);
+            } else {
+                setIsLarge(data, false);
+            }
+            setInvulnerableTime(data, 32);
+        } else {
+            MarioWorldBin.lose(data);
+        }
+    }
+
+    static void getFlower(MarioBinData data) {
+        if (!getAlive(data)) {
+            return;
+        }
+
+        if (!getIsFire(data)) {
+            MarioWorldBin.setPauseTimer(data, 3 * POWERUP_TIME);
+            setOldFire(data, false);
+            setOldLarge(data, getIsLarge(data));
+            setIsFire(data, true);
+            setIsLarge(data, true);
+        } else {
+            collectCoin(data);
+        }
+    }
+
+    static void getMushroom(MarioBinData data) {
+        if (!getAlive(data)) {
+            return;
+        }
+
+        if (!getIsLarge(data)) {
+            MarioWorldBin.setPauseTimer(data, 3 * POWERUP_TIME);
+            setOldFire(data, getIsFire(data));
+            setOldLarge(data, false);
+            setIsLarge(data, true);
+        } else {
+            collectCoin(data);
+        }
+    }
+
+    static void kick(MarioBinData data) {
+        if (!getAlive(data)) {
+            return;
+        }
+
+        setInvulnerableTime(data, 1);
+    }
+
+    static void collect1Up(MarioBinData data) {
+        if (!getAlive(data)) {
+            return;
+        }
+
+        MarioWorldBin.setLives(data, MarioWorldBin.getLives(data) + 1);
+    }
+
+    public static void collectCoin(MarioBinData data) {
+        if (!getAlive(data)) {
+            return;
+        }
+
+        MarioWorldBin.setCoins(data, MarioWorldBin.getCoins(data) + 1);
+        if (MarioWorldBin.getCoins(data) % 100 == 0) {
+            collect1Up(data);
+        }
+    }
+
+    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
         @Override
-        public void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+        public final float GetX(MarioBinData data, int entityIndex) {
+            return getX(data);
+        }
 
+        @Override
+        public final void SetX(MarioBinData data, int entityIndex, float value) {
+            setX(data, value);
         }
 
         @Override
-        public SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
-            return null;
+        public final float GetY(MarioBinData data, int entityIndex) {
+            return getY(data);
         }
 
         @Override
-        public void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        public final void SetY(MarioBinData data, int entityIndex, float value) {
+            setY(data, value);
+        }
 
+        @Override
+        public final boolean GetAlive(MarioBinData data, int entityIndex) {
+            return getAlive(data);
+        }
+
+        @Override
+        public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+            setAlive(data, value);
         }
 
         @Override
-        public void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
+            return SpriteTypeCommon.MARIO;
+        }
 
+        @Override
+        public final void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            update(data, updateContext);
         }
 
         @Override
-        public void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        public final void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        }
 
+        @Override
+        public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
         }
 
         @Override
-        public boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
             return false;
         }
 
         @Override
-        public boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
             return false;
         }
 
         @Override
-        public void Remove(int entityIndex, MarioBinData data) {
-
+        public final void Remove(int entityIndex, MarioBinData data) {
+            data.removeMario();
         }
     };
 }
@@ -0,0 +1,331 @@
+package mff.forwardmodel.bin.sprites;
+
+import mff.forwardmodel.bin.core.IBinSpriteMethods;
+import mff.forwardmodel.bin.core.MarioBinData;
+import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
+import mff.forwardmodel.bin.level.MarioLevelBin;
+import mff.forwardmodel.common.SpriteTypeCommon;
+
+public class MushroomBin {
+    public static final float GROUND_INERTIA = 0.89f;
+    public static final float AIR_INERTIA = 0.89f;
+    private static final int width = 4;
+    private static final int height = 12;
+
+    private static int boolIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.BOOLS_MUSHROOM_START] + entityIndex * MarioBinData.MUSHROOM_BOOLS + field;
+    }
+
+    private static int intIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.INTS_MUSHROOM_START] + entityIndex * MarioBinData.MUSHROOM_INTS + field;
+    }
+
+    private static int floatIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.FLOATS_MUSHROOM_START] + entityIndex * MarioBinData.MUSHROOM_FLOATS + field;
+    }
+
+    private static float getX(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_X)];
+    }
+
+    private static void setX(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_X)] = value;
+    }
+
+    private static float getY(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_Y)];
+    }
+
+    private static void setY(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_Y)] = value;
+    }
+
+    private static float getXa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_XA)];
+    }
+
+    private static void setXa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_XA)] = value;
+    }
+
+    private static float getYa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_YA)];
+    }
+
+    private static void setYa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.MUSHROOM_YA)] = value;
+    }
+
+    private static int getFacing(MarioBinData data, int entityIndex) {
+        return data.ints[intIndex(data, entityIndex, MarioBinData.MUSHROOM_FACING)];
+    }
+
+    private static void setFacing(MarioBinData data, int entityIndex, int value) {
+        data.ints[intIndex(data, entityIndex, MarioBinData.MUSHROOM_FACING)] = value;
+    }
+
+    private static int getLife(MarioBinData data, int entityIndex) {
+        return data.ints[intIndex(data, entityIndex, MarioBinData.MUSHROOM_LIFE)];
+    }
+
+    private static void setLife(MarioBinData data, int entityIndex, int value) {
+        data.ints[intIndex(data, entityIndex, MarioBinData.MUSHROOM_LIFE)] = value;
+    }
+
+    private static boolean getAlive(MarioBinData data, int entityIndex) {
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.MUSHROOM_ALIVE)];
+    }
+
+    private static void setAlive(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.MUSHROOM_ALIVE)] = value;
+    }
+
+    private static boolean getOnGround(MarioBinData data, int entityIndex) {
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.MUSHROOM_ON_GROUND)];
+    }
+
+    private static void setOnGround(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.MUSHROOM_ON_GROUND)] = value;
+    }
+
+    private static void collideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float xMarioD = MarioBin.getX(data) - getX(data, entityIndex);
+        float yMarioD = MarioBin.getY(data) - getY(data, entityIndex);
+        if (xMarioD > -16 && xMarioD < 16) {
+            if (yMarioD > -height && yMarioD < MarioBin.getHeight(data)) {
+                MarioBin.getMushroom(data);
+                MarioWorldBin.removeSprite((entityIndex << 16) | SpriteTypeCommon.MUSHROOM.getValue(), updateContext, data);
+            }
+        }
+    }
+
+    private static boolean isBlocking(MarioBinData data, int entityIndex, float _x, float _y, float ya) {
+        int x = (int) (_x / 16);
+        int y = (int) (_y / 16);
+        if (x == (int) (getX(data, entityIndex) / 16) && y == (int) (getY(data, entityIndex) / 16))
+            return false;
+
+        return MarioLevelBin.isBlocking(x, y, ya, data);
+    }
+
+    private static void bumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        float x = getX(data, entityIndex);
+        if (x + width > xTile * 16 && x - width < xTile * 16 + 16 && yTile == (int) ((getY(data, entityIndex) - 1) / 16)) {
+            setFacing(data, entityIndex, -MarioBin.getFacing(data));
+            setYa(data, entityIndex, -10);
+        }
+    }
+
+    // either xa or ya is always zero
+    private static boolean move(MarioBinData data, int entityIndex, float xa, float ya) {
+        if (xa != 0) {
+            float stepX = Math.signum(xa) * 8;
+            while (Math.abs(xa) > Math.abs(stepX)) {
+                xa -= stepX;
+                if (!moveStepX(data, entityIndex, stepX))
+                    return false;
+            }
+            return moveStepX(data, entityIndex, xa);
+        } else {
+            float stepY = Math.signum(ya) * 8;
+            while (Math.abs(ya) > Math.abs(stepY)) {
+                ya -= stepY;
+                if (!moveStepY(data, entityIndex, stepY))
+                    return false;
+            }
+            return moveStepY(data, entityIndex, ya);
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepX(MarioBinData data, int entityIndex, float xa) {
+        float ya = 0;
+        boolean collide = false;
+        float x = getX(data, entityIndex);
+        float y = getY(data, entityIndex);
+        if (xa > 0) {
+            if (isBlocking(data, entityIndex, x + xa + width, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya - height / 2, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya, ya))
+                collide = true;
+        }
+        else if (xa < 0) {
+            if (isBlocking(data, entityIndex, x + xa - width, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya - height / 2, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya, ya))
+                collide = true;
+        }
+        if (collide) {
+            if (xa < 0) {
+                setX(data, entityIndex, (int) ((x - width) / 16) * 16 + width);
+                setXa(data, entityIndex, 0);
+            }
+            else if (xa > 0) {
+                setX(data, entityIndex, (int) ((x + width) / 16 + 1) * 16 - width - 1);
+                setXa(data, entityIndex, 0);
+            }
+            return false;
+        } else {
+            setX(data, entityIndex, x + xa);
+            return true;
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepY(MarioBinData data, int entityIndex, float ya) {
+        float xa = 0;
+        boolean collide = false;
+        float x = getX(data, entityIndex);
+        float y = getY(data, entityIndex);
+        if (ya > 0) {
+            if (isBlocking(data, entityIndex, x + xa - width, y + ya, 0))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya, 0))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya + 1, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya + 1, ya))
+                collide = true;
+        }
+        else if (ya < 0) {
+            if (isBlocking(data, entityIndex, x + xa, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya - height, ya))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya - height, ya))
+                collide = true;
+        }
+
+        if (collide) {
+            if (ya < 0) {
+                setY(data, entityIndex, (int) ((y - height) / 16) * 16 + height);
+                setYa(data, entityIndex, 0);
+            }
+            else if (ya > 0) {
+                setY(data, entityIndex, (int) (y / 16 + 1) * 16 - 1);
+                setOnGround(data, entityIndex, true);
+            }
+            return false;
+        } else {
+            setY(data, entityIndex, y + ya);
+            return true;
+        }
+    }
+
+    private static void update(MarioBinData data, int entityIndex) {
+        if (!getAlive(data, entityIndex)) {
+            return;
+        }
+
+        if (getLife(data, entityIndex) < 9) {
+            setY(data, entityIndex, getY(data, entityIndex) - 1);
+            setLife(data, entityIndex, getLife(data, entityIndex) + 1);
+            return;
+        }
+        float sideWaysSpeed = 1.75f;
+        if (getXa(data, entityIndex) > 2) {
+            setFacing(data, entityIndex, 1);
+        }
+        if (getXa(data, entityIndex) < -2) {
+            setFacing(data, entityIndex, -1);
+        }
+
+        setXa(data, entityIndex, getFacing(data, entityIndex) * sideWaysSpeed);
+
+        if (!move(data, entityIndex, getXa(data, entityIndex), 0))
+            setFacing(data, entityIndex, -getFacing(data, entityIndex));
+        setOnGround(data, entityIndex, false);
+        move(data, entityIndex, 0, getYa(data, entityIndex));
+
+        setYa(data, entityIndex, getYa(data, entityIndex) * 0.85f);
+        if (getOnGround(data, entityIndex)) {
+            setXa(data, entityIndex, getXa(data, entityIndex) * GROUND_INERTIA);
+        } else {
+            setXa(data, entityIndex, getXa(data, entityIndex) * AIR_INERTIA);
+        }
+
+        if (!getOnGround(data, entityIndex)) {
+            setYa(data, entityIndex, getYa(data, entityIndex) + 2);
+        }
+    }
+
+    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
+        @Override
+        public final float GetX(MarioBinData data, int entityIndex) {
+            return getX(data, entityIndex);
+        }
+
+        @Override
+        public final void SetX(MarioBinData data, int entityIndex, float value) {
+            setX(data, entityIndex, value);
+        }
+
+        @Override
+        public final float GetY(MarioBinData data, int entityIndex) {
+            return getY(data, entityIndex);
+        }
+
+        @Override
+        public final void SetY(MarioBinData data, int entityIndex, float value) {
+            setY(data, entityIndex, value);
+        }
+
+        @Override
+        public final boolean GetAlive(MarioBinData data, int entityIndex) {
+            return getAlive(data, entityIndex);
+        }
+
+        @Override
+        public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+            setAlive(data, entityIndex, value);
+        }
+
+        @Override
+        public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
+            return SpriteTypeCommon.MUSHROOM;
+        }
+
+        @Override
+        public final void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            update(data, entityIndex);
+        }
+
+        @Override
+        public final void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            collideCheck(data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            bumpCheck(xTile, yTile, data, entityIndex);
+        }
+
+        @Override
+        public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return false;
+        }
+
+        @Override
+        public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return false;
+        }
+
+        @Override
+        public final void Remove(int entityIndex, MarioBinData data) {
+            data.removeMushroom(entityIndex);
+        }
+    };
+}
@@ -1,12 +1,384 @@
 package mff.forwardmodel.bin.sprites;
 
+import mff.forwardmodel.bin.core.IBinSpriteMethods;
 import mff.forwardmodel.bin.core.MarioBinData;
+import mff.forwardmodel.bin.core.MarioUpdateContextBin;
+import mff.forwardmodel.bin.core.MarioWorldBin;
+import mff.forwardmodel.bin.level.MarioLevelBin;
+import mff.forwardmodel.common.SpriteTypeCommon;
 
 public class ShellBin {
+    public static final float GROUND_INERTIA = 0.89f;
+    public static final float AIR_INERTIA = 0.89f;
+    private static final int width = 4;
+    static final int height = 12;
+
+    private static int boolIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.BOOLS_SHELL_START] + entityIndex * MarioBinData.SHELL_BOOLS + field;
+    }
+
+    private static int intIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.INTS_SHELL_START] + entityIndex * MarioBinData.SHELL_INTS + field;
+    }
+
+    private static int floatIndex(MarioBinData data, int entityIndex, int field) {
+        return data.spriteStorageInfo[MarioBinData.FLOATS_SHELL_START] + entityIndex * MarioBinData.SHELL_FLOATS + field;
+    }
+
+    public static float getX(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_X)];
+    }
+
+    private static void setX(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_X)] = value;
+    }
+
+    public static float getY(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_Y)];
+    }
+
+    private static void setY(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_Y)] = value;
+    }
+
+    private static float getXa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_XA)];
+    }
+
+    private static void setXa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_XA)] = value;
+    }
+
+    private static float getYa(MarioBinData data, int entityIndex) {
+        return data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_YA)];
+    }
+
+    private static void setYa(MarioBinData data, int entityIndex, float value) {
+        data.floats[floatIndex(data, entityIndex, MarioBinData.SHELL_YA)] = value;
+    }
+
+    public static int getFacing(MarioBinData data, int entityIndex) {
+        return data.ints[intIndex(data, entityIndex, MarioBinData.SHELL_FACING)];
+    }
+
+    private static void setFacing(MarioBinData data, int entityIndex, int value) {
+        data.ints[intIndex(data, entityIndex, MarioBinData.SHELL_FACING)] = value;
+    }
 
     public static boolean getAlive(MarioBinData data, int entityIndex) {
-        return data.bools[data.spriteStorageInfo[MarioBinData.BOOLS_SHELL_START]
-                + entityIndex * MarioBinData.SHELL_BOOLS + MarioBinData.SHELL_ALIVE];
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.SHELL_ALIVE)];
+    }
+
+    private static void setAlive(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.SHELL_ALIVE)] = value;
+    }
+
+    private static boolean getOnGround(MarioBinData data, int entityIndex) {
+        return data.bools[boolIndex(data, entityIndex, MarioBinData.SHELL_ON_GROUND)];
+    }
+
+    private static void setOnGround(MarioBinData data, int entityIndex, boolean value) {
+        data.bools[boolIndex(data, entityIndex, MarioBinData.SHELL_ON_GROUND)] = value;
+    }
+
+    private static int spriteCode(int entityIndex) {
+        return (entityIndex << 16) | SpriteTypeCommon.SHELL.getValue();
+    }
+
+    private static void update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) return;
+
+        float sideWaysSpeed = 11f;
+
+        if (getXa(data, entityIndex) > 2) {
+            setFacing(data, entityIndex, 1);
+        }
+        if (getXa(data, entityIndex) < -2) {
+            setFacing(data, entityIndex, -1);
+        }
+
+        setXa(data, entityIndex, getFacing(data, entityIndex) * sideWaysSpeed);
+
+        if (getFacing(data, entityIndex) != 0) {
+            updateContext.shellsToCheck.add(entityIndex);
+        }
+
+        if (!move(data, entityIndex, getXa(data, entityIndex), 0, updateContext)) {
+            setFacing(data, entityIndex, -getFacing(data, entityIndex));
+        }
+        setOnGround(data, entityIndex, false);
+        move(data, entityIndex, 0, getYa(data, entityIndex), updateContext);
+
+        setYa(data, entityIndex, getYa(data, entityIndex) * 0.85f);
+        if (getOnGround(data, entityIndex)) {
+            setXa(data, entityIndex, getXa(data, entityIndex) * GROUND_INERTIA);
+        } else {
+            setXa(data, entityIndex, getXa(data, entityIndex) * AIR_INERTIA);
+        }
+
+        if (!getOnGround(data, entityIndex)) {
+            setYa(data, entityIndex, getYa(data, entityIndex) + 2);
+        }
     }
 
+    private static boolean fireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex,
+                                                MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) return false;
+
+        float xD = FireballBin.getX(data, fireballEntityIndex) - getX(data, entityIndex);
+        float yD = FireballBin.getY(data, fireballEntityIndex) - getY(data, entityIndex);
+
+        if (xD > -16 && xD < 16) {
+            if (yD > -height && yD < FireballBin.height) {
+                if (getFacing(data, entityIndex) != 0)
+                    return true;
+
+                setXa(data, entityIndex, FireballBin.getFacing(data, fireballEntityIndex) * 2);
+                setYa(data, entityIndex, -5);
+                MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) return;
+
+        float xMarioD = MarioBin.getX(data) - getX(data, entityIndex);
+        float yMarioD = MarioBin.getY(data) - getY(data, entityIndex);
+        if (xMarioD > -16 && xMarioD < 16) {
+            if (yMarioD > -height && yMarioD < MarioBin.getHeight(data)) {
+                if (MarioBin.getYa(data) > 0 && yMarioD <= 0 && (!MarioBin.getOnGround(data) || !MarioBin.getWasOnGround(data))) {
+                    MarioBin.stomp(data, getY(data, entityIndex) - height / 2, updateContext);
+                    if (getFacing(data, entityIndex) != 0) {
+                        setXa(data, entityIndex, 0);
+                        setFacing(data, entityIndex, 0);
+                    } else {
+                        setFacing(data, entityIndex, MarioBin.getFacing(data));
+                    }
+                } else {
+                    if (getFacing(data, entityIndex) != 0) {
+                        MarioBin.getHurt(data);
+                    } else {
+                        MarioBin.kick(data);
+                        setFacing(data, entityIndex, MarioBin.getFacing(data));
+                    }
+                }
+            }
+        }
+    }
+
+    // either xa or ya is always zero
+    private static boolean move(MarioBinData data, int entityIndex, float xa, float ya, MarioUpdateContextBin updateContext) {
+        if (xa != 0) {
+            float stepX = Math.signum(xa) * 8;
+            while (Math.abs(xa) > Math.abs(stepX)) {
+                xa -= stepX;
+                if (!moveStepX(data, entityIndex, stepX, updateContext))
+                    return false;
+            }
+            return moveStepX(data, entityIndex, xa, updateContext);
+        } else {
+            float stepY = Math.signum(ya) * 8;
+            while (Math.abs(ya) > Math.abs(stepY)) {
+                ya -= stepY;
+                if (!moveStepY(data, entityIndex, stepY, updateContext))
+                    return false;
+            }
+            return moveStepY(data, entityIndex, ya, updateContext);
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepX(MarioBinData data, int entityIndex, float xa, MarioUpdateContextBin updateContext) {
+        float ya = 0;
+        boolean collide = false;
+        float x = getX(data, entityIndex);
+        float y = getY(data, entityIndex);
+        if (xa > 0) {
+            if (isBlocking(data, entityIndex, x + xa + width, y + ya - height, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya - height / 2, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya, xa, ya, updateContext))
+                collide = true;
+        }
+        else if (xa < 0) {
+            if (isBlocking(data, entityIndex, x + xa - width, y + ya - height, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya - height / 2, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya, xa, ya, updateContext))
+                collide = true;
+        }
+        if (collide) {
+            if (xa < 0) {
+                setX(data, entityIndex, (int) ((getX(data, entityIndex) - width) / 16) * 16 + width);
+                setXa(data, entityIndex, 0);
+            }
+            else if (xa > 0) {
+                setX(data, entityIndex, (int) ((getX(data, entityIndex) + width) / 16 + 1) * 16 - width - 1);
+                setXa(data, entityIndex, 0);
+            }
+            return false;
+        } else {
+            setX(data, entityIndex, getX(data, entityIndex) + xa);
+            return true;
+        }
+    }
+
+    // return true if move is successful, false if blocked
+    private static boolean moveStepY(MarioBinData data, int entityIndex, float ya, MarioUpdateContextBin updateContext) {
+        float xa = 0;
+        boolean collide = false;
+        float x = getX(data, entityIndex);
+        float y = getY(data, entityIndex);
+        if (ya > 0) {
+            if (isBlocking(data, entityIndex, x + xa - width, y + ya, xa, 0, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya, xa, 0, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya + 1, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya + 1, xa, ya, updateContext))
+                collide = true;
+        }
+        else if (ya < 0) {
+            if (isBlocking(data, entityIndex, x + xa, y + ya - height, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa - width, y + ya - height, xa, ya, updateContext))
+                collide = true;
+            else if (isBlocking(data, entityIndex, x + xa + width, y + ya - height, xa, ya, updateContext))
+                collide = true;
+        }
+
+        if (collide) {
+            if (ya < 0) {
+                setY(data, entityIndex, (int) ((getY(data, entityIndex) - height) / 16) * 16 + height);
+                setYa(data, entityIndex, 0);
+            }
+            else if (ya > 0) {
+                setY(data, entityIndex, (int) (getY(data, entityIndex) / 16 + 1) * 16 - 1);
+                setOnGround(data, entityIndex, true);
+            }
+            return false;
+        } else {
+            setY(data, entityIndex, getY(data, entityIndex) + ya);
+            return true;
+        }
+    }
+
+    private static boolean isBlocking(MarioBinData data, int entityIndex, float _x, float _y, float xa, float ya,
+                                      MarioUpdateContextBin updateContext) {
+        int x = (int) (_x / 16);
+        int y = (int) (_y / 16);
+        if (x == (int) (getX(data, entityIndex) / 16) && y == (int) (getY(data, entityIndex) / 16))
+            return false;
+
+        boolean blocking = MarioLevelBin.isBlocking(x, y, ya, data);
+
+        if (blocking && ya == 0 && xa != 0) {
+            MarioWorldBin.bump(x, y, true, updateContext, data);
+        }
+
+        return blocking;
+    }
+
+    private static void bumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex,
+                                  MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) return;
+
+        float x = getX(data, entityIndex);
+        if (x + width > xTile * 16 && x - width < xTile * 16 + 16 && yTile == (int) ((getY(data, entityIndex) - 1) / 16)) {
+            setFacing(data, entityIndex, -MarioBin.getFacing(data));
+            setYa(data, entityIndex, -10);
+        }
+    }
+
+    private static boolean shellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex,
+                                             MarioUpdateContextBin updateContext) {
+        if (!getAlive(data, entityIndex)) return false;
+
+        float xD = getX(data, shellEntityIndex) - getX(data, entityIndex);
+        float yD = getY(data, shellEntityIndex) - getY(data, entityIndex);
+
+        if (xD > -16 && xD < 16) {
+            if (yD > -height && yD < height) {
+                if (entityIndex != shellEntityIndex) {
+                    MarioWorldBin.removeSprite(spriteCode(shellEntityIndex), updateContext, data);
+                }
+                MarioWorldBin.removeSprite(spriteCode(entityIndex), updateContext, data);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final IBinSpriteMethods methods = new IBinSpriteMethods() {
+        @Override
+        public final float GetX(MarioBinData data, int entityIndex) {
+            return getX(data, entityIndex);
+        }
+
+        @Override
+        public final void SetX(MarioBinData data, int entityIndex, float value) {
+            setX(data, entityIndex, value);
+        }
+
+        @Override
+        public final float GetY(MarioBinData data, int entityIndex) {
+            return getY(data, entityIndex);
+        }
+
+        @Override
+        public final void SetY(MarioBinData data, int entityIndex, float value) {
+            setY(data, entityIndex, value);
+        }
+
+        @Override
+        public final boolean GetAlive(MarioBinData data, int entityIndex) {
+            return getAlive(data, entityIndex);
+        }
+
+        @Override
+        public final void SetAlive(MarioBinData data, int entityIndex, boolean value) {
+            setAlive(data, entityIndex, value);
+        }
+
+        @Override
+        public final SpriteTypeCommon GetType(MarioBinData data, int entityIndex) {
+            return SpriteTypeCommon.SHELL;
+        }
+
+        @Override
+        public final void Update(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            update(data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void CollideCheck(MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            collideCheck(data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void BumpCheck(int xTile, int yTile, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            bumpCheck(xTile, yTile, data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final boolean ShellCollideCheck(int shellEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return shellCollideCheck(shellEntityIndex, data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final boolean FireballCollideCheck(int fireballEntityIndex, MarioBinData data, int entityIndex, MarioUpdateContextBin updateContext) {
+            return fireballCollideCheck(fireballEntityIndex, data, entityIndex, updateContext);
+        }
+
+        @Override
+        public final void Remove(int entityIndex, MarioBinData data) {
+            data.removeShell(entityIndex);
+        }
+    };
 }
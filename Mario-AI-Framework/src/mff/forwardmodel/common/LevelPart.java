@@ -57,19 +57,47 @@ public enum LevelPart {
         return value;
     }
 
+    // lookup tables indexed by the unsigned level part byte, filled in the static block below
+    private static final LevelPart[] levelParts = new LevelPart[256];
+    private static final byte[] levelBlocks = new byte[256];
+    private static final SpriteTypeCommon[] levelSprites = new SpriteTypeCommon[256];
+
+    static {
+        for (LevelPart levelPart : LevelPart.values())
+            levelParts[levelPart.value & 0xFF] = levelPart;
+        for (int i = 0; i < 256; i++) {
+            levelBlocks[i] = computeLevelBlock((byte) i);
+            try {
+                levelSprites[i] = computeLevelSprite((byte) i);
+            } catch (IllegalArgumentException e) {
+                levelSprites[i] = null; // not a valid level part value
+            }
+        }
+    }
+
     public static LevelPart getLevelPart(int value, boolean levelTile) {
         if (value == 18 || value == -11) // assume pipe with flower
             return PIPE_TOP_LEFT_WITH_FLOWER;
         if (!levelTile)
             value *= -1;
-        for (LevelPart levelPart : LevelPart.values()) {
-            if (levelPart.value == value)
-                return levelPart;
-        }
-        throw new IllegalArgumentException();
+        LevelPart levelPart = value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ? levelParts[value & 0xFF] : null;
+        if (levelPart == null)
+            throw new IllegalArgumentException();
+        return levelPart;
     }
 
     public static byte checkLevelBlock(byte levelPartValue) {
+        return levelBlocks[levelPartValue & 0xFF];
+    }
+
+    public static SpriteTypeCommon getLevelSprite(byte levelPartValue) {
+        SpriteTypeCommon spriteType = levelSprites[levelPartValue & 0xFF];
+        if (spriteType == null)
+            throw new IllegalArgumentException();
+        return spriteType;
+    }
+
+    private static byte computeLevelBlock(byte levelPartValue) {
         if (levelPartValue == PIPE_TOP_LEFT_WITH_FLOWER.getValue() ||
             levelPartValue == PIPE_TOP_LEFT_WITHOUT_FLOWER.getValue())
             return PIPE_TOP_LEFT.getValue();
@@ -79,7 +107,7 @@ public enum LevelPart {
             return levelPartValue;
     }
 
-    public static SpriteTypeCommon getLevelSprite(byte levelPartValue) {
+    private static SpriteTypeCommon computeLevelSprite(byte levelPartValue) {
         if (levelPartValue == PIPE_TOP_LEFT_WITH_FLOWER.getValue())
             return SpriteTypeCommon.getSpriteTypeSlim((byte) -ENEMY_FLOWER.value);
         if (levelPartValue == PIPE_TOP_LEFT_WITHOUT_FLOWER.getValue())
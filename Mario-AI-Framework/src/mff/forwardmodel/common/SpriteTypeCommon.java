@@ -29,11 +29,17 @@ public enum SpriteTypeCommon {
         return value;
     }
 
+    // indexed by value, values are consecutive from 0
+    private static final SpriteTypeCommon[] byValue = new SpriteTypeCommon[values().length];
+
+    static {
+        for (SpriteTypeCommon spriteTypeCommon : values())
+            byValue[spriteTypeCommon.value] = spriteTypeCommon;
+    }
+
     public static SpriteTypeCommon getSpriteTypeSlim(int value) {
-        for (SpriteTypeCommon spriteTypeCommon : SpriteTypeCommon.values()) {
-            if (spriteTypeCommon.value == value)
-                return spriteTypeCommon;
-        }
-        throw new IllegalArgumentException();
+        if (value < 0 || value >= byValue.length)
+            throw new IllegalArgumentException();
+        return byValue[value];
     }
 }
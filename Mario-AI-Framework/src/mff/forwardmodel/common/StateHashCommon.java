@@ -0,0 +1,31 @@
+package mff.forwardmodel.common;
+
+/**
+ * Zobrist-style keys for state hashing. Keys are derived from the hashed value by a 64-bit mixer
+ * (splitmix64 finalizer) instead of being looked up in random tables, so there is nothing to
+ * allocate or seed and the keys are the same in every run.
+ */
+public class StateHashCommon {
+
+    private StateHashCommon() { }
+
+    public static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Key of a dynamic tile that is no longer in its original state.
+     */
+    public static long tileKey(int dynamicTileId) {
+        return mix(0x100000000L | dynamicTileId);
+    }
+
+    /**
+     * Key of a sprite, positions are quantized to whole pixels.
+     */
+    public static long spriteKey(SpriteTypeCommon type, float x, float y) {
+        return mix(((long) type.ordinal() << 48) ^ ((long) ((int) x & 0xFFFFFF) << 24) ^ ((int) y & 0xFFFFFF));
+    }
+}
@@ -1,9 +1,128 @@
 package mff.forwardmodel.common;
 
+import java.util.EnumMap;
+
 public class StaticLevel {
-    public LevelTile[][] tiles;
+    public final LevelTile[][] tiles;
+
+    public final int tileWidth;
+    public final int tileHeight;
+
+    // tile values of the whole level in column-major order (x * tileHeight + y),
+    // a column is a contiguous run of tileHeight bytes so it can be copied in bulk
+    public final byte[] values;
+
+    // bit planes, one bit per tile, wordsPerColumn longs per column
+    private final int wordsPerColumn;
+    private final long[] blockAll;
+    private final long[] blockUpper;
+    private final long[] blockLower;
+    private final long[] dynamic;
+    // number of columns before x with a dynamic tile / with a bullet bill cannon, tileWidth + 1 entries
+    private final int[] dynamicColumnsBefore;
+    private final int[] cannonColumnsBefore;
+
+    public StaticLevel(LevelTile[][] tiles) {
+        this.tiles = tiles;
+        this.tileWidth = tiles.length;
+        this.tileHeight = tiles[0].length;
+        this.wordsPerColumn = (tileHeight + 63) >>> 6;
+
+        values = new byte[tileWidth * tileHeight];
+        blockAll = new long[tileWidth * wordsPerColumn];
+        blockUpper = new long[tileWidth * wordsPerColumn];
+        blockLower = new long[tileWidth * wordsPerColumn];
+        dynamic = new long[tileWidth * wordsPerColumn];
+
+        for (int x = 0; x < tileWidth; x++) {
+            for (int y = 0; y < tileHeight; y++) {
+                LevelTile tile = tiles[x][y];
+                values[x * tileHeight + y] = tile.levelPart.getValue();
+
+                int word = x * wordsPerColumn + (y >>> 6);
+                long bit = 1L << y;
+                if (tile.id != -1) {
+                    dynamic[word] |= bit;
+                    continue;
+                }
+                int features = TileFeaturesCommon.getTileFeatureMask(LevelPart.checkLevelBlock(tile.levelPart.getValue()));
+                if ((features & TileFeaturesCommon.BLOCK_ALL_MASK) != 0)
+                    blockAll[word] |= bit;
+                if ((features & TileFeaturesCommon.BLOCK_UPPER_MASK) != 0)
+                    blockUpper[word] |= bit;
+                if ((features & TileFeaturesCommon.BLOCK_LOWER_MASK) != 0)
+                    blockLower[word] |= bit;
+            }
+        }
+
+        dynamicColumnsBefore = new int[tileWidth + 1];
+        cannonColumnsBefore = new int[tileWidth + 1];
+        for (int x = 0; x < tileWidth; x++) {
+            boolean cannon = false;
+            for (int y = 0; y < tileHeight && !cannon; y++)
+                cannon = tiles[x][y].levelPart == LevelPart.BULLET_BILL_CANNON;
+            dynamicColumnsBefore[x + 1] = dynamicColumnsBefore[x] + (hasDynamicTiles(x) ? 1 : 0);
+            cannonColumnsBefore[x + 1] = cannonColumnsBefore[x] + (cannon ? 1 : 0);
+        }
+    }
+
+    /**
+     * Whether the tile can change during the game, such tiles have to be read
+     * from the level cutout. Coordinates have to be inside the level.
+     */
+    public boolean isDynamic(int xTile, int yTile) {
+        return (dynamic[xTile * wordsPerColumn + (yTile >>> 6)] & (1L << yTile)) != 0;
+    }
+
+    public boolean hasDynamicTiles(int xTile) {
+        int start = xTile * wordsPerColumn;
+        for (int i = start; i < start + wordsPerColumn; i++) {
+            if (dynamic[i] != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether no column in the range has a dynamic tile, the range is clamped to the level.
+     */
+    public boolean isStatic(int fromXTile, int toXTile) {
+        return countColumns(dynamicColumnsBefore, fromXTile, toXTile) == 0;
+    }
+
+    /**
+     * Whether some column in the range has a bullet bill cannon, the range is clamped to the level.
+     */
+    public boolean hasCannons(int fromXTile, int toXTile) {
+        return countColumns(cannonColumnsBefore, fromXTile, toXTile) != 0;
+    }
+
+    private int countColumns(int[] columnsBefore, int fromXTile, int toXTile) {
+        fromXTile = Math.max(fromXTile, 0);
+        toXTile = Math.min(toXTile, tileWidth - 1);
+        if (fromXTile > toXTile)
+            return 0;
+        return columnsBefore[toXTile + 1] - columnsBefore[fromXTile];
+    }
+
+    /**
+     * Blocking test for a tile that is not dynamic. Coordinates have to be inside the level.
+     */
+    public boolean isBlocking(int xTile, int yTile, float ya) {
+        int word = xTile * wordsPerColumn + (yTile >>> 6);
+        long bit = 1L << yTile;
+        if ((blockAll[word] & bit) != 0)
+            return true;
+        if (ya < 0)
+            return (blockUpper[word] & bit) != 0;
+        if (ya > 0)
+            return (blockLower[word] & bit) != 0;
+        return false;
+    }
 
     public static class LevelTile {
+        private static final EnumMap<LevelPart, LevelTile> staticTiles = new EnumMap<>(LevelPart.class);
+
         public final int id;
         public final LevelPart levelPart;
 
@@ -11,5 +130,14 @@ public class StaticLevel {
             this.id = id;
             this.levelPart = levelPart;
         }
+
+        /**
+         * Tiles that never change are immutable, a single shared instance per level part is enough.
+         */
+        public static LevelTile getStaticTile(LevelPart levelPart) {
+            synchronized (staticTiles) {
+                return staticTiles.computeIfAbsent(levelPart, part -> new LevelTile(-1, part));
+            }
+        }
     }
 }
@@ -14,6 +14,28 @@ public enum TileFeaturesCommon {
     ANIMATED,
     SPAWNER;
 
+    public static final int BLOCK_UPPER_MASK = 1 << 0;
+    public static final int BLOCK_ALL_MASK = 1 << 1;
+    public static final int BLOCK_LOWER_MASK = 1 << 2;
+    public static final int SPECIAL_MASK = 1 << 3;
+    public static final int LIFE_MASK = 1 << 4;
+    public static final int BUMPABLE_MASK = 1 << 5;
+    public static final int BREAKABLE_MASK = 1 << 6;
+    public static final int PICKABLE_MASK = 1 << 7;
+    public static final int ANIMATED_MASK = 1 << 8;
+    public static final int SPAWNER_MASK = 1 << 9;
+
+    public int getMask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Features of a tile as a bit mask (see the *_MASK constants), a single array load for the collision checks.
+     */
+    public static int getTileFeatureMask(byte levelPartValue) {
+        return featureMasks[levelPartValue & 0xFF];
+    }
+
     public static ArrayList<TileFeaturesCommon> getTileFeatures(byte levelPartValue) {
         switch (levelPartValue) {
             case 1: //GROUND_BLOCK
@@ -126,4 +148,14 @@ public enum TileFeaturesCommon {
     }};
 
     private static final ArrayList<TileFeaturesCommon> empty = new ArrayList<>();
+
+    // indexed by the unsigned tile byte, has to stay below the feature lists it is computed from
+    private static final int[] featureMasks = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            for (TileFeaturesCommon feature : getTileFeatures((byte) i))
+                featureMasks[i] |= feature.getMask();
+        }
+    }
 }
@@ -1,8 +1,12 @@
 package mff.forwardmodel.slim.core;
 
+import mff.forwardmodel.common.SpriteTypeCommon;
+
 public class MarioForwardModelSlim {
 
     private final MarioWorldSlim world;
+    // created on the first recorded advance, not shared with clones
+    private MarioUndoJournalSlim journal;
 
     public MarioForwardModelSlim(MarioWorldSlim world) {
         this.world = world;
@@ -12,6 +16,48 @@ public class MarioForwardModelSlim {
         this.world.update(actions);
     }
 
+    /**
+     * Advances by the same actions for the given number of ticks, stops early when the game ends.
+     */
+    public void advanceN(boolean[] actions, int ticks) {
+        this.world.updateN(actions, ticks);
+    }
+
+    /**
+     * Lets advanceN reuse results of earlier runs in which Mario was alone in a quiet part of the level,
+     * see MarioMacroCacheSlim. The cache is shared with all clones made afterwards, null turns it off.
+     */
+    public void setMacroCache(MarioMacroCacheSlim macroCache) {
+        this.world.macroCache = macroCache;
+    }
+
+    public MarioMacroCacheSlim getMacroCache() {
+        return this.world.macroCache;
+    }
+
+    /**
+     * Advance that can be taken back by undo without cloning the model first.
+     */
+    public void advanceWithUndo(boolean[] actions) {
+        if (this.journal == null)
+            this.journal = new MarioUndoJournalSlim();
+        this.world.updateRecorded(actions, this.journal);
+    }
+
+    /**
+     * Takes back the last advanceWithUndo, throws if there is none left.
+     * Plain advances made after it are not taken back and leave the model inconsistent.
+     */
+    public void undo() {
+        if (this.journal == null)
+            throw new IllegalStateException("Nothing to undo.");
+        this.world.undo(this.journal);
+    }
+
+    public int getUndoDepth() {
+        return this.journal == null ? 0 : this.journal.getDepth();
+    }
+
     public void advanceWindow(boolean[] actions, int rightWindowBorderX) {
         this.world.updateWindow(actions, rightWindowBorderX);
     }
@@ -27,6 +73,10 @@ public class MarioForwardModelSlim {
         return new MarioForwardModelSlim(this.world.clone());
     }
 
+    /**
+     * Returns a deep copy of the world, use only when the whole world is needed.
+     * For read-only queries use the allocation-free accessors below.
+     */
     public MarioWorldSlim getWorld() {
         return this.world.clone();
     }
@@ -73,4 +123,104 @@ public class MarioForwardModelSlim {
     public boolean mayMarioJump() {
         return this.world.mario.mayJump;
     }
+
+    // read-only view - no copies, callers must not keep references to world internals
+
+    public boolean isMarioAlive() {
+        return this.world.mario.alive;
+    }
+
+    public boolean isMarioOnGround() {
+        return this.world.mario.onGround;
+    }
+
+    public boolean isMarioLarge() {
+        return this.world.mario.isLarge;
+    }
+
+    public boolean isMarioFire() {
+        return this.world.mario.isFire;
+    }
+
+    public float getMarioXVelocity() {
+        return this.world.mario.xa;
+    }
+
+    public float getMarioYVelocity() {
+        return this.world.mario.ya;
+    }
+
+    public int getMarioJumpTime() {
+        return this.world.mario.jumpTime;
+    }
+
+    public int getCurrentTimer() {
+        return this.world.currentTimer;
+    }
+
+    public int getCurrentTick() {
+        return this.world.currentTick;
+    }
+
+    public int getCoins() {
+        return this.world.coins;
+    }
+
+    /**
+     * 64-bit key of Mario's dynamic state, live sprites and level changes, for transposition tables.
+     */
+    public long getStateHash() {
+        return this.world.stateHash;
+    }
+
+    public int getLevelTileWidth() {
+        return this.world.level.tileWidth;
+    }
+
+    public int getLevelTileHeight() {
+        return this.world.level.tileHeight;
+    }
+
+    public int getExitTileX() {
+        return this.world.level.exitTileX;
+    }
+
+    /**
+     * Tile value as seen by collision checks, only valid inside the current level cutout.
+     */
+    public byte getBlockValue(int xTile, int yTile) {
+        return this.world.level.getBlockValue(xTile, yTile);
+    }
+
+    /**
+     * Tile value of the level as it was loaded, valid for the whole level. Broken blocks and collected coins
+     * are not reflected, getBlockValue gives the current value.
+     */
+    public byte getStaticTileValue(int xTile, int yTile) {
+        return this.world.level.staticLevel.values[xTile * this.world.level.tileHeight + yTile];
+    }
+
+    public boolean isBlocking(int xTile, int yTile, float ya) {
+        return this.world.level.isBlocking(xTile, yTile, ya);
+    }
+
+    public int getSpriteCount() {
+        return this.world.sprites.size();
+    }
+
+    public SpriteTypeCommon getSpriteType(int index) {
+        return this.world.sprites.get(index).getType();
+    }
+
+    public float getSpriteX(int index) {
+        return this.world.sprites.get(index).x;
+    }
+
+    public float getSpriteY(int index) {
+        return this.world.sprites.get(index).y;
+    }
+
+    public boolean isSpriteAlive(int index) {
+        return this.world.sprites.get(index).alive;
+    }
 }
@@ -187,6 +187,7 @@ public class MarioGameSlim {
                 }
             }
         }
+        this.agent.gameOver();
         //System.out.println(world.gameStatus);
 
         double originalUpdateTimeDouble = originalUpdateTime;
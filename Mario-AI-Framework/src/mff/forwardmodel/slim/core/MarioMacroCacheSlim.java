@@ -0,0 +1,262 @@
+package mff.forwardmodel.slim.core;
+
+import mff.forwardmodel.common.StateHashCommon;
+import mff.forwardmodel.common.StaticLevel;
+import mff.forwardmodel.slim.sprites.MarioSlim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memoised updateN for worlds in which only Mario moves. When Mario is the only sprite, there is no
+ * dynamic tile in his reach or in the column where sprites spawn and no cannon on the screen, the ticks
+ * depend only on Mario, the actions and the static level around him. Such runs are stored with the
+ * resulting Mario and the tile column he was in after each tick, the level cutout is moved along those
+ * columns when a result is reused.
+ * Keys are the exact values of Mario's fields, results are bit-identical to simulating the ticks.
+ * Least recently used results are dropped once the cache is full. Shared by a model and its clones,
+ * so the methods are synchronized.
+ */
+public class MarioMacroCacheSlim {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final LinkedHashMap<Run, Run> runs;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    public MarioMacroCacheSlim() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MarioMacroCacheSlim(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive.");
+        this.runs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Run, Run> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return runs.size();
+    }
+
+    /**
+     * @return run to look up and fill in, null if the world is not in a state the cache can handle
+     */
+    Run prepare(MarioWorldSlim world, boolean[] actions, int ticks) {
+        if (world.sprites.size() != 1 || world.pauseTimer > 0 || !world.mario.alive
+                || (world.currentTimer > 0 && world.currentTimer <= 30 * ticks))
+            return null;
+        return new Run(world, actions, ticks);
+    }
+
+    /**
+     * Moves the world to the stored result of the run, false if there is none.
+     */
+    synchronized boolean apply(MarioWorldSlim world, Run run) {
+        Run stored = runs.get(run);
+        if (stored == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        stored.copyResultTo(world.mario);
+        world.cameraX = stored.cameraX;
+        world.cameraY = stored.cameraY;
+        world.currentTick += run.ticks;
+        if (world.currentTimer > 0)
+            world.currentTimer -= 30 * run.ticks;
+        for (int marioTileX : stored.marioTileXs)
+            world.level.update(marioTileX);
+        return true;
+    }
+
+    /**
+     * Stores the run if the simulated ticks depended on nothing but Mario and the static level.
+     */
+    synchronized void store(MarioWorldSlim world, Run run) {
+        StaticLevel staticLevel = world.level.staticLevel;
+        if (world.gameStatusCode != MarioWorldSlim.RUNNING || world.sprites.size() != 1 || !world.mario.alive
+                || world.coins != run.coins || world.level.levelHash != run.levelHash
+                || !staticLevel.isStatic(run.reachFromXTile, run.reachToXTile)
+                || !staticLevel.isStatic(run.spawnFromXTile, run.spawnToXTile)
+                || staticLevel.hasCannons(run.cameraFromXTile, run.cameraToXTile))
+            return;
+        run.setResult(world);
+        runs.put(run, run);
+    }
+
+    static final class Run {
+        // key
+        private final StaticLevel staticLevel;
+        private final int actionMask;
+        private final int ticks;
+        private final float x, y, xa, ya, xJumpSpeed, yJumpSpeed, xJumpStart;
+        private final int height, invulnerableTime, facing, jumpTime, flags;
+        private final int hash;
+
+        // checked when the run is stored
+        private final int coins;
+        private final long levelHash;
+        // columns Mario could collide with, where sprites could spawn and that the camera showed
+        private int reachFromXTile, reachToXTile;
+        private int spawnFromXTile = Integer.MAX_VALUE, spawnToXTile = Integer.MIN_VALUE;
+        private int cameraFromXTile = Integer.MAX_VALUE, cameraToXTile = Integer.MIN_VALUE;
+
+        // result
+        final int[] marioTileXs;
+        private float resultX, resultY, resultXa, resultYa, resultXJumpSpeed, resultYJumpSpeed, resultXJumpStart;
+        private int resultHeight, resultInvulnerableTime, resultFacing, resultJumpTime, resultFlags;
+        private float cameraX, cameraY;
+
+        private Run(MarioWorldSlim world, boolean[] actions, int ticks) {
+            MarioSlim mario = world.mario;
+            this.staticLevel = world.level.staticLevel;
+            int mask = 0;
+            for (int i = 0; i < actions.length; i++) {
+                if (actions[i])
+                    mask |= 1 << i;
+            }
+            this.actionMask = mask;
+            this.ticks = ticks;
+            this.x = mario.x;
+            this.y = mario.y;
+            this.xa = mario.xa;
+            this.ya = mario.ya;
+            this.xJumpSpeed = mario.xJumpSpeed;
+            this.yJumpSpeed = mario.yJumpSpeed;
+            this.xJumpStart = mario.xJumpStart;
+            this.height = mario.height;
+            this.invulnerableTime = mario.invulnerableTime;
+            this.facing = mario.facing;
+            this.jumpTime = mario.jumpTime;
+            this.flags = packFlags(mario);
+            this.coins = world.coins;
+            this.levelHash = world.level.levelHash;
+            this.marioTileXs = new int[ticks];
+            this.reachFromXTile = reachFromXTile(mario.x);
+            this.reachToXTile = reachToXTile(mario.x);
+
+            long h = StateHashCommon.mix(((long) actionMask << 32) | ticks);
+            h = StateHashCommon.mix(h ^ (((long) Float.floatToIntBits(x) << 32) | (Float.floatToIntBits(y) & 0xFFFFFFFFL)));
+            h = StateHashCommon.mix(h ^ (((long) Float.floatToIntBits(xa) << 32) | (Float.floatToIntBits(ya) & 0xFFFFFFFFL)));
+            h = StateHashCommon.mix(h ^ (((long) jumpTime << 32) | (flags & 0xFFFFFFFFL)));
+            this.hash = (int) (h ^ (h >>> 32));
+        }
+
+        // Mario is 8 pixels wide and moves less than a tile per tick, within a tick he stays
+        // between his positions before and after it
+        private static int reachFromXTile(float marioX) {
+            return (int) Math.floor((marioX - 16) / 16);
+        }
+
+        private static int reachToXTile(float marioX) {
+            return (int) ((marioX + 16) / 16);
+        }
+
+        void recordTick(int tick, MarioWorldSlim world) {
+            marioTileXs[tick] = (int) world.mario.x / 16;
+            reachFromXTile = Math.min(reachFromXTile, reachFromXTile(world.mario.x));
+            reachToXTile = Math.max(reachToXTile, reachToXTile(world.mario.x));
+            // same columns as the spawn and cannon checks of the tick
+            int rightColumnX = (int) (world.cameraX + MarioWorldSlim.marioGameWidth) / 16 + 1;
+            spawnFromXTile = Math.min(spawnFromXTile, rightColumnX);
+            spawnToXTile = Math.max(spawnToXTile, rightColumnX);
+            cameraFromXTile = Math.min(cameraFromXTile, (int) world.cameraX / 16 - 1);
+            cameraToXTile = Math.max(cameraToXTile, rightColumnX);
+        }
+
+        private static int packFlags(MarioSlim mario) {
+            return (mario.onGround ? 1 : 0)
+                    | (mario.wasOnGround ? 1 << 1 : 0)
+                    | (mario.isDucking ? 1 << 2 : 0)
+                    | (mario.mayJump ? 1 << 3 : 0)
+                    | (mario.canShoot ? 1 << 4 : 0)
+                    | (mario.isLarge ? 1 << 5 : 0)
+                    | (mario.isFire ? 1 << 6 : 0)
+                    | (mario.oldLarge ? 1 << 7 : 0)
+                    | (mario.oldFire ? 1 << 8 : 0);
+        }
+
+        private void setResult(MarioWorldSlim world) {
+            MarioSlim mario = world.mario;
+            resultX = mario.x;
+            resultY = mario.y;
+            resultXa = mario.xa;
+            resultYa = mario.ya;
+            resultXJumpSpeed = mario.xJumpSpeed;
+            resultYJumpSpeed = mario.yJumpSpeed;
+            resultXJumpStart = mario.xJumpStart;
+            resultHeight = mario.height;
+            resultInvulnerableTime = mario.invulnerableTime;
+            resultFacing = mario.facing;
+            resultJumpTime = mario.jumpTime;
+            resultFlags = packFlags(mario);
+            cameraX = world.cameraX;
+            cameraY = world.cameraY;
+        }
+
+        private void copyResultTo(MarioSlim mario) {
+            mario.x = resultX;
+            mario.y = resultY;
+            mario.xa = resultXa;
+            mario.ya = resultYa;
+            mario.xJumpSpeed = resultXJumpSpeed;
+            mario.yJumpSpeed = resultYJumpSpeed;
+            mario.xJumpStart = resultXJumpStart;
+            mario.height = resultHeight;
+            mario.invulnerableTime = resultInvulnerableTime;
+            mario.facing = resultFacing;
+            mario.jumpTime = resultJumpTime;
+            mario.onGround = (resultFlags & 1) != 0;
+            mario.wasOnGround = (resultFlags & 1 << 1) != 0;
+            mario.isDucking = (resultFlags & 1 << 2) != 0;
+            mario.mayJump = (resultFlags & 1 << 3) != 0;
+            mario.canShoot = (resultFlags & 1 << 4) != 0;
+            mario.isLarge = (resultFlags & 1 << 5) != 0;
+            mario.isFire = (resultFlags & 1 << 6) != 0;
+            mario.oldLarge = (resultFlags & 1 << 7) != 0;
+            mario.oldFire = (resultFlags & 1 << 8) != 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Run)) return false;
+            Run that = (Run) o;
+            return hash == that.hash
+                    && staticLevel == that.staticLevel
+                    && actionMask == that.actionMask
+                    && ticks == that.ticks
+                    && Float.floatToIntBits(x) == Float.floatToIntBits(that.x)
+                    && Float.floatToIntBits(y) == Float.floatToIntBits(that.y)
+                    && Float.floatToIntBits(xa) == Float.floatToIntBits(that.xa)
+                    && Float.floatToIntBits(ya) == Float.floatToIntBits(that.ya)
+                    && Float.floatToIntBits(xJumpSpeed) == Float.floatToIntBits(that.xJumpSpeed)
+                    && Float.floatToIntBits(yJumpSpeed) == Float.floatToIntBits(that.yJumpSpeed)
+                    && Float.floatToIntBits(xJumpStart) == Float.floatToIntBits(that.xJumpStart)
+                    && height == that.height
+                    && invulnerableTime == that.invulnerableTime
+                    && facing == that.facing
+                    && jumpTime == that.jumpTime
+                    && flags == that.flags;
+        }
+    }
+}
@@ -7,6 +7,10 @@ import mff.forwardmodel.slim.sprites.ShellSlim;
 public abstract class MarioSpriteSlim {
     public float x, y;
     public boolean alive;
+    // only set while MarioWorldSlim removes the sprites of a finished tick
+    boolean removalPending;
+    // key of the sprite in the sprite part of the world state hash, 0 while it is not counted
+    long hashKey;
 
     public abstract SpriteTypeCommon getType();
     public abstract void update(MarioUpdateContextSlim updateContext);
@@ -17,5 +21,21 @@ public abstract class MarioSpriteSlim {
     public boolean fireballCollideCheck(FireballSlim fireball, MarioUpdateContextSlim updateContext) { return false; }
 
     public abstract MarioSpriteSlim clone();
+
+    // pushes the fields an update can change, restoreFrom pops them in reverse order
+    public void saveTo(MarioUndoJournalSlim journal) {
+        journal.pushFloat(x);
+        journal.pushFloat(y);
+        journal.pushBoolean(alive);
+        journal.pushLong(hashKey);
+    }
+
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        hashKey = journal.popLong();
+        alive = journal.popBoolean();
+        y = journal.popFloat();
+        x = journal.popFloat();
+    }
+
     public abstract boolean deepEquals(Object o);
 }
@@ -0,0 +1,130 @@
+package mff.forwardmodel.slim.core;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the states overwritten by recorded updates, see MarioWorldSlim.updateRecorded.
+ * Every recorded tick pushes a frame: the mutable fields of the world, the level and all sprites
+ * before the tick, followed by the level cells changed during the tick.
+ * Values are popped in the reverse order they were pushed, the arrays only grow.
+ */
+public class MarioUndoJournalSlim {
+    static final int CELL_CHANGE = 0;
+    static final int ALIVE_FLAG_CHANGE = 1;
+
+    private int[] ints = new int[256];
+    private int intCount = 0;
+    private float[] floats = new float[256];
+    private int floatCount = 0;
+    private long[] longs = new long[16];
+    private int longCount = 0;
+    private MarioSpriteSlim[] sprites = new MarioSpriteSlim[32];
+    private int spriteCount = 0;
+
+    private int depth = 0;
+    // level changes recorded in the frame that is being built
+    int frameChanges = 0;
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Forgets all frames, the recorded states can no longer be restored.
+     */
+    public void clear() {
+        intCount = 0;
+        floatCount = 0;
+        longCount = 0;
+        for (int i = 0; i < spriteCount; i++)
+            sprites[i] = null;
+        spriteCount = 0;
+        depth = 0;
+        frameChanges = 0;
+    }
+
+    void beginFrame() {
+        frameChanges = 0;
+    }
+
+    void endFrame() {
+        pushInt(frameChanges);
+        depth++;
+    }
+
+    int popFrame() {
+        if (depth == 0)
+            throw new IllegalStateException("Nothing to undo.");
+        depth--;
+        return popInt();
+    }
+
+    public void pushInt(int value) {
+        if (intCount == ints.length)
+            ints = Arrays.copyOf(ints, ints.length * 2);
+        ints[intCount++] = value;
+    }
+
+    public int popInt() {
+        return ints[--intCount];
+    }
+
+    public void pushBoolean(boolean value) {
+        pushInt(value ? 1 : 0);
+    }
+
+    public boolean popBoolean() {
+        return popInt() != 0;
+    }
+
+    public void pushFloat(float value) {
+        if (floatCount == floats.length)
+            floats = Arrays.copyOf(floats, floats.length * 2);
+        floats[floatCount++] = value;
+    }
+
+    public float popFloat() {
+        return floats[--floatCount];
+    }
+
+    public void pushLong(long value) {
+        if (longCount == longs.length)
+            longs = Arrays.copyOf(longs, longs.length * 2);
+        longs[longCount++] = value;
+    }
+
+    public long popLong() {
+        return longs[--longCount];
+    }
+
+    void pushSprite(MarioSpriteSlim sprite) {
+        if (spriteCount == sprites.length)
+            sprites = Arrays.copyOf(sprites, sprites.length * 2);
+        sprites[spriteCount++] = sprite;
+    }
+
+    MarioSpriteSlim popSprite() {
+        MarioSpriteSlim sprite = sprites[--spriteCount];
+        sprites[spriteCount] = null;
+        return sprite;
+    }
+
+    /**
+     * Called by the level before it overwrites a cutout cell during a recorded tick.
+     */
+    public void recordCell(int cutoutIndex, byte oldValue) {
+        pushInt(cutoutIndex);
+        pushInt(oldValue);
+        pushInt(CELL_CHANGE);
+        frameChanges++;
+    }
+
+    /**
+     * Called by the level before it marks a dynamic tile as no longer alive during a recorded tick.
+     */
+    public void recordAliveFlag(int tileId) {
+        pushInt(tileId);
+        pushInt(ALIVE_FLAG_CHANGE);
+        frameChanges++;
+    }
+}
@@ -16,12 +16,13 @@ public class MarioUpdateContextSlim {
     public final ArrayList<ShellSlim> shellsToCheck = new ArrayList<>();
     final ArrayList<MarioSpriteSlim> addedSprites = new ArrayList<>();
     final ArrayList<MarioSpriteSlim> removedSprites = new ArrayList<>();
+    final SpriteColumnIndexSlim spriteColumnIndex = new SpriteColumnIndexSlim();
 
-    private static final ArrayDeque<MarioUpdateContextSlim> pool = new ArrayDeque<>();
-    //private static final ArrayBlockingQueue<MarioUpdateContextSlim> pool = new ArrayBlockingQueue<>(); //TODO might be thread safe and fast?
+    // contexts are confined to the thread that updates the world, every thread has its own pool
+    private static final ThreadLocal<ArrayDeque<MarioUpdateContextSlim>> pool = ThreadLocal.withInitial(ArrayDeque::new);
 
     public static MarioUpdateContextSlim get() {
-        MarioUpdateContextSlim ctx = pool.poll();
+        MarioUpdateContextSlim ctx = pool.get().poll();
         if (ctx != null) return ctx;
 
         MarioUpdateContextSlim newCtx = new MarioUpdateContextSlim();
@@ -31,6 +32,6 @@ public class MarioUpdateContextSlim {
     }
 
     static void back(MarioUpdateContextSlim ctx) {
-        pool.add(ctx);
+        pool.get().add(ctx);
     }
 }
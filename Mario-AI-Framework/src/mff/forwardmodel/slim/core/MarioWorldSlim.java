@@ -6,6 +6,7 @@ import engine.helper.GameStatus;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import engine.sprites.*;
 import mff.forwardmodel.common.LevelPart;
+import mff.forwardmodel.common.StateHashCommon;
 import mff.forwardmodel.slim.level.MarioLevelSlim;
 import mff.forwardmodel.common.TileFeaturesCommon;
 import mff.forwardmodel.slim.sprites.*;
@@ -19,8 +20,8 @@ public class MarioWorldSlim {
     public static final int TIME_OUT = 3;
 
     // workaround the nonexistence of MarioGame here
-    public static int marioGameWidth = 256;
-    public static int marioGameHeight = 256;
+    public static final int marioGameWidth = 256;
+    public static final int marioGameHeight = 256;
 
     public int gameStatusCode;
     public int pauseTimer;
@@ -34,6 +35,21 @@ public class MarioWorldSlim {
 
     public ArrayList<MarioSpriteSlim> sprites;
 
+    // 64-bit key of the dynamic state (Mario, live sprites, level changes), recomputed at the end of every update
+    public long stateHash;
+    // sum of the keys of live sprites other than Mario, kept as sprites are added, moved and removed
+    private long spritesHash;
+
+    // sprite list and sprites shared with a clone, copied on the first write by either world
+    private boolean spritesShared;
+    // recorded updates that can still be undone, the journal references the sprites so they are never shared then
+    private int recordedFrames;
+    // shared with clones, null when updateN always simulates
+    public MarioMacroCacheSlim macroCache;
+
+    // false switches back to all-pairs shell and fireball checks and per sprite removal, used by SlimParityTest
+    boolean useBroadphase = true;
+
     private MarioWorldSlim() { }
 
     public MarioWorldSlim(MarioWorld originalWorld, int levelCutoutTileWidth) {
@@ -85,6 +101,11 @@ public class MarioWorldSlim {
         }
 
         this.level = new MarioLevelSlim(originalWorld.level, levelCutoutTileWidth, (int) mario.x / 16);
+        for (MarioSpriteSlim sprite : sprites) {
+            if (sprite.alive && sprite != mario)
+                this.hashSprite(sprite);
+        }
+        this.updateStateHash();
     }
 
     private int convertGameStatus(GameStatus gameStatus) {
@@ -160,22 +181,47 @@ public class MarioWorldSlim {
         clone.currentTick = this.currentTick;
         clone.coins = this.coins;
         clone.lives = this.lives;
+        clone.useBroadphase = this.useBroadphase;
+        clone.stateHash = this.stateHash;
+        clone.spritesHash = this.spritesHash;
+        clone.macroCache = this.macroCache;
 
         clone.level = this.level.clone();
 
-        clone.sprites = new ArrayList<>();
+        if (this.recordedFrames == 0) {
+            // most clones are only read or are dropped before they are advanced
+            clone.sprites = this.sprites;
+            clone.mario = this.mario;
+            clone.spritesShared = true;
+            this.spritesShared = true;
+        }
+        else
+            clone.copySpritesFrom(this);
+
+        return clone;
+    }
 
-        for (MarioSpriteSlim sprite : this.sprites) {
+    private void copySpritesFrom(MarioWorldSlim source) {
+        ArrayList<MarioSpriteSlim> sourceSprites = source.sprites;
+        this.sprites = new ArrayList<>(Math.max(16, sourceSprites.size()));
+        this.mario = null;
+        for (MarioSpriteSlim sprite : sourceSprites) {
             MarioSpriteSlim spriteClone = sprite.clone();
-            clone.sprites.add(spriteClone);
+            spriteClone.hashKey = sprite.hashKey;
+            this.sprites.add(spriteClone);
             if (spriteClone.getType() == SpriteTypeCommon.MARIO)
-                clone.mario = (MarioSlim) spriteClone;
+                this.mario = (MarioSlim) spriteClone;
         }
 
-        if (clone.mario == null)
-            clone.mario = (MarioSlim) this.mario.clone();
+        if (this.mario == null)
+            this.mario = (MarioSlim) source.mario.clone();
+    }
 
-        return clone;
+    private void ensureSpritesOwned() {
+        if (spritesShared) {
+            copySpritesFrom(this);
+            spritesShared = false;
+        }
     }
 
     public ArrayList<MarioSpriteSlim> getEnemies() {
@@ -192,11 +238,22 @@ public class MarioWorldSlim {
         updateContext.addedSprites.add(sprite);
         sprite.alive = true;
         sprite.update(updateContext);
+        if (sprite.alive)
+            this.hashSprite(sprite);
     }
 
     public void removeSprite(MarioSpriteSlim sprite, MarioUpdateContextSlim updateContext) {
         updateContext.removedSprites.add(sprite);
         sprite.alive = false;
+        this.spritesHash -= sprite.hashKey;
+        sprite.hashKey = 0;
+    }
+
+    // replaces the key of a live sprite other than Mario after it moved
+    private void hashSprite(MarioSpriteSlim sprite) {
+        long key = StateHashCommon.spriteKey(sprite.getType(), sprite.x, sprite.y);
+        this.spritesHash += key - sprite.hashKey;
+        sprite.hashKey = key;
     }
 
     public void win() {
@@ -204,11 +261,13 @@ public class MarioWorldSlim {
     }
 
     public void lose() {
+        this.ensureSpritesOwned();
         this.gameStatusCode = LOSE;
         this.mario.alive = false;
     }
 
     private void timeout() {
+        this.ensureSpritesOwned();
         this.gameStatusCode = TIME_OUT;
         this.mario.alive = false;
     }
@@ -221,6 +280,60 @@ public class MarioWorldSlim {
         if (this.gameStatusCode != RUNNING) {
             return;
         }
+
+        this.ensureSpritesOwned();
+        MarioUpdateContextSlim updateContext = MarioUpdateContextSlim.get();
+        updateContext.world = this;
+        updateContext.actions = actions;
+
+        this.tick(updateContext);
+        this.updateStateHash();
+
+        updateContext.world = null;
+        updateContext.actions = null;
+        updateContext.fireballsOnScreen = 0;
+        MarioUpdateContextSlim.back(updateContext);
+    }
+
+    /**
+     * Same as calling update ticks times, but the update context is acquired once,
+     * the state hash is computed once and it stops as soon as the game is won or lost.
+     */
+    public void updateN(boolean[] actions, int ticks) {
+        if (this.gameStatusCode != RUNNING || ticks <= 0) {
+            return;
+        }
+
+        this.ensureSpritesOwned();
+        MarioMacroCacheSlim.Run cachedRun = null;
+        if (this.macroCache != null && this.recordedFrames == 0) {
+            cachedRun = this.macroCache.prepare(this, actions, ticks);
+            if (cachedRun != null && this.macroCache.apply(this, cachedRun)) {
+                this.updateStateHash();
+                return;
+            }
+        }
+
+        MarioUpdateContextSlim updateContext = MarioUpdateContextSlim.get();
+        updateContext.world = this;
+        updateContext.actions = actions;
+
+        for (int i = 0; i < ticks && this.gameStatusCode == RUNNING; i++) {
+            this.tick(updateContext);
+            if (cachedRun != null)
+                cachedRun.recordTick(i, this);
+        }
+        if (cachedRun != null)
+            this.macroCache.store(this, cachedRun);
+        this.updateStateHash();
+
+        updateContext.world = null;
+        updateContext.actions = null;
+        updateContext.fireballsOnScreen = 0;
+        MarioUpdateContextSlim.back(updateContext);
+    }
+
+    private void tick(MarioUpdateContextSlim updateContext) {
         if (this.pauseTimer > 0) {
             this.pauseTimer -= 1;
             return;
@@ -235,9 +348,6 @@ public class MarioWorldSlim {
             }
         }
 
-        MarioUpdateContextSlim updateContext = MarioUpdateContextSlim.get();
-        updateContext.world = this;
-
         this.currentTick += 1;
         this.cameraX = this.mario.x - marioGameWidth / 2;
         if (this.cameraX + marioGameWidth > this.level.width) {
@@ -305,13 +415,14 @@ public class MarioWorldSlim {
             }
         }
 
-        updateContext.actions = actions;
-
         for (MarioSpriteSlim sprite : sprites) {
             if (!sprite.alive) {
                 continue;
             }
             sprite.update(updateContext);
+            // sprites only move in their own update, a sprite removed by it is no longer counted
+            if (sprite.alive && sprite != mario)
+                this.hashSprite(sprite);
         }
         for (MarioSpriteSlim sprite : sprites) {
             if (!sprite.alive) {
@@ -320,48 +431,80 @@ public class MarioWorldSlim {
             sprite.collideCheck(updateContext);
         }
 
-        for (ShellSlim shell : updateContext.shellsToCheck) {
-            for (MarioSpriteSlim sprite : sprites) {
-                if (sprite != shell && shell.alive && sprite.alive) {
-                    if (sprite.shellCollideCheck(shell, updateContext)) {
-                        this.removeSprite(sprite, updateContext);
-                    }
-                }
-            }
-        }
-        if (updateContext.shellsToCheck.size() != 0)
-            updateContext.shellsToCheck.clear();
-
-        for (FireballSlim fireball : updateContext.fireballsToCheck) {
-            for (MarioSpriteSlim sprite : sprites) {
-                if (sprite != fireball && fireball.alive && sprite.alive) {
-                    if (sprite.fireballCollideCheck(fireball, updateContext)) {
-                        this.removeSprite(fireball, updateContext);
-                    }
-                }
-            }
-        }
-        if (updateContext.fireballsToCheck.size() != 0)
-            updateContext.fireballsToCheck.clear();
+        if (updateContext.shellsToCheck.size() != 0 || updateContext.fireballsToCheck.size() != 0)
+            this.checkShellAndFireballCollisions(updateContext);
 
         this.level.update((int) mario.x / 16);
 
-        for (MarioSpriteSlim newSprite : updateContext.addedSprites) {
-            sprites.add(newSprite);
-        }
-        for (MarioSpriteSlim removedSprite : updateContext.removedSprites) {
-            sprites.remove(removedSprite);
-        }
+        this.applySpriteChanges(updateContext);
+    }
 
-        if (updateContext.addedSprites.size() != 0)
-            updateContext.addedSprites.clear();
-        if (updateContext.removedSprites.size() != 0)
-            updateContext.removedSprites.clear();
+    /**
+     * Update that pushes everything it overwrites to the journal, undo takes it back.
+     */
+    public void updateRecorded(boolean[] actions, MarioUndoJournalSlim journal) {
+        this.ensureSpritesOwned();
+        journal.pushInt(gameStatusCode);
+        journal.pushInt(pauseTimer);
+        journal.pushInt(currentTimer);
+        journal.pushFloat(cameraX);
+        journal.pushFloat(cameraY);
+        journal.pushInt(currentTick);
+        journal.pushInt(coins);
+        journal.pushInt(lives);
+        journal.pushLong(stateHash);
+        journal.pushLong(spritesHash);
+        level.saveTo(journal);
+        // reversed, undo pops the sprites in list order
+        for (int i = sprites.size() - 1; i >= 0; i--) {
+            MarioSpriteSlim sprite = sprites.get(i);
+            sprite.saveTo(journal);
+            journal.pushSprite(sprite);
+        }
+        journal.pushInt(sprites.size());
+
+        journal.beginFrame();
+        level.journal = journal;
+        this.update(actions);
+        level.journal = null;
+        journal.endFrame();
+        recordedFrames++;
+    }
 
-        updateContext.world = null;
-        updateContext.actions = null;
-        updateContext.fireballsOnScreen = 0;
-        MarioUpdateContextSlim.back(updateContext);
+    /**
+     * Restores the world as it was before the last recorded update in the journal.
+     */
+    public void undo(MarioUndoJournalSlim journal) {
+        int changes = journal.popFrame();
+        recordedFrames--;
+        for (int i = 0; i < changes; i++) {
+            if (journal.popInt() == MarioUndoJournalSlim.CELL_CHANGE) {
+                byte oldValue = (byte) journal.popInt();
+                level.undoCell(journal.popInt(), oldValue);
+            }
+            else
+                level.undoAliveFlag(journal.popInt());
+        }
+
+        // spawned sprites are dropped, removed ones come back
+        int spriteCount = journal.popInt();
+        sprites.clear();
+        for (int i = 0; i < spriteCount; i++) {
+            MarioSpriteSlim sprite = journal.popSprite();
+            sprite.restoreFrom(journal);
+            sprites.add(sprite);
+        }
+        level.restoreFrom(journal);
+        spritesHash = journal.popLong();
+        stateHash = journal.popLong();
+        lives = journal.popInt();
+        coins = journal.popInt();
+        currentTick = journal.popInt();
+        cameraY = journal.popFloat();
+        cameraX = journal.popFloat();
+        currentTimer = journal.popInt();
+        pauseTimer = journal.popInt();
+        gameStatusCode = journal.popInt();
     }
 
     /**
@@ -388,6 +531,7 @@ public class MarioWorldSlim {
             }
         }
 
+        this.ensureSpritesOwned();
         MarioUpdateContextSlim updateContext = MarioUpdateContextSlim.get();
         updateContext.world = this;
 
@@ -469,6 +613,9 @@ public class MarioWorldSlim {
                 continue;
             }
             sprite.update(updateContext);
+            // sprites only move in their own update, a sprite removed by it is no longer counted
+            if (sprite.alive && sprite != mario)
+                this.hashSprite(sprite);
         }
         for (MarioSpriteSlim sprite : sprites) {
             if (!sprite.alive) {
@@ -477,8 +624,101 @@ public class MarioWorldSlim {
             sprite.collideCheck(updateContext);
         }
 
+        if (updateContext.shellsToCheck.size() != 0 || updateContext.fireballsToCheck.size() != 0)
+            this.checkShellAndFireballCollisions(updateContext);
+
+        this.level.update((int) mario.x / 16);
+
+        this.applySpriteChanges(updateContext);
+        this.updateStateHash();
+
+        updateContext.world = null;
+        updateContext.actions = null;
+        updateContext.fireballsOnScreen = 0;
+        MarioUpdateContextSlim.back(updateContext);
+    }
+
+    /**
+     * Mario is hashed with whole pixel positions and velocities in eighths of a pixel, other sprites
+     * by type and whole pixel position. Sprite keys are summed so the order of sprites does not matter,
+     * the sum is kept in addSprite, removeSprite and after every sprite update. Broken blocks, collected
+     * coins and spawned enemies are in the incrementally kept level hash.
+     */
+    private void updateStateHash() {
+        long marioHash = StateHashCommon.spriteKey(SpriteTypeCommon.MARIO, mario.x, mario.y);
+        marioHash = StateHashCommon.mix(marioHash ^ ((long) (int) (mario.xa * 8) << 32) ^ ((int) (mario.ya * 8) & 0xFFFFFFFFL));
+        long marioFlags = (mario.isLarge ? 1 : 0) | (mario.isFire ? 2 : 0) | (mario.onGround ? 4 : 0)
+                | (mario.mayJump ? 8 : 0) | (mario.canShoot ? 16 : 0) | (mario.isDucking ? 32 : 0)
+                | ((long) (mario.jumpTime & 0xFFFF) << 8) | ((long) (mario.invulnerableTime & 0xFFFF) << 24) | ((long) gameStatusCode << 40);
+        marioHash = StateHashCommon.mix(marioHash ^ marioFlags);
+
+        this.stateHash = marioHash ^ StateHashCommon.mix(spritesHash) ^ level.levelHash;
+    }
+
+    // sprite part of the state hash summed over the sprite list, spritesHash has to be equal to it
+    long computeSpritesHash() {
+        long sum = 0;
+        for (MarioSpriteSlim sprite : sprites) {
+            if (sprite.alive && sprite != mario)
+                sum += StateHashCommon.spriteKey(sprite.getType(), sprite.x, sprite.y);
+        }
+        return sum;
+    }
+
+    long getSpritesHash() {
+        return spritesHash;
+    }
+
+    private MarioSpriteSlim spawnEnemy(SpriteTypeCommon type, int x, int y, int dir) {
+        if (type == SpriteTypeCommon.ENEMY_FLOWER) {
+            // flower enemy constructor needs to call update - which uses world
+            MarioUpdateContextSlim updateContext = MarioUpdateContextSlim.get();
+            updateContext.world = this;
+
+            FlowerEnemySlim flowerEnemy = new FlowerEnemySlim(x * 16 + 17, y * 16 + 18, updateContext);
+
+            updateContext.world = null;
+            MarioUpdateContextSlim.back(updateContext);
+
+            return flowerEnemy;
+        }
+        else
+            return new EnemySlim(x * 16 + 8, y * 16 + 15, dir, type);
+    }
+
+    private void checkShellAndFireballCollisions(MarioUpdateContextSlim updateContext) {
+        if (!useBroadphase) {
+            for (ShellSlim shell : updateContext.shellsToCheck) {
+                for (MarioSpriteSlim sprite : sprites) {
+                    if (sprite != shell && shell.alive && sprite.alive) {
+                        if (sprite.shellCollideCheck(shell, updateContext)) {
+                            this.removeSprite(sprite, updateContext);
+                        }
+                    }
+                }
+            }
+            for (FireballSlim fireball : updateContext.fireballsToCheck) {
+                for (MarioSpriteSlim sprite : sprites) {
+                    if (sprite != fireball && fireball.alive && sprite.alive) {
+                        if (sprite.fireballCollideCheck(fireball, updateContext)) {
+                            this.removeSprite(fireball, updateContext);
+                        }
+                    }
+                }
+            }
+            updateContext.shellsToCheck.clear();
+            updateContext.fireballsToCheck.clear();
+            return;
+        }
+
+        // positions do not change from here on, one index serves both passes
+        SpriteColumnIndexSlim columnIndex = updateContext.spriteColumnIndex;
+        columnIndex.build(sprites);
+
         for (ShellSlim shell : updateContext.shellsToCheck) {
-            for (MarioSpriteSlim sprite : sprites) {
+            int candidateCount = columnIndex.query(shell.x);
+            for (int i = 0; i < candidateCount; i++) {
+                MarioSpriteSlim sprite = sprites.get(columnIndex.candidates[i]);
                 if (sprite != shell && shell.alive && sprite.alive) {
                     if (sprite.shellCollideCheck(shell, updateContext)) {
                         this.removeSprite(sprite, updateContext);
@@ -486,11 +726,10 @@ public class MarioWorldSlim {
                 }
             }
         }
-        if (updateContext.shellsToCheck.size() != 0)
-            updateContext.shellsToCheck.clear();
-
         for (FireballSlim fireball : updateContext.fireballsToCheck) {
-            for (MarioSpriteSlim sprite : sprites) {
+            int candidateCount = columnIndex.query(fireball.x);
+            for (int i = 0; i < candidateCount; i++) {
+                MarioSpriteSlim sprite = sprites.get(columnIndex.candidates[i]);
                 if (sprite != fireball && fireball.alive && sprite.alive) {
                     if (sprite.fireballCollideCheck(fireball, updateContext)) {
                         this.removeSprite(fireball, updateContext);
@@ -498,68 +737,70 @@ public class MarioWorldSlim {
                 }
             }
         }
-        if (updateContext.fireballsToCheck.size() != 0)
-            updateContext.fireballsToCheck.clear();
-
-        this.level.update((int) mario.x / 16);
+        updateContext.shellsToCheck.clear();
+        updateContext.fireballsToCheck.clear();
+    }
 
+    private void applySpriteChanges(MarioUpdateContextSlim updateContext) {
         for (MarioSpriteSlim newSprite : updateContext.addedSprites) {
             sprites.add(newSprite);
         }
-        for (MarioSpriteSlim removedSprite : updateContext.removedSprites) {
-            sprites.remove(removedSprite);
+
+        if (updateContext.removedSprites.size() != 0) {
+            if (!useBroadphase) {
+                for (MarioSpriteSlim removedSprite : updateContext.removedSprites) {
+                    sprites.remove(removedSprite);
+                }
+            }
+            else {
+                // single compacting pass instead of an O(n) remove per sprite, keeps the order of the rest
+                for (MarioSpriteSlim removedSprite : updateContext.removedSprites) {
+                    removedSprite.removalPending = true;
+                }
+                int kept = 0;
+                for (int i = 0; i < sprites.size(); i++) {
+                    MarioSpriteSlim sprite = sprites.get(i);
+                    if (sprite.removalPending)
+                        sprite.removalPending = false;
+                    else
+                        sprites.set(kept++, sprite);
+                }
+                sprites.subList(kept, sprites.size()).clear();
+                // removed sprites that were not in the list
+                for (MarioSpriteSlim removedSprite : updateContext.removedSprites) {
+                    removedSprite.removalPending = false;
+                }
+            }
         }
 
         if (updateContext.addedSprites.size() != 0)
             updateContext.addedSprites.clear();
         if (updateContext.removedSprites.size() != 0)
             updateContext.removedSprites.clear();
-
-        updateContext.world = null;
-        updateContext.actions = null;
-        updateContext.fireballsOnScreen = 0;
-        MarioUpdateContextSlim.back(updateContext);
-    }
-
-    private MarioSpriteSlim spawnEnemy(SpriteTypeCommon type, int x, int y, int dir) {
-        if (type == SpriteTypeCommon.ENEMY_FLOWER) {
-            // flower enemy constructor needs to call update - which uses world
-            MarioUpdateContextSlim updateContext = MarioUpdateContextSlim.get();
-            updateContext.world = this;
-
-            FlowerEnemySlim flowerEnemy = new FlowerEnemySlim(x * 16 + 17, y * 16 + 18, updateContext);
-
-            updateContext.world = null;
-            MarioUpdateContextSlim.back(updateContext);
-
-            return flowerEnemy;
-        }
-        else
-            return new EnemySlim(x * 16 + 8, y * 16 + 15, dir, type);
     }
 
     public void bump(int xTile, int yTile, boolean canBreakBricks, MarioUpdateContextSlim updateContext) {
         byte blockValue = this.level.getBlockValue(xTile, yTile);
-        ArrayList<TileFeaturesCommon> features = TileFeaturesCommon.getTileFeatures(blockValue);
+        int features = TileFeaturesCommon.getTileFeatureMask(blockValue);
 
-        if (features.contains(TileFeaturesCommon.BUMPABLE)) {
+        if ((features & TileFeaturesCommon.BUMPABLE_MASK) != 0) {
             bumpInto(xTile, yTile - 1, updateContext);
             level.setBlock(xTile, yTile, 14);
 
-            if (features.contains(TileFeaturesCommon.SPECIAL)) {
+            if ((features & TileFeaturesCommon.SPECIAL_MASK) != 0) {
                 if (!this.mario.isLarge) {
                     addSprite(new MushroomSlim(xTile * 16 + 9, yTile * 16 + 8), updateContext);
                 } else {
                     addSprite(new FireFlowerSlim(xTile * 16 + 9, yTile * 16 + 8), updateContext);
                 }
-            } else if (features.contains(TileFeaturesCommon.LIFE)) {
+            } else if ((features & TileFeaturesCommon.LIFE_MASK) != 0) {
                 addSprite(new LifeMushroomSlim(xTile * 16 + 9, yTile * 16 + 8), updateContext);
             } else {
                 mario.collectCoin(updateContext);
             }
         }
 
-        if (features.contains(TileFeaturesCommon.BREAKABLE)) {
+        if ((features & TileFeaturesCommon.BREAKABLE_MASK) != 0) {
             bumpInto(xTile, yTile - 1, updateContext);
             if (canBreakBricks)
                 level.setBlock(xTile, yTile, 0);
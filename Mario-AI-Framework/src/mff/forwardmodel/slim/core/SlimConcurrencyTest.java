@@ -0,0 +1,141 @@
+package mff.forwardmodel.slim.core;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioWorld;
+import engine.helper.MarioActions;
+import mff.forwardmodel.common.Converter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays the same seeded games serially and then concurrently in one JVM,
+ * results of both runs have to be bit-identical.
+ */
+public class SlimConcurrencyTest {
+    private static final int GAME_TICKS = 1500;
+    private static final int LOOKAHEAD_TICKS = 12;
+
+    private static String getLevel(String filepath) {
+        String content = "";
+        try {
+            content = new String(Files.readAllBytes(Paths.get(filepath)));
+            return content;
+        } catch (IOException ignored) {
+            // try with working directory set one folder down
+        }
+        try {
+            content = new String(Files.readAllBytes(Paths.get("." + filepath)));
+        }
+        catch (IOException e) {
+            System.out.println("Level couldn't be loaded, please check the path provided with regards to your working directory.");
+            System.exit(1);
+        }
+        return content;
+    }
+
+    private static final int MIN_THREADS = 4;
+
+    private static final String[] levelTypes = { "original", "krys", "hopper", "ore", "notchParam", "patternCount" };
+
+    public static void main(String[] args) throws Exception {
+        // interleaving is what is tested, so at least a few threads run even on machines with fewer cores
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Math.max(MIN_THREADS, Runtime.getRuntime().availableProcessors());
+
+        ArrayList<String> levels = new ArrayList<>();
+        for (String levelType : levelTypes) {
+            for (int i = 1; i <= 8; i++) {
+                levels.add(getLevel("./levels/" + levelType + "/lvl-" + i + ".txt"));
+            }
+        }
+
+        long[] serialResults = new long[levels.size()];
+        for (int i = 0; i < levels.size(); i++) {
+            serialResults[i] = playGame(levels.get(i), i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < levels.size(); i++) {
+            String level = levels.get(i);
+            int seed = i;
+            futures.add(executor.submit(() -> playGame(level, seed)));
+        }
+
+        int differences = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            long concurrentResult = futures.get(i).get();
+            if (concurrentResult != serialResults[i]) {
+                System.out.println("Game " + i + " differs: serial " + Long.toHexString(serialResults[i])
+                        + ", concurrent " + Long.toHexString(concurrentResult));
+                differences++;
+            }
+        }
+        executor.shutdown();
+
+        System.out.println("-------------");
+        if (differences == 0)
+            System.out.println("ALL EQUAL (" + levels.size() + " games, " + threads + " threads)");
+        else
+            System.out.println("NOT EQUAL (" + differences + " of " + levels.size() + " games)");
+    }
+
+    /**
+     * Plays a game with a seeded random controller that checks its actions on clones,
+     * returns a hash of every visited state.
+     */
+    private static long playGame(String level, int seed) {
+        MarioWorld setupWorld = new MarioWorld(null);
+        setupWorld.visuals = false;
+        setupWorld.initializeLevel(level, 1000 * 200);
+        setupWorld.update(new boolean[MarioActions.numberOfActions()]);
+        MarioForwardModelSlim model = Converter.originalToSlim(new MarioForwardModel(setupWorld), 27);
+
+        Random random = new Random(seed);
+        long hash = 17;
+        for (int tick = 0; tick < GAME_TICKS && model.getGameStatusCode() == MarioWorldSlim.RUNNING; tick++) {
+            boolean[] actions = null;
+            for (int attempt = 0; attempt < 6; attempt++) {
+                // left, right, down, speed, jump
+                actions = new boolean[] { random.nextInt(8) == 0, random.nextInt(4) != 0, false,
+                        random.nextBoolean(), random.nextInt(3) == 0 };
+                MarioForwardModelSlim lookahead = model.clone();
+                for (int i = 0; i < LOOKAHEAD_TICKS; i++)
+                    lookahead.advance(actions);
+                hash = hash * 31 + hashState(lookahead);
+                if (lookahead.isMarioAlive())
+                    break;
+            }
+            model.advance(actions);
+            hash = hash * 31 + hashState(model);
+        }
+        return hash;
+    }
+
+    private static long hashState(MarioForwardModelSlim model) {
+        long hash = model.getGameStatusCode();
+        hash = hash * 31 + model.getCurrentTick();
+        hash = hash * 31 + model.getCoins();
+        hash = hash * 31 + Float.floatToIntBits(model.getMarioXVelocity());
+        hash = hash * 31 + Float.floatToIntBits(model.getMarioYVelocity());
+        for (int i = 0; i < model.getSpriteCount(); i++) {
+            hash = hash * 31 + model.getSpriteType(i).getValue();
+            hash = hash * 31 + Float.floatToIntBits(model.getSpriteX(i));
+            hash = hash * 31 + Float.floatToIntBits(model.getSpriteY(i));
+        }
+        int marioTileX = (int) model.getMarioX() / 16;
+        for (int x = marioTileX - 8; x <= marioTileX + 8; x++) {
+            for (int y = 0; y < model.getLevelTileHeight(); y++) {
+                hash = hash * 31 + model.getBlockValue(x, y);
+            }
+        }
+        return hash;
+    }
+}
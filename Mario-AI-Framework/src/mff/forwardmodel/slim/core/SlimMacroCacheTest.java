@@ -0,0 +1,158 @@
+package mff.forwardmodel.slim.core;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioWorld;
+import engine.helper.MarioActions;
+import mff.forwardmodel.common.Converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Plays seeded random games on every level pack with two slim models advanced by random runs of advanceN,
+ * one of them with a macro cache. Every run is first made on a clone of the cached model, so the model
+ * itself reuses the stored result whenever the run could be cached. Both models have to stay equal.
+ */
+public class SlimMacroCacheTest {
+    private static final int GAME_TICKS = 1000;
+    private static final int MAX_RUN_TICKS = 6;
+
+    private static long hits = 0;
+    private static long misses = 0;
+
+    private static String getLevel(String filepath) {
+        String content = "";
+        try {
+            content = new String(Files.readAllBytes(Paths.get(filepath)));
+            return content;
+        } catch (IOException ignored) {
+            // try with working directory set one folder down
+        }
+        try {
+            content = new String(Files.readAllBytes(Paths.get("." + filepath)));
+        }
+        catch (IOException e) {
+            System.out.println("Level couldn't be loaded, please check the path provided with regards to your working directory.");
+            System.exit(1);
+        }
+        return content;
+    }
+
+    private static final String[] levelTypes = { "original", "krys", "ge", "hopper", "notch", "notchParam",
+            "notchParamRand", "ore", "patternCount", "patternOccur", "patternWeightCount" };
+
+    public static void main(String[] args) {
+        // number of levels played from each pack
+        int levelsPerPack = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        int games = 0;
+        int differences = 0;
+        for (String levelType : levelTypes) {
+            for (int i = 1; i <= levelsPerPack; i++) {
+                String path = "./levels/" + levelType + "/lvl-" + i + ".txt";
+                if (!new File(path).exists() && !new File("." + path).exists())
+                    break;
+                int tick = playGame(getLevel(path), games);
+                games++;
+                if (tick != -1) {
+                    System.out.println(levelType + "-" + i + " differs at tick " + tick);
+                    differences++;
+                }
+            }
+        }
+
+        System.out.println("-------------");
+        System.out.println("cache hits " + hits + ", misses " + misses);
+        if (differences == 0)
+            System.out.println("ALL EQUAL (" + games + " games)");
+        else
+            System.out.println("NOT EQUAL (" + differences + " of " + games + " games)");
+    }
+
+    private static boolean[] randomActions(Random random) {
+        // left, right, down, speed, jump - speed also shoots fireballs
+        return new boolean[] { random.nextInt(8) == 0, random.nextInt(4) != 0, random.nextInt(16) == 0,
+                random.nextBoolean(), random.nextInt(3) == 0 };
+    }
+
+    /**
+     * @return first tick at which the models differ, -1 if they never do
+     */
+    private static int playGame(String level, int seed) {
+        MarioWorld setupWorld = new MarioWorld(null);
+        setupWorld.visuals = false;
+        setupWorld.initializeLevel(level, 1000 * 200);
+        setupWorld.mario.isLarge = seed % 2 == 0;
+        setupWorld.mario.isFire = seed % 2 == 0;
+        setupWorld.update(new boolean[MarioActions.numberOfActions()]);
+        MarioForwardModelSlim control = Converter.originalToSlim(new MarioForwardModel(setupWorld), 27);
+        MarioForwardModelSlim model = control.clone();
+        MarioMacroCacheSlim cache = new MarioMacroCacheSlim();
+        model.setMacroCache(cache);
+
+        Random random = new Random(seed);
+        int tick = 0;
+        while (tick < GAME_TICKS && control.getGameStatusCode() == MarioWorldSlim.RUNNING) {
+            int runTicks = random.nextInt(MAX_RUN_TICKS) + 1;
+            boolean[] actions = randomActions(random);
+            MarioForwardModelSlim firstRun = model.clone();
+            firstRun.advanceN(actions, runTicks);
+            model.advanceN(actions, runTicks);
+            control.advanceN(actions, runTicks);
+            tick += runTicks;
+            if (!areEqual(firstRun, control) || !areEqual(model, control)) {
+                hits += cache.getHits();
+                misses += cache.getMisses();
+                return tick;
+            }
+        }
+        hits += cache.getHits();
+        misses += cache.getMisses();
+        return -1;
+    }
+
+    private static boolean areEqual(MarioForwardModelSlim model, MarioForwardModelSlim control) {
+        MarioWorldSlim world = model.getWorld();
+        MarioWorldSlim controlWorld = control.getWorld();
+        if (world.gameStatusCode != controlWorld.gameStatusCode
+                || world.currentTick != controlWorld.currentTick
+                || world.currentTimer != controlWorld.currentTimer
+                || world.coins != controlWorld.coins
+                || world.lives != controlWorld.lives
+                || world.stateHash != controlWorld.stateHash
+                || world.mario.x != controlWorld.mario.x
+                || world.mario.y != controlWorld.mario.y
+                || world.mario.xa != controlWorld.mario.xa
+                || world.mario.ya != controlWorld.mario.ya
+                || world.mario.jumpTime != controlWorld.mario.jumpTime
+                || world.mario.onGround != controlWorld.mario.onGround
+                || world.mario.mayJump != controlWorld.mario.mayJump
+                || world.cameraX != controlWorld.cameraX
+                || world.cameraY != controlWorld.cameraY
+                || world.level.cutoutLeftBorderX != controlWorld.level.cutoutLeftBorderX
+                || world.sprites.size() != controlWorld.sprites.size())
+            return false;
+
+        for (int i = 0; i < world.sprites.size(); i++) {
+            MarioSpriteSlim sprite = world.sprites.get(i);
+            MarioSpriteSlim controlSprite = controlWorld.sprites.get(i);
+            if (sprite.getClass() != controlSprite.getClass()
+                    || sprite.x != controlSprite.x
+                    || sprite.y != controlSprite.y
+                    || sprite.alive != controlSprite.alive)
+                return false;
+        }
+
+        int marioTileX = (int) world.mario.x / 16;
+        for (int x = marioTileX - 13; x <= marioTileX + 13; x++) {
+            for (int y = 0; y < world.level.tileHeight; y++) {
+                if (world.level.getBlockValue(x, y) != controlWorld.level.getBlockValue(x, y))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
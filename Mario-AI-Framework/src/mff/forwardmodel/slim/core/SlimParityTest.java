@@ -0,0 +1,130 @@
+package mff.forwardmodel.slim.core;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioWorld;
+import engine.helper.MarioActions;
+import mff.forwardmodel.common.Converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Plays seeded random games on every level pack with two slim worlds side by side, one using
+ * the column broadphase for shell and fireball collisions and one checking all pairs.
+ * The two have to stay identical tick by tick, including the order of sprites.
+ */
+public class SlimParityTest {
+    private static final int GAME_TICKS = 2000;
+
+    private static long totalTicks = 0;
+
+    private static String getLevel(String filepath) {
+        String content = "";
+        try {
+            content = new String(Files.readAllBytes(Paths.get(filepath)));
+            return content;
+        } catch (IOException ignored) {
+            // try with working directory set one folder down
+        }
+        try {
+            content = new String(Files.readAllBytes(Paths.get("." + filepath)));
+        }
+        catch (IOException e) {
+            System.out.println("Level couldn't be loaded, please check the path provided with regards to your working directory.");
+            System.exit(1);
+        }
+        return content;
+    }
+
+    private static final String[] levelTypes = { "original", "krys", "ge", "hopper", "notch", "notchParam",
+            "notchParamRand", "ore", "patternCount", "patternOccur", "patternWeightCount" };
+
+    public static void main(String[] args) {
+        // number of levels played from each pack
+        int levelsPerPack = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+
+        int games = 0;
+        int differences = 0;
+        for (String levelType : levelTypes) {
+            for (int i = 1; i <= levelsPerPack; i++) {
+                String path = "./levels/" + levelType + "/lvl-" + i + ".txt";
+                if (!new File(path).exists() && !new File("." + path).exists())
+                    break;
+                int tick = playGame(getLevel(path), games);
+                games++;
+                if (tick != -1) {
+                    System.out.println(levelType + "-" + i + " differs at tick " + tick);
+                    differences++;
+                }
+            }
+        }
+
+        System.out.println("-------------");
+        if (differences == 0)
+            System.out.println("ALL EQUAL (" + games + " games, " + totalTicks + " ticks)");
+        else
+            System.out.println("NOT EQUAL (" + differences + " of " + games + " games)");
+    }
+
+    /**
+     * @return first tick at which the worlds differ, -1 if they never do
+     */
+    private static int playGame(String level, int seed) {
+        MarioWorld setupWorld = new MarioWorld(null);
+        setupWorld.visuals = false;
+        setupWorld.initializeLevel(level, 1000 * 200);
+        // fire Mario shoots fireballs and survives more hits
+        setupWorld.mario.isLarge = true;
+        setupWorld.mario.isFire = true;
+        setupWorld.update(new boolean[MarioActions.numberOfActions()]);
+        MarioWorldSlim world = Converter.originalToSlim(new MarioForwardModel(setupWorld), 27).getWorld();
+        MarioWorldSlim referenceWorld = world.clone();
+        referenceWorld.useBroadphase = false;
+
+        Random random = new Random(seed);
+        for (int tick = 0; tick < GAME_TICKS && world.gameStatusCode == MarioWorldSlim.RUNNING; tick++) {
+            // left, right, down, speed, jump - speed also shoots fireballs
+            boolean[] actions = { random.nextInt(8) == 0, random.nextInt(4) != 0, random.nextInt(16) == 0,
+                    random.nextBoolean(), random.nextInt(3) == 0 };
+            world.update(actions);
+            referenceWorld.update(actions);
+            totalTicks++;
+            if (!areEqual(world, referenceWorld))
+                return tick;
+        }
+        return -1;
+    }
+
+    private static boolean areEqual(MarioWorldSlim world, MarioWorldSlim referenceWorld) {
+        if (world.gameStatusCode != referenceWorld.gameStatusCode
+                || world.coins != referenceWorld.coins
+                || world.mario.x != referenceWorld.mario.x
+                || world.mario.y != referenceWorld.mario.y
+                || world.mario.xa != referenceWorld.mario.xa
+                || world.mario.ya != referenceWorld.mario.ya
+                || world.sprites.size() != referenceWorld.sprites.size())
+            return false;
+
+        for (int i = 0; i < world.sprites.size(); i++) {
+            MarioSpriteSlim sprite = world.sprites.get(i);
+            MarioSpriteSlim referenceSprite = referenceWorld.sprites.get(i);
+            if (sprite.getType() != referenceSprite.getType()
+                    || sprite.x != referenceSprite.x
+                    || sprite.y != referenceSprite.y
+                    || sprite.alive != referenceSprite.alive)
+                return false;
+        }
+
+        int marioTileX = (int) world.mario.x / 16;
+        for (int x = marioTileX - 8; x <= marioTileX + 8; x++) {
+            for (int y = 0; y < world.level.tileHeight; y++) {
+                if (world.level.getBlockValue(x, y) != referenceWorld.level.getBlockValue(x, y))
+                    return false;
+            }
+        }
+        return true;
+    }
+}
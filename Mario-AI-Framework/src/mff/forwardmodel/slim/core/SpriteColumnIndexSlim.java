@@ -0,0 +1,98 @@
+package mff.forwardmodel.slim.core;
+
+import java.util.ArrayList;
+
+/**
+ * Alive sprites bucketed by the tile column of their x position. Built once per tick
+ * before shell and fireball collisions, which only hit sprites closer than 16 pixels
+ * horizontally, so only the neighbouring columns need to be checked. Candidates are
+ * returned in sprite list order to keep the collision outcome independent of bucketing.
+ */
+class SpriteColumnIndexSlim {
+    private int[] spriteColumns = new int[16];
+    private int[] sortedSprites = new int[16];
+    private int[] columnStarts = new int[32];
+    private int[] columnSlots = new int[32];
+    private int firstColumn;
+    private int columnCount;
+
+    int[] candidates = new int[16];
+
+    private static int getColumn(float x) {
+        return (int) Math.floor(x / 16);
+    }
+
+    void build(ArrayList<MarioSpriteSlim> sprites) {
+        int spriteCount = sprites.size();
+        if (spriteColumns.length < spriteCount) {
+            spriteColumns = new int[spriteCount * 2];
+            sortedSprites = new int[spriteCount * 2];
+            candidates = new int[spriteCount * 2];
+        }
+
+        int minColumn = Integer.MAX_VALUE;
+        int maxColumn = Integer.MIN_VALUE;
+        for (int i = 0; i < spriteCount; i++) {
+            MarioSpriteSlim sprite = sprites.get(i);
+            if (!sprite.alive)
+                continue;
+            int column = getColumn(sprite.x);
+            spriteColumns[i] = column;
+            minColumn = Math.min(minColumn, column);
+            maxColumn = Math.max(maxColumn, column);
+        }
+        if (minColumn > maxColumn) {
+            columnCount = 0;
+            return;
+        }
+
+        firstColumn = minColumn;
+        columnCount = maxColumn - minColumn + 1;
+        if (columnStarts.length < columnCount + 1) {
+            columnStarts = new int[(columnCount + 1) * 2];
+            columnSlots = new int[(columnCount + 1) * 2];
+        }
+
+        // counting sort, stable so every column keeps sprite list order
+        for (int c = 0; c <= columnCount; c++)
+            columnStarts[c] = 0;
+        for (int i = 0; i < spriteCount; i++) {
+            if (sprites.get(i).alive)
+                columnStarts[spriteColumns[i] - firstColumn + 1]++;
+        }
+        for (int c = 0; c < columnCount; c++)
+            columnStarts[c + 1] += columnStarts[c];
+        System.arraycopy(columnStarts, 0, columnSlots, 0, columnCount);
+        for (int i = 0; i < spriteCount; i++) {
+            if (sprites.get(i).alive)
+                sortedSprites[columnSlots[spriteColumns[i] - firstColumn]++] = i;
+        }
+    }
+
+    /**
+     * Fills candidates with indices of sprites in the column of x and both neighbouring columns.
+     * @return number of candidates, sorted by sprite list index
+     */
+    int query(float x) {
+        int column = getColumn(x) - firstColumn;
+        int from = Math.max(column - 1, 0);
+        int to = Math.min(column + 1, columnCount - 1);
+        if (from > to)
+            return 0;
+
+        int start = columnStarts[from];
+        int count = columnStarts[to + 1] - start;
+        System.arraycopy(sortedSprites, start, candidates, 0, count);
+        // at most three sorted runs, insertion sort merges them cheaply
+        for (int i = 1; i < count; i++) {
+            int index = candidates[i];
+            int j = i - 1;
+            while (j >= 0 && candidates[j] > index) {
+                candidates[j + 1] = candidates[j];
+                j--;
+            }
+            candidates[j + 1] = index;
+        }
+        return count;
+    }
+}
@@ -5,9 +5,10 @@ import engine.helper.SpriteType;
 import mff.forwardmodel.common.LevelPart;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.common.StaticLevel;
+import mff.forwardmodel.common.StateHashCommon;
 import mff.forwardmodel.common.TileFeaturesCommon;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
 public class MarioLevelSlim {
@@ -18,14 +19,24 @@ public class MarioLevelSlim {
     public int exitTileX;
 
     public StaticLevel staticLevel;
-    public static int cutoutTileWidth;
+    public int cutoutTileWidth;
 
+    // both arrays are shared copy-on-write between a level and its clones,
+    // only write to them after calling ensureCutoutOwned / ensureAliveFlagsOwned
     public byte[] levelCutout;
     public boolean[] aliveFlags;
+    private boolean cutoutShared;
+    private boolean aliveFlagsShared;
     public int currentCutoutCenter;
     public int cutoutArrayBeginningIndex; // index of the current array beginning
     public int cutoutLeftBorderX;
 
+    // XOR of the keys of all dynamic tiles that are no longer alive, kept up to date by setBlock
+    public long levelHash;
+
+    // only set by MarioWorldSlim for the duration of a recorded update, never cloned
+    public MarioUndoJournalSlim journal;
+
     private MarioLevelSlim() { }
 
     public MarioLevelSlim(MarioLevel level, int cutoutTileWidth, int marioTileX) {
@@ -35,15 +46,14 @@ public class MarioLevelSlim {
         this.tileHeight = level.tileHeight;
         this.exitTileX = level.exitTileX;
 
-        MarioLevelSlim.cutoutTileWidth = cutoutTileWidth;
-        if (MarioLevelSlim.cutoutTileWidth > tileWidth)
-            MarioLevelSlim.cutoutTileWidth = tileWidth;
+        if (cutoutTileWidth > tileWidth)
+            cutoutTileWidth = tileWidth;
+        this.cutoutTileWidth = cutoutTileWidth;
 
         int[][] originalLevelTiles = level.getLevelTiles();
         SpriteType[][] originalSpriteTemplates = level.getSpriteTemplates();
 
-        staticLevel = new StaticLevel();
-        staticLevel.tiles = new StaticLevel.LevelTile[originalLevelTiles.length][originalLevelTiles[0].length];
+        StaticLevel.LevelTile[][] tiles = new StaticLevel.LevelTile[originalLevelTiles.length][originalLevelTiles[0].length];
         int dynamicTileCounter = 0;
         for (int x = 0; x < originalLevelTiles.length; x++) {
             for (int y = 0; y < originalLevelTiles[x].length; y++) {
@@ -65,13 +75,14 @@ public class MarioLevelSlim {
                     levelPart = LevelPart.getLevelPart(originalSpriteTemplates[x][y].getValue(), false);
 
                 if (LevelPart.isDynamic(levelPart)) {
-                    staticLevel.tiles[x][y] = new StaticLevel.LevelTile(dynamicTileCounter, levelPart);
+                    tiles[x][y] = new StaticLevel.LevelTile(dynamicTileCounter, levelPart);
                     dynamicTileCounter++;
                 }
                 else
-                    staticLevel.tiles[x][y] = new StaticLevel.LevelTile(-1, levelPart);
+                    tiles[x][y] = StaticLevel.LevelTile.getStaticTile(levelPart);
             }
         }
+        staticLevel = new StaticLevel(tiles);
 
         levelCutout = new byte[cutoutTileWidth * this.tileHeight];
         aliveFlags = new boolean[dynamicTileCounter];
@@ -101,13 +112,11 @@ public class MarioLevelSlim {
 
         int column = 0;
         for (int x = copyStart; x <= copyEnd; x++) {
-            for (int y = 0; y < this.tileHeight; y++) {
-                if (x < 0 || x >= tileWidth)
-                    levelCutout[column * tileHeight + y] = LevelPart.EMPTY.getValue();
-                else
-                    // no need for alive check, still initializing
-                    levelCutout[column * tileHeight + y] = staticLevel.tiles[x][y].levelPart.getValue();
-            }
+            if (x < 0 || x >= tileWidth)
+                Arrays.fill(levelCutout, column * tileHeight, (column + 1) * tileHeight, LevelPart.EMPTY.getValue());
+            else
+                // no need for alive check, still initializing
+                System.arraycopy(staticLevel.values, x * tileHeight, levelCutout, column * tileHeight, tileHeight);
             column++;
         }
     }
@@ -167,30 +176,73 @@ public class MarioLevelSlim {
         clone.currentCutoutCenter = this.currentCutoutCenter;
         clone.cutoutArrayBeginningIndex = this.cutoutArrayBeginningIndex;
         clone.cutoutLeftBorderX = this.cutoutLeftBorderX;
+        clone.cutoutTileWidth = this.cutoutTileWidth;
+        clone.levelHash = this.levelHash;
 
-        clone.levelCutout = new byte[this.levelCutout.length];
-        System.arraycopy(this.levelCutout, 0, clone.levelCutout, 0, this.levelCutout.length);
-
-        clone.aliveFlags = new boolean[this.aliveFlags.length];
-        System.arraycopy(this.aliveFlags, 0, clone.aliveFlags, 0, this.aliveFlags.length);
+        // arrays are copied lazily on the first write by either of the two levels
+        clone.levelCutout = this.levelCutout;
+        clone.aliveFlags = this.aliveFlags;
+        clone.cutoutShared = true;
+        clone.aliveFlagsShared = true;
+        this.cutoutShared = true;
+        this.aliveFlagsShared = true;
 
         return clone;
     }
 
+    private void ensureCutoutOwned() {
+        if (cutoutShared) {
+            byte[] copy = new byte[levelCutout.length];
+            System.arraycopy(levelCutout, 0, copy, 0, levelCutout.length);
+            levelCutout = copy;
+            cutoutShared = false;
+        }
+    }
+
+    private void ensureAliveFlagsOwned() {
+        if (aliveFlagsShared) {
+            boolean[] copy = new boolean[aliveFlags.length];
+            System.arraycopy(aliveFlags, 0, copy, 0, aliveFlags.length);
+            aliveFlags = copy;
+            aliveFlagsShared = false;
+        }
+    }
+
+    /**
+     * Pushes the cutout position and the level hash, the cells are journaled as they change.
+     */
+    public void saveTo(MarioUndoJournalSlim journal) {
+        journal.pushInt(currentCutoutCenter);
+        journal.pushInt(cutoutArrayBeginningIndex);
+        journal.pushInt(cutoutLeftBorderX);
+        journal.pushLong(levelHash);
+    }
+
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        levelHash = journal.popLong();
+        cutoutLeftBorderX = journal.popInt();
+        cutoutArrayBeginningIndex = journal.popInt();
+        currentCutoutCenter = journal.popInt();
+    }
+
+    public void undoCell(int cutoutIndex, byte oldValue) {
+        ensureCutoutOwned();
+        levelCutout[cutoutIndex] = oldValue;
+    }
+
+    public void undoAliveFlag(int tileId) {
+        ensureAliveFlagsOwned();
+        aliveFlags[tileId] = true;
+    }
+
     public void update(int marioTileX) {
         if (currentCutoutCenter != marioTileX) {
             if (currentCutoutCenter < marioTileX && cutoutLeftBorderX + cutoutTileWidth != tileWidth) { // move right
                 int newColumnIndex = cutoutTileWidth % 2 == 0 ? marioTileX + cutoutTileWidth / 2 - 1 : marioTileX + cutoutTileWidth / 2;
                 if (newColumnIndex >= tileWidth) // beyond end of level
                     return;
-                int y = 0;
-                for (int i = cutoutArrayBeginningIndex; i < cutoutArrayBeginningIndex + tileHeight; i++) {
-                    if (staticLevel.tiles[newColumnIndex][y].id == -1 || aliveFlags[staticLevel.tiles[newColumnIndex][y].id])
-                        levelCutout[i] = staticLevel.tiles[newColumnIndex][y].levelPart.getValue();
-                    else
-                        levelCutout[i] = LevelPart.getUsedState(staticLevel.tiles[newColumnIndex][y].levelPart).getValue();
-                    y++;
-                }
+                ensureCutoutOwned();
+                copyColumn(newColumnIndex, cutoutArrayBeginningIndex);
                 currentCutoutCenter++;
                 cutoutLeftBorderX++;
                 cutoutArrayBeginningIndex = (cutoutArrayBeginningIndex + tileHeight) % (cutoutTileWidth * this.tileHeight);
@@ -198,19 +250,12 @@ public class MarioLevelSlim {
             else if (currentCutoutCenter > marioTileX && cutoutLeftBorderX - 1 >= 0) { // move left
                 if (cutoutLeftBorderX <= 0) // left cutout border <= beginning of level
                     return;
+                ensureCutoutOwned();
                 int cutoutLastColumnIndex = cutoutArrayBeginningIndex - tileHeight;
                 if (cutoutLastColumnIndex < 0)
                     cutoutLastColumnIndex = (cutoutTileWidth * this.tileHeight) - tileHeight;
                 int newColumnIndex = marioTileX - cutoutTileWidth / 2;
-                int y = 0;
-                for (int i = cutoutLastColumnIndex; i < cutoutLastColumnIndex + tileHeight; i++) {
-                    if (staticLevel.tiles[newColumnIndex][y].id == -1
-                            || aliveFlags[staticLevel.tiles[newColumnIndex][y].id])
-                        levelCutout[i] = staticLevel.tiles[newColumnIndex][y].levelPart.getValue();
-                    else
-                        levelCutout[i] = LevelPart.getUsedState(staticLevel.tiles[newColumnIndex][y].levelPart).getValue();
-                    y++;
-                }
+                copyColumn(newColumnIndex, cutoutLastColumnIndex);
                 currentCutoutCenter--;
                 cutoutLeftBorderX--;
                 cutoutArrayBeginningIndex -= tileHeight;
@@ -220,12 +265,43 @@ public class MarioLevelSlim {
         }
     }
 
+    // static level column followed by the used state of every dynamic tile that is no longer alive
+    private void copyColumn(int columnX, int cutoutIndex) {
+        if (journal != null) {
+            for (int y = 0; y < tileHeight; y++)
+                journal.recordCell(cutoutIndex + y, levelCutout[cutoutIndex + y]);
+        }
+        System.arraycopy(staticLevel.values, columnX * tileHeight, levelCutout, cutoutIndex, tileHeight);
+        if (!staticLevel.hasDynamicTiles(columnX))
+            return;
+        for (int y = 0; y < tileHeight; y++) {
+            if (staticLevel.isDynamic(columnX, y)) {
+                StaticLevel.LevelTile tile = staticLevel.tiles[columnX][y];
+                if (!aliveFlags[tile.id])
+                    levelCutout[cutoutIndex + y] = LevelPart.getUsedState(tile.levelPart).getValue();
+            }
+        }
+    }
+
     public boolean isBlocking(int xTile, int yTile, float ya) {
+        if (xTile < 0) {
+            xTile = 0;
+        }
+        if (xTile > this.tileWidth - 1) {
+            xTile = this.tileWidth - 1;
+        }
+        if (yTile < 0 || yTile > this.tileHeight - 1) {
+            return false;
+        }
+        // only tiles that can change go through the cutout
+        if (!staticLevel.isDynamic(xTile, yTile))
+            return staticLevel.isBlocking(xTile, yTile, ya);
+
         byte blockValue = this.getBlockValue(xTile, yTile);
-        ArrayList<TileFeaturesCommon> features = TileFeaturesCommon.getTileFeatures(blockValue);
-        boolean blocking = features.contains(TileFeaturesCommon.BLOCK_ALL);
-        blocking |= (ya < 0) && features.contains(TileFeaturesCommon.BLOCK_UPPER);
-        blocking |= (ya > 0) && features.contains(TileFeaturesCommon.BLOCK_LOWER);
+        int features = TileFeaturesCommon.getTileFeatureMask(blockValue);
+        boolean blocking = (features & TileFeaturesCommon.BLOCK_ALL_MASK) != 0;
+        blocking |= (ya < 0) && (features & TileFeaturesCommon.BLOCK_UPPER_MASK) != 0;
+        blocking |= (ya > 0) && (features & TileFeaturesCommon.BLOCK_LOWER_MASK) != 0;
 
         return blocking;
     }
@@ -251,14 +327,24 @@ public class MarioLevelSlim {
             return;
         }
 
+        ensureCutoutOwned();
+        ensureAliveFlagsOwned();
         int cutoutIndex = calculateCutoutIndex(xTile, yTile);
+        if (journal != null)
+            journal.recordCell(cutoutIndex, levelCutout[cutoutIndex]);
         if (levelCutout[cutoutIndex] == LevelPart.PIPE_TOP_LEFT_WITH_FLOWER.getValue()) {
             levelCutout[cutoutIndex] = LevelPart.PIPE_TOP_LEFT_WITHOUT_FLOWER.getValue();
         }
         else {
             levelCutout[cutoutIndex] = (byte) index;
         }
-        aliveFlags[staticLevel.tiles[xTile][yTile].id] = false;
+        int tileId = staticLevel.tiles[xTile][yTile].id;
+        if (aliveFlags[tileId]) {
+            if (journal != null)
+                journal.recordAliveFlag(tileId);
+            aliveFlags[tileId] = false;
+            levelHash ^= StateHashCommon.tileKey(tileId);
+        }
     }
 
     public SpriteTypeCommon getSpriteType(int xTile, int yTile) {
@@ -3,6 +3,7 @@ package mff.forwardmodel.slim.sprites;
 import engine.sprites.Enemy;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 
 public class EnemySlim extends MarioSpriteSlim {
@@ -117,6 +118,26 @@ public class EnemySlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushFloat(xa);
+        journal.pushFloat(ya);
+        journal.pushInt(facing);
+        journal.pushBoolean(onGround);
+        journal.pushBoolean(winged);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        winged = journal.popBoolean();
+        onGround = journal.popBoolean();
+        facing = journal.popInt();
+        ya = journal.popFloat();
+        xa = journal.popFloat();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void collideCheck(MarioUpdateContextSlim updateContext) {
         if (!this.alive) {
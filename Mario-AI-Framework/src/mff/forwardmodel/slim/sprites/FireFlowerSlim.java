@@ -3,6 +3,7 @@ package mff.forwardmodel.slim.sprites;
 import engine.sprites.FireFlower;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 
 public class FireFlowerSlim extends MarioSpriteSlim {
@@ -58,6 +59,18 @@ public class FireFlowerSlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushInt(life);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        life = journal.popInt();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void collideCheck(MarioUpdateContextSlim updateContext) {
         if (!this.alive) {
@@ -85,4 +98,8 @@ public class FireFlowerSlim extends MarioSpriteSlim {
             this.y--;
         }
     }
+
+    public int getLife() {
+        return life;
+    }
 }
@@ -2,6 +2,7 @@ package mff.forwardmodel.slim.sprites;
 
 import engine.sprites.Fireball;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 import mff.forwardmodel.common.SpriteTypeCommon;
 
@@ -74,6 +75,24 @@ public class FireballSlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushFloat(xa);
+        journal.pushFloat(ya);
+        journal.pushInt(facing);
+        journal.pushBoolean(onGround);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        onGround = journal.popBoolean();
+        facing = journal.popInt();
+        ya = journal.popFloat();
+        xa = journal.popFloat();
+        super.restoreFrom(journal);
+    }
+
     // either xa or ya is always zero
     private boolean move(float xa, float ya, MarioUpdateContextSlim updateContext) {
         if (xa != 0) {
@@ -216,4 +235,20 @@ public class FireballSlim extends MarioSpriteSlim {
             ya += 1.5;
         }
     }
+
+    public float getXa() {
+        return xa;
+    }
+
+    public float getYa() {
+        return ya;
+    }
+
+    public int getFacing() {
+        return facing;
+    }
+
+    public boolean isOnGround() {
+        return onGround;
+    }
 }
@@ -3,6 +3,7 @@ package mff.forwardmodel.slim.sprites;
 import engine.sprites.FlowerEnemy;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 
 public class FlowerEnemySlim extends MarioSpriteSlim {
@@ -74,6 +75,20 @@ public class FlowerEnemySlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushInt(waitTime);
+        journal.pushFloat(ya);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        ya = journal.popFloat();
+        waitTime = journal.popInt();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void collideCheck(MarioUpdateContextSlim updateContext) {
         if (!this.alive) {
@@ -167,4 +182,16 @@ public class FlowerEnemySlim extends MarioSpriteSlim {
             updateContext.world.removeSprite(this, updateContext);
         }
     }
+
+    public float getyStart() {
+        return yStart;
+    }
+
+    public int getWaitTime() {
+        return waitTime;
+    }
+
+    public float getYa() {
+        return ya;
+    }
 }
@@ -2,6 +2,7 @@ package mff.forwardmodel.slim.sprites;
 
 import engine.sprites.LifeMushroom;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 import mff.forwardmodel.common.SpriteTypeCommon;
 
@@ -78,6 +79,26 @@ public class LifeMushroomSlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushFloat(xa);
+        journal.pushFloat(ya);
+        journal.pushInt(facing);
+        journal.pushBoolean(onGround);
+        journal.pushInt(life);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        life = journal.popInt();
+        onGround = journal.popBoolean();
+        facing = journal.popInt();
+        ya = journal.popFloat();
+        xa = journal.popFloat();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void collideCheck(MarioUpdateContextSlim updateContext) {
         if (!this.alive) {
@@ -248,4 +269,24 @@ public class LifeMushroomSlim extends MarioSpriteSlim {
             ya += 2;
         }
     }
+
+    public float getXa() {
+        return xa;
+    }
+
+    public float getYa() {
+        return ya;
+    }
+
+    public int getFacing() {
+        return facing;
+    }
+
+    public boolean isOnGround() {
+        return onGround;
+    }
+
+    public int getLife() {
+        return life;
+    }
 }
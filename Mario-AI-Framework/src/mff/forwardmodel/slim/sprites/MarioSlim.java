@@ -4,6 +4,7 @@ import engine.helper.MarioActions;
 import engine.sprites.Mario;
 import mff.forwardmodel.common.LevelPart;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 import mff.forwardmodel.common.SpriteTypeCommon;
 
@@ -118,6 +119,52 @@ public class MarioSlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushInt(height);
+        journal.pushInt(invulnerableTime);
+        journal.pushBoolean(onGround);
+        journal.pushBoolean(wasOnGround);
+        journal.pushBoolean(isLarge);
+        journal.pushBoolean(isDucking);
+        journal.pushBoolean(mayJump);
+        journal.pushBoolean(canShoot);
+        journal.pushBoolean(isFire);
+        journal.pushBoolean(oldLarge);
+        journal.pushBoolean(oldFire);
+        journal.pushFloat(xa);
+        journal.pushFloat(ya);
+        journal.pushInt(facing);
+        journal.pushInt(jumpTime);
+        journal.pushFloat(xJumpSpeed);
+        journal.pushFloat(yJumpSpeed);
+        journal.pushFloat(xJumpStart);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        xJumpStart = journal.popFloat();
+        yJumpSpeed = journal.popFloat();
+        xJumpSpeed = journal.popFloat();
+        jumpTime = journal.popInt();
+        facing = journal.popInt();
+        ya = journal.popFloat();
+        xa = journal.popFloat();
+        oldFire = journal.popBoolean();
+        oldLarge = journal.popBoolean();
+        isFire = journal.popBoolean();
+        canShoot = journal.popBoolean();
+        mayJump = journal.popBoolean();
+        isDucking = journal.popBoolean();
+        isLarge = journal.popBoolean();
+        wasOnGround = journal.popBoolean();
+        onGround = journal.popBoolean();
+        invulnerableTime = journal.popInt();
+        height = journal.popInt();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void update(MarioUpdateContextSlim updateContext) {
         if (!alive) return;
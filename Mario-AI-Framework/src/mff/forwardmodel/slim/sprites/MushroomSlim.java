@@ -3,12 +3,13 @@ package mff.forwardmodel.slim.sprites;
 import engine.sprites.Mushroom;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 
 public class MushroomSlim extends MarioSpriteSlim {
     public static final float GROUND_INERTIA = 0.89f;
     public static final float AIR_INERTIA = 0.89f;
-    private static final SpriteTypeCommon type = SpriteTypeCommon.LIFE_MUSHROOM;
+    private static final SpriteTypeCommon type = SpriteTypeCommon.MUSHROOM;
     private static final int width = 4;
     private static final int height = 12;
 
@@ -78,6 +79,26 @@ public class MushroomSlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushFloat(xa);
+        journal.pushFloat(ya);
+        journal.pushInt(facing);
+        journal.pushBoolean(onGround);
+        journal.pushInt(life);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        life = journal.popInt();
+        onGround = journal.popBoolean();
+        facing = journal.popInt();
+        ya = journal.popFloat();
+        xa = journal.popFloat();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void collideCheck(MarioUpdateContextSlim updateContext) {
         if (!this.alive) {
@@ -248,4 +269,24 @@ public class MushroomSlim extends MarioSpriteSlim {
             ya += 2;
         }
     }
+
+    public float getXa() {
+        return xa;
+    }
+
+    public float getYa() {
+        return ya;
+    }
+
+    public int getFacing() {
+        return facing;
+    }
+
+    public boolean isOnGround() {
+        return onGround;
+    }
+
+    public int getLife() {
+        return life;
+    }
 }
@@ -3,6 +3,7 @@ package mff.forwardmodel.slim.sprites;
 import engine.sprites.Shell;
 import mff.forwardmodel.common.SpriteTypeCommon;
 import mff.forwardmodel.slim.core.MarioSpriteSlim;
+import mff.forwardmodel.slim.core.MarioUndoJournalSlim;
 import mff.forwardmodel.slim.core.MarioUpdateContextSlim;
 
 public class ShellSlim extends MarioSpriteSlim {
@@ -75,6 +76,24 @@ public class ShellSlim extends MarioSpriteSlim {
         return clone;
     }
 
+    @Override
+    public void saveTo(MarioUndoJournalSlim journal) {
+        super.saveTo(journal);
+        journal.pushBoolean(onGround);
+        journal.pushFloat(xa);
+        journal.pushFloat(ya);
+        journal.pushInt(facing);
+    }
+
+    @Override
+    public void restoreFrom(MarioUndoJournalSlim journal) {
+        facing = journal.popInt();
+        ya = journal.popFloat();
+        xa = journal.popFloat();
+        onGround = journal.popBoolean();
+        super.restoreFrom(journal);
+    }
+
     @Override
     public void update(MarioUpdateContextSlim updateContext) {
         if (!this.alive) return;
@@ -300,4 +319,20 @@ public class ShellSlim extends MarioSpriteSlim {
         }
         return false;
     }
+
+    public float getXa() {
+        return xa;
+    }
+
+    public float getYa() {
+        return ya;
+    }
+
+    public int getFacing() {
+        return facing;
+    }
+
+    public boolean isOnGround() {
+        return onGround;
+    }
 }